@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link Context} value lookups, which happen on contexts nested several levels
+ * deep, and for attaching and detaching contexts.
+ */
+@State(Scope.Benchmark)
+public class ContextBenchmark {
+  private static final int KEYS = 20;
+
+  @Param({"1", "10", "50"})
+  public int depth;
+
+  private Context.Key<Object>[] keys;
+  private Context context;
+  private Context.Key<Object> firstKey;
+  private Context.Key<Object> lastKey;
+  private Context.Key<Object> absentKey;
+
+  /**
+   * Creates a context {@code depth} levels below root, with {@link #KEYS} values spread over the
+   * levels.
+   */
+  @Setup
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public void setUp() {
+    keys = new Context.Key[KEYS];
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = Context.key("key" + i);
+    }
+    context = Context.ROOT;
+    for (int level = 0; level < depth; level++) {
+      for (int i = level; i < KEYS; i += depth) {
+        context = context.withValue(keys[i], i);
+      }
+      if (level >= KEYS) {
+        context = context.fork();
+      }
+    }
+    firstKey = keys[0];
+    lastKey = keys[KEYS - 1];
+    absentKey = Context.key("absent");
+  }
+
+  /**
+   * Looks up the value set closest to the root.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object lookupOldest() {
+    return firstKey.get(context);
+  }
+
+  /**
+   * Looks up the value set furthest from the root.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object lookupNewest() {
+    return lastKey.get(context);
+  }
+
+  /**
+   * Looks up a key that has no value.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object lookupAbsent() {
+    return absentKey.get(context);
+  }
+
+  /**
+   * Creates a child context with one more value.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Context withValue() {
+    return context.withValue(absentKey, this);
+  }
+
+  /**
+   * Attaches the context and then restores the previous one.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Context attachDetach() {
+    Context previous = context.attach();
+    context.detach(previous);
+    return previous;
+  }
+}
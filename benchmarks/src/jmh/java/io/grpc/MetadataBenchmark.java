@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Metadata} lookups and mutations at typical header counts.
+ */
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+
+  @Param({"5", "20", "60"})
+  public int headerCount;
+
+  private Metadata.Key<String>[] keys;
+  private String[] values;
+  private Metadata.Key<String> firstKey;
+  private Metadata.Key<String> lastKey;
+  private Metadata.Key<String> missingKey;
+  private Metadata populated;
+
+  /**
+   * Setup.
+   */
+  @Setup
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public void setUp() throws Exception {
+    keys = new Metadata.Key[headerCount];
+    values = new String[headerCount];
+    populated = new Metadata();
+    for (int i = 0; i < headerCount; i++) {
+      keys[i] = Metadata.Key.of("x-header-" + i, Metadata.ASCII_STRING_MARSHALLER);
+      values[i] = "value-" + i;
+      populated.put(keys[i], values[i]);
+    }
+    firstKey = keys[0];
+    lastKey = keys[headerCount - 1];
+    missingKey = Metadata.Key.of("x-missing", Metadata.ASCII_STRING_MARSHALLER);
+  }
+
+  /**
+   * Looks up the first, last and an absent header, as an interceptor chain would.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public int get() {
+    int found = 0;
+    if (populated.get(firstKey) != null) {
+      found++;
+    }
+    if (populated.get(lastKey) != null) {
+      found++;
+    }
+    if (populated.get(missingKey) != null) {
+      found++;
+    }
+    return found;
+  }
+
+  /**
+   * Builds a new metadata of {@code headerCount} headers.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Metadata put() {
+    Metadata metadata = new Metadata();
+    for (int i = 0; i < headerCount; i++) {
+      metadata.put(keys[i], values[i]);
+    }
+    return metadata;
+  }
+
+  /**
+   * Merges the populated metadata into a fresh one and reads a header back from it.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public String mergeThenGet() {
+    Metadata metadata = new Metadata();
+    metadata.merge(populated);
+    return metadata.get(lastKey);
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.benchmarks;
+
+import com.google.protobuf.ByteString;
+
+import io.grpc.Compressor;
+import io.grpc.CompressorRegistry;
+import io.grpc.Decompressor;
+import io.grpc.DecompressorRegistry;
+import io.grpc.benchmarks.proto.Messages.Payload;
+import io.grpc.benchmarks.proto.Messages.PayloadType;
+import io.grpc.benchmarks.proto.Messages.SimpleRequest;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the built-in codecs on serialized benchmark {@link Payload}s.
+ *
+ * <p>Throughput is reported per message. The {@code uncompressedBytes} and {@code compressedBytes}
+ * counters of {@link #compress} give the compression ratio when divided.
+ */
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+  @Param({"gzip", "lz4"})
+  public String codec;
+
+  @Param({"COMPRESSABLE", "UNCOMPRESSABLE"})
+  public PayloadType payloadType;
+
+  @Param({"1024", "65536", "1048576"})
+  public int payloadSize;
+
+  private Compressor compressor;
+  private Decompressor decompressor;
+  private byte[] message;
+  private byte[] compressedMessage;
+  private final byte[] scratch = new byte[8192];
+
+  /**
+   * Counts the bytes passing through {@link #compress}.
+   */
+  @AuxCounters
+  @State(Scope.Thread)
+  public static class ByteCounters {
+    public long uncompressedBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      uncompressedBytes = 0;
+      compressedBytes = 0;
+    }
+  }
+
+  /**
+   * Setup.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    compressor = CompressorRegistry.getDefaultInstance().lookupCompressor(codec);
+    decompressor = DecompressorRegistry.getDefaultInstance().lookupDecompressor(codec);
+    byte[] body = new byte[payloadSize];
+    if (payloadType == PayloadType.UNCOMPRESSABLE) {
+      new Random(1).nextBytes(body);
+    }
+    message = SimpleRequest.newBuilder()
+        .setPayload(Payload.newBuilder().setType(payloadType).setBody(ByteString.copyFrom(body)))
+        .build()
+        .toByteArray();
+    compressedMessage = compressMessage(message);
+  }
+
+  /**
+   * Compresses a serialized message.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public byte[] compress(ByteCounters counters) throws IOException {
+    byte[] compressed = compressMessage(message);
+    counters.uncompressedBytes += message.length;
+    counters.compressedBytes += compressed.length;
+    return compressed;
+  }
+
+  /**
+   * Decompresses a compressed message.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public long decompress() throws IOException {
+    InputStream is = decompressor.decompress(new ByteArrayInputStream(compressedMessage));
+    long total = 0;
+    int n;
+    while ((n = is.read(scratch)) != -1) {
+      total += n;
+    }
+    is.close();
+    return total;
+  }
+
+  private byte[] compressMessage(byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 2);
+    OutputStream os = compressor.compress(baos);
+    os.write(data);
+    os.close();
+    return baos.toByteArray();
+  }
+}
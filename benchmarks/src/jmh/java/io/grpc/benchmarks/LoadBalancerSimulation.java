@@ -0,0 +1,305 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.benchmarks;
+
+import io.grpc.Attributes;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.CallTracker;
+import io.grpc.LoadBalancer2.PickResult;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.NameResolver;
+import io.grpc.ResolvedServerInfo;
+import io.grpc.ResolvedServerInfoGroup;
+import io.grpc.Status;
+import io.grpc.util.LeastRequestLoadBalancerFactory;
+
+import org.HdrHistogram.Histogram;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discrete-event simulation of a client spreading RPCs over backends of unequal speed, comparing
+ * the latency distribution of round-robin with that of {@link LeastRequestLoadBalancerFactory}.
+ *
+ * <p>Each backend serves a fixed number of RPCs concurrently and queues the rest. Service times
+ * are exponentially distributed, and one backend is several times slower than the others. RPCs
+ * arrive as a Poisson process at a fraction of the fleet's total capacity. Latency is measured
+ * from arrival to completion in simulated time, so results do not depend on the host.
+ *
+ * <p>Usage: {@code LoadBalancerSimulation [backends] [slowdown] [utilization] [rpcs]}
+ */
+public final class LoadBalancerSimulation {
+  private static final int CONCURRENCY_PER_BACKEND = 4;
+  private static final long MEAN_SERVICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final int backendCount;
+  private final double slowdown;
+  private final double utilization;
+  private final int rpcs;
+
+  LoadBalancerSimulation(int backendCount, double slowdown, double utilization, int rpcs) {
+    this.backendCount = backendCount;
+    this.slowdown = slowdown;
+    this.utilization = utilization;
+    this.rpcs = rpcs;
+  }
+
+  /**
+   * Runs the simulation with the given picker over the given subchannels and returns the
+   * latency histogram, in nanoseconds.
+   */
+  Histogram run(SubchannelPicker picker, List<SimulatedBackend> backends) {
+    Random random = new Random(1);
+    double capacityPerNano = 0;
+    for (SimulatedBackend backend : backends) {
+      capacityPerNano += CONCURRENCY_PER_BACKEND / (double) backend.meanServiceNanos;
+    }
+    double meanInterarrivalNanos = 1 / (capacityPerNano * utilization);
+
+    Histogram histogram = new Histogram(TimeUnit.MINUTES.toNanos(10), 3);
+    PriorityQueue<Rpc> completions = new PriorityQueue<Rpc>();
+    long now = 0;
+    long nextArrival = 0;
+    int arrived = 0;
+    while (arrived < rpcs || !completions.isEmpty()) {
+      if (arrived < rpcs && (completions.isEmpty() || nextArrival <= completions.peek().endNanos)) {
+        now = nextArrival;
+        PickResult result = picker.pickSubchannel(Attributes.EMPTY, new Metadata());
+        SimulatedBackend backend = (SimulatedBackend) result.getSubchannel();
+        Rpc rpc = new Rpc(now, result.getCallTracker(), backend);
+        if (backend.active < CONCURRENCY_PER_BACKEND) {
+          backend.start(rpc, now, random, completions);
+        } else {
+          backend.queue.add(rpc);
+        }
+        arrived++;
+        nextArrival = now + exponential(random, meanInterarrivalNanos);
+      } else {
+        Rpc rpc = completions.poll();
+        now = rpc.endNanos;
+        histogram.recordValue(now - rpc.startNanos);
+        if (rpc.callTracker != null) {
+          rpc.callTracker.callEnded(Status.OK);
+        }
+        SimulatedBackend backend = rpc.backend;
+        backend.active--;
+        Rpc next = backend.queue.poll();
+        if (next != null) {
+          backend.start(next, now, random, completions);
+        }
+      }
+    }
+    return histogram;
+  }
+
+  List<SimulatedBackend> newBackends(Attributes attrs) {
+    List<SimulatedBackend> backends = new ArrayList<SimulatedBackend>(backendCount);
+    for (int i = 0; i < backendCount; i++) {
+      long meanServiceNanos = i == 0 ? (long) (MEAN_SERVICE_NANOS * slowdown) : MEAN_SERVICE_NANOS;
+      backends.add(new SimulatedBackend(meanServiceNanos, attrs));
+    }
+    return backends;
+  }
+
+  private static long exponential(Random random, double mean) {
+    return (long) (-Math.log(1 - random.nextDouble()) * mean);
+  }
+
+  private static void print(String name, Histogram histogram) {
+    System.out.printf("%-14s p50 %8.2f ms   p99 %8.2f ms   p99.9 %8.2f ms%n", name,
+        histogram.getValueAtPercentile(50) / 1e6,
+        histogram.getValueAtPercentile(99) / 1e6,
+        histogram.getValueAtPercentile(99.9) / 1e6);
+  }
+
+  /**
+   * Runs both policies and prints their latency percentiles.
+   */
+  public static void main(String[] args) {
+    int backendCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+    double slowdown = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+    double utilization = args.length > 2 ? Double.parseDouble(args[2]) : 0.7;
+    int rpcs = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+    LoadBalancerSimulation simulation =
+        new LoadBalancerSimulation(backendCount, slowdown, utilization, rpcs);
+    System.out.printf("%d backends, one %.1fx slower, %.0f%% utilization, %d RPCs%n",
+        backendCount, slowdown, utilization * 100, rpcs);
+
+    List<SimulatedBackend> backends = simulation.newBackends(Attributes.EMPTY);
+    print("round-robin", simulation.run(new RoundRobinPicker(backends), backends));
+
+    SimulationHelper helper = new SimulationHelper(simulation);
+    LoadBalancer2 loadBalancer =
+        LeastRequestLoadBalancerFactory.getInstance().newLoadBalancer(helper);
+    List<ResolvedServerInfoGroup> servers = new ArrayList<ResolvedServerInfoGroup>();
+    for (int i = 0; i < backendCount; i++) {
+      servers.add(ResolvedServerInfoGroup.builder()
+          .add(new ResolvedServerInfo(new InetSocketAddress("10.0.0." + i, 443))).build());
+    }
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    for (Subchannel subchannel : helper.backends) {
+      loadBalancer.handleSubchannelState(
+          subchannel, ConnectivityStateInfo.forNonError(ConnectivityState.READY));
+    }
+    print("least-request", simulation.run(helper.picker, helper.backends));
+    loadBalancer.shutdown();
+  }
+
+  private static final class Rpc implements Comparable<Rpc> {
+    final long startNanos;
+    final CallTracker callTracker;
+    final SimulatedBackend backend;
+    long endNanos;
+
+    Rpc(long startNanos, CallTracker callTracker, SimulatedBackend backend) {
+      this.startNanos = startNanos;
+      this.callTracker = callTracker;
+      this.backend = backend;
+    }
+
+    @Override
+    public int compareTo(Rpc other) {
+      return endNanos < other.endNanos ? -1 : (endNanos == other.endNanos ? 0 : 1);
+    }
+  }
+
+  /**
+   * A backend, which is its own Subchannel.
+   */
+  private static final class SimulatedBackend extends Subchannel {
+    final long meanServiceNanos;
+    final Attributes attrs;
+    final ArrayDeque<Rpc> queue = new ArrayDeque<Rpc>();
+    int active;
+
+    SimulatedBackend(long meanServiceNanos, Attributes attrs) {
+      this.meanServiceNanos = meanServiceNanos;
+      this.attrs = attrs;
+    }
+
+    void start(Rpc rpc, long now, Random random, PriorityQueue<Rpc> completions) {
+      active++;
+      rpc.endNanos = now + exponential(random, meanServiceNanos);
+      completions.add(rpc);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void requestConnection() {
+    }
+
+    @Override
+    public EquivalentAddressGroup getAddresses() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return attrs;
+    }
+  }
+
+  private static final class RoundRobinPicker extends SubchannelPicker {
+    private final List<SimulatedBackend> backends;
+    private int next;
+
+    RoundRobinPicker(List<SimulatedBackend> backends) {
+      this.backends = backends;
+    }
+
+    @Override
+    public PickResult pickSubchannel(Attributes affinity, Metadata headers) {
+      Subchannel subchannel = backends.get(next);
+      next = (next + 1) % backends.size();
+      return PickResult.withSubchannel(subchannel);
+    }
+  }
+
+  private static final class SimulationHelper extends LoadBalancer2.Helper {
+    final LoadBalancerSimulation simulation;
+    final List<SimulatedBackend> backends = new ArrayList<SimulatedBackend>();
+    SubchannelPicker picker;
+
+    SimulationHelper(LoadBalancerSimulation simulation) {
+      this.simulation = simulation;
+    }
+
+    @Override
+    public Subchannel createSubchannel(EquivalentAddressGroup addrs, Attributes attrs) {
+      long meanServiceNanos = backends.isEmpty()
+          ? (long) (MEAN_SERVICE_NANOS * simulation.slowdown) : MEAN_SERVICE_NANOS;
+      SimulatedBackend backend = new SimulatedBackend(meanServiceNanos, attrs);
+      backends.add(backend);
+      return backend;
+    }
+
+    @Override
+    public ManagedChannel createOobChannel(EquivalentAddressGroup eag, String authority) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updatePicker(SubchannelPicker picker) {
+      this.picker = picker;
+    }
+
+    @Override
+    public void runSerialized(Runnable task) {
+      task.run();
+    }
+
+    @Override
+    public NameResolver.Factory getNameResolverFactory() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getAuthority() {
+      return "simulation";
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.benchmarks;
+
+import com.google.protobuf.ByteString;
+
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor.Marshaller;
+import io.grpc.benchmarks.proto.Messages.Payload;
+import io.grpc.benchmarks.proto.Messages.SimpleRequest;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.protobuf.lite.ProtoLiteUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for parsing received protobuf messages with {@link ProtoLiteUtils}.
+ *
+ * <p>{@link #parseFromStream} takes the path used for streams that only expose their bytes
+ * through {@code read()}, which copies every message into a scratch array first.
+ * {@link #parseFromHeapBuffer} parses a stream exposing a heap {@link ByteBuffer} in place, and
+ * {@link #parseFromDirectBuffer} shows the fallback for direct buffers. Run with {@code -prof gc}
+ * to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+public class ProtoLiteParseBenchmark {
+
+  @Param({"1024", "65536", "4194304"})
+  public int messageSize;
+
+  private final Marshaller<SimpleRequest> marshaller =
+      ProtoLiteUtils.marshaller(SimpleRequest.getDefaultInstance());
+  private byte[] serialized;
+  private ByteBuffer direct;
+
+  /**
+   * Setup.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    SimpleRequest request = SimpleRequest.newBuilder()
+        .setPayload(Payload.newBuilder().setBody(ByteString.copyFrom(new byte[messageSize])))
+        .build();
+    serialized = request.toByteArray();
+    direct = ByteBuffer.allocateDirect(serialized.length);
+    direct.put(serialized).flip();
+  }
+
+  /**
+   * Parses from a stream that only supports {@code read()}.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public SimpleRequest parseFromStream() {
+    return marshaller.parse(new KnownLengthInputStream(serialized));
+  }
+
+  /**
+   * Parses from a stream backed by a heap buffer, as received from the transport.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public SimpleRequest parseFromHeapBuffer() {
+    return marshaller.parse(ReadableBuffers.openStream(ReadableBuffers.wrap(serialized), true));
+  }
+
+  /**
+   * Parses from a stream backed by a direct buffer, as received from the transport.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public SimpleRequest parseFromDirectBuffer() {
+    return marshaller.parse(
+        ReadableBuffers.openStream(ReadableBuffers.wrap(direct.duplicate()), true));
+  }
+
+  private static final class KnownLengthInputStream extends ByteArrayInputStream
+      implements KnownLength {
+    KnownLengthInputStream(byte[] buf) {
+      super(buf);
+    }
+  }
+}
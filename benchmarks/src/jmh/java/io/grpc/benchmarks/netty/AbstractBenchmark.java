@@ -192,6 +192,7 @@ public abstract class AbstractBenchmark {
   protected MethodDescriptor<ByteBuf, ByteBuf> unaryMethod;
   private MethodDescriptor<ByteBuf, ByteBuf> pingPongMethod;
   private MethodDescriptor<ByteBuf, ByteBuf> flowControlledStreaming;
+  protected MethodDescriptor<ByteBuf, ByteBuf> unboundedServerStreaming;
   protected ManagedChannel[] channels;
 
   public AbstractBenchmark() {
@@ -268,6 +269,10 @@ public abstract class AbstractBenchmark {
         "benchmark/flowControlledStreaming",
         new ByteBufOutputMarshaller(),
         new ByteBufOutputMarshaller());
+    unboundedServerStreaming = MethodDescriptor.create(MethodType.SERVER_STREAMING,
+        "benchmark/unboundedServerStreaming",
+        new ByteBufOutputMarshaller(),
+        new ByteBufOutputMarshaller());
 
     // Server implementation of unary & streaming methods
     serverBuilder.addService(
@@ -275,7 +280,8 @@ public abstract class AbstractBenchmark {
             new ServiceDescriptor("benchmark",
                 unaryMethod,
                 pingPongMethod,
-                flowControlledStreaming))
+                flowControlledStreaming,
+                unboundedServerStreaming))
             .addMethod(unaryMethod, new ServerCallHandler<ByteBuf, ByteBuf>() {
                   @Override
                   public ServerCall.Listener<ByteBuf> startCall(
@@ -373,6 +379,30 @@ public abstract class AbstractBenchmark {
 
                       }
 
+                      @Override
+                      public void onReady() {
+                        while (call.isReady()) {
+                          call.sendMessage(response.slice());
+                        }
+                      }
+                    };
+                  }
+                })
+            .addMethod(unboundedServerStreaming, new ServerCallHandler<ByteBuf, ByteBuf>() {
+                  @Override
+                  public ServerCall.Listener<ByteBuf> startCall(
+                      final ServerCall<ByteBuf, ByteBuf> call,
+                      Metadata headers) {
+                    call.sendHeaders(new Metadata());
+                    call.request(1);
+                    // Responses are sent for as long as flow control permits, until the client
+                    // cancels the call.
+                    return new ServerCall.Listener<ByteBuf>() {
+                      @Override
+                      public void onMessage(ByteBuf message) {
+                        message.release();
+                      }
+
                       @Override
                       public void onReady() {
                         while (call.isReady()) {
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.benchmarks.netty;
+
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.stub.ClientCalls;
+import io.netty.buffer.ByteBuf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Iterator;
+
+/**
+ * Benchmark of response throughput for a server-streaming call read through the blocking
+ * iterator, permuting how many messages the iterator requests ahead of the application. Each
+ * operation reads one response message.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class BlockingStreamingResponseBandwidthBenchmark extends AbstractBenchmark {
+
+  @Param({"1", "16", "128"})
+  public int prefetch = 1;
+
+  @Param({"SMALL", "LARGE"})
+  public MessageSize responseSize = MessageSize.SMALL;
+
+  private Iterator<ByteBuf> responses;
+
+  /**
+   * Setup with direct executors and one channel, then start the call.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    super.setup(ExecutorType.DIRECT,
+        ExecutorType.DIRECT,
+        MessageSize.SMALL,
+        responseSize,
+        FlowWindowSize.LARGE,
+        ChannelType.NIO,
+        1,
+        1);
+    responses = ClientCalls.blockingServerStreamingCall(channels[0], unboundedServerStreaming,
+        CallOptions.DEFAULT.withOption(ClientCalls.BLOCKING_STREAM_PREFETCH, prefetch),
+        request.slice());
+  }
+
+  /**
+   * Cancel the call, then stop the server and client channels.
+   */
+  @Override
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    for (ManagedChannel channel : channels) {
+      channel.shutdownNow();
+    }
+    super.teardown();
+  }
+
+  /**
+   * Read the next response message.
+   */
+  @Benchmark
+  public int next() throws Exception {
+    ByteBuf response = responses.next();
+    int bytes = response.readableBytes();
+    response.release();
+    return bytes;
+  }
+}
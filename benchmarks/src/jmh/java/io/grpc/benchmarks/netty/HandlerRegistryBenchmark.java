@@ -37,7 +37,6 @@ import io.grpc.ServerCall;
 import io.grpc.ServerCall.Listener;
 import io.grpc.ServerCallHandler;
 import io.grpc.ServerServiceDefinition;
-import io.grpc.ServiceDescriptor;
 import io.grpc.util.MutableHandlerRegistry;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -49,6 +48,7 @@ import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.infra.Blackhole;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -63,6 +63,19 @@ public class HandlerRegistryBenchmark {
   private static final String VALID_CHARACTERS =
           "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.";
 
+  private static final MethodDescriptor.Marshaller<Object> NOOP_MARSHALLER =
+      new MethodDescriptor.Marshaller<Object>() {
+        @Override
+        public InputStream stream(Object value) {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object parse(InputStream stream) {
+          throw new UnsupportedOperationException();
+        }
+      };
+
   @Param({"50"})
   public int nameLength;
 
@@ -84,13 +97,14 @@ public class HandlerRegistryBenchmark {
     fullMethodNames = new ArrayList<String>(serviceCount * methodCountPerService);
     for (int serviceIndex = 0; serviceIndex < serviceCount; ++serviceIndex) {
       String serviceName = randomString();
-      ServerServiceDefinition.Builder serviceBuilder = ServerServiceDefinition.builder(
-          new ServiceDescriptor(serviceName));
+      ServerServiceDefinition.Builder serviceBuilder =
+          ServerServiceDefinition.builder(serviceName);
       for (int methodIndex = 0; methodIndex < methodCountPerService; ++methodIndex) {
         String methodName = randomString();
         MethodDescriptor<Object, Object> methodDescriptor = MethodDescriptor.create(
             MethodDescriptor.MethodType.UNKNOWN,
-            MethodDescriptor.generateFullMethodName(serviceName, methodName), null, null);
+            MethodDescriptor.generateFullMethodName(serviceName, methodName),
+            NOOP_MARSHALLER, NOOP_MARSHALLER);
         serviceBuilder.addMethod(methodDescriptor,
             new ServerCallHandler<Object, Object>() {
               @Override
@@ -38,6 +38,7 @@ import io.netty.buffer.Unpooled;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -52,6 +53,23 @@ import org.openjdk.jmh.annotations.TearDown;
 @Fork(1)
 public class SingleThreadBlockingQpsBenchmark extends AbstractBenchmark {
 
+  /**
+   * How long the calling thread spins for the response before parking, for the calls that wait
+   * through {@link ClientCalls#BLOCKING_SPIN_NANOS}.
+   */
+  @State(Scope.Thread)
+  public static class SpinState {
+    @Param({"0", "20000", "100000"})
+    public long spinNanos;
+
+    CallOptions callOptions;
+
+    @Setup
+    public void setup() {
+      callOptions = CallOptions.DEFAULT.withOption(ClientCalls.BLOCKING_SPIN_NANOS, spinNanos);
+    }
+  }
+
   /**
    * Setup with direct executors, small payloads and the default flow control window.
    */
@@ -86,6 +104,16 @@ public class SingleThreadBlockingQpsBenchmark extends AbstractBenchmark {
         channels[0].newCall(unaryMethod, CallOptions.DEFAULT), Unpooled.EMPTY_BUFFER);
   }
 
+  /**
+   * Issue a unary call and wait for the response on the calling thread, which also runs the call's
+   * callbacks.
+   */
+  @Benchmark
+  public void blockingUnaryThreadless(SpinState spin) throws Exception {
+    ClientCalls.blockingUnaryCall(
+        channels[0], unaryMethod, spin.callOptions, Unpooled.EMPTY_BUFFER);
+  }
+
   /**
    * Useful for triggering a subset of the benchmark in a profiler.
    */
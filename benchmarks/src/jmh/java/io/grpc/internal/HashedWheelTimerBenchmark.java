@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks scheduling and then cancelling timers, which is what happens to almost every
+ * deadline and keepalive timeout.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HashedWheelTimerBenchmark {
+
+  private static final int TIMERS = 1000000;
+
+  private static final Runnable NOOP = new Runnable() {
+    @Override
+    public void run() {
+    }
+  };
+
+  @Param({"wheel", "threadpool"})
+  public String timer;
+
+  private ScheduledExecutorService executor;
+  private final ScheduledFuture<?>[] futures = new ScheduledFuture<?>[TIMERS];
+
+  /**
+   * Creates the timer under test.
+   */
+  @Setup
+  public void setUp() {
+    if ("wheel".equals(timer)) {
+      executor = new HashedWheelTimer(
+          GrpcUtil.getThreadFactory("benchmark-timer-%d", true), 10, TimeUnit.MILLISECONDS, 512);
+    } else {
+      ScheduledThreadPoolExecutor threadPool = new ScheduledThreadPoolExecutor(
+          1, GrpcUtil.getThreadFactory("benchmark-timer-%d", true));
+      threadPool.setRemoveOnCancelPolicy(true);
+      executor = threadPool;
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Schedules a million timers with spread out deadlines, then cancels all of them.
+   */
+  @Benchmark
+  @OperationsPerInvocation(TIMERS)
+  public void scheduleThenCancel() {
+    for (int i = 0; i < TIMERS; i++) {
+      futures[i] = executor.schedule(NOOP, 1000 + (i & 0xfff), TimeUnit.MILLISECONDS);
+    }
+    for (int i = 0; i < TIMERS; i++) {
+      futures[i].cancel(false);
+      futures[i] = null;
+    }
+  }
+}
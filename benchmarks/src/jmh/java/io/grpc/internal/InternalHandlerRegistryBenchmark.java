@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import com.google.common.base.Charsets;
+
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCall.Listener;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerServiceDefinition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark for {@link InternalHandlerRegistry}, comparing lookups by name with lookups from the
+ * raw bytes of a request path.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class InternalHandlerRegistryBenchmark {
+
+  private static final String VALID_CHARACTERS =
+          "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.";
+
+  private static final MethodDescriptor.Marshaller<Object> NOOP_MARSHALLER =
+      new MethodDescriptor.Marshaller<Object>() {
+        @Override
+        public InputStream stream(Object value) {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object parse(InputStream stream) {
+          throw new UnsupportedOperationException();
+        }
+      };
+
+  @Param({"50"})
+  public int nameLength;
+
+  @Param({"100"})
+  public int serviceCount;
+
+  @Param({"100"})
+  public int methodCountPerService;
+
+  private InternalHandlerRegistry registry;
+  private List<String> fullMethodNames;
+  private List<byte[]> paths;
+
+  /**
+   * Set up the registry.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    InternalHandlerRegistry.Builder builder = new InternalHandlerRegistry.Builder();
+    fullMethodNames = new ArrayList<String>(serviceCount * methodCountPerService);
+    paths = new ArrayList<byte[]>(serviceCount * methodCountPerService);
+    for (int serviceIndex = 0; serviceIndex < serviceCount; ++serviceIndex) {
+      String serviceName = randomString();
+      ServerServiceDefinition.Builder serviceBuilder =
+          ServerServiceDefinition.builder(serviceName);
+      for (int methodIndex = 0; methodIndex < methodCountPerService; ++methodIndex) {
+        String methodName = randomString();
+        MethodDescriptor<Object, Object> methodDescriptor = MethodDescriptor.create(
+            MethodDescriptor.MethodType.UNKNOWN,
+            MethodDescriptor.generateFullMethodName(serviceName, methodName),
+            NOOP_MARSHALLER, NOOP_MARSHALLER);
+        serviceBuilder.addMethod(methodDescriptor,
+            new ServerCallHandler<Object, Object>() {
+              @Override
+              public Listener<Object> startCall(ServerCall<Object, Object> call,
+                  Metadata headers) {
+                return null;
+              }
+            });
+        fullMethodNames.add(methodDescriptor.getFullMethodName());
+        paths.add(("/" + methodDescriptor.getFullMethodName()).getBytes(Charsets.UTF_8));
+      }
+      builder.addService(serviceBuilder.build());
+    }
+    registry = builder.build();
+  }
+
+  /**
+   * Benchmark the {@link InternalHandlerRegistry#lookupMethod(String)} throughput.
+   */
+  @Benchmark
+  public void lookupMethod(Blackhole bh) {
+    for (String fullMethodName : fullMethodNames) {
+      bh.consume(registry.lookupMethod(fullMethodName));
+    }
+  }
+
+  /**
+   * Benchmark decoding each request path into a method name before looking it up, as transports
+   * did before they could look up the path bytes directly.
+   */
+  @Benchmark
+  public void decodeThenLookupMethod(Blackhole bh) {
+    for (byte[] path : paths) {
+      bh.consume(registry.lookupMethod(
+          new String(path, 1, path.length - 1, Charsets.UTF_8)));
+    }
+  }
+
+  /**
+   * Benchmark the {@link InternalHandlerRegistry#lookupMethod(byte[], int, int)} throughput.
+   */
+  @Benchmark
+  public void lookupMethodFromPath(Blackhole bh) {
+    for (byte[] path : paths) {
+      bh.consume(registry.lookupMethod(path, 1, path.length - 1));
+    }
+  }
+
+  private String randomString() {
+    Random r = new Random();
+    char[] bytes = new char[nameLength];
+    for (int ix = 0; ix < nameLength; ++ix) {
+      int charIx = r.nextInt(VALID_CHARACTERS.length());
+      bytes[ix] = VALID_CHARACTERS.charAt(charIx);
+    }
+    return new String(bytes);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link SerializingExecutor} with several threads submitting tasks to it at once.
+ * Each producer submits a batch of tasks and waits for them to run before submitting more, so
+ * the queue stays bounded.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializingExecutorBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+
+  private ExecutorService executorService;
+  private SerializingExecutor executor;
+
+  /**
+   * Per-thread producer, counting how many of its tasks have run.
+   */
+  @State(Scope.Thread)
+  public static class Producer {
+    // Only written by the task, which the executor runs serially
+    volatile int completed;
+
+    final Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        completed++;
+      }
+    };
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    executorService = Executors.newSingleThreadExecutor();
+    executor = new SerializingExecutor(executorService);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  private void submitBatch(Producer producer) {
+    int target = producer.completed + BATCH_SIZE;
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      executor.execute(producer.task);
+    }
+    while (producer.completed != target) {
+      Thread.yield();
+    }
+  }
+
+  /**
+   * One thread submitting tasks.
+   */
+  @Benchmark
+  @Threads(1)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void execute1Producer(Producer producer) {
+    submitBatch(producer);
+  }
+
+  /**
+   * Four threads submitting tasks.
+   */
+  @Benchmark
+  @Threads(4)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void execute4Producers(Producer producer) {
+    submitBatch(producer);
+  }
+
+  /**
+   * Sixteen threads submitting tasks.
+   */
+  @Benchmark
+  @Threads(16)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void execute16Producers(Producer producer) {
+    submitBatch(producer);
+  }
+
+  /**
+   * Thirty-two threads submitting tasks.
+   */
+  @Benchmark
+  @Threads(32)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void execute32Producers(Producer producer) {
+    submitBatch(producer);
+  }
+}
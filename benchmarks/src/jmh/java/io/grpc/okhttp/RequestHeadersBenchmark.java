@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.okhttp;
+
+import io.grpc.Metadata;
+import io.grpc.okhttp.internal.framed.Header;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request header creation benchmark. Run with {@code -prof gc} to compare allocation per operation
+ * with and without the cached fixed headers.
+ */
+@State(Scope.Benchmark)
+public class RequestHeadersBenchmark {
+  @Param({"0", "5", "20"})
+  public int headerCount;
+
+  private final Metadata metadata = new Metadata();
+  private final String defaultPath = "/Service.MethodMethodMethod";
+  private final String authority = "authority.googleapis.bogus";
+  private final String userAgent = "grpc-java-okhttp";
+  private Headers.FixedRequestHeaders fixed;
+
+  /**
+   * Setup.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    for (int i = 0; i < headerCount; i++) {
+      metadata.put(Metadata.Key.of("key-" + i, Metadata.ASCII_STRING_MARSHALLER),
+          UUID.randomUUID().toString());
+    }
+    fixed = Headers.fixedRequestHeaders(null, defaultPath, authority, userAgent);
+  }
+
+  /**
+   * Encodes every request header, as each call did before the fixed ones were cached.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public List<Header> createRequestHeaders() {
+    return Headers.createRequestHeaders(metadata, defaultPath, authority, userAgent);
+  }
+
+  /**
+   * Reuses the fixed headers the way a client stream does once they are cached on the method
+   * descriptor.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public List<Header> createRequestHeadersCached() {
+    Headers.FixedRequestHeaders cached =
+        Headers.fixedRequestHeaders(fixed, defaultPath, authority, userAgent);
+    return Headers.createRequestHeaders(metadata, cached);
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2.PickResult;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.Metadata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks picking with {@link RoundRobinLoadBalancer2Factory} from many threads at once,
+ * compared with rotating the same list under a lock.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoundRobinPickerBenchmark {
+
+  @Param({"atomic", "synchronized"})
+  public String picker;
+
+  @Param({"10"})
+  public int subchannels;
+
+  private final Metadata headers = new Metadata();
+  private SubchannelPicker subchannelPicker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<Subchannel> list = new ArrayList<Subchannel>(subchannels);
+    for (int i = 0; i < subchannels; i++) {
+      list.add(new NoopSubchannel());
+    }
+    if ("atomic".equals(picker)) {
+      subchannelPicker = new RoundRobinLoadBalancer2Factory.Picker(list, 0);
+    } else if ("synchronized".equals(picker)) {
+      subchannelPicker = new SynchronizedPicker(list);
+    } else {
+      throw new IllegalArgumentException("Unknown picker: " + picker);
+    }
+  }
+
+  /**
+   * One thread picking.
+   */
+  @Benchmark
+  @Threads(1)
+  public PickResult pick1Thread() {
+    return subchannelPicker.pickSubchannel(Attributes.EMPTY, headers);
+  }
+
+  /**
+   * Four threads picking.
+   */
+  @Benchmark
+  @Threads(4)
+  public PickResult pick4Threads() {
+    return subchannelPicker.pickSubchannel(Attributes.EMPTY, headers);
+  }
+
+  /**
+   * Sixteen threads picking.
+   */
+  @Benchmark
+  @Threads(16)
+  public PickResult pick16Threads() {
+    return subchannelPicker.pickSubchannel(Attributes.EMPTY, headers);
+  }
+
+  /**
+   * Sixty-four threads picking.
+   */
+  @Benchmark
+  @Threads(64)
+  public PickResult pick64Threads() {
+    return subchannelPicker.pickSubchannel(Attributes.EMPTY, headers);
+  }
+
+  /**
+   * Rotates under a lock, like {@code RoundRobinServerList} used to.
+   */
+  private static final class SynchronizedPicker extends SubchannelPicker {
+    private final List<Subchannel> list;
+    private int index;
+
+    SynchronizedPicker(List<Subchannel> list) {
+      this.list = list;
+    }
+
+    @Override
+    public PickResult pickSubchannel(Attributes affinity, Metadata headers) {
+      Subchannel subchannel;
+      synchronized (this) {
+        subchannel = list.get(index);
+        if (++index == list.size()) {
+          index = 0;
+        }
+      }
+      return PickResult.withSubchannel(subchannel);
+    }
+  }
+
+  private static final class NoopSubchannel extends Subchannel {
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void requestConnection() {
+    }
+
+    @Override
+    public EquivalentAddressGroup getAddresses() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return Attributes.EMPTY;
+    }
+  }
+}
@@ -32,12 +32,15 @@
 package io.grpc;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -107,7 +110,8 @@ public class Context {
 
   private static final Logger log = Logger.getLogger(Context.class.getName());
 
-  private static final Object[][] EMPTY_ENTRIES = new Object[0][2];
+  private static final PersistentHashArrayMappedTrie<Key<?>, Object> EMPTY_ENTRIES =
+      new PersistentHashArrayMappedTrie<Key<?>, Object>();
 
   private static final Key<Deadline> DEADLINE_KEY = new Key<Deadline>("deadline");
 
@@ -181,10 +185,36 @@ public class Context {
   }
 
   private final Context parent;
-  private final Object[][] keyValueEntries;
+  // All the values visible in this context, including inherited ones
+  private final PersistentHashArrayMappedTrie<Key<?>, Object> keyValueEntries;
   private final boolean cascadesCancellation;
-  private ArrayList<ExecutableListener> listeners;
+  private static final AtomicReferenceFieldUpdater<Context, ListenerNode> LISTENERS_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(Context.class, ListenerNode.class, "listeners");
+  private static final AtomicIntegerFieldUpdater<Context> PARENT_LISTENER_UPDATES_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(Context.class, "parentListenerUpdates");
+  private static final AtomicIntegerFieldUpdater<Context> REMOVED_LISTENERS_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(Context.class, "removedListeners");
+  private static final AtomicIntegerFieldUpdater<ExecutableListener> REMOVED_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(ExecutableListener.class, "removed");
+
+  /**
+   * Immutable stack of listeners, most recently added first, replaced by compare-and-set so that
+   * the many children of a context do not contend on a lock. Removed listeners are only marked,
+   * and dropped from the stack once they make up half of it.
+   */
+  private volatile ListenerNode listeners;
+  /**
+   * Number of listeners marked as removed that may still be in {@link #listeners}.
+   */
+  private volatile int removedListeners;
   private CancellationListener parentListener = new ParentListener();
+  /**
+   * Number of pending requests to make the registration of {@link #parentListener} match whether
+   * there are {@link #listeners}. The thread that raises it from zero applies them.
+   */
+  private volatile int parentListenerUpdates;
+  // Only accessed by the thread applying parentListenerUpdates
+  private boolean parentListenerRegistered;
   private final boolean canBeCancelled;
 
   /**
@@ -193,7 +223,8 @@ public class Context {
   private Context(Context parent) {
     this.parent = parent;
     // Not inheriting cancellation implies not inheriting a deadline too.
-    keyValueEntries = new Object[][]{{DEADLINE_KEY, null}};
+    keyValueEntries = parent == null
+        ? EMPTY_ENTRIES : parent.keyValueEntries.put(DEADLINE_KEY, null);
     cascadesCancellation = false;
     canBeCancelled = false;
   }
@@ -202,7 +233,7 @@ public class Context {
    * Construct a context that cannot be cancelled but will cascade cancellation from its parent if
    * it is cancellable.
    */
-  private Context(Context parent, Object[][] keyValueEntries) {
+  private Context(Context parent, PersistentHashArrayMappedTrie<Key<?>, Object> keyValueEntries) {
     this.parent = parent;
     this.keyValueEntries = keyValueEntries;
     cascadesCancellation = true;
@@ -213,7 +244,8 @@ public class Context {
    * Construct a context that can be cancelled and will cascade cancellation from its parent if
    * it is cancellable.
    */
-  private Context(Context parent, Object[][] keyValueEntries, boolean isCancellable) {
+  private Context(Context parent, PersistentHashArrayMappedTrie<Key<?>, Object> keyValueEntries,
+      boolean isCancellable) {
     this.parent = parent;
     this.keyValueEntries = keyValueEntries;
     cascadesCancellation = true;
@@ -313,7 +345,7 @@ public class Context {
    *
    */
   public <V> Context withValue(Key<V> k1, V v1) {
-    return new Context(this, new Object[][]{{k1, v1}});
+    return new Context(this, keyValueEntries.put(k1, v1));
   }
 
   /**
@@ -321,7 +353,7 @@ public class Context {
    * from its parent.
    */
   public <V1, V2> Context withValues(Key<V1> k1, V1 v1, Key<V2> k2, V2 v2) {
-    return new Context(this, new Object[][]{{k1, v1}, {k2, v2}});
+    return new Context(this, keyValueEntries.put(k1, v1).put(k2, v2));
   }
 
   /**
@@ -329,7 +361,7 @@ public class Context {
    * from its parent.
    */
   public <V1, V2, V3> Context withValues(Key<V1> k1, V1 v1, Key<V2> k2, V2 v2, Key<V3> k3, V3 v3) {
-    return new Context(this, new Object[][]{{k1, v1}, {k2, v2}, {k3, v3}});
+    return new Context(this, keyValueEntries.put(k1, v1).put(k2, v2).put(k3, v3));
   }
 
   /**
@@ -419,24 +451,27 @@ public class Context {
                           final Executor executor) {
     checkNotNull(cancellationListener, "cancellationListener");
     checkNotNull(executor, "executor");
-    if (canBeCancelled) {
-      ExecutableListener executableListener =
-          new ExecutableListener(executor, cancellationListener);
-      synchronized (this) {
-        if (isCancelled()) {
-          executableListener.deliver();
-        } else {
-          if (listeners == null) {
-            // Now that we have a listener we need to listen to our parent so
-            // we can cascade listener notification.
-            listeners = new ArrayList<ExecutableListener>();
-            listeners.add(executableListener);
-            parent.addListener(parentListener, DirectExecutor.INSTANCE);
-          } else {
-            listeners.add(executableListener);
-          }
-        }
-      }
+    if (!canBeCancelled) {
+      return;
+    }
+    ExecutableListener executableListener = new ExecutableListener(executor, cancellationListener);
+    if (isCancelled()) {
+      executableListener.deliver();
+      return;
+    }
+    ListenerNode head;
+    do {
+      head = listeners;
+    } while (!LISTENERS_UPDATER.compareAndSet(
+        this, head, new ListenerNode(executableListener, head)));
+    if (head == null) {
+      // Now that we have a listener we need to listen to our parent so
+      // we can cascade listener notification.
+      updateParentListener();
+    }
+    if (isCancelled()) {
+      // Cancellation may have cleared the listeners before this one was added
+      notifyAndClearListeners();
     }
   }
 
@@ -447,23 +482,89 @@ public class Context {
     if (!canBeCancelled) {
       return;
     }
-    synchronized (this) {
-      if (listeners != null) {
-        for (int i = listeners.size() - 1; i >= 0; i--) {
-          if (listeners.get(i).listener == cancellationListener) {
-            listeners.remove(i);
-            // Just remove the first matching listener, given that we allow duplicate
-            // adds we should allow for duplicates after remove.
-            break;
-          }
+    // Mark the most recently added entry for the listener, leaving the stack untouched
+    ListenerNode node = listeners;
+    while (node != null
+        && (node.listener.listener != cancellationListener || !node.listener.markRemoved())) {
+      node = node.next;
+    }
+    if (node == null) {
+      return;
+    }
+    ListenerNode head = listeners;
+    if (head != null
+        && REMOVED_LISTENERS_UPDATER.incrementAndGet(this) * 2 >= head.size
+        && dropRemovedListeners() == null) {
+      // We have no listeners so no need to listen to our parent
+      updateParentListener();
+    }
+  }
+
+  /**
+   * Replaces {@link #listeners} with a stack without the listeners marked as removed. Only the
+   * entries above the last removed one are copied.
+   *
+   * @return the new stack
+   */
+  private ListenerNode dropRemovedListeners() {
+    ListenerNode head;
+    ListenerNode newHead;
+    int dropped;
+    do {
+      head = listeners;
+      if (head == null) {
+        return null;
+      }
+      ExecutableListener[] kept = new ExecutableListener[head.size];
+      int keptAbove = 0;
+      dropped = 0;
+      newHead = head;
+      int i = 0;
+      for (ListenerNode node = head; node != null; node = node.next, i++) {
+        if (node.listener.isRemoved()) {
+          dropped++;
+          keptAbove = i;
+          newHead = node.next;
+        } else {
+          kept[i] = node.listener;
         }
-        // We have no listeners so no need to listen to our parent
-        if (listeners.isEmpty()) {
-          parent.removeListener(parentListener);
-          listeners = null;
+      }
+      if (dropped == 0) {
+        return head;
+      }
+      for (i = keptAbove - 1; i >= 0; i--) {
+        if (kept[i] != null) {
+          newHead = new ListenerNode(kept[i], newHead);
         }
       }
+    } while (!LISTENERS_UPDATER.compareAndSet(this, head, newHead));
+    REMOVED_LISTENERS_UPDATER.addAndGet(this, -dropped);
+    return newHead;
+  }
+
+  /**
+   * Registers or unregisters {@link #parentListener} with the parent to match whether there are
+   * listeners. Concurrent calls are applied in order by a single thread, without blocking the
+   * others.
+   */
+  private void updateParentListener() {
+    if (PARENT_LISTENER_UPDATES_UPDATER.getAndIncrement(this) != 0) {
+      // Another thread is applying updates, and will apply this one too
+      return;
     }
+    int updates = 1;
+    do {
+      boolean hasListeners = listeners != null;
+      if (hasListeners != parentListenerRegistered) {
+        parentListenerRegistered = hasListeners;
+        if (hasListeners) {
+          parent.addListener(parentListener, DirectExecutor.INSTANCE);
+        } else {
+          parent.removeListener(parentListener);
+        }
+      }
+      updates = PARENT_LISTENER_UPDATES_UPDATER.addAndGet(this, -updates);
+    } while (updates != 0);
   }
 
   /**
@@ -474,37 +575,73 @@ public class Context {
     if (!canBeCancelled) {
       return;
     }
-    ArrayList<ExecutableListener> tmpListeners;
-    synchronized (this) {
-      if (listeners == null) {
-        return;
+    ListenerNode head = LISTENERS_UPDATER.getAndSet(this, null);
+    if (head == null) {
+      return;
+    }
+    ArrayList<ExecutableListener> tmpListeners = new ArrayList<ExecutableListener>();
+    ArrayList<ExecutableListener> childListeners = new ArrayList<ExecutableListener>();
+    int dropped = 0;
+    for (ExecutableListener listener : head.toArrayInAddOrder()) {
+      if (listener.isRemoved()) {
+        dropped++;
+      } else if (listener.listener instanceof ParentListener) {
+        childListeners.add(listener);
+      } else {
+        tmpListeners.add(listener);
       }
-      tmpListeners = listeners;
-      listeners = null;
+    }
+    if (dropped != 0) {
+      REMOVED_LISTENERS_UPDATER.addAndGet(this, -dropped);
     }
     // Deliver events to non-child context listeners before we notify child contexts. We do this
     // to cancel higher level units of work before child units. This allows for a better error
     // handling paradigm where the higher level unit of work knows it is cancelled and so can
     // ignore errors that bubble up as a result of cancellation of lower level units.
-    for (int i = 0; i < tmpListeners.size(); i++) {
-      if (!(tmpListeners.get(i).listener instanceof ParentListener)) {
-        tmpListeners.get(i).deliver();
-      }
+    deliverInBatches(tmpListeners);
+    for (int i = 0; i < childListeners.size(); i++) {
+      childListeners.get(i).deliver();
     }
-    for (int i = 0; i < tmpListeners.size(); i++) {
-      if (tmpListeners.get(i).listener instanceof ParentListener) {
-        tmpListeners.get(i).deliver();
+    updateParentListener();
+  }
+
+  /**
+   * Delivers listeners with one {@link Executor#execute} per executor rather than per listener,
+   * keeping the order in which they were added.
+   */
+  private void deliverInBatches(ArrayList<ExecutableListener> toDeliver) {
+    if (toDeliver.size() == 1) {
+      toDeliver.get(0).deliver();
+      return;
+    }
+    IdentityHashMap<Executor, ListenerBatch> batchesByExecutor =
+        new IdentityHashMap<Executor, ListenerBatch>();
+    ArrayList<ListenerBatch> batches = new ArrayList<ListenerBatch>();
+    for (int i = 0; i < toDeliver.size(); i++) {
+      ExecutableListener listener = toDeliver.get(i);
+      ListenerBatch batch = batchesByExecutor.get(listener.executor);
+      if (batch == null) {
+        batch = new ListenerBatch(listener.executor);
+        batchesByExecutor.put(listener.executor, batch);
+        batches.add(batch);
       }
+      batch.listeners.add(listener);
+    }
+    for (int i = 0; i < batches.size(); i++) {
+      batches.get(i).deliver();
     }
-    parent.removeListener(parentListener);
   }
 
   // Used in tests to ensure that listeners are defined and released when cancellation cascades.
   // It's very important to ensure that we do not accidentally retain listeners.
   int listenerCount() {
-    synchronized (this) {
-      return listeners == null ? 0 : listeners.size();
+    int count = 0;
+    for (ListenerNode node = listeners; node != null; node = node.next) {
+      if (!node.listener.isRemoved()) {
+        count++;
+      }
     }
+    return count;
   }
 
   /**
@@ -608,18 +745,11 @@ public class Context {
   }
 
   /**
-   * Lookup the value for a key in the context inheritance chain.
+   * Lookup the value for a key. Each context holds the values it inherited, so the inheritance
+   * chain need not be walked.
    */
   private Object lookup(Key<?> key) {
-    for (int i = 0; i < keyValueEntries.length; i++) {
-      if (key.equals(keyValueEntries[i][0])) {
-        return keyValueEntries[i][1];
-      }
-    }
-    if (parent == null) {
-      return null;
-    }
-    return parent.lookup(key);
+    return keyValueEntries.get(key);
   }
 
   /**
@@ -628,30 +758,40 @@ public class Context {
    */
   public static final class CancellableContext extends Context {
 
-    private boolean cancelled;
-    private Throwable cancellationCause;
+    private static final AtomicReferenceFieldUpdater<CancellableContext, Object>
+        CANCELLATION_CAUSE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(
+            CancellableContext.class, Object.class, "cancellationCause");
+    /** Stands for a {@code null} cause once cancelled. */
+    private static final Object NO_CAUSE = new Object();
+
+    /**
+     * {@code null} until cancelled, then the cause or {@link #NO_CAUSE}. Set by compare-and-set so
+     * that only one {@link #cancel} notifies listeners.
+     */
+    private volatile Object cancellationCause;
     private final Context uncancellableSurrogate;
-    private ScheduledFuture<?> pendingDeadline;
+    private volatile ScheduledFuture<?> pendingDeadline;
 
     /**
      * If the parent deadline is before the given deadline there is no need to install the value
      * or listen for its expiration as the parent context will already be listening for it.
      */
-    private static Object[][] deriveDeadline(Context parent, Deadline deadline) {
+    private static PersistentHashArrayMappedTrie<Key<?>, Object> deriveDeadline(
+        Context parent, Deadline deadline) {
       Deadline parentDeadline = DEADLINE_KEY.get(parent);
       return parentDeadline == null || deadline.isBefore(parentDeadline)
-          ? new Object[][]{{ DEADLINE_KEY, deadline}} :
-          EMPTY_ENTRIES;
+          ? parent.keyValueEntries.put(DEADLINE_KEY, deadline) :
+          parent.keyValueEntries;
     }
 
     /**
      * Create a cancellable context that does not have a deadline.
      */
     private CancellableContext(Context parent) {
-      super(parent, EMPTY_ENTRIES, true);
+      super(parent, parent.keyValueEntries, true);
       // Create a surrogate that inherits from this to attach so that you cannot retrieve a
       // cancellable context from Context.current()
-      uncancellableSurrogate = new Context(this, EMPTY_ENTRIES);
+      uncancellableSurrogate = new Context(this, super.keyValueEntries);
     }
 
     /**
@@ -680,7 +820,7 @@ public class Context {
           cancel(cause);
         }
       }
-      uncancellableSurrogate = new Context(this, EMPTY_ENTRIES);
+      uncancellableSurrogate = new Context(this, super.keyValueEntries);
     }
 
 
@@ -707,23 +847,18 @@ public class Context {
      *    {@code false} if the context was already cancelled.
      */
     public boolean cancel(Throwable cause) {
-      boolean triggeredCancel = false;
-      synchronized (this) {
-        if (!cancelled) {
-          cancelled = true;
-          if (pendingDeadline != null) {
-            // If we have a scheduled cancellation pending attempt to cancel it.
-            pendingDeadline.cancel(false);
-            pendingDeadline = null;
-          }
-          this.cancellationCause = cause;
-          triggeredCancel = true;
-        }
+      if (!CANCELLATION_CAUSE_UPDATER.compareAndSet(
+          this, null, cause == null ? NO_CAUSE : cause)) {
+        return false;
       }
-      if (triggeredCancel) {
-        notifyAndClearListeners();
+      ScheduledFuture<?> deadlineFuture = pendingDeadline;
+      if (deadlineFuture != null) {
+        // If we have a scheduled cancellation pending attempt to cancel it.
+        deadlineFuture.cancel(false);
+        pendingDeadline = null;
       }
-      return triggeredCancel;
+      notifyAndClearListeners();
+      return true;
     }
 
     /**
@@ -742,10 +877,8 @@ public class Context {
 
     @Override
     public boolean isCancelled() {
-      synchronized (this) {
-        if (cancelled) {
-          return true;
-        }
+      if (cancellationCause != null) {
+        return true;
       }
       // Detect cancellation of parent in the case where we have no listeners and
       // record it.
@@ -759,7 +892,8 @@ public class Context {
     @Override
     public Throwable cancellationCause() {
       if (isCancelled()) {
-        return cancellationCause;
+        Object cause = cancellationCause;
+        return cause == NO_CAUSE ? null : (Throwable) cause;
       }
       return null;
     }
@@ -855,12 +989,22 @@ public class Context {
   private class ExecutableListener implements Runnable {
     private final Executor executor;
     private final CancellationListener listener;
+    // Set once by removeListener, through REMOVED_UPDATER
+    volatile int removed;
 
     private ExecutableListener(Executor executor, CancellationListener listener) {
       this.executor = executor;
       this.listener = listener;
     }
 
+    private boolean markRemoved() {
+      return REMOVED_UPDATER.compareAndSet(this, 0, 1);
+    }
+
+    private boolean isRemoved() {
+      return removed != 0;
+    }
+
     private void deliver() {
       try {
         executor.execute(this);
@@ -875,6 +1019,79 @@ public class Context {
     }
   }
 
+  /**
+   * Listeners of one executor, delivered with a single {@link Executor#execute}.
+   */
+  private final class ListenerBatch implements Runnable {
+    private final Executor executor;
+    private final ArrayList<ExecutableListener> listeners = new ArrayList<ExecutableListener>();
+
+    private ListenerBatch(Executor executor) {
+      this.executor = executor;
+    }
+
+    private void deliver() {
+      if (listeners.size() == 1) {
+        listeners.get(0).deliver();
+        return;
+      }
+      try {
+        executor.execute(this);
+      } catch (Throwable t) {
+        log.log(Level.INFO, "Exception notifying context listener", t);
+      }
+    }
+
+    @Override
+    public void run() {
+      // A failing listener must not keep the others from being notified
+      Throwable failure = null;
+      for (int i = 0; i < listeners.size(); i++) {
+        try {
+          listeners.get(i).run();
+        } catch (Throwable t) {
+          if (failure == null) {
+            failure = t;
+          } else {
+            log.log(Level.SEVERE, "Exception notifying context listener", t);
+          }
+        }
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      } else if (failure != null) {
+        throw new RuntimeException(failure);
+      }
+    }
+  }
+
+  /**
+   * Element of the immutable stack of listeners.
+   */
+  private static final class ListenerNode {
+    private final ExecutableListener listener;
+    private final ListenerNode next;
+    private final int size;
+
+    private ListenerNode(ExecutableListener listener, ListenerNode next) {
+      this.listener = listener;
+      this.next = next;
+      this.size = next == null ? 1 : next.size + 1;
+    }
+
+    private ExecutableListener[] toArrayInAddOrder() {
+      ExecutableListener[] result = new ExecutableListener[size];
+      ListenerNode node = this;
+      for (int i = size - 1; i >= 0; i--) {
+        result[i] = node.listener;
+        node = node.next;
+      }
+      return result;
+    }
+  }
+
   private class ParentListener implements CancellationListener {
     @Override
     public void cancelled(Context context) {
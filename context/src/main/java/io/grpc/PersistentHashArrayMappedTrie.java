@@ -0,0 +1,308 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import java.util.Arrays;
+
+/**
+ * An immutable map from keys to values, compared by identity, that shares structure between
+ * versions. Used by {@link Context} so that every context holds all of its values, which keeps
+ * lookups independent of how deeply contexts are nested.
+ *
+ * <p>Keys are placed by their hash code, five bits per level, so {@link #get} and {@link #put}
+ * visit at most seven nodes. {@link #put} copies only the nodes on the path to the key. Null values
+ * are stored like any other value, and are indistinguishable from absent keys for {@link #get}.
+ */
+final class PersistentHashArrayMappedTrie<K, V> {
+  private final Node<K, V> root;
+
+  PersistentHashArrayMappedTrie() {
+    this(null);
+  }
+
+  private PersistentHashArrayMappedTrie(Node<K, V> root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns the number of keys in the map.
+   */
+  public int size() {
+    return root == null ? 0 : root.size();
+  }
+
+  /**
+   * Returns the value for the key, or {@code null} if there is none.
+   */
+  public V get(K key) {
+    if (root == null) {
+      return null;
+    }
+    return root.get(key, key.hashCode(), 0);
+  }
+
+  /**
+   * Returns a new map with the key set to the value. This map is not modified.
+   */
+  public PersistentHashArrayMappedTrie<K, V> put(K key, V value) {
+    if (root == null) {
+      return new PersistentHashArrayMappedTrie<K, V>(new Leaf<K, V>(key, value));
+    }
+    return new PersistentHashArrayMappedTrie<K, V>(root.put(key, value, key.hashCode(), 0));
+  }
+
+  interface Node<K, V> {
+    V get(K key, int hash, int bitsConsumed);
+
+    Node<K, V> put(K key, V value, int hash, int bitsConsumed);
+
+    int size();
+  }
+
+  /**
+   * A single key and its value.
+   */
+  static final class Leaf<K, V> implements Node<K, V> {
+    private final K key;
+    private final V value;
+
+    Leaf(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public int size() {
+      return 1;
+    }
+
+    @Override
+    public V get(K key, int hash, int bitsConsumed) {
+      return this.key == key ? value : null;
+    }
+
+    @Override
+    public Node<K, V> put(K key, V value, int hash, int bitsConsumed) {
+      int thisHash = this.key.hashCode();
+      if (thisHash != hash) {
+        return CompressedIndex.combine(
+            new Leaf<K, V>(key, value), hash, this, thisHash, bitsConsumed);
+      } else if (this.key == key) {
+        return new Leaf<K, V>(key, value);
+      } else {
+        return new CollisionLeaf<K, V>(this.key, this.value, key, value);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Leaf(key=%s value=%s)", key, value);
+    }
+  }
+
+  /**
+   * Keys that all have the same hash code.
+   */
+  static final class CollisionLeaf<K, V> implements Node<K, V> {
+    private final K[] keys;
+    private final V[] values;
+
+    @SuppressWarnings("unchecked")
+    CollisionLeaf(K key1, V value1, K key2, V value2) {
+      this((K[]) new Object[] {key1, key2}, (V[]) new Object[] {value1, value2});
+    }
+
+    private CollisionLeaf(K[] keys, V[] values) {
+      this.keys = keys;
+      this.values = values;
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+
+    @Override
+    public V get(K key, int hash, int bitsConsumed) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return values[i];
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Node<K, V> put(K key, V value, int hash, int bitsConsumed) {
+      int thisHash = keys[0].hashCode();
+      if (thisHash != hash) {
+        return CompressedIndex.combine(
+            new Leaf<K, V>(key, value), hash, this, thisHash, bitsConsumed);
+      }
+      int keyIndex = indexOfKey(key);
+      if (keyIndex != -1) {
+        K[] newKeys = Arrays.copyOf(keys, keys.length);
+        V[] newValues = Arrays.copyOf(values, keys.length);
+        newKeys[keyIndex] = key;
+        newValues[keyIndex] = value;
+        return new CollisionLeaf<K, V>(newKeys, newValues);
+      }
+      K[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+      V[] newValues = Arrays.copyOf(values, keys.length + 1);
+      newKeys[keys.length] = key;
+      newValues[keys.length] = value;
+      return new CollisionLeaf<K, V>(newKeys, newValues);
+    }
+
+    private int indexOfKey(K key) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder valuesSb = new StringBuilder();
+      valuesSb.append("CollisionLeaf(");
+      for (int i = 0; i < values.length; i++) {
+        valuesSb.append("(key=").append(keys[i]).append(" value=").append(values[i]).append(") ");
+      }
+      return valuesSb.append(")").toString();
+    }
+  }
+
+  /**
+   * An inner node with up to 32 children, stored densely and addressed through a bitmap.
+   */
+  static final class CompressedIndex<K, V> implements Node<K, V> {
+    private static final int BITS = 5;
+    private static final int BITS_MASK = 0x1F;
+
+    final int bitmap;
+    final Node<K, V>[] values;
+    private final int size;
+
+    private CompressedIndex(int bitmap, Node<K, V>[] values, int size) {
+      this.bitmap = bitmap;
+      this.values = values;
+      this.size = size;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    private static int uncompressedIndex(int hash, int bitsConsumed) {
+      return (hash >>> bitsConsumed) & BITS_MASK;
+    }
+
+    private static int indexBit(int hash, int bitsConsumed) {
+      return 1 << uncompressedIndex(hash, bitsConsumed);
+    }
+
+    private int compressedIndex(int indexBit) {
+      return Integer.bitCount(bitmap & (indexBit - 1));
+    }
+
+    @Override
+    public V get(K key, int hash, int bitsConsumed) {
+      int indexBit = indexBit(hash, bitsConsumed);
+      if ((bitmap & indexBit) == 0) {
+        return null;
+      }
+      return values[compressedIndex(indexBit)].get(key, hash, bitsConsumed + BITS);
+    }
+
+    @Override
+    public Node<K, V> put(K key, V value, int hash, int bitsConsumed) {
+      int indexBit = indexBit(hash, bitsConsumed);
+      int compressedIndex = compressedIndex(indexBit);
+      if ((bitmap & indexBit) == 0) {
+        // Insert a new leaf
+        @SuppressWarnings("unchecked")
+        Node<K, V>[] newValues = (Node<K, V>[]) new Node<?, ?>[values.length + 1];
+        System.arraycopy(values, 0, newValues, 0, compressedIndex);
+        newValues[compressedIndex] = new Leaf<K, V>(key, value);
+        System.arraycopy(
+            values, compressedIndex, newValues, compressedIndex + 1,
+            values.length - compressedIndex);
+        return new CompressedIndex<K, V>(bitmap | indexBit, newValues, size + 1);
+      }
+      // Replace the child with one containing the key
+      Node<K, V>[] newValues = Arrays.copyOf(values, values.length);
+      Node<K, V> child = values[compressedIndex];
+      newValues[compressedIndex] = child.put(key, value, hash, bitsConsumed + BITS);
+      int newSize = size + newValues[compressedIndex].size() - child.size();
+      return new CompressedIndex<K, V>(bitmap, newValues, newSize);
+    }
+
+    /**
+     * Returns a node containing two nodes whose keys have different hash codes.
+     */
+    static <K, V> Node<K, V> combine(
+        Node<K, V> node1, int hash1, Node<K, V> node2, int hash2, int bitsConsumed) {
+      assert hash1 != hash2;
+      int indexBit1 = indexBit(hash1, bitsConsumed);
+      int indexBit2 = indexBit(hash2, bitsConsumed);
+      if (indexBit1 == indexBit2) {
+        Node<K, V> node = combine(node1, hash1, node2, hash2, bitsConsumed + BITS);
+        @SuppressWarnings("unchecked")
+        Node<K, V>[] values = (Node<K, V>[]) new Node<?, ?>[] {node};
+        return new CompressedIndex<K, V>(indexBit1, values, node.size());
+      }
+      // Children are ordered by their uncompressed index
+      if (uncompressedIndex(hash1, bitsConsumed) > uncompressedIndex(hash2, bitsConsumed)) {
+        Node<K, V> nodeCopy = node1;
+        node1 = node2;
+        node2 = nodeCopy;
+      }
+      @SuppressWarnings("unchecked")
+      Node<K, V>[] values = (Node<K, V>[]) new Node<?, ?>[] {node1, node2};
+      return new CompressedIndex<K, V>(indexBit1 | indexBit2, values, node1.size() + node2.size());
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder valuesSb = new StringBuilder();
+      valuesSb.append("CompressedIndex(")
+          .append(String.format("bitmap=%s ", Integer.toBinaryString(bitmap)));
+      for (Node<K, V> value : values) {
+        valuesSb.append(value).append(" ");
+      }
+      return valuesSb.append(")").toString();
+    }
+  }
+}
@@ -52,16 +52,23 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -246,6 +253,25 @@ public class ContextTest {
     base.attach();
   }
 
+  @Test
+  public void valuesOfDeeplyNestedContexts() {
+    List<Context.Key<Integer>> keys = new ArrayList<Context.Key<Integer>>();
+    Context context = Context.ROOT;
+    for (int i = 0; i < 50; i++) {
+      Context.Key<Integer> key = Context.key("key" + i);
+      keys.add(key);
+      context = context.withValue(key, i).withValue(FOOD, null).fork();
+    }
+    Context.CancellableContext cancellable = context.withCancellation();
+
+    for (int i = 0; i < keys.size(); i++) {
+      assertEquals(i, (int) keys.get(i).get(context));
+      assertEquals(i, (int) keys.get(i).get(cancellable));
+    }
+    assertEquals("lasagna", FOOD.get(context));
+    cancellable.cancel(null);
+  }
+
   @Test
   public void cancelReturnsFalseIfAlreadyCancelled() {
     Context.CancellableContext base = Context.current().withCancellation();
@@ -285,6 +311,162 @@ public class ContextTest {
     assertSame(base, observed3.get());
   }
 
+  @Test
+  public void removedListenersAreNotNotified() {
+    Context.CancellableContext base = Context.current().withCancellation();
+    Context child = base.withValue(PET, "cat");
+    final List<Integer> notified = new ArrayList<Integer>();
+    List<Context.CancellationListener> listeners = new ArrayList<Context.CancellationListener>();
+    for (int i = 0; i < 10; i++) {
+      final int index = i;
+      Context.CancellationListener listener = new Context.CancellationListener() {
+        @Override
+        public void cancelled(Context context) {
+          notified.add(index);
+        }
+      };
+      listeners.add(listener);
+      child.addListener(listener, MoreExecutors.directExecutor());
+    }
+    // Only the most recent of the two entries is removed
+    child.addListener(listeners.get(0), MoreExecutors.directExecutor());
+    child.removeListener(listeners.get(0));
+    for (int i = 1; i < 10; i += 2) {
+      child.removeListener(listeners.get(i));
+    }
+    assertEquals(5, child.listenerCount());
+    assertEquals(1, base.listenerCount());
+
+    base.cancel(null);
+    assertEquals(Arrays.asList(0, 2, 4, 6, 8), notified);
+  }
+
+  @Test
+  public void removingAllListenersReleasesParentListener() {
+    Context.CancellableContext base = Context.current().withCancellation();
+    Context child = base.withValue(PET, "cat");
+    List<Context.CancellationListener> listeners = new ArrayList<Context.CancellationListener>();
+    for (int i = 0; i < 100; i++) {
+      Context.CancellationListener listener = new Context.CancellationListener() {
+        @Override
+        public void cancelled(Context context) {
+          fail("Removed listener was notified");
+        }
+      };
+      listeners.add(listener);
+      child.addListener(listener, MoreExecutors.directExecutor());
+    }
+    Collections.shuffle(listeners, new Random(1));
+    for (Context.CancellationListener listener : listeners) {
+      child.removeListener(listener);
+    }
+    assertEquals(0, child.listenerCount());
+    assertEquals(0, base.listenerCount());
+    base.cancel(null);
+  }
+
+  @Test
+  public void listenersOfOneExecutorNotifiedInOneBatch() {
+    final List<Integer> order = new ArrayList<Integer>();
+    class OrderListener implements Context.CancellationListener {
+      private final int index;
+
+      OrderListener(int index) {
+        this.index = index;
+      }
+
+      @Override
+      public void cancelled(Context context) {
+        order.add(index);
+      }
+    }
+
+    QueuedExecutor executor1 = new QueuedExecutor();
+    QueuedExecutor executor2 = new QueuedExecutor();
+    Context.CancellableContext base = Context.current().withCancellation();
+    base.addListener(new OrderListener(0), executor1);
+    base.addListener(new OrderListener(1), executor2);
+    base.addListener(new OrderListener(2), executor1);
+    base.addListener(new OrderListener(3), executor1);
+    base.cancel(null);
+
+    assertEquals(1, executor1.runnables.size());
+    assertEquals(1, executor2.runnables.size());
+    executor1.runnables.poll().run();
+    assertEquals(Arrays.asList(0, 2, 3), order);
+    executor2.runnables.poll().run();
+    assertEquals(Arrays.asList(0, 2, 3, 1), order);
+  }
+
+  @Test
+  public void failingListenerInBatchDoesNotStopOthers() {
+    QueuedExecutor executor = new QueuedExecutor();
+    final RuntimeException failure = new RuntimeException();
+    final AtomicInteger notified = new AtomicInteger();
+    Context.CancellationListener failingListener = new Context.CancellationListener() {
+      @Override
+      public void cancelled(Context context) {
+        throw failure;
+      }
+    };
+    Context.CancellationListener countingListener = new Context.CancellationListener() {
+      @Override
+      public void cancelled(Context context) {
+        notified.incrementAndGet();
+      }
+    };
+    Context.CancellableContext base = Context.current().withCancellation();
+    base.addListener(failingListener, executor);
+    base.addListener(countingListener, executor);
+    base.cancel(null);
+
+    try {
+      executor.runnables.poll().run();
+      fail("Expected exception");
+    } catch (RuntimeException expected) {
+      assertSame(failure, expected);
+    }
+    assertEquals(1, notified.get());
+  }
+
+  @Test
+  public void concurrentChildrenReleaseParentListeners() throws Exception {
+    final Context.CancellableContext base = Context.current().withCancellation();
+    final int threads = 4;
+    final CountDownLatch done = new CountDownLatch(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int t = 0; t < threads; t++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              for (int i = 0; i < 1000; i++) {
+                Context child = base.withValue(PET, "dog");
+                child.addListener(cancellationListener, MoreExecutors.directExecutor());
+                child.removeListener(cancellationListener);
+              }
+            } finally {
+              done.countDown();
+            }
+          }
+        });
+      }
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(0, base.listenerCount());
+
+    Context child = base.withValue(PET, "cat");
+    child.addListener(cancellationListener, MoreExecutors.directExecutor());
+    assertEquals(1, base.listenerCount());
+    base.cancel(null);
+    assertSame(child, listenerNotifedContext);
+    assertEquals(0, base.listenerCount());
+    assertEquals(0, child.listenerCount());
+  }
+
   @Test
   public void exceptionOfExecutorDoesntThrow() {
     final AtomicReference<Throwable> loggedThrowable = new AtomicReference<Throwable>();
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.PersistentHashArrayMappedTrie.CollisionLeaf;
+import io.grpc.PersistentHashArrayMappedTrie.CompressedIndex;
+import io.grpc.PersistentHashArrayMappedTrie.Leaf;
+import io.grpc.PersistentHashArrayMappedTrie.Node;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link PersistentHashArrayMappedTrie}.
+ */
+@RunWith(JUnit4.class)
+public class PersistentHashArrayMappedTrieTest {
+
+  @Test
+  public void emptyMap() {
+    PersistentHashArrayMappedTrie<Key, Object> map =
+        new PersistentHashArrayMappedTrie<Key, Object>();
+    assertEquals(0, map.size());
+    assertNull(map.get(new Key(1)));
+  }
+
+  @Test
+  public void putDoesNotModifyOriginal() {
+    Key key = new Key(1);
+    Object value1 = new Object();
+    Object value2 = new Object();
+    PersistentHashArrayMappedTrie<Key, Object> map1 =
+        new PersistentHashArrayMappedTrie<Key, Object>().put(key, value1);
+    PersistentHashArrayMappedTrie<Key, Object> map2 = map1.put(key, value2);
+
+    assertSame(value1, map1.get(key));
+    assertSame(value2, map2.get(key));
+    assertEquals(1, map1.size());
+    assertEquals(1, map2.size());
+  }
+
+  @Test
+  public void keysAreComparedByIdentity() {
+    PersistentHashArrayMappedTrie<Key, Object> map =
+        new PersistentHashArrayMappedTrie<Key, Object>().put(new Key(1), new Object());
+    assertNull(map.get(new Key(1)));
+  }
+
+  @Test
+  public void nullValues() {
+    Key key = new Key(1);
+    PersistentHashArrayMappedTrie<Key, Object> map =
+        new PersistentHashArrayMappedTrie<Key, Object>().put(key, new Object()).put(key, null);
+    assertNull(map.get(key));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  public void leafWithDifferentHashesBecomesIndex() {
+    Key key1 = new Key(0);
+    Key key2 = new Key(1);
+    Node<Key, Object> node = new Leaf<Key, Object>(key1, "1")
+        .put(key2, "2", key2.hashCode(), 0);
+
+    assertTrue(node instanceof CompressedIndex);
+    assertEquals(2, node.size());
+    assertEquals("1", node.get(key1, key1.hashCode(), 0));
+    assertEquals("2", node.get(key2, key2.hashCode(), 0));
+  }
+
+  @Test
+  public void leafWithSameHashBecomesCollisionLeaf() {
+    Key key1 = new Key(7);
+    Key key2 = new Key(7);
+    Key key3 = new Key(7);
+    Node<Key, Object> node = new Leaf<Key, Object>(key1, "1")
+        .put(key2, "2", key2.hashCode(), 0)
+        .put(key3, "3", key3.hashCode(), 0)
+        .put(key2, "two", key2.hashCode(), 0);
+
+    assertTrue(node instanceof CollisionLeaf);
+    assertEquals(3, node.size());
+    assertEquals("1", node.get(key1, key1.hashCode(), 0));
+    assertEquals("two", node.get(key2, key2.hashCode(), 0));
+    assertEquals("3", node.get(key3, key3.hashCode(), 0));
+  }
+
+  @Test
+  public void hashesSharingLowBitsNestIndexes() {
+    // Equal in the lowest 5 bits, so they split only at the second level
+    Key key1 = new Key(1);
+    Key key2 = new Key(1 | 1 << 5);
+    Node<Key, Object> node = new Leaf<Key, Object>(key1, "1")
+        .put(key2, "2", key2.hashCode(), 0);
+
+    CompressedIndex<Key, Object> index = (CompressedIndex<Key, Object>) node;
+    assertEquals(1 << 1, index.bitmap);
+    assertEquals(1, index.values.length);
+    assertEquals(2, index.size());
+    assertEquals("1", node.get(key1, key1.hashCode(), 0));
+    assertEquals("2", node.get(key2, key2.hashCode(), 0));
+  }
+
+  @Test
+  public void manyKeys() {
+    List<Key> keys = new ArrayList<Key>();
+    List<PersistentHashArrayMappedTrie<Key, Object>> versions =
+        new ArrayList<PersistentHashArrayMappedTrie<Key, Object>>();
+    PersistentHashArrayMappedTrie<Key, Object> map =
+        new PersistentHashArrayMappedTrie<Key, Object>();
+    for (int i = 0; i < 2000; i++) {
+      // Include negative hashes and collisions
+      Key key = new Key((i % 1000) * 0x9E3779B9);
+      keys.add(key);
+      map = map.put(key, i);
+      versions.add(map);
+    }
+
+    assertEquals(keys.size(), map.size());
+    for (int i = 0; i < keys.size(); i++) {
+      assertEquals(i, map.get(keys.get(i)));
+      // Earlier versions contain only the keys put before them
+      assertEquals(i + 1, versions.get(i).size());
+      assertEquals(i, versions.get(i).get(keys.get(i)));
+      if (i + 1 < keys.size()) {
+        assertNull(versions.get(i).get(keys.get(i + 1)));
+      }
+    }
+  }
+
+  private static final class Key {
+    private final int hash;
+
+    Key(int hash) {
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "Key(" + hash + ")";
+    }
+  }
+}
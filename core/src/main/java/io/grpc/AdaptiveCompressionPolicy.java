@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link CompressionPolicy} that skips compression for messages below a size threshold and backs
+ * off on streams whose messages do not compress well.
+ *
+ * <p>Each compressed message yields a compressed-to-uncompressed size ratio, and a stream keeps an
+ * exponentially weighted average of those samples. Once the average exceeds the configured
+ * maximum ratio, the stream sends the next message uncompressed, then probes again with a single
+ * compressed message; each failed probe doubles the number of messages skipped, up to 64. A
+ * successful probe resets the backoff.
+ *
+ * <p>The policy keeps counters across all of its streams so the effect of the thresholds can be
+ * monitored.
+ */
+@ThreadSafe
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public final class AdaptiveCompressionPolicy extends CompressionPolicy {
+  /** Default size below which messages are sent uncompressed. */
+  public static final int DEFAULT_MIN_MESSAGE_SIZE = 256;
+  /** Default compressed-to-uncompressed ratio above which a stream backs off. */
+  public static final double DEFAULT_MAX_RATIO = 0.9;
+
+  @VisibleForTesting
+  static final int MAX_BACKOFF_MESSAGES = 64;
+
+  private final int minMessageSize;
+  private final double maxRatio;
+  private final AtomicLong messagesCompressed = new AtomicLong();
+  private final AtomicLong messagesSkipped = new AtomicLong();
+  private final AtomicLong bytesSaved = new AtomicLong();
+
+  /**
+   * Creates a policy using {@link #DEFAULT_MIN_MESSAGE_SIZE} and {@link #DEFAULT_MAX_RATIO}.
+   */
+  public AdaptiveCompressionPolicy() {
+    this(DEFAULT_MIN_MESSAGE_SIZE, DEFAULT_MAX_RATIO);
+  }
+
+  /**
+   * Creates a policy.
+   *
+   * @param minMessageSize messages whose known length is smaller than this are not compressed
+   * @param maxRatio streams whose average compressed-to-uncompressed ratio exceeds this back off
+   */
+  public AdaptiveCompressionPolicy(int minMessageSize, double maxRatio) {
+    checkArgument(minMessageSize >= 0, "minMessageSize must be non-negative");
+    checkArgument(maxRatio > 0, "maxRatio must be positive");
+    this.minMessageSize = minMessageSize;
+    this.maxRatio = maxRatio;
+  }
+
+  @Override
+  public Decider newDecider(String fullMethodName) {
+    return new AdaptiveDecider();
+  }
+
+  /**
+   * Returns the number of messages this policy chose to compress.
+   */
+  public long getMessagesCompressed() {
+    return messagesCompressed.get();
+  }
+
+  /**
+   * Returns the number of messages this policy chose to send uncompressed even though the stream
+   * had a compressor.
+   */
+  public long getMessagesSkipped() {
+    return messagesSkipped.get();
+  }
+
+  /**
+   * Returns the total number of bytes compression removed from the messages it was applied to.
+   * Negative if compression made messages larger overall.
+   */
+  public long getBytesSaved() {
+    return bytesSaved.get();
+  }
+
+  private final class AdaptiveDecider extends Decider {
+    private double averageRatio = -1;
+    private int backoff;
+    private int skipRemaining;
+
+    @Override
+    public boolean shouldCompress(int knownLength) {
+      if (knownLength != -1 && knownLength < minMessageSize) {
+        messagesSkipped.incrementAndGet();
+        return false;
+      }
+      if (skipRemaining > 0) {
+        skipRemaining--;
+        messagesSkipped.incrementAndGet();
+        return false;
+      }
+      messagesCompressed.incrementAndGet();
+      return true;
+    }
+
+    @Override
+    public void messageCompressed(int uncompressedBytes, int compressedBytes) {
+      bytesSaved.addAndGet(uncompressedBytes - compressedBytes);
+      if (uncompressedBytes <= 0) {
+        return;
+      }
+      double ratio = (double) compressedBytes / uncompressedBytes;
+      averageRatio = averageRatio < 0 ? ratio : (averageRatio + ratio) / 2;
+      if (averageRatio > maxRatio) {
+        backoff = backoff == 0 ? 1 : Math.min(backoff * 2, MAX_BACKOFF_MESSAGES);
+        skipRemaining = backoff;
+      } else {
+        backoff = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A dedicated executor for the calls of some services or methods, isolating them from the rest of
+ * the server. Calls routed to a bulkhead run on its executor, and once too many of them are waiting
+ * for the executor to start them, further calls fail with {@link Status#RESOURCE_EXHAUSTED}.
+ *
+ * <p>The executor should queue rather than reject tasks; the bulkhead is what bounds the queue.
+ * A bulkhead keeps counters so its load can be monitored.
+ *
+ * @see ServerBuilder#bulkhead(String, Bulkhead)
+ */
+@ThreadSafe
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/368")
+public final class Bulkhead {
+  private final Executor executor;
+  private final int maxQueuedCalls;
+  private final AtomicInteger queuedCalls = new AtomicInteger();
+  private final AtomicLong callsStarted = new AtomicLong();
+  private final AtomicLong callsRejected = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+
+  /**
+   * Creates a bulkhead.
+   *
+   * @param executor the executor calls are run on. The server won't take ownership of it.
+   * @param maxQueuedCalls the number of calls that may wait for the executor before further calls
+   *        are rejected
+   */
+  public Bulkhead(Executor executor, int maxQueuedCalls) {
+    this.executor = checkNotNull(executor, "executor");
+    checkArgument(maxQueuedCalls > 0, "maxQueuedCalls must be positive");
+    this.maxQueuedCalls = maxQueuedCalls;
+  }
+
+  /**
+   * Returns the executor calls are run on.
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Returns the number of calls that may wait for the executor before further calls are rejected.
+   */
+  public int getMaxQueuedCalls() {
+    return maxQueuedCalls;
+  }
+
+  /**
+   * Returns the number of calls currently waiting for the executor to start them.
+   */
+  public int getQueueLength() {
+    return queuedCalls.get();
+  }
+
+  /**
+   * Returns the number of calls the executor has started.
+   */
+  public long getCallsStarted() {
+    return callsStarted.get();
+  }
+
+  /**
+   * Returns the number of calls rejected because the queue was full.
+   */
+  public long getCallsRejected() {
+    return callsRejected.get();
+  }
+
+  /**
+   * Returns the total time, in nanoseconds, started calls waited for the executor. Dividing it by
+   * {@link #getCallsStarted} gives the average wait.
+   */
+  public long getTotalWaitNanos() {
+    return totalWaitNanos.get();
+  }
+
+  /**
+   * Admits a new call into the queue, or returns {@code false} if the queue is full.
+   */
+  boolean enqueue() {
+    while (true) {
+      int queued = queuedCalls.get();
+      if (queued >= maxQueuedCalls) {
+        callsRejected.incrementAndGet();
+        return false;
+      }
+      if (queuedCalls.compareAndSet(queued, queued + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Removes a call from the queue without starting it, because the executor rejected it.
+   */
+  void cancelEnqueue() {
+    queuedCalls.decrementAndGet();
+    callsRejected.incrementAndGet();
+  }
+
+  /**
+   * Removes a call from the queue once the executor has started it.
+   */
+  void dequeue(long waitNanos) {
+    queuedCalls.decrementAndGet();
+    callsStarted.incrementAndGet();
+    totalWaitNanos.addAndGet(waitNanos);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("executor", executor)
+        .add("queueLength", queuedCalls.get())
+        .add("maxQueuedCalls", maxQueuedCalls)
+        .toString();
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Extension to a {@link Drainable} stream that can serialize its content straight into a
+ * {@link ByteBuffer}.
+ *
+ * <p>Transports may hand out views of their own buffers' memory, so that a message can be written
+ * to the wire in a single pass, without the intermediate byte arrays that {@link
+ * #drainTo(java.io.OutputStream)} requires. This is only used when the length of the stream is
+ * known upfront, for example because the stream also implements {@link KnownLength}.
+ */
+@ExperimentalApi("Zero-copy serialization of sent messages")
+public interface ByteBufferDrainable extends Drainable {
+
+  /**
+   * Transfers the entire contents of this stream to the specified target, starting at its current
+   * position. The target's position is advanced by the number of bytes written.
+   *
+   * @param target to write to. Has at least as many bytes remaining as this stream contains.
+   * @return number of bytes written.
+   */
+  int drainTo(ByteBuffer target) throws IOException;
+}
@@ -70,6 +70,9 @@ public final class CallOptions {
   @Nullable
   private String compressorName;
 
+  @Nullable
+  private CompressionPolicy compressionPolicy;
+
   private Object[][] customOptions = new Object[0][2];
 
   /**
@@ -114,6 +117,18 @@ public final class CallOptions {
     return newOptions;
   }
 
+  /**
+   * Sets the policy deciding which messages of the call are compressed. Only has an effect when a
+   * compressor is also set with {@link #withCompression}; without a policy every message is
+   * compressed.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+  public CallOptions withCompressionPolicy(@Nullable CompressionPolicy compressionPolicy) {
+    CallOptions newOptions = new CallOptions(this);
+    newOptions.compressionPolicy = compressionPolicy;
+    return newOptions;
+  }
+
   /**
    * Returns a new {@code CallOptions} with the given absolute deadline.
    *
@@ -227,6 +242,15 @@ public final class CallOptions {
     return compressorName;
   }
 
+  /**
+   * Returns the policy deciding which messages are compressed.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+  @Nullable
+  public CompressionPolicy getCompressionPolicy() {
+    return compressionPolicy;
+  }
+
   /**
    * Override the HTTP/2 authority the channel claims to be connecting to. <em>This is not
    * generally safe.</em> Overriding allows advanced users to re-use a single Channel for multiple
@@ -372,6 +396,7 @@ public final class CallOptions {
     affinity = other.affinity;
     executor = other.executor;
     compressorName = other.compressorName;
+    compressionPolicy = other.compressionPolicy;
     customOptions = other.customOptions;
     waitForReady = other.waitForReady;
   }
@@ -385,6 +410,7 @@ public final class CallOptions {
     toStringHelper.add("affinity", affinity);
     toStringHelper.add("executor", executor != null ? executor.getClass() : null);
     toStringHelper.add("compressorName", compressorName);
+    toStringHelper.add("compressionPolicy", compressionPolicy);
     toStringHelper.add("customOptions", Arrays.deepToString(customOptions));
     toStringHelper.add("waitForReady", isWaitForReady());
 
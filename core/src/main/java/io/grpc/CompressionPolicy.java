@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Decides, message by message, whether a stream that has negotiated a {@link Compressor} should
+ * actually compress each outbound message. Small messages gain little from compression but still
+ * pay its CPU and framing cost, and already-compressed payloads can even grow. A policy lets the
+ * framer send such messages uncompressed while leaving the negotiated encoding in place.
+ *
+ * <p>Policies are shared across calls and must be thread-safe. Per-stream state lives in the
+ * {@link Decider} returned by {@link #newDecider}.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public abstract class CompressionPolicy {
+  /**
+   * Creates the decider for a single stream. Called once per stream, before the first message is
+   * written.
+   *
+   * @param fullMethodName the fully qualified name of the method the stream belongs to
+   */
+  public abstract Decider newDecider(String fullMethodName);
+
+  /**
+   * Per-stream compression decisions. A decider is only used by the stream it was created for, so
+   * it does not need to be thread-safe.
+   */
+  @NotThreadSafe
+  public abstract static class Decider {
+    /**
+     * Returns whether the next message should be compressed.
+     *
+     * @param knownLength the uncompressed size of the message, or {@code -1} if the size is not
+     *        known before serialization.
+     */
+    public abstract boolean shouldCompress(int knownLength);
+
+    /**
+     * Reports the outcome of a message this decider chose to compress. The ratio of the two sizes
+     * is the sample subsequent decisions can be based on.
+     *
+     * @param uncompressedBytes the size of the message before compression
+     * @param compressedBytes the size of the message after compression
+     */
+    public void messageCompressed(int uncompressedBytes, int compressedBytes) {}
+  }
+}
@@ -50,6 +50,7 @@ import javax.annotation.concurrent.ThreadSafe;
 public final class CompressorRegistry {
   private static final CompressorRegistry DEFAULT_INSTANCE = new CompressorRegistry(
       new Codec.Gzip(),
+      new Codec.Lz4(),
       Codec.Identity.NONE);
 
   public static CompressorRegistry getDefaultInstance() {
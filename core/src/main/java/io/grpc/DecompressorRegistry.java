@@ -31,6 +31,7 @@
 
 package io.grpc;
 
+import static com.google.common.base.Charsets.US_ASCII;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -61,6 +62,7 @@ public final class DecompressorRegistry {
   private static final DecompressorRegistry DEFAULT_INSTANCE =
       emptyInstance()
       .with(new Codec.Gzip(), true)
+      .with(new Codec.Lz4(), true)
       .with(Codec.Identity.NONE, false);
 
   public static DecompressorRegistry getDefaultInstance() {
@@ -69,6 +71,7 @@ public final class DecompressorRegistry {
 
   private final Map<String, DecompressorInfo> decompressors;
   private final String advertisedDecompressors;
+  private final byte[] advertisedDecompressorsBytes;
 
   /**
    * Registers a decompressor for both decompression and message encoding negotiation.  Returns a
@@ -102,11 +105,13 @@ public final class DecompressorRegistry {
 
     decompressors = Collections.unmodifiableMap(newDecompressors);
     advertisedDecompressors = ACCEPT_ENCODING_JOINER.join(getAdvertisedMessageEncodings());
+    advertisedDecompressorsBytes = advertisedDecompressors.getBytes(US_ASCII);
   }
 
   private DecompressorRegistry() {
     decompressors = new LinkedHashMap<String, DecompressorInfo>(0);
     advertisedDecompressors = "";
+    advertisedDecompressorsBytes = new byte[0];
   }
 
   /**
@@ -120,6 +125,14 @@ public final class DecompressorRegistry {
     return advertisedDecompressors;
   }
 
+  /**
+   * Returns {@link #getRawAdvertisedMessageEncodings} as ASCII bytes, encoded once per registry.
+   * The returned array <em>must not</em> be modified.
+   */
+  byte[] getRawAdvertisedMessageEncodingBytes() {
+    return advertisedDecompressorsBytes;
+  }
+
   /**
    * Provides a list of all message encodings that have decompressors available and should be
    * advertised.
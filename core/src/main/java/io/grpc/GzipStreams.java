@@ -0,0 +1,475 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Gzip streams for {@link Codec.Gzip} that reuse their zlib state.
+ *
+ * <p>{@link java.util.zip.GZIPOutputStream} and {@link java.util.zip.GZIPInputStream} allocate a
+ * new native {@link Deflater} or {@link Inflater} and new internal buffers for every stream, which
+ * with one stream per message adds up under compressed streaming traffic. The streams here take
+ * that state from a bounded pool when created and return it once the stream is finished or
+ * closed. They produce and accept the same single-member gzip format (RFC 1952) as the JDK
+ * classes.
+ *
+ * <p>When the compressed input exposes heap {@link ByteBuffer}s through {@link HasByteBuffer},
+ * as messages received from the transport do, it is inflated straight from those buffers instead
+ * of being copied into an intermediate array first.
+ */
+final class GzipStreams {
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int HEADER_LENGTH = 10;
+  private static final int TRAILER_LENGTH = 8;
+  private static final byte[] HEADER = new byte[] {
+      (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+  // Header flags, see RFC 1952 section 2.3.1.
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private static final int BUFFER_SIZE = 8192;
+
+  @VisibleForTesting
+  static final BoundedPool<DeflaterState> deflaters = new BoundedPool<DeflaterState>() {
+    @Override
+    DeflaterState create() {
+      return new DeflaterState();
+    }
+  };
+
+  @VisibleForTesting
+  static final BoundedPool<InflaterState> inflaters = new BoundedPool<InflaterState>() {
+    @Override
+    InflaterState create() {
+      return new InflaterState();
+    }
+  };
+
+  static OutputStream compress(OutputStream out) throws IOException {
+    return new GzipOutputStream(out);
+  }
+
+  static InputStream decompress(InputStream in) throws IOException {
+    return new GzipInputStream(in);
+  }
+
+  private GzipStreams() {}
+
+  /**
+   * A {@link Deflater} with the checksum and output buffer that go along with it.
+   */
+  @VisibleForTesting
+  static final class DeflaterState {
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    final CRC32 crc = new CRC32();
+    final byte[] buf = new byte[BUFFER_SIZE];
+
+    void reset() {
+      deflater.reset();
+      crc.reset();
+    }
+
+    void end() {
+      deflater.end();
+    }
+  }
+
+  /**
+   * An {@link Inflater} with the checksum and input buffer that go along with it.
+   */
+  @VisibleForTesting
+  static final class InflaterState {
+    final Inflater inflater = new Inflater(true);
+    final CRC32 crc = new CRC32();
+    final byte[] buf = new byte[BUFFER_SIZE];
+
+    void reset() {
+      inflater.reset();
+      crc.reset();
+    }
+
+    void end() {
+      inflater.end();
+    }
+  }
+
+  private static final class GzipOutputStream extends OutputStream {
+    private final OutputStream out;
+    private DeflaterState state;
+    private final byte[] singleByte = new byte[1];
+
+    GzipOutputStream(OutputStream out) throws IOException {
+      this.out = out;
+      out.write(HEADER);
+      state = deflaters.take();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      singleByte[0] = (byte) b;
+      write(singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (state == null) {
+        throw new IOException("Stream closed");
+      }
+      if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (len == 0) {
+        return;
+      }
+      state.crc.update(b, off, len);
+      Deflater deflater = state.deflater;
+      deflater.setInput(b, off, len);
+      while (!deflater.needsInput()) {
+        deflate();
+      }
+    }
+
+    private void deflate() throws IOException {
+      int len = state.deflater.deflate(state.buf, 0, state.buf.length);
+      if (len > 0) {
+        out.write(state.buf, 0, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (state == null) {
+        return;
+      }
+      DeflaterState finishing = state;
+      boolean finished = false;
+      try {
+        finishing.deflater.finish();
+        while (!finishing.deflater.finished()) {
+          deflate();
+        }
+        byte[] trailer = finishing.buf;
+        writeInt(trailer, 0, (int) finishing.crc.getValue());
+        writeInt(trailer, 4, (int) finishing.deflater.getBytesRead());
+        out.write(trailer, 0, TRAILER_LENGTH);
+        finished = true;
+      } finally {
+        state = null;
+        if (finished) {
+          finishing.reset();
+          if (!deflaters.give(finishing)) {
+            finishing.end();
+          }
+        } else {
+          finishing.end();
+        }
+        out.close();
+      }
+    }
+
+    private static void writeInt(byte[] b, int off, int value) {
+      b[off] = (byte) value;
+      b[off + 1] = (byte) (value >> 8);
+      b[off + 2] = (byte) (value >> 16);
+      b[off + 3] = (byte) (value >> 24);
+    }
+  }
+
+  private static final class GzipInputStream extends InputStream {
+    private final InputStream in;
+    private final HasByteBuffer byteBuffers;
+    private InflaterState state;
+    private final byte[] singleByte = new byte[1];
+
+    // The compressed bytes currently handed to the inflater are window[pos, limit). If the window
+    // is a view of the input's own buffer, the input has not been advanced past it yet, and
+    // viewStart is where the view began.
+    private byte[] window;
+    private int pos;
+    private int limit;
+    private boolean windowIsView;
+    private int viewStart;
+
+    GzipInputStream(InputStream in) throws IOException {
+      this.in = in;
+      this.byteBuffers = in instanceof HasByteBuffer && ((HasByteBuffer) in).byteBufferSupported()
+          ? (HasByteBuffer) in : null;
+      state = inflaters.take();
+      boolean success = false;
+      try {
+        readHeader();
+        success = true;
+      } finally {
+        if (!success) {
+          release(false);
+        }
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (state == null) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      Inflater inflater = state.inflater;
+      while (true) {
+        int n;
+        try {
+          n = inflater.inflate(b, off, len);
+        } catch (DataFormatException e) {
+          String message = e.getMessage();
+          throw new ZipException(message != null ? message : "Invalid ZLIB data format");
+        }
+        if (n > 0) {
+          state.crc.update(b, off, n);
+          return n;
+        }
+        if (inflater.finished()) {
+          pos = limit - inflater.getRemaining();
+          readTrailer();
+          if (!hasMoreInput()) {
+            release(true);
+            return -1;
+          }
+          // Concatenated gzip members are decoded as a single stream, like GZIPInputStream does.
+          state.reset();
+          readHeader();
+          continue;
+        }
+        if (inflater.needsDictionary()) {
+          throw new ZipException("Unexpected preset dictionary");
+        }
+        if (inflater.needsInput()) {
+          pos = limit;
+          if (!nextWindow()) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+          }
+          inflater.setInput(window, pos, limit - pos);
+        }
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      return state == null ? 0 : 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        release(state != null && state.inflater.finished());
+      } finally {
+        in.close();
+      }
+    }
+
+    private void release(boolean reusable) throws IOException {
+      if (state == null) {
+        return;
+      }
+      InflaterState released = state;
+      state = null;
+      if (reusable) {
+        released.reset();
+        if (inflaters.give(released)) {
+          released = null;
+        }
+      }
+      if (released != null) {
+        released.end();
+      }
+      releaseWindow();
+    }
+
+    private boolean hasMoreInput() throws IOException {
+      // A view window is still counted by the input, since it hasn't been advanced past it.
+      int unskipped = windowIsView ? limit - viewStart : 0;
+      return pos < limit || in.available() > unskipped;
+    }
+
+    /**
+     * Advances the input past the current window if it is a view, and drops the window.
+     */
+    private void releaseWindow() throws IOException {
+      if (windowIsView) {
+        int consumed = pos - viewStart;
+        while (consumed > 0) {
+          long skipped = in.skip(consumed);
+          if (skipped <= 0) {
+            throw new EOFException("Unable to advance compressed input");
+          }
+          consumed -= skipped;
+        }
+      }
+      window = null;
+      pos = limit = viewStart = 0;
+      windowIsView = false;
+    }
+
+    /**
+     * Replaces the exhausted window with the next chunk of input, returning {@code false} at the
+     * end of the input.
+     */
+    private boolean nextWindow() throws IOException {
+      releaseWindow();
+      if (byteBuffers != null) {
+        ByteBuffer view = byteBuffers.getByteBuffer();
+        if (view == null) {
+          return false;
+        }
+        if (view.hasArray() && view.hasRemaining()) {
+          window = view.array();
+          viewStart = pos = view.arrayOffset() + view.position();
+          limit = pos + view.remaining();
+          windowIsView = true;
+          return true;
+        }
+      }
+      int n = in.read(state.buf, 0, state.buf.length);
+      if (n == -1) {
+        return false;
+      }
+      window = state.buf;
+      pos = 0;
+      limit = n;
+      return true;
+    }
+
+    private int readUByte() throws IOException {
+      while (pos == limit) {
+        if (!nextWindow()) {
+          throw new EOFException();
+        }
+      }
+      return window[pos++] & 0xFF;
+    }
+
+    private int readUShort(CRC32 headerCrc) throws IOException {
+      int b1 = readUByte();
+      int b2 = readUByte();
+      if (headerCrc != null) {
+        headerCrc.update(b1);
+        headerCrc.update(b2);
+      }
+      return b2 << 8 | b1;
+    }
+
+    private long readUInt() throws IOException {
+      long s1 = readUShort(null);
+      long s2 = readUShort(null);
+      return s2 << 16 | s1;
+    }
+
+    private void readHeader() throws IOException {
+      CRC32 headerCrc = new CRC32();
+      if (readUShort(headerCrc) != GZIP_MAGIC) {
+        throw new ZipException("Not in GZIP format");
+      }
+      int method = readUByte();
+      headerCrc.update(method);
+      if (method != Deflater.DEFLATED) {
+        throw new ZipException("Unsupported compression method");
+      }
+      int flags = readUByte();
+      headerCrc.update(flags);
+      // Skip MTIME, XFL and OS.
+      for (int i = 0; i < HEADER_LENGTH - 4; i++) {
+        headerCrc.update(readUByte());
+      }
+      if ((flags & FEXTRA) != 0) {
+        int extraLength = readUShort(headerCrc);
+        for (int i = 0; i < extraLength; i++) {
+          headerCrc.update(readUByte());
+        }
+      }
+      if ((flags & FNAME) != 0) {
+        skipZeroTerminated(headerCrc);
+      }
+      if ((flags & FCOMMENT) != 0) {
+        skipZeroTerminated(headerCrc);
+      }
+      if ((flags & FHCRC) != 0) {
+        int expected = (int) headerCrc.getValue() & 0xFFFF;
+        if (readUShort(null) != expected) {
+          throw new ZipException("Corrupt GZIP header");
+        }
+      }
+      state.inflater.setInput(window, pos, limit - pos);
+    }
+
+    private void skipZeroTerminated(CRC32 headerCrc) throws IOException {
+      int b;
+      do {
+        b = readUByte();
+        headerCrc.update(b);
+      } while (b != 0);
+    }
+
+    private void readTrailer() throws IOException {
+      if (readUInt() != state.crc.getValue()
+          || readUInt() != (state.inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+        throw new ZipException("Corrupt GZIP trailer");
+      }
+    }
+  }
+}
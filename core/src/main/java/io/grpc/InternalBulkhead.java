@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+/**
+ * Internal {@link Bulkhead} accessor. This is intended for use by io.grpc.internal, and the
+ * specifically supported transport packages.
+ */
+@Internal
+public final class InternalBulkhead {
+
+  /**
+   * Admits a new call into the bulkhead's queue, or returns {@code false} if the queue is full.
+   */
+  @Internal
+  public static boolean enqueue(Bulkhead bulkhead) {
+    return bulkhead.enqueue();
+  }
+
+  /**
+   * Removes a call from the bulkhead's queue once its executor has started it.
+   */
+  @Internal
+  public static void dequeue(Bulkhead bulkhead, long waitNanos) {
+    bulkhead.dequeue(waitNanos);
+  }
+
+  /**
+   * Removes a call from the bulkhead's queue without starting it, because its executor rejected
+   * it.
+   */
+  @Internal
+  public static void cancelEnqueue(Bulkhead bulkhead) {
+    bulkhead.cancelEnqueue();
+  }
+
+  private InternalBulkhead() {}
+}
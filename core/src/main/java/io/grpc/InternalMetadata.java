@@ -73,8 +73,26 @@ public final class InternalMetadata {
     return new Metadata(usedNames, binaryValues);
   }
 
+  /**
+   * Creates metadata from received HTTP/2 headers whose binary header values are still
+   * base64-encoded. They are decoded only when read.
+   */
+  @Internal
+  public static Metadata newMetadataFromHttp2Headers(int usedNames, byte[]... http2Headers) {
+    return Metadata.fromHttp2Headers(usedNames, http2Headers);
+  }
+
   @Internal
   public static byte[][] serialize(Metadata md) {
     return md.serialize();
   }
+
+  /**
+   * Serializes metadata with binary header values base64-encoded, passing through values that were
+   * received encoded and never read.
+   */
+  @Internal
+  public static byte[][] serializeForHttp2(Metadata md) {
+    return md.serializeForHttp2();
+  }
 }
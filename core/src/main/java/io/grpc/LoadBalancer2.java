@@ -166,17 +166,20 @@ public abstract class LoadBalancer2 {
    */
   @Immutable
   public static final class PickResult {
-    private static final PickResult NO_RESULT = new PickResult(null, Status.OK);
+    private static final PickResult NO_RESULT = new PickResult(null, null, Status.OK);
 
     // A READY channel, or null
     @Nullable private final Subchannel subchannel;
+    // Notified when the RPC ends, or null. Only set along with subchannel
+    @Nullable private final CallTracker callTracker;
     // An error to be propagated to the application if subchannel == null
     // Or OK if there is no error.
     // subchannel being null and error being OK means RPC needs to wait
     private final Status status;
 
-    private PickResult(Subchannel subchannel, Status status) {
+    private PickResult(Subchannel subchannel, CallTracker callTracker, Status status) {
       this.subchannel = subchannel;
+      this.callTracker = callTracker;
       this.status = Preconditions.checkNotNull(status, "status");
     }
 
@@ -189,7 +192,17 @@ public abstract class LoadBalancer2 {
      * use your own implementations of Subchannels, as they won't work.
      */
     public static PickResult withSubchannel(Subchannel subchannel) {
-      return new PickResult(Preconditions.checkNotNull(subchannel, "subchannel"), Status.OK);
+      return new PickResult(Preconditions.checkNotNull(subchannel, "subchannel"), null, Status.OK);
+    }
+
+    /**
+     * Same as {@link #withSubchannel(Subchannel)}, and additionally has {@code callTracker}
+     * notified when the RPC ends.  This lets a picker keep statistics, e.g., the number of RPCs in
+     * flight on each Subchannel.
+     */
+    public static PickResult withSubchannel(Subchannel subchannel, CallTracker callTracker) {
+      return new PickResult(Preconditions.checkNotNull(subchannel, "subchannel"),
+          Preconditions.checkNotNull(callTracker, "callTracker"), Status.OK);
     }
 
     /**
@@ -201,7 +214,7 @@ public abstract class LoadBalancer2 {
      */
     public static PickResult withError(Status error) {
       Preconditions.checkArgument(!error.isOk(), "error status shouldn't be OK");
-      return new PickResult(null, error);
+      return new PickResult(null, null, error);
     }
 
     /**
@@ -219,6 +232,15 @@ public abstract class LoadBalancer2 {
       return subchannel;
     }
 
+    /**
+     * The CallTracker if this result was created by {@link #withSubchannel(Subchannel,
+     * CallTracker)}, or null otherwise.
+     */
+    @Nullable
+    public CallTracker getCallTracker() {
+      return callTracker;
+    }
+
     /**
      * The status associated with this result.  Non-{@code OK} if created with {@link #withError},
      * or {@code OK} otherwise.
@@ -233,6 +255,32 @@ public abstract class LoadBalancer2 {
     }
   }
 
+  /**
+   * Receives the outcome of an RPC that a {@link PickResult} assigned to a {@link Subchannel}.
+   */
+  @ThreadSafe
+  public abstract static class CallTracker {
+    /**
+     * Called exactly once when the RPC ends, whether it completed, failed or was cancelled. It may
+     * be called from any thread, and must return quickly.
+     *
+     * <p>Not called if {@link #callNotStarted} is called instead.
+     *
+     * @param status the status the RPC ended with
+     */
+    public abstract void callEnded(Status status);
+
+    /**
+     * Called instead of {@link #callEnded} if the picked Subchannel turns out to have no ready
+     * transport. The RPC was never sent to the Subchannel, so this says nothing about the
+     * backend's health; the RPC stays buffered and will be picked again. It may be called from
+     * any thread, and must return quickly.
+     *
+     * <p>The default implementation does nothing.
+     */
+    public void callNotStarted() {}
+  }
+
   /**
    * Provides essentials for LoadBalancer implementations.
    */
@@ -0,0 +1,854 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * LZ4 streams for {@link Codec.Lz4}, implemented in Java.
+ *
+ * <p>Output is a single LZ4 frame (see the LZ4 Frame Format Description, version 1.6) of
+ * independent blocks of at most 64 KiB, without checksums, so it can be read by any LZ4 frame
+ * decoder. Input may use any block size, block linking, block and content checksums, a content
+ * size, concatenated frames and skippable frames; only frames that require a preset dictionary are
+ * rejected. Block compression is the greedy single-probe hash search of the reference "fast"
+ * compressor, which trades ratio for speed.
+ *
+ * <p>Per-stream buffers are taken from a bounded pool and returned once the stream is closed. When
+ * the compressed input exposes heap {@link ByteBuffer}s through {@link HasByteBuffer}, blocks that
+ * lie within one buffer are decompressed straight from it.
+ */
+final class Lz4Streams {
+  private static final int MAGIC = 0x184D2204;
+  private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+  private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+
+  // Frame descriptor FLG bits.
+  private static final int VERSION = 0x40;
+  private static final int VERSION_MASK = 0xC0;
+  private static final int BLOCK_INDEPENDENCE = 0x20;
+  private static final int BLOCK_CHECKSUM = 0x10;
+  private static final int CONTENT_SIZE = 0x08;
+  private static final int CONTENT_CHECKSUM = 0x04;
+  private static final int FLG_RESERVED = 0x02;
+  private static final int DICTIONARY_ID = 0x01;
+  // BD byte for a 64 KiB maximum block size.
+  private static final int BD_64KB = 4 << 4;
+  private static final int BD_RESERVED = 0x8F;
+
+  private static final int UNCOMPRESSED_BLOCK = 0x80000000;
+
+  @VisibleForTesting
+  static final int BLOCK_SIZE = 64 * 1024;
+  private static final int MAX_DISTANCE = 65535;
+  private static final int MIN_MATCH = 4;
+  private static final int LAST_LITERALS = 5;
+  private static final int MF_LIMIT = 12;
+  private static final int MIN_INPUT_LENGTH = MF_LIMIT + 1;
+  private static final int MAX_HASH_LOG = 12;
+  private static final int MIN_HASH_LOG = 6;
+  private static final int SKIP_STRENGTH = 6;
+  private static final int HASH_PRIME = -1640531535;
+  private static final int RUN_MASK = 0x0F;
+
+  private static final byte[] FRAME_HEADER = frameHeader();
+
+  @VisibleForTesting
+  static final BoundedPool<CompressorState> compressors = new BoundedPool<CompressorState>() {
+    @Override
+    CompressorState create() {
+      return new CompressorState();
+    }
+  };
+
+  @VisibleForTesting
+  static final BoundedPool<DecompressorState> decompressors =
+      new BoundedPool<DecompressorState>() {
+        @Override
+        DecompressorState create() {
+          return new DecompressorState();
+        }
+      };
+
+  static OutputStream compress(OutputStream out) throws IOException {
+    return new Lz4OutputStream(out);
+  }
+
+  static InputStream decompress(InputStream in) throws IOException {
+    return new Lz4InputStream(in);
+  }
+
+  private Lz4Streams() {}
+
+  private static byte[] frameHeader() {
+    byte[] header = new byte[7];
+    writeIntLe(header, 0, MAGIC);
+    header[4] = (byte) (VERSION | BLOCK_INDEPENDENCE);
+    header[5] = (byte) BD_64KB;
+    header[6] = headerChecksum(header, 4, 2);
+    return header;
+  }
+
+  private static byte headerChecksum(byte[] descriptor, int off, int len) {
+    return (byte) (XxHash32.hash(descriptor, off, len, 0) >>> 8);
+  }
+
+  /**
+   * Returns the largest size {@link #compressBlock} can produce for {@code length} input bytes.
+   */
+  @VisibleForTesting
+  static int maxCompressedLength(int length) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * Compresses {@code src[srcOff, srcOff + srcLen)} into LZ4 block format, returning the
+   * compressed size. {@code dst} must have room for {@link #maxCompressedLength} bytes and {@code
+   * table} for {@code 1 << MAX_HASH_LOG} entries. The input must not exceed {@link #BLOCK_SIZE}.
+   */
+  @VisibleForTesting
+  static int compressBlock(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff,
+      int[] table) {
+    final int srcEnd = srcOff + srcLen;
+    int op = dstOff;
+    int anchor = srcOff;
+
+    if (srcLen >= MIN_INPUT_LENGTH) {
+      // Small inputs only need, and only pay for clearing, a small table.
+      final int hashLog = Math.max(MIN_HASH_LOG,
+          Math.min(MAX_HASH_LOG, 32 - Integer.numberOfLeadingZeros(srcLen - 1)));
+      final int hashShift = 32 - hashLog;
+      // Table entries are positions relative to srcOff; the zeroed table points at srcOff.
+      Arrays.fill(table, 0, 1 << hashLog, 0);
+      final int mfLimit = srcEnd - MF_LIMIT;
+      final int matchLimit = srcEnd - LAST_LITERALS;
+      int ip = srcOff + 1;
+
+      search:
+      while (true) {
+        int ref;
+        int searchCount = 1 << SKIP_STRENGTH;
+        while (true) {
+          if (ip > mfLimit) {
+            break search;
+          }
+          int seq = readIntLe(src, ip);
+          int h = (seq * HASH_PRIME) >>> hashShift;
+          ref = srcOff + table[h];
+          table[h] = ip - srcOff;
+          if (ip - ref <= MAX_DISTANCE && readIntLe(src, ref) == seq) {
+            break;
+          }
+          // Step further the longer no match has been found, to move through incompressible
+          // data quickly.
+          ip += searchCount++ >>> SKIP_STRENGTH;
+        }
+        while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+          ip--;
+          ref--;
+        }
+
+        int literalLength = ip - anchor;
+        int token = op++;
+        if (literalLength >= RUN_MASK) {
+          dst[token] = (byte) (RUN_MASK << 4);
+          op = writeLength(dst, op, literalLength - RUN_MASK);
+        } else {
+          dst[token] = (byte) (literalLength << 4);
+        }
+        System.arraycopy(src, anchor, dst, op, literalLength);
+        op += literalLength;
+
+        while (true) {
+          int offset = ip - ref;
+          dst[op++] = (byte) offset;
+          dst[op++] = (byte) (offset >>> 8);
+          ip += MIN_MATCH;
+          ref += MIN_MATCH;
+          int matchStart = ip;
+          while (ip < matchLimit && src[ip] == src[ref]) {
+            ip++;
+            ref++;
+          }
+          int matchLength = ip - matchStart;
+          if (matchLength >= RUN_MASK) {
+            dst[token] |= RUN_MASK;
+            op = writeLength(dst, op, matchLength - RUN_MASK);
+          } else {
+            dst[token] |= (byte) matchLength;
+          }
+          anchor = ip;
+          if (ip > mfLimit) {
+            break search;
+          }
+
+          int skipped = ip - 2;
+          table[(readIntLe(src, skipped) * HASH_PRIME) >>> hashShift] = skipped - srcOff;
+          // Try for an immediate match, which costs no literals.
+          int seq = readIntLe(src, ip);
+          int h = (seq * HASH_PRIME) >>> hashShift;
+          ref = srcOff + table[h];
+          table[h] = ip - srcOff;
+          if (ip - ref <= MAX_DISTANCE && readIntLe(src, ref) == seq) {
+            token = op++;
+            dst[token] = 0;
+            continue;
+          }
+          ip++;
+          break;
+        }
+      }
+    }
+
+    int literalLength = srcEnd - anchor;
+    int token = op++;
+    if (literalLength >= RUN_MASK) {
+      dst[token] = (byte) (RUN_MASK << 4);
+      op = writeLength(dst, op, literalLength - RUN_MASK);
+    } else {
+      dst[token] = (byte) (literalLength << 4);
+    }
+    System.arraycopy(src, anchor, dst, op, literalLength);
+    op += literalLength;
+    return op - dstOff;
+  }
+
+  private static int writeLength(byte[] dst, int op, int length) {
+    while (length >= 0xFF) {
+      dst[op++] = (byte) 0xFF;
+      length -= 0xFF;
+    }
+    dst[op++] = (byte) length;
+    return op;
+  }
+
+  /**
+   * Decompresses the LZ4 block {@code src[srcOff, srcOff + srcLen)} into {@code dst} starting at
+   * {@code dstOff}, without writing at or past {@code dstLimit}, and returns the decompressed size.
+   * Matches may refer back as far as {@code windowStart}, which allows previously decompressed
+   * blocks to serve as history for linked blocks.
+   *
+   * @throws IOException if the block is malformed
+   */
+  @VisibleForTesting
+  static int decompressBlock(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff,
+      int dstLimit, int windowStart) throws IOException {
+    final int srcEnd = srcOff + srcLen;
+    int ip = srcOff;
+    int op = dstOff;
+    while (true) {
+      if (ip >= srcEnd) {
+        throw corrupt();
+      }
+      int token = src[ip++] & 0xFF;
+
+      int literalLength = token >>> 4;
+      if (literalLength == RUN_MASK) {
+        int b;
+        do {
+          if (ip >= srcEnd) {
+            throw corrupt();
+          }
+          b = src[ip++] & 0xFF;
+          literalLength += b;
+        } while (b == 0xFF);
+      }
+      if (literalLength > srcEnd - ip || literalLength > dstLimit - op) {
+        throw corrupt();
+      }
+      System.arraycopy(src, ip, dst, op, literalLength);
+      ip += literalLength;
+      op += literalLength;
+      if (ip == srcEnd) {
+        // The last sequence of a block has literals only.
+        return op - dstOff;
+      }
+
+      if (srcEnd - ip < 2) {
+        throw corrupt();
+      }
+      int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+      ip += 2;
+      if (offset == 0 || offset > op - windowStart) {
+        throw corrupt();
+      }
+      int matchLength = token & RUN_MASK;
+      if (matchLength == RUN_MASK) {
+        int b;
+        do {
+          if (ip >= srcEnd) {
+            throw corrupt();
+          }
+          b = src[ip++] & 0xFF;
+          matchLength += b;
+        } while (b == 0xFF);
+      }
+      matchLength += MIN_MATCH;
+      if (matchLength > dstLimit - op) {
+        throw corrupt();
+      }
+      int ref = op - offset;
+      int matchEnd = op + matchLength;
+      // A match may overlap its own output, repeating the last offset bytes. Copying in chunks
+      // that double each round keeps every copy non-overlapping.
+      while (op < matchEnd) {
+        int n = Math.min(op - ref, matchEnd - op);
+        System.arraycopy(dst, ref, dst, op, n);
+        op += n;
+      }
+    }
+  }
+
+  private static IOException corrupt() {
+    return new IOException("Corrupt LZ4 block");
+  }
+
+  private static int readIntLe(byte[] b, int off) {
+    return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16
+        | (b[off + 3] & 0xFF) << 24;
+  }
+
+  private static void writeIntLe(byte[] b, int off, int value) {
+    b[off] = (byte) value;
+    b[off + 1] = (byte) (value >> 8);
+    b[off + 2] = (byte) (value >> 16);
+    b[off + 3] = (byte) (value >> 24);
+  }
+
+  /**
+   * Input and output buffers and the hash table for compressing one block at a time.
+   */
+  @VisibleForTesting
+  static final class CompressorState {
+    final byte[] block = new byte[BLOCK_SIZE];
+    final byte[] out = new byte[4 + maxCompressedLength(BLOCK_SIZE)];
+    final int[] table = new int[1 << MAX_HASH_LOG];
+  }
+
+  /**
+   * Buffers for decompressing one block at a time. Buffers needed for frames with larger blocks
+   * than this codec produces are dropped before the state is pooled again.
+   */
+  @VisibleForTesting
+  static final class DecompressorState {
+    private static final int DEFAULT_CAPACITY = 2 * BLOCK_SIZE;
+
+    private byte[] compressed = new byte[BLOCK_SIZE];
+    private byte[] decoded = new byte[DEFAULT_CAPACITY];
+
+    byte[] compressed(int capacity) {
+      if (compressed.length < capacity) {
+        compressed = new byte[capacity];
+      }
+      return compressed;
+    }
+
+    byte[] decoded(int capacity) {
+      if (decoded.length < capacity) {
+        decoded = new byte[capacity];
+      }
+      return decoded;
+    }
+
+    void reset() {
+      if (compressed.length > BLOCK_SIZE) {
+        compressed = new byte[BLOCK_SIZE];
+      }
+      if (decoded.length > DEFAULT_CAPACITY) {
+        decoded = new byte[DEFAULT_CAPACITY];
+      }
+    }
+  }
+
+  private static final class Lz4OutputStream extends OutputStream {
+    private final OutputStream out;
+    private CompressorState state;
+    private int blockLength;
+    private final byte[] singleByte = new byte[1];
+
+    Lz4OutputStream(OutputStream out) throws IOException {
+      this.out = out;
+      out.write(FRAME_HEADER);
+      state = compressors.take();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      singleByte[0] = (byte) b;
+      write(singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (state == null) {
+        throw new IOException("Stream closed");
+      }
+      if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+        throw new IndexOutOfBoundsException();
+      }
+      while (len > 0) {
+        if (blockLength == 0 && len >= BLOCK_SIZE) {
+          // Whole blocks are compressed straight from the caller's array.
+          writeBlock(b, off, BLOCK_SIZE);
+          off += BLOCK_SIZE;
+          len -= BLOCK_SIZE;
+          continue;
+        }
+        int n = Math.min(len, BLOCK_SIZE - blockLength);
+        System.arraycopy(b, off, state.block, blockLength, n);
+        blockLength += n;
+        off += n;
+        len -= n;
+        if (blockLength == BLOCK_SIZE) {
+          writeBlock(state.block, 0, blockLength);
+          blockLength = 0;
+        }
+      }
+    }
+
+    private void writeBlock(byte[] src, int off, int len) throws IOException {
+      byte[] dst = state.out;
+      int compressedLength = compressBlock(src, off, len, dst, 4, state.table);
+      if (compressedLength < len) {
+        writeIntLe(dst, 0, compressedLength);
+        out.write(dst, 0, 4 + compressedLength);
+      } else {
+        // Incompressible blocks are stored as is.
+        writeIntLe(dst, 0, UNCOMPRESSED_BLOCK | len);
+        out.write(dst, 0, 4);
+        out.write(src, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (state == null) {
+        return;
+      }
+      CompressorState finishing = state;
+      try {
+        if (blockLength > 0) {
+          writeBlock(finishing.block, 0, blockLength);
+        }
+        // End mark.
+        writeIntLe(finishing.out, 0, 0);
+        out.write(finishing.out, 0, 4);
+      } finally {
+        state = null;
+        blockLength = 0;
+        compressors.give(finishing);
+        out.close();
+      }
+    }
+  }
+
+  private static final class Lz4InputStream extends InputStream {
+    private final InputStream in;
+    private final HasByteBuffer byteBuffers;
+    private DecompressorState state;
+    private final byte[] singleByte = new byte[1];
+    private final byte[] scratch = new byte[15];
+
+    // Current frame.
+    private int flags;
+    private int maxBlockSize;
+    private long contentSize;
+    private long decodedSize;
+    private final XxHash32 contentHash = new XxHash32(0);
+
+    // Decompressed bytes not yet read are decoded[pos, limit). For linked blocks, the bytes before
+    // pos are kept as history.
+    private byte[] decoded;
+    private int pos;
+    private int limit;
+
+    Lz4InputStream(InputStream in) throws IOException {
+      this.in = in;
+      this.byteBuffers = in instanceof HasByteBuffer && ((HasByteBuffer) in).byteBufferSupported()
+          ? (HasByteBuffer) in : null;
+      state = decompressors.take();
+      boolean success = false;
+      try {
+        if (!readFrameHeader()) {
+          throw new EOFException("Unexpected end of LZ4 input stream");
+        }
+        success = true;
+      } finally {
+        if (!success) {
+          release();
+        }
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (len == 0) {
+        return 0;
+      }
+      while (pos == limit) {
+        if (state == null || !nextBlock()) {
+          return -1;
+        }
+      }
+      int n = Math.min(len, limit - pos);
+      System.arraycopy(decoded, pos, b, off, n);
+      pos += n;
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      if (pos < limit) {
+        return limit - pos;
+      }
+      return state == null ? 0 : 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        release();
+      } finally {
+        in.close();
+      }
+    }
+
+    private void release() {
+      if (state == null) {
+        return;
+      }
+      DecompressorState released = state;
+      state = null;
+      decoded = null;
+      pos = limit = 0;
+      released.reset();
+      decompressors.give(released);
+    }
+
+    /**
+     * Reads the next frame header, skipping skippable frames. Returns {@code false} at the end of
+     * the input.
+     */
+    private boolean readFrameHeader() throws IOException {
+      int magic;
+      while (true) {
+        if (!readFully(scratch, 0, 4, true)) {
+          return false;
+        }
+        magic = readIntLe(scratch, 0);
+        if ((magic & SKIPPABLE_MAGIC_MASK) != SKIPPABLE_MAGIC) {
+          break;
+        }
+        readFully(scratch, 0, 4, false);
+        skipFully(readIntLe(scratch, 0) & 0xFFFFFFFFL);
+      }
+      if (magic != MAGIC) {
+        throw new IOException("Not in LZ4 frame format");
+      }
+      readFully(scratch, 0, 2, false);
+      flags = scratch[0] & 0xFF;
+      int bd = scratch[1] & 0xFF;
+      if ((flags & VERSION_MASK) != VERSION || (flags & FLG_RESERVED) != 0
+          || (bd & BD_RESERVED) != 0 || bd >>> 4 < 4) {
+        throw new IOException("Unsupported LZ4 frame descriptor");
+      }
+      if ((flags & DICTIONARY_ID) != 0) {
+        throw new IOException("LZ4 dictionaries are not supported");
+      }
+      maxBlockSize = 1 << (8 + 2 * (bd >>> 4));
+      int descriptorLength = 2;
+      if ((flags & CONTENT_SIZE) != 0) {
+        readFully(scratch, descriptorLength, 8, false);
+        contentSize = (readIntLe(scratch, descriptorLength) & 0xFFFFFFFFL)
+            | (long) readIntLe(scratch, descriptorLength + 4) << 32;
+        descriptorLength += 8;
+      } else {
+        contentSize = -1;
+      }
+      readFully(scratch, descriptorLength, 1, false);
+      if (scratch[descriptorLength] != headerChecksum(scratch, 0, descriptorLength)) {
+        throw new IOException("Corrupt LZ4 frame descriptor");
+      }
+      decodedSize = 0;
+      contentHash.reset();
+      int historySize = (flags & BLOCK_INDEPENDENCE) == 0 ? BLOCK_SIZE : 0;
+      decoded = state.decoded(historySize + maxBlockSize);
+      pos = limit = 0;
+      return true;
+    }
+
+    /**
+     * Decompresses the next block into {@code decoded}, returning {@code false} at the end of the
+     * input. A block may be empty.
+     */
+    private boolean nextBlock() throws IOException {
+      readFully(scratch, 0, 4, false);
+      int blockSize = readIntLe(scratch, 0);
+      if (blockSize == 0) {
+        endFrame();
+        if (in.available() > 0 && readFrameHeader()) {
+          // Concatenated frames are decoded as a single stream.
+          return true;
+        }
+        release();
+        return false;
+      }
+      boolean uncompressed = (blockSize & UNCOMPRESSED_BLOCK) != 0;
+      blockSize &= ~UNCOMPRESSED_BLOCK;
+      if (blockSize > maxBlockSize) {
+        throw new IOException("Corrupt LZ4 block size");
+      }
+
+      int start = 0;
+      if ((flags & BLOCK_INDEPENDENCE) == 0) {
+        // Keep the last 64 KiB of output in front of the new block for matches to refer to.
+        start = Math.min(limit, BLOCK_SIZE);
+        System.arraycopy(decoded, limit - start, decoded, 0, start);
+      }
+
+      byte[] src;
+      int srcOff;
+      int viewed = 0;
+      ByteBuffer view = byteBuffers != null ? byteBuffers.getByteBuffer() : null;
+      if (view != null && view.hasArray() && view.remaining() >= blockSize) {
+        src = view.array();
+        srcOff = view.arrayOffset() + view.position();
+        viewed = blockSize;
+      } else {
+        src = state.compressed(blockSize);
+        srcOff = 0;
+        readFully(src, 0, blockSize, false);
+      }
+      int blockHash = (flags & BLOCK_CHECKSUM) != 0 ? XxHash32.hash(src, srcOff, blockSize, 0) : 0;
+
+      int length;
+      if (uncompressed) {
+        System.arraycopy(src, srcOff, decoded, start, blockSize);
+        length = blockSize;
+      } else {
+        length = decompressBlock(
+            src, srcOff, blockSize, decoded, start, start + maxBlockSize, 0);
+      }
+      skipFully(viewed);
+      if ((flags & BLOCK_CHECKSUM) != 0) {
+        readFully(scratch, 0, 4, false);
+        if (readIntLe(scratch, 0) != blockHash) {
+          throw new IOException("Corrupt LZ4 block checksum");
+        }
+      }
+      if ((flags & CONTENT_CHECKSUM) != 0) {
+        contentHash.update(decoded, start, length);
+      }
+      decodedSize += length;
+      pos = start;
+      limit = start + length;
+      return true;
+    }
+
+    private void endFrame() throws IOException {
+      if ((flags & CONTENT_CHECKSUM) != 0) {
+        readFully(scratch, 0, 4, false);
+        if (readIntLe(scratch, 0) != contentHash.getValue()) {
+          throw new IOException("Corrupt LZ4 content checksum");
+        }
+      }
+      if (contentSize != -1 && contentSize != decodedSize) {
+        throw new IOException("LZ4 content size mismatch");
+      }
+    }
+
+    /**
+     * Reads exactly {@code len} bytes. Returns {@code false} if the input is already at its end and
+     * {@code eofAllowed}; any other short read is an error.
+     */
+    private boolean readFully(byte[] b, int off, int len, boolean eofAllowed) throws IOException {
+      int read = 0;
+      while (read < len) {
+        int n = in.read(b, off + read, len - read);
+        if (n == -1) {
+          if (read == 0 && eofAllowed) {
+            return false;
+          }
+          throw new EOFException("Unexpected end of LZ4 input stream");
+        }
+        read += n;
+      }
+      return true;
+    }
+
+    private void skipFully(long n) throws IOException {
+      while (n > 0) {
+        long skipped = in.skip(n);
+        if (skipped <= 0) {
+          if (in.read() == -1) {
+            throw new EOFException("Unexpected end of LZ4 input stream");
+          }
+          skipped = 1;
+        }
+        n -= skipped;
+      }
+    }
+  }
+
+  /**
+   * The 32-bit xxHash, which LZ4 frames use for their checksums.
+   */
+  @VisibleForTesting
+  static final class XxHash32 {
+    private static final int PRIME1 = 0x9E3779B1;
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+
+    private final int seed;
+    private int v1;
+    private int v2;
+    private int v3;
+    private int v4;
+    private final byte[] pending = new byte[16];
+    private int pendingLength;
+    private long totalLength;
+
+    XxHash32(int seed) {
+      this.seed = seed;
+      reset();
+    }
+
+    void reset() {
+      v1 = seed + PRIME1 + PRIME2;
+      v2 = seed + PRIME2;
+      v3 = seed;
+      v4 = seed - PRIME1;
+      pendingLength = 0;
+      totalLength = 0;
+    }
+
+    void update(byte[] b, int off, int len) {
+      totalLength += len;
+      int end = off + len;
+      if (pendingLength > 0) {
+        int n = Math.min(len, 16 - pendingLength);
+        System.arraycopy(b, off, pending, pendingLength, n);
+        pendingLength += n;
+        off += n;
+        if (pendingLength < 16) {
+          return;
+        }
+        stripe(pending, 0);
+        pendingLength = 0;
+      }
+      for (; off <= end - 16; off += 16) {
+        stripe(b, off);
+      }
+      pendingLength = end - off;
+      System.arraycopy(b, off, pending, 0, pendingLength);
+    }
+
+    int getValue() {
+      int h = totalLength >= 16
+          ? Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12)
+              + Integer.rotateLeft(v4, 18)
+          : seed + PRIME5;
+      return finish(h + (int) totalLength, pending, 0, pendingLength);
+    }
+
+    private void stripe(byte[] b, int off) {
+      v1 = round(v1, readIntLe(b, off));
+      v2 = round(v2, readIntLe(b, off + 4));
+      v3 = round(v3, readIntLe(b, off + 8));
+      v4 = round(v4, readIntLe(b, off + 12));
+    }
+
+    static int hash(byte[] b, int off, int len, int seed) {
+      int end = off + len;
+      int h;
+      if (len >= 16) {
+        int v1 = seed + PRIME1 + PRIME2;
+        int v2 = seed + PRIME2;
+        int v3 = seed;
+        int v4 = seed - PRIME1;
+        for (; off <= end - 16; off += 16) {
+          v1 = round(v1, readIntLe(b, off));
+          v2 = round(v2, readIntLe(b, off + 4));
+          v3 = round(v3, readIntLe(b, off + 8));
+          v4 = round(v4, readIntLe(b, off + 12));
+        }
+        h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12)
+            + Integer.rotateLeft(v4, 18);
+      } else {
+        h = seed + PRIME5;
+      }
+      return finish(h + len, b, off, end - off);
+    }
+
+    private static int round(int acc, int lane) {
+      return Integer.rotateLeft(acc + lane * PRIME2, 13) * PRIME1;
+    }
+
+    private static int finish(int h, byte[] b, int off, int len) {
+      int end = off + len;
+      for (; off <= end - 4; off += 4) {
+        h = Integer.rotateLeft(h + readIntLe(b, off) * PRIME3, 17) * PRIME4;
+      }
+      for (; off < end; off++) {
+        h = Integer.rotateLeft(h + (b[off] & 0xFF) * PRIME5, 11) * PRIME1;
+      }
+      h ^= h >>> 15;
+      h *= PRIME2;
+      h ^= h >>> 13;
+      h *= PRIME3;
+      h ^= h >>> 16;
+      return h;
+    }
+  }
+}
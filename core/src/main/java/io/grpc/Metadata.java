@@ -72,6 +72,8 @@ public final class Metadata {
    */
   public static final String BINARY_HEADER_SUFFIX = "-bin";
 
+  private static final byte[] BINARY_HEADER_SUFFIX_BYTES = BINARY_HEADER_SUFFIX.getBytes(US_ASCII);
+
   /**
    * Simple metadata marshaller that encodes bytes as is.
    *
@@ -153,10 +155,60 @@ public final class Metadata {
     namesAndValues = binaryValues;
   }
 
+  /**
+   * Creates metadata from headers as they were received by an HTTP/2 transport, with the values of
+   * binary headers still base64-encoded. Those values are decoded when a key first reads them, and
+   * are sent back out in their original form by {@link #serializeForHttp2} if nothing reads them.
+   * Metadata will mutate the passed in array.
+   */
+  static Metadata fromHttp2Headers(int usedNames, byte[]... http2Headers) {
+    Metadata metadata = new Metadata(usedNames, http2Headers);
+    for (int i = 0; i < usedNames; i++) {
+      if (isBinaryHeader(metadata.name(i))) {
+        metadata.encoded(i, true);
+      }
+    }
+    return metadata;
+  }
+
+  /**
+   * Header count above which lookups go through {@link #index} instead of scanning every entry.
+   */
+  @VisibleForTesting
+  static final int INDEX_THRESHOLD = 8;
+  /**
+   * Number of scanning lookups before the index is built. Building costs about as much as this many
+   * scans, so metadata that is only read once or twice never pays for it.
+   */
+  @VisibleForTesting
+  static final int SCANS_BEFORE_INDEX = 8;
+  // Number of ints per slot of the index: name hash, first position + 1, last position + 1.
+  private static final int SLOT_WIDTH = 3;
+
   private byte[][] namesAndValues;
   // The unscaled number of headers present.
   private int size;
 
+  /**
+   * Open-addressing table over the distinct header names, built lazily once there are more than
+   * {@link #INDEX_THRESHOLD} headers and lookups keep coming. A slot whose first position is zero
+   * is empty. Appending headers keeps the table current; anything that moves existing headers
+   * drops it.
+   */
+  @Nullable
+  private int[] index;
+  // The number of occupied slots in the index.
+  private int indexedNames;
+  // Lookups that scanned since the index was last dropped.
+  private int scans;
+
+  /**
+   * Marks the binary header values that are still base64-encoded, as received from the wire. Null
+   * if there are none. Entries at or beyond {@link #size} are always false.
+   */
+  @Nullable
+  private boolean[] encodedValues;
+
   private byte[] name(int i) {
     return namesAndValues[i * 2];
   }
@@ -173,6 +225,31 @@ public final class Metadata {
     namesAndValues[i * 2 + 1] = value;
   }
 
+  private boolean encoded(int i) {
+    return encodedValues != null && encodedValues[i];
+  }
+
+  private void encoded(int i, boolean encoded) {
+    if (encodedValues == null) {
+      if (!encoded) {
+        return;
+      }
+      encodedValues = new boolean[cap() / 2];
+    }
+    encodedValues[i] = encoded;
+  }
+
+  /** Returns the value at {@code i} as marshallers expect it, decoding it first if necessary. */
+  private byte[] decodedValue(int i) {
+    byte[] value = value(i);
+    if (encoded(i)) {
+      value = BaseEncoding.base64().decode(new String(value, US_ASCII));
+      value(i, value);
+      encodedValues[i] = false;
+    }
+    return value;
+  }
+
   private int cap() {
     return namesAndValues != null ? namesAndValues.length : 0;
   }
@@ -198,6 +275,10 @@ public final class Metadata {
 
   /** Returns true if a value is defined for the given key. */
   public boolean containsKey(Key<?> key) {
+    int slot = indexSlot(key);
+    if (slot != -1) {
+      return index[slot + 1] != 0;
+    }
     for (int i = 0; i < size; i++) {
       if (bytesEqual(key.asciiName(), name(i))) {
         return true;
@@ -212,9 +293,14 @@ public final class Metadata {
    * @return the parsed metadata entry or null if there are none.
    */
   public <T> T get(Key<T> key) {
+    int slot = indexSlot(key);
+    if (slot != -1) {
+      int last = index[slot + 2];
+      return last != 0 ? key.parseBytes(decodedValue(last - 1)) : null;
+    }
     for (int i = size - 1; i >= 0; i--) {
       if (bytesEqual(key.asciiName(), name(i))) {
-        return key.parseBytes(value(i));
+        return key.parseBytes(decodedValue(i));
       }
     }
     return null;
@@ -253,7 +339,7 @@ public final class Metadata {
         public T next() {
           if (hasNext()) {
             hasNext = false;
-            return key.parseBytes(value(idx++));
+            return key.parseBytes(decodedValue(idx++));
           }
           throw new NoSuchElementException();
         }
@@ -272,6 +358,11 @@ public final class Metadata {
    * accurate if Metadata is mutated.
    */
   public <T> Iterable<T> getAll(final Key<T> key) {
+    int slot = indexSlot(key);
+    if (slot != -1) {
+      int first = index[slot + 1];
+      return first != 0 ? new IterableAt<T>(key, first - 1) : null;
+    }
     for (int i = 0; i < size; i++) {
       if (bytesEqual(key.asciiName(), name(i))) {
         return new IterableAt<T>(key, i);
@@ -311,6 +402,7 @@ public final class Metadata {
     name(size, key.asciiName());
     value(size, key.toBytes(value));
     size++;
+    indexAppended(size - 1, key.nameHash());
   }
 
   private void maybeExpand() {
@@ -326,6 +418,9 @@ public final class Metadata {
       System.arraycopy(namesAndValues, 0, newNamesAndValues, 0, len());
     }
     namesAndValues = newNamesAndValues;
+    if (encodedValues != null) {
+      encodedValues = Arrays.copyOf(encodedValues, newCapacity / 2);
+    }
   }
 
   /**
@@ -339,12 +434,16 @@ public final class Metadata {
   public <T> boolean remove(Key<T> key, T value) {
     Preconditions.checkNotNull(key, "key");
     Preconditions.checkNotNull(value, "value");
-    for (int i = 0; i < size; i++) {
+    int start = firstIndexOf(key);
+    if (start == -1) {
+      return false;
+    }
+    for (int i = start; i < size; i++) {
       if (!bytesEqual(key.asciiName(), name(i))) {
         continue;
       }
       @SuppressWarnings("unchecked")
-      T stored = key.parseBytes(value(i));
+      T stored = key.parseBytes(decodedValue(i));
       if (!value.equals(stored)) {
         continue;
       }
@@ -352,9 +451,14 @@ public final class Metadata {
       int readIdx = (i + 1) * 2;
       int readLen = len() - readIdx;
       System.arraycopy(namesAndValues, readIdx, namesAndValues, writeIdx, readLen);
+      if (encodedValues != null) {
+        System.arraycopy(encodedValues, i + 1, encodedValues, i, size - i - 1);
+      }
       size -= 1;
       name(size, null);
       value(size, null);
+      encoded(size, false);
+      dropIndex();
       return true;
     }
     return false;
@@ -362,26 +466,32 @@ public final class Metadata {
 
   /** Remove all values for the given key. If there were no values, {@code null} is returned. */
   public <T> Iterable<T> removeAll(Key<T> key) {
-    if (isEmpty()) {
+    int start = firstIndexOf(key);
+    if (start == -1) {
       return null;
     }
-    int writeIdx = 0;
-    int readIdx = 0;
+    int writeIdx = start;
+    int readIdx = start;
     List<T> ret = null;
     for (; readIdx < size; readIdx++) {
       if (bytesEqual(key.asciiName(), name(readIdx))) {
         ret = ret != null ? ret : new LinkedList<T>();
-        ret.add(key.parseBytes(value(readIdx)));
+        ret.add(key.parseBytes(decodedValue(readIdx)));
         continue;
       }
       name(writeIdx, name(readIdx));
       value(writeIdx, value(readIdx));
+      encoded(writeIdx, encoded(readIdx));
       writeIdx++;
     }
     int newSize = writeIdx;
     // Multiply by two since namesAndValues is interleaved.
     Arrays.fill(namesAndValues, writeIdx * 2, len(), null);
+    if (encodedValues != null) {
+      Arrays.fill(encodedValues, writeIdx, size, false);
+    }
     size = newSize;
+    dropIndex();
     return ret;
   }
 
@@ -391,23 +501,29 @@ public final class Metadata {
    */
   @ExperimentalApi
   public <T> void discardAll(Key<T> key) {
-    if (isEmpty()) {
+    int start = firstIndexOf(key);
+    if (start == -1) {
       return;
     }
-    int writeIdx = 0;
-    int readIdx = 0;
+    int writeIdx = start;
+    int readIdx = start;
     for (; readIdx < size; readIdx++) {
       if (bytesEqual(key.asciiName(), name(readIdx))) {
         continue;
       }
       name(writeIdx, name(readIdx));
       value(writeIdx, value(readIdx));
+      encoded(writeIdx, encoded(readIdx));
       writeIdx++;
     }
     int newSize = writeIdx;
     // Multiply by two since namesAndValues is interleaved.
     Arrays.fill(namesAndValues, writeIdx * 2, len(), null);
+    if (encodedValues != null) {
+      Arrays.fill(encodedValues, writeIdx, size, false);
+    }
     size = newSize;
+    dropIndex();
   }
 
   /**
@@ -427,7 +543,15 @@ public final class Metadata {
    */
   @Nullable
   byte[][] serialize() {
+    if (encodedValues != null) {
+      for (int i = 0; i < size; i++) {
+        decodedValue(i);
+      }
+      encodedValues = null;
+    }
     if (len() == cap()) {
+      // The caller may rearrange the returned array.
+      dropIndex();
       return namesAndValues;
     }
     byte[][] serialized = new byte[len()][];
@@ -435,6 +559,31 @@ public final class Metadata {
     return serialized;
   }
 
+  /**
+   * Serialize all the metadata entries for an HTTP/2 transport. The result is like that of {@link
+   * #serialize}, except that the values of binary headers are base64-encoded. Values that were
+   * received that way and never read are passed through as they arrived, so forwarded metadata is
+   * not decoded and re-encoded.
+   *
+   * <p>The returned individual byte arrays <em>must not</em> be modified. However, the top level
+   * array may be modified.
+   *
+   * <p>This method is intended for transport use only.
+   */
+  byte[][] serializeForHttp2() {
+    byte[][] serialized = new byte[len()][];
+    for (int i = 0; i < size; i++) {
+      byte[] name = name(i);
+      byte[] value = value(i);
+      if (!encoded(i) && isBinaryHeader(name)) {
+        value = BaseEncoding.base64().encode(value).getBytes(US_ASCII);
+      }
+      serialized[i * 2] = name;
+      serialized[i * 2 + 1] = value;
+    }
+    return serialized;
+  }
+
   /** Perform a simple merge of two sets of metadata. */
   public void merge(Metadata other) {
     if (other.isEmpty()) {
@@ -445,7 +594,17 @@ public final class Metadata {
       expand(len() + other.len() - remaining);
     }
     System.arraycopy(other.namesAndValues, 0, namesAndValues, len(), other.len());
+    if (other.encodedValues != null) {
+      if (encodedValues == null) {
+        encodedValues = new boolean[cap() / 2];
+      }
+      System.arraycopy(other.encodedValues, 0, encodedValues, size, other.size);
+    }
+    int oldSize = size;
     size += other.size;
+    for (int i = oldSize; i < size && index != null; i++) {
+      indexAppended(i, Arrays.hashCode(name(i)));
+    }
   }
 
   /** Merge values for the given set of keys into this set of metadata. */
@@ -458,11 +617,14 @@ public final class Metadata {
     }
     for (int i = 0; i < other.size; i++) {
       ByteBuffer wrappedNamed = ByteBuffer.wrap(other.name(i));
-      if (asciiKeys.containsKey(wrappedNamed)) {
+      Key<?> key = asciiKeys.get(wrappedNamed);
+      if (key != null) {
         maybeExpand();
         name(size, other.name(i));
         value(size, other.value(i));
+        encoded(size, other.encoded(i));
         size++;
+        indexAppended(size - 1, key.nameHash());
       }
     }
   }
@@ -476,7 +638,9 @@ public final class Metadata {
       }
       String headerName = new String(name(i), US_ASCII);
       sb.append(headerName).append('=');
-      if (headerName.endsWith(BINARY_HEADER_SUFFIX)) {
+      if (encoded(i)) {
+        sb.append(new String(value(i), US_ASCII));
+      } else if (headerName.endsWith(BINARY_HEADER_SUFFIX)) {
         sb.append(BaseEncoding.base64().encode(value(i)));
       } else {
         String headerValue = new String(value(i), US_ASCII);
@@ -490,6 +654,98 @@ public final class Metadata {
     return Arrays.equals(left, right);
   }
 
+  private static boolean isBinaryHeader(byte[] name) {
+    int start = name.length - BINARY_HEADER_SUFFIX_BYTES.length;
+    if (start < 0) {
+      return false;
+    }
+    for (int i = 0; i < BINARY_HEADER_SUFFIX_BYTES.length; i++) {
+      if (name[start + i] != BINARY_HEADER_SUFFIX_BYTES[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the position of the first header for {@code key}, or -1 if there is none. Without an
+   * index, returns 0 for any non-empty metadata so callers fall back to scanning from the start.
+   */
+  private int firstIndexOf(Key<?> key) {
+    if (isEmpty()) {
+      return -1;
+    }
+    int slot = indexSlot(key);
+    return slot != -1 ? index[slot + 1] - 1 : 0;
+  }
+
+  /**
+   * Returns the offset of the index slot for {@code key}, building the index if it is due, or -1 if
+   * the caller should scan instead. The slot is empty if no header has that name.
+   */
+  private int indexSlot(Key<?> key) {
+    if (size <= INDEX_THRESHOLD) {
+      return -1;
+    }
+    if (index == null) {
+      if (++scans <= SCANS_BEFORE_INDEX) {
+        return -1;
+      }
+      buildIndex();
+    }
+    return findSlot(key.asciiName(), key.nameHash());
+  }
+
+  private void buildIndex() {
+    // Keep the table at most half full, so probe sequences stay short.
+    index = new int[Integer.highestOneBit(size * 4 - 1) * SLOT_WIDTH];
+    indexedNames = 0;
+    for (int i = 0; i < size; i++) {
+      addToIndex(i, Arrays.hashCode(name(i)));
+    }
+  }
+
+  /** Records the header just appended at position {@code i} in the index, if there is one. */
+  private void indexAppended(int i, int hash) {
+    if (index == null) {
+      return;
+    }
+    if ((indexedNames + 1) * 2 > index.length / SLOT_WIDTH) {
+      // Rebuilt larger by a later lookup.
+      dropIndex();
+      return;
+    }
+    addToIndex(i, hash);
+  }
+
+  private void dropIndex() {
+    index = null;
+    scans = 0;
+  }
+
+  private void addToIndex(int i, int hash) {
+    int slot = findSlot(name(i), hash);
+    if (index[slot + 1] == 0) {
+      index[slot] = hash;
+      index[slot + 1] = i + 1;
+      indexedNames++;
+    }
+    index[slot + 2] = i + 1;
+  }
+
+  private int findSlot(byte[] name, int hash) {
+    int mask = index.length / SLOT_WIDTH - 1;
+    int i = (hash ^ (hash >>> 16)) & mask;
+    while (true) {
+      int slot = i * SLOT_WIDTH;
+      int first = index[slot + 1];
+      if (first == 0 || (index[slot] == hash && bytesEqual(name, name(first - 1)))) {
+        return slot;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
   /** Marshaller for metadata values that are serialized into raw binary. */
   public interface BinaryMarshaller<T> {
     /**
@@ -603,6 +859,7 @@ public final class Metadata {
 
     private final String name;
     private final byte[] nameBytes;
+    private final int nameHash;
 
     private static BitSet generateValidTChars() {
       BitSet valid = new BitSet(0x7f);
@@ -640,6 +897,7 @@ public final class Metadata {
       // Intern the result for faster string identity checking.
       this.name = validateName(this.originalName.toLowerCase(Locale.ROOT)).intern();
       this.nameBytes = this.name.getBytes(US_ASCII);
+      this.nameHash = Arrays.hashCode(nameBytes);
     }
 
     /**
@@ -669,6 +927,11 @@ public final class Metadata {
       return nameBytes;
     }
 
+    /** Returns {@link Arrays#hashCode(byte[])} of {@link #asciiName}, computed once. */
+    int nameHash() {
+      return nameHash;
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) {
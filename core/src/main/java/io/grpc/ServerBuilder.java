@@ -33,6 +33,7 @@ package io.grpc;
 
 import java.io.File;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -60,6 +61,46 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
    */
   public abstract T directExecutor();
 
+  /**
+   * Execute application code of a single service or method directly in the transport thread,
+   * while other calls keep using the server's executor.
+   *
+   * <p>This is meant for services that never block, such as ones answering from memory, letting
+   * them skip the hops to and from the executor without requiring the same of every other service.
+   * The same care as for {@link #directExecutor()} applies to them.
+   *
+   * @param serviceOrMethodName a fully qualified service name, or a full method name as returned
+   *        by {@link MethodDescriptor#getFullMethodName()}
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/368")
+  public abstract T directExecutor(String serviceOrMethodName);
+
+  /**
+   * Run application code of a single service or method on the executor of the given bulkhead,
+   * instead of the server's executor. This keeps slow or blocking methods from starving the
+   * threads other methods need, and the other way around. Once too many calls wait for the
+   * bulkhead's executor, new calls fail with {@link Status#RESOURCE_EXHAUSTED}.
+   *
+   * <p>A bulkhead may be shared by several services or methods. One given for a method takes
+   * precedence over one given for its service, and both take precedence over {@link
+   * #directExecutor()} and {@link #directExecutor(String)}.
+   *
+   * @param serviceOrMethodName a fully qualified service name, or a full method name as returned
+   *        by {@link MethodDescriptor#getFullMethodName()}
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/368")
+  public abstract T bulkhead(String serviceOrMethodName, Bulkhead bulkhead);
+
+  /**
+   * Log a warning whenever application code running directly in the transport thread holds it for
+   * longer than the given time. Disabled by default, as it times every callback of such calls.
+   *
+   * @see #directExecutor()
+   * @see #directExecutor(String)
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/368")
+  public abstract T directExecutorBlockingThreshold(long threshold, TimeUnit unit);
+
   /**
    * Provides a custom executor.
    *
@@ -126,6 +167,19 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
   @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
   public abstract T compressorRegistry(@Nullable CompressorRegistry registry);
 
+  /**
+   * Fail new calls fast while calls wait too long for the server's executor, instead of queueing
+   * them behind calls that already wait. Disabled by default.
+   *
+   * <p>When the shortest queueing delay seen over a 100 millisecond interval exceeds {@code
+   * targetDelay}, new calls fail with {@link Status.Code#UNAVAILABLE} until the queue drains.
+   * Independently, calls whose deadline is shorter than the latest queueing delay fail with
+   * {@link Status.Code#DEADLINE_EXCEEDED} right away. Calls run directly in the transport thread or
+   * on a {@linkplain #bulkhead bulkhead} are not affected.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/368")
+  public abstract T admissionControl(long targetDelay, TimeUnit unit);
+
   /**
    * Builds a server using the given parameters.
    *
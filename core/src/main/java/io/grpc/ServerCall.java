@@ -35,6 +35,7 @@ import com.google.errorprone.annotations.DoNotMock;
 
 import java.net.SocketAddress;
 
+import javax.annotation.Nullable;
 import javax.net.ssl.SSLSession;
 
 /**
@@ -213,6 +214,18 @@ public abstract class ServerCall<ReqT, RespT> {
     // noop
   }
 
+  /**
+   * Sets the policy that decides which outbound messages are compressed, once compression has been
+   * enabled with {@link #setCompression}. Without a policy every message is compressed unless
+   * {@link #setMessageCompression} disables it.
+   *
+   * @param policy the policy to use, or {@code null} to compress every message
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+  public void setCompressionPolicy(@Nullable CompressionPolicy policy) {
+    // noop
+  }
+
   /**
    * Sets the compression algorithm for this call.  If the server does not support the compression
    * algorithm, the call will fail.  This method may only be called before {@link #sendHeaders}.
@@ -31,6 +31,7 @@
 
 package io.grpc;
 
+import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 
 import java.util.Collection;
@@ -82,6 +83,19 @@ public abstract class TransportManager<T> {
    */
   public abstract Channel makeChannel(T transport);
 
+  /**
+   * Returns a transport that forwards RPCs to {@code transport}, and notifies a {@link
+   * LoadBalancer2.CallTracker} from {@code callTrackers} when each of them ends.  The tracker of
+   * an RPC is created from its method when the RPC starts.  This lets a load-balancer keep
+   * statistics on the transports it picks, e.g., for outlier detection.
+   *
+   * <p>The default implementation returns {@code transport} itself, so RPCs are not tracked.
+   */
+  public T trackCalls(
+      T transport, Function<MethodDescriptor<?, ?>, LoadBalancer2.CallTracker> callTrackers) {
+    return transport;
+  }
+
   /**
    * A transport provided as a temporary holder of new requests, which will be eventually
    * transferred to real transports or fail.
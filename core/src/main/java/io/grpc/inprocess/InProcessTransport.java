@@ -35,6 +35,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import io.grpc.Attributes;
 import io.grpc.CallOptions;
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.Decompressor;
 import io.grpc.Grpc;
@@ -414,6 +415,9 @@ class InProcessTransport implements ServerTransport, ConnectionClientTransport {
       @Override
       public void setCompressor(Compressor compressor) {}
 
+      @Override
+      public void setCompressionDecider(CompressionPolicy.Decider decider) {}
+
       @Override
       public void setDecompressor(Decompressor decompressor) {}
 
@@ -572,6 +576,9 @@ class InProcessTransport implements ServerTransport, ConnectionClientTransport {
       @Override
       public void setCompressor(Compressor compressor) {}
 
+      @Override
+      public void setCompressionDecider(CompressionPolicy.Decider decider) {}
+
       @Override
       public void setDecompressor(Decompressor decompressor) {}
     }
@@ -44,6 +44,7 @@ import io.grpc.Attributes;
 import io.grpc.ClientInterceptor;
 import io.grpc.CompressorRegistry;
 import io.grpc.DecompressorRegistry;
+import io.grpc.ExperimentalApi;
 import io.grpc.Internal;
 import io.grpc.LoadBalancer;
 import io.grpc.ManagedChannelBuilder;
@@ -121,6 +122,10 @@ public abstract class AbstractManagedChannelImplBuilder
 
   private long idleTimeoutMillis = IDLE_MODE_DEFAULT_TIMEOUT_MILLIS;
 
+  private int maxConnectionsPerAddress = 1;
+
+  private int streamsPerConnection = Integer.MAX_VALUE;
+
   private int maxInboundMessageSize = GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE;
 
   // Can be overriden by subclasses.
@@ -241,6 +246,24 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  /**
+   * Allows up to {@code maxConnections} connections to each backend address, instead of one.  New
+   * RPCs go to the connection with the fewest active streams, and another connection is opened
+   * when every existing one has at least {@code streamsPerConnection} active streams.  This should
+   * be at most the server's {@code MAX_CONCURRENT_STREAMS}, or RPCs queue on the client.
+   * Connections beyond the first are closed again after being unused for a while.
+   *
+   * <p>By default there is a single connection per address.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1781")
+  public final T maxConnectionsPerAddress(int maxConnections, int streamsPerConnection) {
+    checkArgument(maxConnections > 0, "maxConnections must be positive");
+    checkArgument(streamsPerConnection > 0, "streamsPerConnection must be positive");
+    this.maxConnectionsPerAddress = maxConnections;
+    this.streamsPerConnection = streamsPerConnection;
+    return thisT();
+  }
+
   /**
    * Override the default Census implementation.  This is meant to be used in tests.
    */
@@ -290,7 +313,7 @@ public abstract class AbstractManagedChannelImplBuilder
         firstNonNull(decompressorRegistry, DecompressorRegistry.getDefaultInstance()),
         firstNonNull(compressorRegistry, CompressorRegistry.getDefaultInstance()),
         GrpcUtil.TIMER_SERVICE, GrpcUtil.STOPWATCH_SUPPLIER, idleTimeoutMillis,
-        executor, userAgent, interceptors,
+        maxConnectionsPerAddress, streamsPerConnection, executor, userAgent, interceptors,
         firstNonNull(censusFactory,
             firstNonNull(Census.getCensusContextFactory(), NoopCensusContextFactory.INSTANCE)));
   }
@@ -32,6 +32,7 @@
 package io.grpc.internal;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.census.Census;
@@ -40,6 +41,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import io.grpc.BindableService;
+import io.grpc.Bulkhead;
 import io.grpc.CompressorRegistry;
 import io.grpc.Context;
 import io.grpc.DecompressorRegistry;
@@ -55,6 +57,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
@@ -103,11 +106,42 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
   @Nullable
   private CensusContextFactory censusFactory;
 
+  private long directExecutorBlockingThresholdNanos;
+
+  private long admissionTargetDelayNanos;
+
   @Override
   public final T directExecutor() {
     return executor(MoreExecutors.directExecutor());
   }
 
+  @Override
+  public final T directExecutor(String serviceOrMethodName) {
+    registryBuilder.directExecutor(checkNotNull(serviceOrMethodName, "serviceOrMethodName"));
+    return thisT();
+  }
+
+  @Override
+  public final T bulkhead(String serviceOrMethodName, Bulkhead bulkhead) {
+    registryBuilder.bulkhead(checkNotNull(serviceOrMethodName, "serviceOrMethodName"),
+        checkNotNull(bulkhead, "bulkhead"));
+    return thisT();
+  }
+
+  @Override
+  public final T directExecutorBlockingThreshold(long threshold, TimeUnit unit) {
+    checkArgument(threshold > 0, "threshold must be positive");
+    directExecutorBlockingThresholdNanos = unit.toNanos(threshold);
+    return thisT();
+  }
+
+  @Override
+  public final T admissionControl(long targetDelay, TimeUnit unit) {
+    checkArgument(targetDelay > 0, "targetDelay must be positive");
+    admissionTargetDelayNanos = unit.toNanos(targetDelay);
+    return thisT();
+  }
+
   @Override
   public final T executor(@Nullable Executor executor) {
     this.executor = executor;
@@ -172,7 +206,9 @@ public abstract class AbstractServerImplBuilder<T extends AbstractServerImplBuil
         transportFilters,
         firstNonNull(censusFactory,
             firstNonNull(Census.getCensusContextFactory(), NoopCensusContextFactory.INSTANCE)),
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, directExecutorBlockingThresholdNanos,
+        admissionTargetDelayNanos == 0 ? null : new AdmissionController(admissionTargetDelayNanos,
+            AdmissionController.DEFAULT_INTERVAL_NANOS, GrpcUtil.STOPWATCH_SUPPLIER.get().start()));
     for (InternalNotifyOnServerBuild notifyTarget : notifyOnBuildList) {
       notifyTarget.notifyOnBuild(server);
     }
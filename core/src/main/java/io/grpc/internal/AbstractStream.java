@@ -38,11 +38,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 
 import io.grpc.Codec;
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.Decompressor;
 
 import java.io.InputStream;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -305,6 +307,11 @@ public abstract class AbstractStream implements Stream {
     framer.setCompressor(checkNotNull(compressor, "compressor"));
   }
 
+  @Override
+  public final void setCompressionDecider(@Nullable CompressionPolicy.Decider decider) {
+    framer.setCompressionDecider(decider);
+  }
+
   @Override
   public final void setDecompressor(Decompressor decompressor) {
     deframer.setDecompressor(checkNotNull(decompressor, "decompressor"));
@@ -37,11 +37,13 @@ import static com.google.common.base.Preconditions.checkState;
 import com.google.common.annotations.VisibleForTesting;
 
 import io.grpc.Codec;
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.Decompressor;
 
 import java.io.InputStream;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -91,6 +93,11 @@ public abstract class AbstractStream2 implements Stream {
     framer().setCompressor(checkNotNull(compressor, "compressor"));
   }
 
+  @Override
+  public final void setCompressionDecider(@Nullable CompressionPolicy.Decider decider) {
+    framer().setCompressionDecider(decider);
+  }
+
   @Override
   public final void setDecompressor(Decompressor decompressor) {
     transportState().setDecompressor(checkNotNull(decompressor, "decompressor"));
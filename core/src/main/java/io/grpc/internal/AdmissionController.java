@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.base.Stopwatch;
+
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Decides whether the server should accept new calls, based on how long calls wait for the
+ * server's executor.
+ *
+ * <p>Overload is detected the way CoDel does for packet queues: the queue is considered standing,
+ * and new calls are failed fast, for as long as the shortest delay seen over the last interval
+ * exceeds the target. Short bursts that queue up and drain within an interval are let through.
+ * Calls whose deadline is shorter than the latest queueing delay are failed right away, as they
+ * would most likely expire before starting; once the queue is empty, there is no delay to wait.
+ */
+@ThreadSafe
+final class AdmissionController {
+  /** The interval over which CoDel looks for a standing queue. */
+  static final long DEFAULT_INTERVAL_NANOS = MILLISECONDS.toNanos(100);
+
+  private static final Status OVERLOADED =
+      Status.UNAVAILABLE.withDescription("Server overloaded, queueing delay above target");
+  private static final Status DEADLINE_TOO_SHORT =
+      Status.DEADLINE_EXCEEDED.withDescription("Deadline shorter than server queueing delay");
+
+  private final long targetDelayNanos;
+  private final long intervalNanos;
+  private final Stopwatch clock;
+  private final AtomicLong intervalEndNanos;
+  private final AtomicLong minDelayNanos = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicInteger queuedCalls = new AtomicInteger();
+  private volatile boolean overloaded;
+  private volatile long lastDelayNanos;
+
+  /**
+   * Creates a controller.
+   *
+   * @param clock a running stopwatch, used as the time source
+   */
+  AdmissionController(long targetDelayNanos, long intervalNanos, Stopwatch clock) {
+    this.targetDelayNanos = targetDelayNanos;
+    this.intervalNanos = intervalNanos;
+    this.clock = clock;
+    intervalEndNanos = new AtomicLong(clock.elapsed(NANOSECONDS) + intervalNanos);
+  }
+
+  /**
+   * Returns the status a new call should fail with, or {@code null} if it should be queued. A call
+   * that is admitted must be followed by {@link #callStarted} once the executor runs it.
+   *
+   * @param timeoutNanos the remaining time before the call's deadline, if it has one
+   */
+  @Nullable
+  Status admit(@Nullable Long timeoutNanos) {
+    maybeEndInterval();
+    if (overloaded) {
+      return OVERLOADED;
+    }
+    // The latest delay is only updated by admitted calls, so it must not outlive the queue, or a
+    // single slow start would reject all calls with shorter deadlines forever.
+    if (timeoutNanos != null && queuedCalls.get() > 0 && timeoutNanos < lastDelayNanos) {
+      return DEADLINE_TOO_SHORT;
+    }
+    queuedCalls.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Records that an admitted call was started by the executor after waiting for it.
+   */
+  void callStarted(long delayNanos) {
+    queuedCalls.decrementAndGet();
+    lastDelayNanos = delayNanos;
+    long min = minDelayNanos.get();
+    while (delayNanos < min && !minDelayNanos.compareAndSet(min, delayNanos)) {
+      min = minDelayNanos.get();
+    }
+    maybeEndInterval();
+  }
+
+  /**
+   * Records that an admitted call will never start, because the executor rejected it.
+   */
+  void callRejected() {
+    queuedCalls.decrementAndGet();
+  }
+
+  private void maybeEndInterval() {
+    long now = clock.elapsed(NANOSECONDS);
+    long end = intervalEndNanos.get();
+    if (now - end < 0 || !intervalEndNanos.compareAndSet(end, now + intervalNanos)) {
+      return;
+    }
+    long min = minDelayNanos.getAndSet(Long.MAX_VALUE);
+    if (min == Long.MAX_VALUE) {
+      // No call started during the whole interval, so any call still queued is stuck behind
+      // others.
+      overloaded = queuedCalls.get() > 0;
+    } else {
+      overloaded = min > targetDelayNanos;
+    }
+  }
+}
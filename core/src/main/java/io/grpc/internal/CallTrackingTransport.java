@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+
+import io.grpc.CallOptions;
+import io.grpc.LoadBalancer2.CallTracker;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link ClientTransport} that reports how each of its streams ends to a {@link CallTracker},
+ * so that a {@link io.grpc.LoadBalancer} can keep statistics on the transports it picks.
+ */
+final class CallTrackingTransport implements ClientTransport {
+  private final ClientTransport delegate;
+  private final Function<MethodDescriptor<?, ?>, CallTracker> callTrackers;
+
+  CallTrackingTransport(
+      ClientTransport delegate, Function<MethodDescriptor<?, ?>, CallTracker> callTrackers) {
+    this.delegate = Preconditions.checkNotNull(delegate, "delegate");
+    this.callTrackers = Preconditions.checkNotNull(callTrackers, "callTrackers");
+  }
+
+  @Override
+  public ClientStream newStream(
+      MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+      StatsTraceContext statsTraceCtx) {
+    CallTracker callTracker = callTrackers.apply(method);
+    return new TrackedStream(
+        delegate.newStream(method, headers, callOptions, statsTraceCtx), callTracker);
+  }
+
+  @Override
+  public ClientStream newStream(MethodDescriptor<?, ?> method, Metadata headers) {
+    CallTracker callTracker = callTrackers.apply(method);
+    return new TrackedStream(delegate.newStream(method, headers), callTracker);
+  }
+
+  @Override
+  public void ping(PingCallback callback, Executor executor) {
+    delegate.ping(callback, executor);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + delegate + "]";
+  }
+
+  private static final class TrackedStream extends ForwardingClientStream {
+    private final ClientStream delegate;
+    private final CallTracker callTracker;
+
+    TrackedStream(ClientStream delegate, CallTracker callTracker) {
+      this.delegate = delegate;
+      this.callTracker = callTracker;
+    }
+
+    @Override
+    protected ClientStream delegate() {
+      return delegate;
+    }
+
+    @Override
+    public void start(final ClientStreamListener listener) {
+      delegate.start(new ForwardingClientStreamListener() {
+        @Override
+        protected ClientStreamListener delegate() {
+          return listener;
+        }
+
+        @Override
+        public void closed(Status status, Metadata trailers) {
+          callTracker.callEnded(status);
+          listener.closed(status, trailers);
+        }
+
+      });
+    }
+  }
+}
@@ -48,12 +48,15 @@ import com.google.common.base.Preconditions;
 import io.grpc.CallOptions;
 import io.grpc.ClientCall;
 import io.grpc.Codec;
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.CompressorRegistry;
 import io.grpc.Context;
 import io.grpc.Deadline;
 import io.grpc.Decompressor;
 import io.grpc.DecompressorRegistry;
+import io.grpc.InternalDecompressorRegistry;
+import io.grpc.InternalMetadata;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.MethodDescriptor.MethodType;
@@ -78,6 +81,24 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT>
 
   private static final Logger log = Logger.getLogger(ClientCallImpl.class.getName());
 
+  /**
+   * The same header as {@link GrpcUtil#MESSAGE_ACCEPT_ENCODING_KEY}, put from the bytes the
+   * registry encoded once rather than encoding the string again for every call.
+   */
+  private static final Metadata.Key<byte[]> RAW_MESSAGE_ACCEPT_ENCODING_KEY =
+      InternalMetadata.keyOf(GrpcUtil.MESSAGE_ACCEPT_ENCODING,
+          new InternalMetadata.TrustedAsciiMarshaller<byte[]>() {
+            @Override
+            public byte[] toAsciiString(byte[] value) {
+              return value;
+            }
+
+            @Override
+            public byte[] parseAsciiString(byte[] serialized) {
+              return serialized;
+            }
+          });
+
   private final MethodDescriptor<ReqT, RespT> method;
   private final Executor callExecutor;
   private final Context context;
@@ -149,9 +170,10 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT>
     }
 
     headers.discardAll(MESSAGE_ACCEPT_ENCODING_KEY);
-    String advertisedEncodings = decompressorRegistry.getRawAdvertisedMessageEncodings();
-    if (!advertisedEncodings.isEmpty()) {
-      headers.put(MESSAGE_ACCEPT_ENCODING_KEY, advertisedEncodings);
+    byte[] advertisedEncodings =
+        InternalDecompressorRegistry.getRawAdvertisedMessageEncodings(decompressorRegistry);
+    if (advertisedEncodings.length != 0) {
+      headers.put(RAW_MESSAGE_ACCEPT_ENCODING_KEY, advertisedEncodings);
     }
     statsTraceCtx.propagateToHeaders(headers);
   }
@@ -230,6 +252,10 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT>
       stream.setAuthority(callOptions.getAuthority());
     }
     stream.setCompressor(compressor);
+    CompressionPolicy compressionPolicy = callOptions.getCompressionPolicy();
+    if (compressionPolicy != null && compressor != Codec.Identity.NONE) {
+      stream.setCompressionDecider(compressionPolicy.newDecider(method.getFullMethodName()));
+    }
     stream.start(new ClientStreamListenerImpl(observer));
 
     // Delay any sources of cancellation after start(), because most of the transports are broken if
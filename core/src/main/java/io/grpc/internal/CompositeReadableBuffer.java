@@ -167,6 +167,30 @@ public class CompositeReadableBuffer extends AbstractReadableBuffer {
     return newBuffer;
   }
 
+  @Override
+  public boolean byteBufferSupported() {
+    for (ReadableBuffer buffer : buffers) {
+      if (!buffer.byteBufferSupported()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns a view of the first buffer that still has readable bytes, so that consumers can walk
+   * through the composite one component at a time without copying.
+   */
+  @Override
+  public ByteBuffer getByteBuffer() {
+    for (ReadableBuffer buffer : buffers) {
+      if (buffer.readableBytes() > 0) {
+        return buffer.getByteBuffer();
+      }
+    }
+    return null;
+  }
+
   @Override
   public void close() {
     while (!buffers.isEmpty()) {
@@ -63,7 +63,6 @@ import javax.annotation.concurrent.GuardedBy;
  * streams are transferred to the given transport, thus this transport won't own any stream.
  */
 class DelayedClientTransport implements ManagedClientTransport {
-
   private final LogId lodId = LogId.allocate(getClass().getName());
 
   private final Object lock = new Object();
@@ -407,10 +406,24 @@ class DelayedClientTransport implements ManagedClientTransport {
       Subchannel subchannel = pickResult.getSubchannel();
       if (subchannel != null) {
         realTransport = ((SubchannelImpl) subchannel).obtainActiveTransport();
+        if (realTransport == null && pickResult.getCallTracker() != null) {
+          // The stream stays pending and will be picked again.
+          pickResult.getCallTracker().callNotStarted();
+        }
       } else {
         realTransport = null;
       }
       if (realTransport != null) {
+        LoadBalancer2.CallTracker callTracker = pickResult.getCallTracker();
+        if (!stream.setCallTracker(callTracker)) {
+          // The stream was cancelled after it was copied from pendingStreams, so the RPC will
+          // never start on the picked Subchannel.
+          if (callTracker != null) {
+            callTracker.callEnded(Status.CANCELLED);
+          }
+          toRemove.add(stream);
+          continue;
+        }
         Executor executor = streamCreationExecutor;
         // createRealStream may be expensive. It will start real streams on the transport. If
         // there are pending requests, they will be serialized too, which may be expensive. Since
@@ -476,6 +489,13 @@ class DelayedClientTransport implements ManagedClientTransport {
     private final CallOptions callOptions;
     private final Context context;
     private final StatsTraceContext statsTraceCtx;
+    // Set when a picker assigns the stream, before the real stream is created
+    @GuardedBy("this")
+    private LoadBalancer2.CallTracker callTracker;
+    // Set once the listener is closed, after which no tracker may be assigned
+    @GuardedBy("this")
+    private boolean closed;
+    private volatile boolean realStreamCreated;
 
     private PendingStream(MethodDescriptor<?, ?> method, Metadata headers,
         CallOptions callOptions, StatsTraceContext statsTraceCtx) {
@@ -486,6 +506,19 @@ class DelayedClientTransport implements ManagedClientTransport {
       this.statsTraceCtx = statsTraceCtx;
     }
 
+    /**
+     * Sets the tracker to notify when the stream closes, unless it has already closed.
+     *
+     * @return {@code false} if the stream has already closed and the tracker was not set
+     */
+    private synchronized boolean setCallTracker(@Nullable LoadBalancer2.CallTracker tracker) {
+      if (closed) {
+        return false;
+      }
+      callTracker = tracker;
+      return true;
+    }
+
     private void createRealStream(ClientTransport transport) {
       ClientStream realStream;
       Context origContext = context.attach();
@@ -494,9 +527,43 @@ class DelayedClientTransport implements ManagedClientTransport {
       } finally {
         context.detach(origContext);
       }
+      realStreamCreated = true;
       setStream(realStream);
     }
 
+    @Override
+    public void start(final ClientStreamListener listener) {
+      boolean untracked;
+      synchronized (this) {
+        untracked = realStreamCreated && callTracker == null;
+      }
+      if (untracked) {
+        // Already assigned without a tracker; nothing to observe.
+        super.start(listener);
+        return;
+      }
+      super.start(new ForwardingClientStreamListener() {
+        @Override
+        protected ClientStreamListener delegate() {
+          return listener;
+        }
+
+        @Override
+        public void closed(Status status, Metadata trailers) {
+          LoadBalancer2.CallTracker savedCallTracker;
+          synchronized (PendingStream.this) {
+            closed = true;
+            savedCallTracker = callTracker;
+          }
+          if (savedCallTracker != null) {
+            savedCallTracker.callEnded(status);
+          }
+          listener.closed(status, trailers);
+        }
+
+      });
+    }
+
     @Override
     public void cancel(Status reason) {
       super.cancel(reason);
@@ -36,6 +36,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.Decompressor;
 import io.grpc.Metadata;
@@ -45,6 +46,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -285,6 +287,16 @@ class DelayedStream implements ClientStream {
     });
   }
 
+  @Override
+  public void setCompressionDecider(@Nullable final CompressionPolicy.Decider decider) {
+    delayOrExecute(new Runnable() {
+      @Override
+      public void run() {
+        realStream.setCompressionDecider(decider);
+      }
+    });
+  }
+
   @Override
   public void setDecompressor(Decompressor decompressor) {
     checkNotNull(decompressor, "decompressor");
@@ -45,7 +45,6 @@ import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.internal.SharedResourceHolder.Resource;
 
-import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -401,36 +400,22 @@ public final class GrpcUtil {
         }
       };
 
+  private static final long TIMER_TICK_MILLIS = 10;
+  /** With 10 ms ticks, timers due within about five seconds are placed without rounds. */
+  private static final int TIMER_TICKS_PER_WHEEL = 512;
+
   /**
-   * Shared single-threaded executor for managing channel timers.
+   * Shared single-threaded executor for managing channel timers. Timers may run up to one tick, 10
+   * milliseconds, late.
    */
   public static final Resource<ScheduledExecutorService> TIMER_SERVICE =
       new Resource<ScheduledExecutorService>() {
         @Override
         public ScheduledExecutorService create() {
-          // We don't use newSingleThreadScheduledExecutor because it doesn't return a
-          // ScheduledThreadPoolExecutor.
-          ScheduledExecutorService service = Executors.newScheduledThreadPool(
-              1,
-              getThreadFactory("grpc-timer-%d", true));
-
-          // If there are long timeouts that are cancelled, they will not actually be removed from
-          // the executors queue.  This forces immediate removal upon cancellation to avoid a
-          // memory leak.  Reflection is used because we cannot use methods added in Java 1.7.  If
-          // the method does not exist, we give up.  Note that the method is not present in 1.6, but
-          // _is_ present in the android standard library.
-          try {
-            Method method = service.getClass().getMethod("setRemoveOnCancelPolicy", boolean.class);
-            method.invoke(service, true);
-          } catch (NoSuchMethodException e) {
-            // no op
-          } catch (RuntimeException e) {
-            throw e;
-          } catch (Exception e) {
-            throw new RuntimeException(e);
-          }
-
-          return service;
+          // A timing wheel keeps scheduling and cancelling cheap with many calls in flight, at the
+          // cost of running timers up to one tick late.
+          return new HashedWheelTimer(getThreadFactory("grpc-timer-%d", true),
+              TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS, TIMER_TICKS_PER_WHEEL);
         }
 
         @Override
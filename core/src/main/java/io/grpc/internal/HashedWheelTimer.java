@@ -0,0 +1,468 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ScheduledExecutorService} backed by a hashed timing wheel, for large numbers of timers
+ * that are mostly cancelled before they expire, such as call deadlines.
+ *
+ * <p>Scheduling and cancelling are O(1). New and cancelled tasks are handed to the timer thread
+ * through lock-free queues, and the timer thread keeps pending tasks in a wheel of buckets that
+ * each cover one tick. Tasks due within the same tick run together when the tick ends. So a task
+ * never runs before its delay has elapsed, but may run up to one tick late. The timer thread sleeps
+ * until the first tick that has a task due instead of waking every tick, and sleeps indefinitely
+ * while no task is pending. Tasks without a delay, such as those passed
+ * to {@link #execute}, skip the wheel and run as soon as the timer thread wakes up.
+ *
+ * <p>Tasks run on the timer thread, so they should be short. Unlike {@link
+ * java.util.concurrent.ScheduledThreadPoolExecutor}, shutting down cancels the tasks that have yet
+ * to run instead of running them.
+ */
+@ThreadSafe
+final class HashedWheelTimer extends AbstractExecutorService implements ScheduledExecutorService {
+  private static final long NOT_PARKED = Long.MIN_VALUE;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final long startNanos;
+  private final Queue<TimerTask<?>> scheduled = new ConcurrentLinkedQueue<TimerTask<?>>();
+  private final Queue<TimerTask<?>> immediate = new ConcurrentLinkedQueue<TimerTask<?>>();
+  private final Queue<TimerTask<?>> cancelled = new ConcurrentLinkedQueue<TimerTask<?>>();
+  private final CountDownLatch terminated = new CountDownLatch(1);
+  private final Thread worker;
+  private volatile boolean shutdown;
+  /**
+   * When the sleeping timer thread wakes up, or {@link #NOT_PARKED}. New tasks due earlier wake it.
+   */
+  private volatile long parkedUntilNanos = NOT_PARKED;
+
+  // Only accessed by the timer thread
+  /** The tick whose bucket is expired next. */
+  private long tick;
+  private int tasksInWheel;
+  @VisibleForTesting
+  long wakeups;
+
+  /**
+   * Creates a timer and starts its thread.
+   *
+   * @param tickDuration how often due tasks are run
+   * @param ticksPerWheel the number of buckets, rounded up to a power of two. Tasks due a whole
+   *        number of turns apart share a bucket.
+   */
+  HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit,
+      int ticksPerWheel) {
+    checkArgument(tickDuration > 0, "tickDuration must be positive");
+    checkArgument(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30, "ticksPerWheel out of range");
+    tickNanos = unit.toNanos(tickDuration);
+    int buckets = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+    wheel = new Bucket[Math.max(buckets, 1)];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Bucket();
+    }
+    mask = wheel.length - 1;
+    startNanos = System.nanoTime();
+    worker = threadFactory.newThread(new Worker());
+    worker.start();
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    checkNotNull(command, "command");
+    return enqueue(new TimerTask<Void>(command, null, triggerNanos(delay, unit), 0));
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    checkNotNull(callable, "callable");
+    return enqueue(new TimerTask<V>(callable, triggerNanos(delay, unit)));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(
+      Runnable command, long initialDelay, long period, TimeUnit unit) {
+    checkNotNull(command, "command");
+    checkArgument(period > 0, "period must be positive");
+    return enqueue(new TimerTask<Void>(
+        command, null, triggerNanos(initialDelay, unit), unit.toNanos(period)));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(
+      Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    checkNotNull(command, "command");
+    checkArgument(delay > 0, "delay must be positive");
+    return enqueue(new TimerTask<Void>(
+        command, null, triggerNanos(initialDelay, unit), -unit.toNanos(delay)));
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    schedule(command, 0, NANOSECONDS);
+  }
+
+  @Override
+  public void shutdown() {
+    shutdown = true;
+    LockSupport.unpark(worker);
+  }
+
+  /**
+   * Shuts down like {@link #shutdown}. Tasks that have yet to run are cancelled rather than
+   * returned.
+   */
+  @Override
+  public List<Runnable> shutdownNow() {
+    shutdown();
+    return Collections.emptyList();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return terminated.getCount() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+
+  private long elapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+
+  private long triggerNanos(long delay, TimeUnit unit) {
+    long now = elapsedNanos();
+    long delayNanos = Math.max(unit.toNanos(delay), 0);
+    // Saturate far-away triggers instead of overflowing
+    return delayNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + delayNanos;
+  }
+
+  private <V> TimerTask<V> enqueue(TimerTask<V> task) {
+    if (shutdown) {
+      throw new RejectedExecutionException("Timer has been shut down");
+    }
+    // A task that is already due would otherwise wait for the end of the current tick
+    boolean due = task.triggerNanos <= elapsedNanos();
+    Queue<TimerTask<?>> queue = due ? immediate : scheduled;
+    queue.add(task);
+    if (shutdown && queue.remove(task)) {
+      // The timer thread may be gone and would not cancel it
+      throw new RejectedExecutionException("Timer has been shut down");
+    }
+    if (due || task.triggerNanos < parkedUntilNanos) {
+      LockSupport.unpark(worker);
+    }
+    return task;
+  }
+
+  @VisibleForTesting
+  long tickNanos() {
+    return tickNanos;
+  }
+
+  private final class Worker implements Runnable {
+    @Override
+    public void run() {
+      try {
+        while (!shutdown) {
+          runImmediate();
+          removeCancelled();
+          transferScheduled();
+          if (tasksInWheel == 0) {
+            park(Long.MAX_VALUE);
+            // All buckets are empty, so the ticks spent sleeping need not be visited
+            tick = Math.max(tick, elapsedNanos() / tickNanos);
+            continue;
+          }
+          long now = elapsedNanos();
+          long dueTick = Math.max(nextDueTick(), tick);
+          // Nothing is due before dueTick, so the ticks until then need not be visited
+          tick = Math.max(tick, Math.min(dueTick, now / tickNanos));
+          if ((tick + 1) * tickNanos <= now) {
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+          } else {
+            park((dueTick + 1) * tickNanos);
+          }
+        }
+      } finally {
+        cancelAll();
+        terminated.countDown();
+      }
+    }
+
+    /**
+     * Sleeps until {@code deadlineNanos}, unless a task is enqueued or the timer is shut down.
+     */
+    private void park(long deadlineNanos) {
+      parkedUntilNanos = deadlineNanos;
+      // Checked after publishing the deadline, so a task enqueued meanwhile is either seen here or
+      // unparks this thread
+      if (scheduled.isEmpty() && immediate.isEmpty() && !shutdown) {
+        if (deadlineNanos == Long.MAX_VALUE) {
+          LockSupport.park(this);
+        } else {
+          long sleepNanos = deadlineNanos - elapsedNanos();
+          if (sleepNanos > 0) {
+            LockSupport.parkNanos(this, sleepNanos);
+          }
+        }
+        wakeups++;
+      }
+      parkedUntilNanos = NOT_PARKED;
+    }
+
+    /**
+     * Returns the earliest tick a task in the wheel is due in. Cancelled tasks may make it early.
+     */
+    private long nextDueTick() {
+      long dueTick = Long.MAX_VALUE;
+      for (Bucket bucket : wheel) {
+        dueTick = Math.min(dueTick, bucket.minDueTick);
+      }
+      return dueTick;
+    }
+
+    private void runImmediate() {
+      TimerTask<?> task;
+      while ((task = immediate.poll()) != null) {
+        if (!task.isCancelled()) {
+          task.run();
+        }
+      }
+    }
+
+    private void removeCancelled() {
+      TimerTask<?> task;
+      while ((task = cancelled.poll()) != null) {
+        if (task.bucket != null) {
+          task.bucket.remove(task);
+          tasksInWheel--;
+        }
+      }
+    }
+
+    private void transferScheduled() {
+      TimerTask<?> task;
+      while ((task = scheduled.poll()) != null) {
+        if (!task.isCancelled()) {
+          place(task);
+        }
+      }
+    }
+
+    private void expire(Bucket bucket) {
+      // Recomputed from the tasks that stay, and from periodic tasks as they are placed again
+      bucket.minDueTick = Long.MAX_VALUE;
+      TimerTask<?> task = bucket.head;
+      while (task != null) {
+        TimerTask<?> next = task.next;
+        if (task.dueTick <= tick || task.isCancelled()) {
+          bucket.remove(task);
+          tasksInWheel--;
+          if (!task.isCancelled()) {
+            task.run();
+          }
+        } else {
+          bucket.minDueTick = Math.min(bucket.minDueTick, task.dueTick);
+        }
+        task = next;
+      }
+    }
+
+    private void cancelAll() {
+      for (Bucket bucket : wheel) {
+        while (bucket.head != null) {
+          TimerTask<?> task = bucket.head;
+          bucket.remove(task);
+          task.cancel(false);
+        }
+      }
+      tasksInWheel = 0;
+      TimerTask<?> task;
+      while ((task = scheduled.poll()) != null) {
+        task.cancel(false);
+      }
+      while ((task = immediate.poll()) != null) {
+        task.cancel(false);
+      }
+      cancelled.clear();
+    }
+  }
+
+  /**
+   * Adds a task to the bucket of the tick it is due in. Only called by the timer thread.
+   */
+  private void place(TimerTask<?> task) {
+    task.dueTick = Math.max(task.triggerNanos / tickNanos, tick);
+    wheel[(int) (task.dueTick & mask)].add(task);
+    tasksInWheel++;
+  }
+
+  /**
+   * Doubly linked list of the tasks due in a tick. Only accessed by the timer thread.
+   */
+  private static final class Bucket {
+    TimerTask<?> head;
+    TimerTask<?> tail;
+    /** No later than the due tick of any task in the bucket. */
+    long minDueTick = Long.MAX_VALUE;
+
+    void add(TimerTask<?> task) {
+      minDueTick = Math.min(minDueTick, task.dueTick);
+      task.bucket = this;
+      task.prev = tail;
+      if (tail == null) {
+        head = task;
+      } else {
+        tail.next = task;
+      }
+      tail = task;
+    }
+
+    void remove(TimerTask<?> task) {
+      if (task.prev == null) {
+        head = task.next;
+      } else {
+        task.prev.next = task.next;
+      }
+      if (task.next == null) {
+        tail = task.prev;
+      } else {
+        task.next.prev = task.prev;
+      }
+      task.prev = null;
+      task.next = null;
+      task.bucket = null;
+      if (head == null) {
+        minDueTick = Long.MAX_VALUE;
+      }
+    }
+  }
+
+  private final class TimerTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+    /**
+     * Positive for a fixed rate, negative for a fixed delay, and zero if the task runs once.
+     */
+    private final long periodNanos;
+    private volatile long triggerNanos;
+
+    // Only accessed by the timer thread
+    long dueTick;
+    Bucket bucket;
+    TimerTask<?> prev;
+    TimerTask<?> next;
+
+    TimerTask(Runnable runnable, V result, long triggerNanos, long periodNanos) {
+      super(runnable, result);
+      this.triggerNanos = triggerNanos;
+      this.periodNanos = periodNanos;
+    }
+
+    TimerTask(Callable<V> callable, long triggerNanos) {
+      super(callable);
+      this.triggerNanos = triggerNanos;
+      this.periodNanos = 0;
+    }
+
+    @Override
+    public boolean isPeriodic() {
+      return periodNanos != 0;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(triggerNanos - elapsedNanos(), NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      if (other == this) {
+        return 0;
+      }
+      long diff = getDelay(NANOSECONDS) - other.getDelay(NANOSECONDS);
+      return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled && !HashedWheelTimer.this.isTerminated()) {
+        HashedWheelTimer.this.cancelled.add(this);
+      }
+      return cancelled;
+    }
+
+    /** Only called by the timer thread. */
+    @Override
+    public void run() {
+      if (!isPeriodic()) {
+        super.run();
+      } else if (runAndReset() && !shutdown) {
+        triggerNanos = periodNanos > 0 ? triggerNanos + periodNanos : elapsedNanos() - periodNanos;
+        place(this);
+      }
+    }
+  }
+}
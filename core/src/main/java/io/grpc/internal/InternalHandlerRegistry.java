@@ -31,15 +31,20 @@
 
 package io.grpc.internal;
 
+import com.google.common.base.Charsets;
+
+import io.grpc.Bulkhead;
 import io.grpc.ServerMethodDefinition;
 import io.grpc.ServerServiceDefinition;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -47,11 +52,36 @@ final class InternalHandlerRegistry {
 
   private final List<ServerServiceDefinition> services;
   private final Map<String, ServerMethodDefinition<?, ?>> methods;
+  private final Set<String> directExecutorMethods;
+  private final Map<String, Bulkhead> bulkheads;
+  // Open-addressed table keyed by the UTF-8 bytes of each full method name, letting transports
+  // resolve a method from the request path without decoding it into a String first.
+  private final int[] nameHashes;
+  private final byte[][] names;
+  private final ServerMethodDefinition<?, ?>[] methodsByName;
 
   private InternalHandlerRegistry(
-      List<ServerServiceDefinition> services, Map<String, ServerMethodDefinition<?, ?>> methods) {
+      List<ServerServiceDefinition> services, Map<String, ServerMethodDefinition<?, ?>> methods,
+      Set<String> directExecutorMethods, Map<String, Bulkhead> bulkheads) {
     this.services = services;
     this.methods = methods;
+    this.directExecutorMethods = directExecutorMethods;
+    this.bulkheads = bulkheads;
+    int capacity = Integer.highestOneBit(Math.max(methods.size(), 1)) << 2;
+    nameHashes = new int[capacity];
+    names = new byte[capacity][];
+    methodsByName = new ServerMethodDefinition<?, ?>[capacity];
+    for (Map.Entry<String, ServerMethodDefinition<?, ?>> entry : methods.entrySet()) {
+      byte[] name = entry.getKey().getBytes(Charsets.UTF_8);
+      int hash = hash(name, 0, name.length);
+      int slot = hash & (capacity - 1);
+      while (names[slot] != null) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      nameHashes[slot] = hash;
+      names[slot] = name;
+      methodsByName[slot] = entry.getValue();
+    }
   }
 
   /**
@@ -66,28 +96,125 @@ final class InternalHandlerRegistry {
     return methods.get(methodName);
   }
 
+  /**
+   * Looks up a method by the UTF-8 encoding of its full name, as found in {@code bytes} between
+   * {@code offset} and {@code offset + length}. The full name of the returned method's descriptor
+   * can be used in place of decoding the bytes.
+   */
+  @Nullable
+  ServerMethodDefinition<?, ?> lookupMethod(byte[] bytes, int offset, int length) {
+    int hash = hash(bytes, offset, length);
+    int mask = names.length - 1;
+    for (int slot = hash & mask; names[slot] != null; slot = (slot + 1) & mask) {
+      if (nameHashes[slot] == hash && equals(names[slot], bytes, offset, length)) {
+        return methodsByName[slot];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns {@code true} if calls to the given method should run directly in the transport
+   * thread instead of on the server's executor.
+   */
+  boolean isDirectExecutor(String methodName) {
+    return !directExecutorMethods.isEmpty() && directExecutorMethods.contains(methodName);
+  }
+
+  /**
+   * Returns the bulkhead calls to the given method should run in, or {@code null} if they should
+   * run on the server's executor.
+   */
+  @Nullable
+  Bulkhead getBulkhead(String methodName) {
+    return bulkheads.isEmpty() ? null : bulkheads.get(methodName);
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    // Four bytes per step keeps the multiplications independent of each other
+    int hash = 1;
+    int end = offset + length;
+    int i = offset;
+    for (; i + 3 < end; i += 4) {
+      hash = 31 * 31 * 31 * 31 * hash + 31 * 31 * 31 * bytes[i] + 31 * 31 * bytes[i + 1]
+          + 31 * bytes[i + 2] + bytes[i + 3];
+    }
+    for (; i < end; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    // Spread the high bits, as the table index only uses the low ones.
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean equals(byte[] name, byte[] bytes, int offset, int length) {
+    if (name.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (name[i] != bytes[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   static class Builder {
 
     // Store per-service first, to make sure services are added/replaced atomically.
     private final HashMap<String, ServerServiceDefinition> services =
         new LinkedHashMap<String, ServerServiceDefinition>();
 
+    private final Set<String> directExecutorNames = new HashSet<String>();
+    private final Map<String, Bulkhead> bulkheadNames = new HashMap<String, Bulkhead>();
+
     Builder addService(ServerServiceDefinition service) {
       services.put(service.getServiceDescriptor().getName(), service);
       return this;
     }
 
+    /**
+     * Marks a service, by its fully qualified name, or a single method, by its full name, to run
+     * directly in the transport thread.
+     */
+    Builder directExecutor(String serviceOrMethodName) {
+      directExecutorNames.add(serviceOrMethodName);
+      return this;
+    }
+
+    /**
+     * Routes the calls of a service, by its fully qualified name, or a single method, by its full
+     * name, to a bulkhead. A bulkhead given for a method takes precedence over one given for its
+     * service.
+     */
+    Builder bulkhead(String serviceOrMethodName, Bulkhead bulkhead) {
+      bulkheadNames.put(serviceOrMethodName, bulkhead);
+      return this;
+    }
+
     InternalHandlerRegistry build() {
       Map<String, ServerMethodDefinition<?, ?>> map =
           new HashMap<String, ServerMethodDefinition<?, ?>>();
+      // Method names are kept as-is, so they also apply to methods of the fallback registry
+      Set<String> directExecutorMethods = new HashSet<String>(directExecutorNames);
+      Map<String, Bulkhead> bulkheads = new HashMap<String, Bulkhead>(bulkheadNames);
       for (ServerServiceDefinition service : services.values()) {
+        String serviceName = service.getServiceDescriptor().getName();
+        boolean directExecutor = directExecutorNames.contains(serviceName);
+        Bulkhead serviceBulkhead = bulkheadNames.get(serviceName);
         for (ServerMethodDefinition<?, ?> method : service.getMethods()) {
-          map.put(method.getMethodDescriptor().getFullMethodName(), method);
+          String fullMethodName = method.getMethodDescriptor().getFullMethodName();
+          map.put(fullMethodName, method);
+          if (directExecutor) {
+            directExecutorMethods.add(fullMethodName);
+          }
+          if (serviceBulkhead != null && !bulkheadNames.containsKey(fullMethodName)) {
+            bulkheads.put(fullMethodName, serviceBulkhead);
+          }
         }
       }
       return new InternalHandlerRegistry(
           Collections.unmodifiableList(new ArrayList<ServerServiceDefinition>(services.values())),
-          Collections.unmodifiableMap(map));
+          Collections.unmodifiableMap(map), directExecutorMethods, bulkheads);
     }
   }
 }
@@ -41,65 +41,94 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.concurrent.GuardedBy;
+
 /**
  * Manages keepalive pings.
+ *
+ * <p>Receiving data is recorded with a single volatile write, so {@link #onDataReceived} takes no
+ * lock and does not reschedule anything. A single timer task checks how long the connection has
+ * been quiet when it runs: it sends a ping once no data has arrived for the keepalive delay, and
+ * shuts the connection down if nothing arrives within the keepalive timeout after the ping. Any
+ * data received after the ping, including its acknowledgement, shows the connection is alive.
  */
 public class KeepAliveManager {
   private static final SystemTicker SYSTEM_TICKER = new SystemTicker();
   private static final long MIN_KEEPALIVE_DELAY_NANOS = TimeUnit.MINUTES.toNanos(1);
 
   private final ScheduledExecutorService scheduler;
-  private final ManagedClientTransport transport;
+  private final KeepAlivePinger keepAlivePinger;
   private final Ticker ticker;
+  private final long keepAliveDelayInNanos;
+  private final long keepAliveTimeoutInNanos;
+  /** When data was last received, per {@link #ticker}. */
+  private volatile long lastDataReceivedTime;
+  @GuardedBy("this")
   private State state = State.IDLE;
-  private long nextKeepaliveTime;
-  private ScheduledFuture<?> shutdownFuture;
-  private ScheduledFuture<?> pingFuture;
-  private final Runnable shutdown = new Runnable() {
-    @Override
-    public void run() {
-      boolean shouldShutdown = false;
-      synchronized (KeepAliveManager.this) { 
-        if (state != State.DISCONNECTED) {
-          // We haven't received a ping response within the timeout. The connection is likely gone
-          // already. Shutdown the transport and fail all existing rpcs.
-          state = State.DISCONNECTED;
-          shouldShutdown = true;
-        }
-      }
-      if (shouldShutdown) {
-        transport.shutdownNow(Status.UNAVAILABLE.withDescription(
-            "Keepalive failed. The connection is likely gone"));
-      }
-    }
-  };
-  private final Runnable sendPing = new Runnable() {
+  @GuardedBy("this")
+  private long pingSentTime;
+  /** The pending {@link #check}, or {@code null} if none is scheduled. */
+  @GuardedBy("this")
+  private ScheduledFuture<?> checkFuture;
+  private final Runnable check = new Runnable() {
     @Override
     public void run() {
       boolean shouldSendPing = false;
-      synchronized (KeepAliveManager.this) { 
-        if (state == State.PING_SCHEDULED) {
-          shouldSendPing = true;
-          state = State.PING_SENT;
-          // Schedule a shutdown. It fires if we don't receive the ping response within the timeout.
-          shutdownFuture = scheduler.schedule(shutdown, keepAliveTimeoutInNanos,
-              TimeUnit.NANOSECONDS);
-        } else if (state == State.PING_DELAYED) {
-          // We have received some data. Reschedule the ping with the new time.
-          pingFuture = scheduler.schedule(sendPing, nextKeepaliveTime - ticker.read(),
-              TimeUnit.NANOSECONDS);
-          state = State.PING_SCHEDULED;
+      boolean pingTimedOut = false;
+      synchronized (KeepAliveManager.this) {
+        checkFuture = null;
+        long now = ticker.read();
+        long lastDataReceived = lastDataReceivedTime;
+        switch (state) {
+          case PING_SCHEDULED:
+            long untilPing = lastDataReceived + keepAliveDelayInNanos - now;
+            if (untilPing > 0) {
+              // We have received some data since the check was scheduled. Check again once the
+              // connection has been quiet for long enough.
+              scheduleCheck(untilPing);
+            } else {
+              shouldSendPing = true;
+              state = State.PING_SENT;
+              pingSentTime = now;
+              // Check for a response after the timeout, or sooner if a response would make the next
+              // ping due first.
+              scheduleCheck(Math.min(keepAliveDelayInNanos, keepAliveTimeoutInNanos));
+            }
+            break;
+          case PING_SENT:
+          case IDLE_AND_PING_SENT:
+            if (lastDataReceived - pingSentTime > 0) {
+              // We have received data after the ping so the connection is alive.
+              if (state == State.PING_SENT) {
+                state = State.PING_SCHEDULED;
+                scheduleCheck(lastDataReceived + keepAliveDelayInNanos - now);
+              } else {
+                // Transport went idle after we had sent out the ping. We don't need to schedule a
+                // new ping.
+                state = State.IDLE;
+              }
+            } else if (pingSentTime + keepAliveTimeoutInNanos - now > 0) {
+              scheduleCheck(pingSentTime + keepAliveTimeoutInNanos - now);
+            } else {
+              // We haven't received a ping response within the timeout. The connection is likely
+              // gone already.
+              pingTimedOut = true;
+              state = State.DISCONNECTED;
+            }
+            break;
+          default:
+            // The transport went idle or shut down. Stop checking.
+            break;
         }
       }
       if (shouldSendPing) {
-        // Send the ping.
-        transport.ping(pingCallback, MoreExecutors.directExecutor());
+        keepAlivePinger.ping();
+      }
+      if (pingTimedOut) {
+        keepAlivePinger.onPingTimeout();
       }
     }
   };
-  private final KeepAlivePingCallback pingCallback = new KeepAlivePingCallback();
-  private long keepAliveDelayInNanos;
-  private long keepAliveTimeoutInNanos;
 
   private enum State {
     /*
@@ -107,14 +136,9 @@ public class KeepAliveManager {
      */
     IDLE,
     /*
-     * We have scheduled a ping to be sent in the future. We may decide to delay it if we receive
-     * some data.
+     * We will send a ping once no data has been received for the keepalive delay.
      */
     PING_SCHEDULED,
-    /*
-     * We need to delay the scheduled keepalive ping.
-     */
-    PING_DELAYED,
     /*
      * The ping has been sent out. Waiting for a ping response.
      */
@@ -130,41 +154,41 @@ public class KeepAliveManager {
   }
 
   /**
-   * Creates a KeepAliverManager.
+   * Creates a KeepAliverManager for a client transport.
    */
   public KeepAliveManager(ManagedClientTransport transport, ScheduledExecutorService scheduler,
                           long keepAliveDelayInNanos, long keepAliveTimeoutInNanos) {
-    this.transport = Preconditions.checkNotNull(transport, "transport");
-    this.scheduler = Preconditions.checkNotNull(scheduler, "scheduler");
-    this.ticker = SYSTEM_TICKER;
+    this(new ClientKeepAlivePinger(transport), scheduler, keepAliveDelayInNanos,
+        keepAliveTimeoutInNanos);
+  }
+
+  /**
+   * Creates a KeepAliverManager.
+   */
+  public KeepAliveManager(KeepAlivePinger keepAlivePinger, ScheduledExecutorService scheduler,
+                          long keepAliveDelayInNanos, long keepAliveTimeoutInNanos) {
     // Set a minimum cap on keepalive dealy.
-    this.keepAliveDelayInNanos = Math.max(MIN_KEEPALIVE_DELAY_NANOS, keepAliveDelayInNanos);
-    this.keepAliveTimeoutInNanos = keepAliveTimeoutInNanos;
-    nextKeepaliveTime = ticker.read() + keepAliveDelayInNanos;
+    this(keepAlivePinger, scheduler, SYSTEM_TICKER,
+        Math.max(MIN_KEEPALIVE_DELAY_NANOS, keepAliveDelayInNanos), keepAliveTimeoutInNanos);
   }
 
   @VisibleForTesting
-  KeepAliveManager(ManagedClientTransport transport, ScheduledExecutorService scheduler,
+  KeepAliveManager(KeepAlivePinger keepAlivePinger, ScheduledExecutorService scheduler,
                    Ticker ticker, long keepAliveDelayInNanos, long keepAliveTimeoutInNanos) {
-    this.transport = Preconditions.checkNotNull(transport, "transport");
+    this.keepAlivePinger = Preconditions.checkNotNull(keepAlivePinger, "keepAlivePinger");
     this.scheduler = Preconditions.checkNotNull(scheduler, "scheduler");
     this.ticker = Preconditions.checkNotNull(ticker, "ticker");
     this.keepAliveDelayInNanos = keepAliveDelayInNanos;
     this.keepAliveTimeoutInNanos = keepAliveTimeoutInNanos;
-    nextKeepaliveTime = ticker.read() + keepAliveDelayInNanos;
+    lastDataReceivedTime = ticker.read();
   }
 
   /**
-   * Transport has received some data so that we can delay sending keepalives.
+   * Transport has received some data so that we can delay sending keepalives. Called for every
+   * read, so it only records the time.
    */
-  public synchronized void onDataReceived() {
-    nextKeepaliveTime = ticker.read() + keepAliveDelayInNanos;
-    // We do not cancel the ping future here. This avoids constantly scheduling and cancellation in
-    // a busy transport. Instead, we update the status here and reschedule later. So we actually
-    // keep one sendPing task always in flight when there're active rpcs.
-    if (state == State.PING_SCHEDULED) {
-      state = State.PING_DELAYED;
-    }
+  public void onDataReceived() {
+    lastDataReceivedTime = ticker.read();
   }
 
   /**
@@ -172,11 +196,15 @@ public class KeepAliveManager {
    */
   public synchronized void onTransportActive() {
     if (state == State.IDLE) {
-      // When the transport goes active, we do not reset the nextKeepaliveTime. This allows us to
-      // quickly check whether the conneciton is still working.
+      // When the transport goes active, we do not reset the last time data was received. This
+      // allows us to quickly check whether the conneciton is still working.
       state = State.PING_SCHEDULED;
-      pingFuture = scheduler.schedule(sendPing, nextKeepaliveTime - ticker.read(),
-          TimeUnit.NANOSECONDS);
+      if (checkFuture == null) {
+        scheduleCheck(lastDataReceivedTime + keepAliveDelayInNanos - ticker.read());
+      }
+    } else if (state == State.IDLE_AND_PING_SENT) {
+      // The pending check handles the response, then schedules the next ping.
+      state = State.PING_SENT;
     }
   }
 
@@ -184,57 +212,82 @@ public class KeepAliveManager {
    * Transport has finished all streams.
    */
   public synchronized void onTransportIdle() {
-    if (state == State.PING_SCHEDULED || state == State.PING_DELAYED) {
+    // The pending check, if any, notices the new state when it runs and stops.
+    if (state == State.PING_SCHEDULED) {
       state = State.IDLE;
     }
     if (state == State.PING_SENT) {
       state = State.IDLE_AND_PING_SENT;
     }
   }
-  
+
   /**
    * Transport is shutting down. We no longer need to do keepalives.
    */
   public synchronized void onTransportShutdown() {
     if (state != State.DISCONNECTED) {
       state = State.DISCONNECTED;
-      if (shutdownFuture != null) {
-        shutdownFuture.cancel(false);
-      }
-      if (pingFuture != null) {
-        pingFuture.cancel(false);
+      if (checkFuture != null) {
+        checkFuture.cancel(false);
+        checkFuture = null;
       }
     }
-  }  
+  }
+
+  @GuardedBy("this")
+  private void scheduleCheck(long delayNanos) {
+    checkFuture = scheduler.schedule(check, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Sends keepalive pings on behalf of a {@link KeepAliveManager}.
+   */
+  public interface KeepAlivePinger {
+    /**
+     * Sends a ping. The transport must call {@link KeepAliveManager#onDataReceived} when the
+     * response arrives, as for any other data.
+     */
+    void ping();
+
+    /**
+     * Called when no data has been received within the keepalive timeout after a ping. The
+     * connection is likely gone and should be shut down.
+     */
+    void onPingTimeout();
+  }
+
+  /**
+   * Pings through {@link ClientTransport#ping} and shuts the transport down when a ping fails or
+   * times out.
+   */
+  public static final class ClientKeepAlivePinger implements KeepAlivePinger {
+    private final ManagedClientTransport transport;
 
-  private class KeepAlivePingCallback implements ClientTransport.PingCallback {
+    public ClientKeepAlivePinger(ManagedClientTransport transport) {
+      this.transport = Preconditions.checkNotNull(transport, "transport");
+    }
 
     @Override
-    public void onSuccess(long roundTripTimeNanos) {
-      synchronized (KeepAliveManager.this) {
-        shutdownFuture.cancel(false);
-        nextKeepaliveTime = ticker.read() + keepAliveDelayInNanos;
-        if (state == State.PING_SENT) {
-          // We have received the ping response so there's no need to shutdown the transport.
-          // Schedule a new keepalive ping.
-          pingFuture = scheduler.schedule(sendPing, keepAliveDelayInNanos, TimeUnit.NANOSECONDS);
-          state = State.PING_SCHEDULED;
+    public void ping() {
+      transport.ping(new ClientTransport.PingCallback() {
+        @Override
+        public void onSuccess(long roundTripTimeNanos) {
+          // The response was received as data, which has already delayed the next ping.
         }
-        if (state == State.IDLE_AND_PING_SENT) {
-          // Transport went idle after we had sent out the ping. We don't need to schedule a new
-          // ping.
-          state = State.IDLE;
+
+        @Override
+        public void onFailure(Throwable cause) {
+          // Keepalive ping has failed. Shutdown the transport now.
+          transport.shutdownNow(Status.UNAVAILABLE.withDescription(
+              "Keepalive failed. The connection is likely gone"));
         }
-      }
+      }, MoreExecutors.directExecutor());
     }
 
     @Override
-    public void onFailure(Throwable cause) {
-      // Keepalive ping has failed. Shutdown the transport now.
-      synchronized (KeepAliveManager.this) {
-        shutdownFuture.cancel(false);
-      }
-      shutdown.run();
+    public void onPingTimeout() {
+      transport.shutdownNow(Status.UNAVAILABLE.withDescription(
+          "Keepalive failed. The connection is likely gone"));
     }
   }
 
@@ -255,4 +308,3 @@ public class KeepAliveManager {
   }
 
 }
-
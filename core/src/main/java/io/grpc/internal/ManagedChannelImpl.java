@@ -37,6 +37,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.census.CensusContextFactory;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 
@@ -50,6 +51,7 @@ import io.grpc.CompressorRegistry;
 import io.grpc.DecompressorRegistry;
 import io.grpc.EquivalentAddressGroup;
 import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancer2;
 import io.grpc.ManagedChannel;
 import io.grpc.MethodDescriptor;
 import io.grpc.NameResolver;
@@ -139,6 +141,8 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
   private final Supplier<Stopwatch> stopwatchSupplier;
   /** The timout before entering idle mode, less {@link #IDLE_GRACE_PERIOD_MILLIS}. */
   private final long idleTimeoutMillis;
+  private final int maxConnectionsPerAddress;
+  private final int streamsPerConnection;
   private final CensusContextFactory censusFactory;
 
   /**
@@ -378,8 +382,9 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
       DecompressorRegistry decompressorRegistry, CompressorRegistry compressorRegistry,
       SharedResourceHolder.Resource<ScheduledExecutorService> timerService,
       Supplier<Stopwatch> stopwatchSupplier, long idleTimeoutMillis,
-      @Nullable Executor executor, @Nullable String userAgent,
-      List<ClientInterceptor> interceptors, CensusContextFactory censusFactory) {
+      int maxConnectionsPerAddress, int streamsPerConnection, @Nullable Executor executor,
+      @Nullable String userAgent, List<ClientInterceptor> interceptors,
+      CensusContextFactory censusFactory) {
     this.target = checkNotNull(target, "target");
     this.nameResolverFactory = checkNotNull(nameResolverFactory, "nameResolverFactory");
     this.nameResolverParams = checkNotNull(nameResolverParams, "nameResolverParams");
@@ -408,6 +413,8 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
           "invalid idleTimeoutMillis %s", idleTimeoutMillis);
       this.idleTimeoutMillis = idleTimeoutMillis - IDLE_GRACE_PERIOD_MILLIS;
     }
+    this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    this.streamsPerConnection = streamsPerConnection;
     this.decompressorRegistry = decompressorRegistry;
     this.compressorRegistry = compressorRegistry;
     this.userAgent = userAgent;
@@ -682,7 +689,8 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
         if (ts == null) {
           ts = new TransportSet(addressGroup, authority(), userAgent, getCurrentLoadBalancer(),
               backoffPolicyProvider, transportFactory, scheduledExecutor, stopwatchSupplier,
-              executor, new TransportSet.Callback() {
+              executor, maxConnectionsPerAddress, streamsPerConnection,
+              new TransportSet.Callback() {
                 @Override
                 public void onTerminated(TransportSet ts) {
                   synchronized (lock) {
@@ -728,6 +736,13 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
           censusFactory, transport, executor, scheduledExecutor, authority(), stopwatchSupplier);
     }
 
+    @Override
+    public ClientTransport trackCalls(
+        ClientTransport transport,
+        Function<MethodDescriptor<?, ?>, LoadBalancer2.CallTracker> callTrackers) {
+      return new CallTrackingTransport(transport, callTrackers);
+    }
+
     @Override
     public ClientTransport createFailingTransport(Status error) {
       return new FailingClientTransport(error);
@@ -849,7 +864,7 @@ public final class ManagedChannelImpl extends ManagedChannel implements WithLogI
           transport = null;
           transportSet = new TransportSet(addressGroup, authority, userAgent,
               getCurrentLoadBalancer(), backoffPolicyProvider, transportFactory, scheduledExecutor,
-              stopwatchSupplier, executor, new TransportSet.Callback() {
+              stopwatchSupplier, executor, 1, Integer.MAX_VALUE, new TransportSet.Callback() {
                 @Override
                 public void onTerminated(TransportSet ts) {
                   synchronized (lock) {
@@ -76,6 +76,11 @@ public class MessageDeframer implements Closeable {
     /**
      * Called to deliver the next complete message.
      *
+     * <p>For uncompressed messages the stream is backed by slices of the buffers received from the
+     * transport rather than a copy, and implements {@link io.grpc.HasByteBuffer} so that
+     * marshallers can parse directly from them. The slices are retained until the stream is
+     * closed, so the receiver must close it once the message has been parsed.
+     *
      * @param is stream containing the message.
      */
     void messageRead(InputStream is);
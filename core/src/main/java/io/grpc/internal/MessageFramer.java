@@ -37,7 +37,9 @@ import static java.lang.Math.min;
 
 import com.google.common.io.ByteStreams;
 
+import io.grpc.ByteBufferDrainable;
 import io.grpc.Codec;
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.Drainable;
 import io.grpc.KnownLength;
@@ -82,6 +84,8 @@ public class MessageFramer {
   private WritableBuffer buffer;
   private Compressor compressor = Codec.Identity.NONE;
   private boolean messageCompression = true;
+  @Nullable
+  private CompressionPolicy.Decider compressionDecider;
   private final OutputStreamAdapter outputStreamAdapter = new OutputStreamAdapter();
   private final byte[] headerScratch = new byte[HEADER_LENGTH];
   private final WritableBufferAllocator bufferAllocator;
@@ -111,6 +115,11 @@ public class MessageFramer {
     return this;
   }
 
+  MessageFramer setCompressionDecider(@Nullable CompressionPolicy.Decider decider) {
+    compressionDecider = decider;
+    return this;
+  }
+
   /**
    * Writes out a payload message.
    *
@@ -123,6 +132,9 @@ public class MessageFramer {
     int messageLength = -2;
     try {
       messageLength = getKnownLength(message);
+      if (compressed && compressionDecider != null && messageLength != 0) {
+        compressed = compressionDecider.shouldCompress(messageLength);
+      }
       if (messageLength != 0 && compressed) {
         written = writeCompressed(message, messageLength);
       } else {
@@ -169,6 +181,9 @@ public class MessageFramer {
     } finally {
       compressingStream.close();
     }
+    if (compressionDecider != null) {
+      compressionDecider.messageCompressed(written, bufferChain.readableBytes());
+    }
 
     writeBufferChain(bufferChain, true);
     return written;
@@ -195,6 +210,14 @@ public class MessageFramer {
       buffer = bufferAllocator.allocate(header.position() + messageLength);
     }
     writeRaw(headerScratch, 0, header.position());
+    if (messageLength > 0 && message instanceof ByteBufferDrainable
+        && buffer.writableBytes() >= messageLength) {
+      // Serialize straight into the transport buffer when it can expose its memory.
+      int written = buffer.write((ByteBufferDrainable) message, messageLength);
+      if (written != -1) {
+        return written;
+      }
+    }
     return writeToOutputStream(message, outputStreamAdapter);
   }
 
@@ -31,6 +31,7 @@
 
 package io.grpc.internal;
 
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.Decompressor;
 import io.grpc.Status;
@@ -77,6 +78,9 @@ public class NoopClientStream implements ClientStream {
   @Override
   public void setCompressor(Compressor compressor) {}
 
+  @Override
+  public void setCompressionDecider(CompressionPolicy.Decider decider) {}
+
   @Override
   public void setDecompressor(Decompressor decompressor) {}
 }
@@ -36,6 +36,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 
+import javax.annotation.Nullable;
+
 /**
  * Interface for an abstract byte buffer. Buffers are intended to be a read-only, except for the
  * read position which is incremented after each read call.
@@ -154,6 +156,27 @@ public interface ReadableBuffer extends Closeable {
    */
   int arrayOffset();
 
+  /**
+   * Indicates whether or not {@link #getByteBuffer} is supported.
+   */
+  boolean byteBufferSupported();
+
+  /**
+   * Gets a {@link ByteBuffer} that contains some bytes of the content next to be read, or {@code
+   * null} if this buffer has been exhausted. The number of bytes contained in the returned buffer
+   * is implementation specific. The read position of this buffer is unchanged after calling this
+   * method; callers should {@link #skipBytes} over the bytes they consumed.
+   *
+   * <p>The returned buffer shares memory with this buffer and is only valid until this buffer is
+   * advanced past its content or closed. Its content must not be modified, but its position,
+   * limit and mark may be changed without affecting this buffer. This is an optional method, so
+   * callers should first check {@link #byteBufferSupported}.
+   *
+   * @throws UnsupportedOperationException the buffer does not support this method
+   */
+  @Nullable
+  ByteBuffer getByteBuffer();
+
   /**
    * Closes this buffer and releases any resources.
    */
@@ -35,6 +35,7 @@ import static com.google.common.base.Charsets.UTF_8;
 
 import com.google.common.base.Preconditions;
 
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 
 import java.io.IOException;
@@ -220,6 +221,16 @@ public final class ReadableBuffers {
     public int arrayOffset() {
       return offset;
     }
+
+    @Override
+    public boolean byteBufferSupported() {
+      return true;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+      return ByteBuffer.wrap(bytes, offset, end - offset).slice();
+    }
   }
 
   /**
@@ -307,12 +318,23 @@ public final class ReadableBuffers {
     public int arrayOffset() {
       return bytes.arrayOffset() + bytes.position();
     }
+
+    @Override
+    public boolean byteBufferSupported() {
+      return true;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+      return bytes.slice();
+    }
   }
 
   /**
    * An {@link InputStream} that is backed by a {@link ReadableBuffer}.
    */
-  private static final class BufferInputStream extends InputStream implements KnownLength {
+  private static final class BufferInputStream extends InputStream
+      implements KnownLength, HasByteBuffer {
     final ReadableBuffer buffer;
 
     public BufferInputStream(ReadableBuffer buffer) {
@@ -344,6 +366,31 @@ public final class ReadableBuffers {
       buffer.readBytes(dest, destOffset, length);
       return length;
     }
+
+    @Override
+    public long skip(long n) {
+      int length = (int) Math.min(buffer.readableBytes(), n);
+      if (length <= 0) {
+        return 0;
+      }
+      buffer.skipBytes(length);
+      return length;
+    }
+
+    @Override
+    public boolean byteBufferSupported() {
+      return buffer.byteBufferSupported();
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+      return buffer.readableBytes() == 0 ? null : buffer.getByteBuffer();
+    }
+
+    @Override
+    public void close() {
+      buffer.close();
+    }
   }
 
   private ReadableBuffers() {}
@@ -32,8 +32,11 @@
 package io.grpc.internal;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 
 import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2.CallTracker;
+import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.TransportManager;
 
@@ -44,6 +47,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -58,10 +62,14 @@ public class RoundRobinServerList<T> {
   private final List<EquivalentAddressGroup> list;
   private final Iterator<EquivalentAddressGroup> cyclingIter;
   private final T requestDroppingTransport;
+  @Nullable
+  private final HealthTracker healthTracker;
 
-  private RoundRobinServerList(TransportManager<T> tm, List<EquivalentAddressGroup> list) {
+  private RoundRobinServerList(TransportManager<T> tm, List<EquivalentAddressGroup> list,
+      @Nullable HealthTracker healthTracker) {
     this.tm = tm;
     this.list = list;
+    this.healthTracker = healthTracker;
     this.cyclingIter = new CycleIterator<EquivalentAddressGroup>(list);
     this.requestDroppingTransport =
       tm.createFailingTransport(Status.UNAVAILABLE.withDescription("Throttled by LB"));
@@ -73,16 +81,20 @@ public class RoundRobinServerList<T> {
    * @return the next transport
    */
   public T getTransportForNextServer() {
-    EquivalentAddressGroup currentServer;
-    synchronized (cyclingIter) {
-      // TODO(zhangkun83): receive transportShutdown and transportReady events, then skip addresses
-      // that have been failing.
-      currentServer = cyclingIter.next();
-    }
+    // TODO(zhangkun83): receive transportShutdown and transportReady events, then skip addresses
+    // that have been failing.
+    EquivalentAddressGroup currentServer = cyclingIter.next();
     if (currentServer == null) {
       return requestDroppingTransport;
     }
-    return tm.getTransport(currentServer);
+    if (healthTracker == null) {
+      return tm.getTransport(currentServer);
+    }
+    // Skip unhealthy servers, unless all of them are.
+    for (int i = 1; i < list.size() && healthTracker.isUnhealthy(currentServer); i++) {
+      currentServer = cyclingIter.next();
+    }
+    return tm.trackCalls(tm.getTransport(currentServer), healthTracker.callTrackers(currentServer));
   }
 
   @VisibleForTesting
@@ -94,10 +106,30 @@ public class RoundRobinServerList<T> {
     return list.size();
   }
 
+  /**
+   * Lets a load-balancer steer a {@link RoundRobinServerList} away from servers it considers
+   * unhealthy, based on the outcomes of the RPCs sent to them.
+   */
+  @ThreadSafe
+  public interface HealthTracker {
+    /**
+     * Returns whether {@code server} should currently be skipped.
+     */
+    boolean isUnhealthy(EquivalentAddressGroup server);
+
+    /**
+     * Returns the trackers to notify when the RPCs sent to {@code server} end, created from the
+     * method of each RPC.
+     */
+    Function<MethodDescriptor<?, ?>, CallTracker> callTrackers(EquivalentAddressGroup server);
+  }
+
   @NotThreadSafe
   public static class Builder<T> {
     private final List<EquivalentAddressGroup> list = new ArrayList<EquivalentAddressGroup>();
     private final TransportManager<T> tm;
+    @Nullable
+    private HealthTracker healthTracker;
 
     public Builder(TransportManager<T> tm) {
       this.tm = tm;
@@ -131,15 +163,28 @@ public class RoundRobinServerList<T> {
       return this;
     }
 
+    /**
+     * Sets the tracker whose unhealthy servers are skipped, and which is told how the RPCs on the
+     * picked transports end.  By default all servers are used in turn.
+     */
+    public Builder<T> setHealthTracker(@Nullable HealthTracker healthTracker) {
+      this.healthTracker = healthTracker;
+      return this;
+    }
+
     public RoundRobinServerList<T> build() {
       return new RoundRobinServerList<T>(tm,
-          Collections.unmodifiableList(new ArrayList<EquivalentAddressGroup>(list)));
+          Collections.unmodifiableList(new ArrayList<EquivalentAddressGroup>(list)), healthTracker);
     }
   }
 
+  /**
+   * Cycles through the list without locking; concurrent callers only share an atomic counter.
+   */
+  @ThreadSafe
   private static final class CycleIterator<T> implements Iterator<T> {
     private final List<T> list;
-    private int index;
+    private final AtomicInteger index = new AtomicInteger();
 
     public CycleIterator(List<T> list) {
       this.list = list;
@@ -155,12 +200,8 @@ public class RoundRobinServerList<T> {
       if (!hasNext()) {
         throw new NoSuchElementException();
       }
-      T val = list.get(index);
-      index++;
-      if (index >= list.size()) {
-        index -= list.size();
-      }
-      return val;
+      // Masking keeps the index valid once the counter overflows.
+      return list.get((index.getAndIncrement() & Integer.MAX_VALUE) % list.size());
     }
 
     @Override
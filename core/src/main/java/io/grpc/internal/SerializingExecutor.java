@@ -33,43 +33,56 @@ package io.grpc.internal;
 
 import com.google.common.base.Preconditions;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.annotation.concurrent.GuardedBy;
-
 /**
  * Executor ensuring that all {@link Runnable} tasks submitted are executed in order
  * using the provided {@link Executor}, and serially such that no two will ever be
  * running at the same time.
+ *
+ * <p>Submitted tasks go on a lock-free multi-producer single-consumer queue, and an atomic run
+ * state makes sure only one {@link TaskRunner} drains it at a time.
  */
 // TODO(madongfly): figure out a way to not expose it or move it to transport package.
 public final class SerializingExecutor implements Executor {
   private static final Logger log =
       Logger.getLogger(SerializingExecutor.class.getName());
 
+  private static final int STOPPED = 0;
+  private static final int RUNNING = 1;
+
+  private static final AtomicIntegerFieldUpdater<SerializingExecutor> RUN_STATE =
+      AtomicIntegerFieldUpdater.newUpdater(SerializingExecutor.class, "runState");
+  private static final AtomicReferenceFieldUpdater<SerializingExecutor, Node> TAIL =
+      AtomicReferenceFieldUpdater.newUpdater(SerializingExecutor.class, Node.class, "tail");
+
   /** Underlying executor that all submitted Runnable objects are run on. */
   private final Executor executor;
 
-  /** A list of Runnables to be run in order. */
-  // Initial size set to 4 because it is a nice number and at least the size necessary for handling
-  // a unary response: onHeaders + onPayload + onClose
-  @GuardedBy("internalLock")
-  private final Queue<Runnable> waitQueue = new ArrayDeque<Runnable>(4);
+  /**
+   * The most recently submitted task, or the stub node when none were submitted yet. Producers
+   * swap themselves in and then link the previous tail to their node.
+   */
+  private volatile Node tail;
+
+  /**
+   * The node of the last task taken off the queue. Only accessed by the running {@link
+   * TaskRunner}; successive runners see each other's writes through {@link #runState}.
+   */
+  private Node head;
 
   /**
    * We explicitly keep track of if the TaskRunner is currently scheduled to
-   * run.  If it isn't, we start it.  We can't just use
-   * waitQueue.isEmpty() as a proxy because we need to ensure that only one
-   * Runnable submitted is running at a time so even if waitQueue is empty
-   * the isThreadScheduled isn't set to false until after the Runnable is
-   * finished.
+   * run.  If it isn't, we start it.  We can't just use an empty queue as a
+   * proxy because we need to ensure that only one Runnable submitted is
+   * running at a time so even if the queue is empty the state isn't set to
+   * {@link #STOPPED} until after the Runnable is finished.
    */
-  @GuardedBy("internalLock")
-  private boolean isThreadScheduled = false;
+  private volatile int runState = STOPPED;
 
   /** The object that actually runs the Runnables submitted, reused. */
   private final TaskRunner taskRunner = new TaskRunner();
@@ -82,54 +95,70 @@ public final class SerializingExecutor implements Executor {
   public SerializingExecutor(Executor executor) {
     Preconditions.checkNotNull(executor, "'executor' must not be null.");
     this.executor = executor;
+    head = tail = new Node(null);
   }
 
-  private final Object internalLock = new Object() {
-    @Override public String toString() {
-      return "SerializingExecutor lock: " + super.toString();
-    }
-  };
-
   /**
    * Runs the given runnable strictly after all Runnables that were submitted
-   * before it, and using the {@code executor} passed to the constructor.     .
+   * before it, and using the {@code executor} passed to the constructor.
    */
   @Override
   public void execute(Runnable r) {
     Preconditions.checkNotNull(r, "'r' must not be null.");
-    boolean scheduleTaskRunner = false;
-    synchronized (internalLock) {
-      waitQueue.add(r);
-
-      if (!isThreadScheduled) {
-        isThreadScheduled = true;
-        scheduleTaskRunner = true;
-      }
-    }
-    if (scheduleTaskRunner) {
+    Node node = new Node(r);
+    TAIL.getAndSet(this, node).next = node;
+    if (RUN_STATE.compareAndSet(this, STOPPED, RUNNING)) {
       boolean threw = true;
       try {
         executor.execute(taskRunner);
         threw = false;
       } finally {
         if (threw) {
-          synchronized (internalLock) {
-            // It is possible that at this point that there are still tasks in
-            // the queue, it would be nice to keep trying but the error may not
-            // be recoverable.  So we update our state and propogate so that if
-            // our caller deems it recoverable we won't be stuck.
-            isThreadScheduled = false;
-          }
+          // It is possible that at this point that there are still tasks in
+          // the queue, it would be nice to keep trying but the error may not
+          // be recoverable.  So we update our state and propogate so that if
+          // our caller deems it recoverable we won't be stuck.
+          runState = STOPPED;
         }
       }
     }
   }
 
+  /**
+   * Takes the next task off the queue, or returns {@code null} if it is empty. Must only be
+   * called by the running {@link TaskRunner}.
+   */
+  private Runnable poll() {
+    Node next = head.next;
+    if (next == null) {
+      if (tail == head) {
+        return null;
+      }
+      // A producer has swapped in a new tail but has yet to link it.
+      while ((next = head.next) == null) {
+        Thread.yield();
+      }
+    }
+    head = next;
+    Runnable task = next.task;
+    next.task = null;
+    return task;
+  }
+
+  private static final class Node {
+    volatile Node next;
+    Runnable task;
+
+    Node(Runnable task) {
+      this.task = task;
+    }
+  }
+
   /**
    * Task that actually runs the Runnables.  It takes the Runnables off of the
    * queue one by one and runs them.  After it is done with all Runnables and
-   * there are no more to run, puts the SerializingExecutor in the state where
-   * isThreadScheduled = false and returns.  This allows the current worker
+   * there are no more to run, puts the SerializingExecutor in the
+   * {@link #STOPPED} state and returns.  This allows the current worker
    * thread to return to the original pool.
    */
   private class TaskRunner implements Runnable {
@@ -138,18 +167,21 @@ public final class SerializingExecutor implements Executor {
       boolean stillRunning = true;
       try {
         while (true) {
-          Runnable nextToRun;
-          synchronized (internalLock) {
-            Preconditions.checkState(isThreadScheduled);
-            nextToRun = waitQueue.poll();
-            if (nextToRun == null) {
-              isThreadScheduled = false;
-              stillRunning = false;
+          Runnable nextToRun = poll();
+          if (nextToRun == null) {
+            Node last = head;
+            runState = STOPPED;
+            stillRunning = false;
+            // A task submitted after poll() found the queue empty may have seen us still running
+            // and left it to us, so take the queue back unless a new runner already has it.
+            if (tail == last
+                || !RUN_STATE.compareAndSet(SerializingExecutor.this, STOPPED, RUNNING)) {
               break;
             }
+            stillRunning = true;
+            continue;
           }
 
-          // Always run while not holding the lock, to avoid deadlocks.
           try {
             nextToRun.run();
           } catch (RuntimeException e) {
@@ -163,9 +195,7 @@ public final class SerializingExecutor implements Executor {
           // An Error is bubbling up, we should mark ourselves as no longer
           // running, that way if anyone tries to keep using us we won't be
           // corrupted.
-          synchronized (internalLock) {
-            isThreadScheduled = false;
-          }
+          runState = STOPPED;
         }
       }
     }
@@ -43,6 +43,7 @@ import com.google.common.base.Throwables;
 
 import io.grpc.Attributes;
 import io.grpc.Codec;
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.CompressorRegistry;
 import io.grpc.Context;
@@ -161,6 +162,12 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     stream.setMessageCompression(enable);
   }
 
+  @Override
+  public void setCompressionPolicy(CompressionPolicy policy) {
+    stream.setCompressionDecider(
+        policy == null ? null : policy.newDecider(method.getFullMethodName()));
+  }
+
   @Override
   public void setCompression(String compressorName) {
     // Added here to give a better error message.
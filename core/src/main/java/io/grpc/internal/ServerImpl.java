@@ -45,10 +45,12 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 
 import io.grpc.Attributes;
+import io.grpc.Bulkhead;
 import io.grpc.CompressorRegistry;
 import io.grpc.Context;
 import io.grpc.DecompressorRegistry;
 import io.grpc.HandlerRegistry;
+import io.grpc.InternalBulkhead;
 import io.grpc.Metadata;
 import io.grpc.ServerCall;
 import io.grpc.ServerMethodDefinition;
@@ -65,9 +67,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -87,6 +93,8 @@ import javax.annotation.concurrent.GuardedBy;
 public final class ServerImpl extends io.grpc.Server implements WithLogId {
   private static final ServerStreamListener NOOP_LISTENER = new NoopListener();
 
+  private static final Logger log = Logger.getLogger(ServerImpl.class.getName());
+
   private final LogId logId = LogId.allocate(getClass().getName());
   /** Executor for application processing. Safe to read after {@link #start()}. */
   private Executor executor;
@@ -117,6 +125,10 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
   private final DecompressorRegistry decompressorRegistry;
   private final CompressorRegistry compressorRegistry;
   private final Supplier<Stopwatch> stopwatchSupplier;
+  /** Zero if calls running in the transport thread are not timed. */
+  private final long directExecutorBlockingThresholdNanos;
+  /** Applies to calls run on {@link #executor}; {@code null} if all calls are admitted. */
+  @Nullable private final AdmissionController admissionController;
 
   /**
    * Construct a server.
@@ -125,12 +137,17 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
    * @param fallbackRegistry the secondary method registry, used only if the primary registry
    *        doesn't have the method
    * @param executor to call methods on behalf of remote clients
+   * @param directExecutorBlockingThresholdNanos how long application code running in the transport
+   *        thread may take before a warning is logged, or zero to not time it
+   * @param admissionController decides whether calls are accepted when they would be queued for
+   *        {@code executor}, or {@code null} to accept all calls
    */
   ServerImpl(Executor executor, InternalHandlerRegistry registry, HandlerRegistry fallbackRegistry,
       InternalServer transportServer, Context rootContext,
       DecompressorRegistry decompressorRegistry, CompressorRegistry compressorRegistry,
       List<ServerTransportFilter> transportFilters, CensusContextFactory censusFactory,
-      Supplier<Stopwatch> stopwatchSupplier) {
+      Supplier<Stopwatch> stopwatchSupplier, long directExecutorBlockingThresholdNanos,
+      @Nullable AdmissionController admissionController) {
     this.executor = executor;
     this.registry = Preconditions.checkNotNull(registry, "registry");
     this.fallbackRegistry = Preconditions.checkNotNull(fallbackRegistry, "fallbackRegistry");
@@ -144,6 +161,8 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
         new ArrayList<ServerTransportFilter>(transportFilters));
     this.censusFactory = Preconditions.checkNotNull(censusFactory, "censusFactory");
     this.stopwatchSupplier = Preconditions.checkNotNull(stopwatchSupplier, "stopwatchSupplier");
+    this.directExecutorBlockingThresholdNanos = directExecutorBlockingThresholdNanos;
+    this.admissionController = admissionController;
   }
 
   /**
@@ -379,6 +398,12 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
           methodName, censusFactory, headers, stopwatchSupplier);
     }
 
+    @Override
+    public String lookupMethodName(byte[] bytes, int offset, int length) {
+      ServerMethodDefinition<?, ?> method = registry.lookupMethod(bytes, offset, length);
+      return method == null ? null : method.getMethodDescriptor().getFullMethodName();
+    }
+
     @Override
     public void streamCreated(
         final ServerStream stream, final String methodName, final Metadata headers) {
@@ -386,12 +411,40 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
       final StatsTraceContext statsTraceCtx = Preconditions.checkNotNull(
           stream.statsTraceContext(), "statsTraceCtx not present from stream");
 
-      final Context.CancellableContext context = createContext(stream, headers);
+      Long timeoutNanos = headers.get(TIMEOUT_KEY);
+      final Bulkhead bulkhead = registry.getBulkhead(methodName);
+      final boolean direct = bulkhead == null
+          && (executor == directExecutor() || registry.isDirectExecutor(methodName));
+      final AdmissionController admission = bulkhead == null && !direct
+          ? admissionController : null;
+      Status rejection = null;
+      if (bulkhead != null && !InternalBulkhead.enqueue(bulkhead)) {
+        rejection = Status.RESOURCE_EXHAUSTED.withDescription(
+            "Too many calls queued for " + methodName);
+      } else if (admission != null) {
+        rejection = admission.admit(timeoutNanos);
+      }
+      if (rejection != null) {
+        stream.setListener(NOOP_LISTENER);
+        stream.close(rejection, new Metadata());
+        statsTraceCtx.callEnded(rejection);
+        return;
+      }
+      final Stopwatch queueStopwatch = bulkhead == null && admission == null
+          ? null : stopwatchSupplier.get().start();
+
+      final Context.CancellableContext context = createContext(stream, timeoutNanos);
       final Executor wrappedExecutor;
-      // This is a performance optimization that avoids the synchronization and queuing overhead
-      // that comes with SerializingExecutor.
-      if (executor == directExecutor()) {
-        wrappedExecutor = new SerializeReentrantCallsDirectExecutor();
+      if (bulkhead != null) {
+        wrappedExecutor = new SerializingExecutor(bulkhead.getExecutor());
+      } else if (direct) {
+        // This is a performance optimization that avoids the synchronization and queuing overhead
+        // that comes with SerializingExecutor.
+        if (directExecutorBlockingThresholdNanos > 0) {
+          wrappedExecutor = new BlockingDetectingExecutor(methodName);
+        } else {
+          wrappedExecutor = new SerializeReentrantCallsDirectExecutor();
+        }
       } else {
         wrappedExecutor = new SerializingExecutor(executor);
       }
@@ -402,9 +455,15 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
       // Run in wrappedExecutor so jumpListener.setListener() is called before any callbacks
       // are delivered, including any errors. Callbacks can still be triggered, but they will be
       // queued.
-      wrappedExecutor.execute(new ContextRunnable(context) {
+      try {
+        wrappedExecutor.execute(new ContextRunnable(context) {
           @Override
           public void runInContext() {
+            if (bulkhead != null) {
+              InternalBulkhead.dequeue(bulkhead, queueStopwatch.elapsed(NANOSECONDS));
+            } else if (admission != null) {
+              admission.callStarted(queueStopwatch.elapsed(NANOSECONDS));
+            }
             ServerStreamListener listener = NOOP_LISTENER;
             try {
               ServerMethodDefinition<?, ?> method = registry.lookupMethod(methodName);
@@ -436,11 +495,23 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
             }
           }
         });
+      } catch (RejectedExecutionException e) {
+        // The call never reached the queue, so it must not keep holding a queue slot.
+        if (bulkhead != null) {
+          InternalBulkhead.cancelEnqueue(bulkhead);
+        } else if (admission != null) {
+          admission.callRejected();
+        }
+        Status status = Status.RESOURCE_EXHAUSTED
+            .withDescription("Executor rejected call to " + methodName).withCause(e);
+        stream.close(status, new Metadata());
+        statsTraceCtx.callEnded(status);
+        context.cancel(null);
+      }
     }
 
     private Context.CancellableContext createContext(
-        final ServerStream stream, Metadata headers) {
-      Long timeoutNanos = headers.get(TIMEOUT_KEY);
+        final ServerStream stream, @Nullable Long timeoutNanos) {
 
       // TODO(zhangkun83): attach the CensusContext from StatsTraceContext to baseContext
       Context baseContext = rootContext;
@@ -484,6 +555,38 @@ public final class ServerImpl extends io.grpc.Server implements WithLogId {
     }
   }
 
+  /**
+   * Runs tasks like {@link SerializeReentrantCallsDirectExecutor}, logging those that hold the
+   * transport thread for longer than {@link #directExecutorBlockingThresholdNanos}.
+   */
+  private final class BlockingDetectingExecutor implements Executor {
+    private final Executor delegate = new SerializeReentrantCallsDirectExecutor();
+    private final String methodName;
+
+    BlockingDetectingExecutor(String methodName) {
+      this.methodName = methodName;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+      delegate.execute(new Runnable() {
+        @Override
+        public void run() {
+          Stopwatch stopwatch = stopwatchSupplier.get().start();
+          try {
+            task.run();
+          } finally {
+            long elapsedNanos = stopwatch.elapsed(NANOSECONDS);
+            if (elapsedNanos > directExecutorBlockingThresholdNanos) {
+              log.log(Level.WARNING, "Call to " + methodName + " blocked the transport thread for "
+                  + NANOSECONDS.toMillis(elapsedNanos) + " ms");
+            }
+          }
+        }
+      });
+    }
+  }
+
   @Override
   public LogId getLogId() {
     return logId;
@@ -34,6 +34,8 @@ package io.grpc.internal;
 import io.grpc.Attributes;
 import io.grpc.Metadata;
 
+import javax.annotation.Nullable;
+
 /**
  * A observer of a server-side transport for stream creation events. Notifications must occur from
  * the transport thread.
@@ -48,6 +50,15 @@ public interface ServerTransportListener {
    */
   StatsTraceContext methodDetermined(String methodName, Metadata headers);
 
+  /**
+   * Returns the fully qualified name of a method known to the server whose UTF-8 encoding matches
+   * {@code bytes} between {@code offset} and {@code offset + length}, or {@code null} if there is
+   * no such method. Transports may use it to avoid decoding the method name of each new stream;
+   * they must still accept methods it does not know about.
+   */
+  @Nullable
+  String lookupMethodName(byte[] bytes, int offset, int length);
+
   /**
    * Called when a new stream was created by the remote client.
    *
@@ -31,11 +31,14 @@
 
 package io.grpc.internal;
 
+import io.grpc.CompressionPolicy;
 import io.grpc.Compressor;
 import io.grpc.Decompressor;
 
 import java.io.InputStream;
 
+import javax.annotation.Nullable;
+
 /**
  * A single stream of communication between two end-points within a transport.
  *
@@ -101,4 +104,12 @@ public interface Stream {
    * but may not have any effect if compression is not enabled on the call.
    */
   void setMessageCompression(boolean enable);
+
+  /**
+   * Sets the per-stream decider consulted before each outbound message is compressed. Has no
+   * effect unless a compressor is also set.
+   *
+   * @param decider the decider to use, or {@code null} to compress every message
+   */
+  void setCompressionDecider(@Nullable CompressionPolicy.Decider decider);
 }
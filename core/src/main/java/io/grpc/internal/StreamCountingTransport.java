@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import io.grpc.CallOptions;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ConnectionClientTransport} that counts its streams which have been created but not yet
+ * closed, so that {@link TransportSet} can send new streams to the least busy of several
+ * connections.
+ */
+final class StreamCountingTransport extends ForwardingConnectionClientTransport {
+  /** Takes the place of the stream count once the transport has been reclaimed. */
+  private static final int RECLAIMED = -1;
+
+  private final ConnectionClientTransport delegate;
+  private final AtomicInteger activeStreams = new AtomicInteger();
+
+  StreamCountingTransport(ConnectionClientTransport delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  protected ConnectionClientTransport delegate() {
+    return delegate;
+  }
+
+  /**
+   * Returns the number of streams created on this transport that have not closed yet, or a
+   * negative number once it has been reclaimed.
+   */
+  int getActiveStreams() {
+    return activeStreams.get();
+  }
+
+  /**
+   * Refuses all new streams if there are no active ones, in which case the caller should shut the
+   * transport down. Checking and refusing is atomic, so no stream can slip in between.
+   *
+   * @return whether the transport was reclaimed
+   */
+  boolean reclaimIfIdle() {
+    return activeStreams.compareAndSet(0, RECLAIMED);
+  }
+
+  @Override
+  public ClientStream newStream(
+      MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+      StatsTraceContext statsTraceCtx) {
+    if (!reserveStream()) {
+      return new FailingClientStream(reclaimedStatus());
+    }
+    return new CountedStream(delegate.newStream(method, headers, callOptions, statsTraceCtx));
+  }
+
+  @Override
+  public ClientStream newStream(MethodDescriptor<?, ?> method, Metadata headers) {
+    if (!reserveStream()) {
+      return new FailingClientStream(reclaimedStatus());
+    }
+    return new CountedStream(delegate.newStream(method, headers));
+  }
+
+  private boolean reserveStream() {
+    while (true) {
+      int streams = activeStreams.get();
+      if (streams == RECLAIMED) {
+        return false;
+      }
+      if (activeStreams.compareAndSet(streams, streams + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private Status reclaimedStatus() {
+    return Status.UNAVAILABLE.withDescription("Idle connection " + getLogId() + " was closed");
+  }
+
+  private final class CountedStream extends ForwardingClientStream {
+    private final ClientStream delegate;
+
+    CountedStream(ClientStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    protected ClientStream delegate() {
+      return delegate;
+    }
+
+    @Override
+    public void start(final ClientStreamListener listener) {
+      delegate.start(new ForwardingClientStreamListener() {
+        @Override
+        protected ClientStreamListener delegate() {
+          return listener;
+        }
+
+        @Override
+        public void closed(Status status, Metadata trailers) {
+          activeStreams.decrementAndGet();
+          listener.closed(status, trailers);
+        }
+
+      });
+    }
+  }
+}
@@ -56,13 +56,14 @@ public final class TransportFrameUtil {
 
   /**
    * Transform the given headers to a format where only spec-compliant ASCII characters are allowed.
-   * Binary header values are encoded by Base64 in the result.  It is safe to modify the returned
-   * array, but not to modify any of the underlying byte arrays.
+   * Binary header values are encoded by Base64 in the result; values that were received encoded
+   * and never read are passed through unchanged.  It is safe to modify the returned array, but not
+   * to modify any of the underlying byte arrays.
    *
    * @return the interleaved keys and values.
    */
   public static byte[][] toHttp2Headers(Metadata headers) {
-    byte[][] serializedHeaders = InternalMetadata.serialize(headers);
+    byte[][] serializedHeaders = InternalMetadata.serializeForHttp2(headers);
     // TODO(carl-mastrangelo): eventually remove this once all callers are updated.
     if (serializedHeaders == null) {
       return new byte[][]{};
@@ -72,9 +73,9 @@ public final class TransportFrameUtil {
       byte[] key = serializedHeaders[i];
       byte[] value = serializedHeaders[i + 1];
       if (endsWith(key, binaryHeaderSuffixBytes)) {
-        // Binary header.
+        // Binary header, already Base64 encoded.
         serializedHeaders[k] = key;
-        serializedHeaders[k + 1] = BaseEncoding.base64().encode(value).getBytes(US_ASCII);
+        serializedHeaders[k + 1] = value;
         k += 2;
       } else {
         // Non-binary header.
@@ -31,6 +31,7 @@
 
 package io.grpc.internal;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
@@ -47,7 +48,9 @@ import io.grpc.internal.ClientCallImpl.ClientTransportProvider;
 
 import java.net.SocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -64,6 +67,11 @@ import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Transports for a single {@link SocketAddress}.
+ *
+ * <p>By default new streams all go to one connection. If more than one connection is allowed,
+ * streams go to the READY connection with the fewest active streams, and another connection is
+ * opened whenever all of them have reached {@code streamsPerConnection}. Connections opened this
+ * way are closed again once they have been unused for {@link #EXTRA_TRANSPORT_IDLE_MILLIS}.
  */
 @ThreadSafe
 final class TransportSet extends ManagedChannel implements WithLogId {
@@ -71,6 +79,9 @@ final class TransportSet extends ManagedChannel implements WithLogId {
   private static final ClientTransport SHUTDOWN_TRANSPORT =
       new FailingClientTransport(Status.UNAVAILABLE.withDescription("TransportSet is shutdown"));
 
+  @VisibleForTesting
+  static final long EXTRA_TRANSPORT_IDLE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
   private final CountDownLatch terminatedLatch = new CountDownLatch(1);
   private final Object lock = new Object();
   private final LogId logId = LogId.allocate(getClass().getName());
@@ -82,6 +93,8 @@ final class TransportSet extends ManagedChannel implements WithLogId {
   private final ClientTransportFactory transportFactory;
   private final ScheduledExecutorService scheduledExecutor;
   private final Executor appExecutor;
+  private final int maxConnections;
+  private final int streamsPerConnection;
 
   @GuardedBy("lock")
   private int nextAddressIndex;
@@ -157,6 +170,27 @@ final class TransportSet extends ManagedChannel implements WithLogId {
   @Nullable
   private volatile ManagedClientTransport activeTransport;
 
+  /**
+   * The READY connections new streams are spread over, if more than one connection is allowed.
+   * Non-{@code null} only while READY, in which case it includes {@link #activeTransport}. 'lock'
+   * must be held when assigning to it.
+   */
+  @Nullable
+  private volatile StreamCountingTransport[] pool;
+
+  /**
+   * The address {@link #activeTransport} is connected to, where extra connections are made.
+   */
+  @GuardedBy("lock")
+  @Nullable
+  private SocketAddress poolAddress;
+
+  /**
+   * An extra connection that is not ready yet. 'lock' must be held when assigning to it.
+   */
+  @Nullable
+  private volatile StreamCountingTransport pendingExtraTransport;
+
   @GuardedBy("lock")
   private final ConnectivityStateManager stateManager =
       new ConnectivityStateManager(ConnectivityState.IDLE);
@@ -164,7 +198,9 @@ final class TransportSet extends ManagedChannel implements WithLogId {
   TransportSet(EquivalentAddressGroup addressGroup, String authority, String userAgent,
       LoadBalancer<ClientTransport> loadBalancer, BackoffPolicy.Provider backoffPolicyProvider,
       ClientTransportFactory transportFactory, ScheduledExecutorService scheduledExecutor,
-      Supplier<Stopwatch> stopwatchSupplier, Executor appExecutor, Callback callback) {
+      Supplier<Stopwatch> stopwatchSupplier, Executor appExecutor, int maxConnections,
+      int streamsPerConnection, Callback callback) {
+    Preconditions.checkArgument(maxConnections > 0, "maxConnections must be positive");
     this.addressGroup = Preconditions.checkNotNull(addressGroup, "addressGroup");
     this.authority = authority;
     this.userAgent = userAgent;
@@ -174,6 +210,8 @@ final class TransportSet extends ManagedChannel implements WithLogId {
     this.scheduledExecutor = scheduledExecutor;
     this.connectingTimer = stopwatchSupplier.get();
     this.appExecutor = appExecutor;
+    this.maxConnections = maxConnections;
+    this.streamsPerConnection = streamsPerConnection;
     this.callback = callback;
   }
 
@@ -183,6 +221,10 @@ final class TransportSet extends ManagedChannel implements WithLogId {
    * <p>Never returns {@code null}.
    */
   final ClientTransport obtainActiveTransport() {
+    StreamCountingTransport[] savedPool = pool;
+    if (savedPool != null) {
+      return pickFromPool(savedPool);
+    }
     ClientTransport savedTransport = activeTransport;
     if (savedTransport != null) {
       return savedTransport;
@@ -210,6 +252,86 @@ final class TransportSet extends ManagedChannel implements WithLogId {
     return savedTransport;
   }
 
+  private ClientTransport pickFromPool(StreamCountingTransport[] savedPool) {
+    // The active transport is never reclaimed, so a connection is always found
+    StreamCountingTransport leastBusy = null;
+    int leastStreams = Integer.MAX_VALUE;
+    for (int i = 0; i < savedPool.length && leastStreams > 0; i++) {
+      int streams = savedPool[i].getActiveStreams();
+      // A negative count means the connection was reclaimed after the pool was read, so another
+      // one is tried
+      if (streams >= 0 && streams < leastStreams) {
+        leastBusy = savedPool[i];
+        leastStreams = streams;
+      }
+    }
+    if (leastStreams >= streamsPerConnection && savedPool.length < maxConnections
+        && pendingExtraTransport == null) {
+      Runnable runnable;
+      synchronized (lock) {
+        runnable = startExtraTransport();
+      }
+      if (runnable != null) {
+        runnable.run();
+      }
+    }
+    return leastBusy;
+  }
+
+  @CheckReturnValue
+  @GuardedBy("lock")
+  @Nullable
+  private Runnable startExtraTransport() {
+    if (pool == null || pool.length >= maxConnections || pendingExtraTransport != null) {
+      return null;
+    }
+    StreamCountingTransport transport = new StreamCountingTransport(
+        transportFactory.newClientTransport(poolAddress, authority, userAgent));
+    if (log.isLoggable(Level.FINE)) {
+      log.log(Level.FINE, "[{0}] Created extra {1} for {2}",
+          new Object[] {getLogId(), transport.getLogId(), poolAddress});
+    }
+    pendingExtraTransport = transport;
+    transports.add(transport);
+    return transport.start(new ExtraTransportListener(transport));
+  }
+
+  /**
+   * Clears {@link #pool} and returns the extra connections that were in it or pending.
+   */
+  @GuardedBy("lock")
+  private List<StreamCountingTransport> clearPool() {
+    List<StreamCountingTransport> extras = new ArrayList<StreamCountingTransport>();
+    if (pool != null) {
+      for (StreamCountingTransport transport : pool) {
+        if (transport != activeTransport) {
+          extras.add(transport);
+        }
+      }
+      pool = null;
+    }
+    if (pendingExtraTransport != null) {
+      extras.add(pendingExtraTransport);
+      pendingExtraTransport = null;
+    }
+    return extras;
+  }
+
+  @GuardedBy("lock")
+  private boolean removeFromPool(StreamCountingTransport transport) {
+    StreamCountingTransport[] savedPool = pool;
+    if (savedPool == null) {
+      return false;
+    }
+    List<StreamCountingTransport> remaining =
+        new ArrayList<StreamCountingTransport>(Arrays.asList(savedPool));
+    if (!remaining.remove(transport)) {
+      return false;
+    }
+    pool = remaining.toArray(new StreamCountingTransport[remaining.size()]);
+    return true;
+  }
+
   @CheckReturnValue
   @GuardedBy("lock")
   private Runnable startNewTransport(DelayedClientTransport delayedTransport) {
@@ -226,6 +348,9 @@ final class TransportSet extends ManagedChannel implements WithLogId {
 
     ConnectionClientTransport transport =
         transportFactory.newClientTransport(address, authority, userAgent);
+    if (maxConnections > 1) {
+      transport = new StreamCountingTransport(transport);
+    }
     if (log.isLoggable(Level.FINE)) {
       log.log(Level.FINE, "[{0}] Created {1} for {2}",
           new Object[] {getLogId(), transport.getLogId(), address});
@@ -296,6 +421,7 @@ final class TransportSet extends ManagedChannel implements WithLogId {
   public ManagedChannel shutdown() {
     ManagedClientTransport savedActiveTransport;
     ConnectionClientTransport savedPendingTransport;
+    List<StreamCountingTransport> extraTransports;
     boolean runCallback = false;
     synchronized (lock) {
       if (shutdown) {
@@ -305,6 +431,7 @@ final class TransportSet extends ManagedChannel implements WithLogId {
       shutdown = true;
       savedActiveTransport = activeTransport;
       savedPendingTransport = pendingTransport;
+      extraTransports = clearPool();
       activeTransport = null;
       if (transports.isEmpty()) {
         runCallback = true;
@@ -321,6 +448,9 @@ final class TransportSet extends ManagedChannel implements WithLogId {
     if (savedPendingTransport != null) {
       savedPendingTransport.shutdown();
     }
+    for (StreamCountingTransport transport : extraTransports) {
+      transport.shutdown();
+    }
     if (runCallback) {
       callback.onTerminated(this);
     }
@@ -492,6 +622,10 @@ final class TransportSet extends ManagedChannel implements WithLogId {
           Preconditions.checkState(pendingTransport == transport, "transport mismatch");
           activeTransport = transport;
           pendingTransport = null;
+          if (maxConnections > 1) {
+            poolAddress = address;
+            pool = new StreamCountingTransport[] {(StreamCountingTransport) transport};
+          }
         }
       }
       delayedTransport.setTransport(transport);
@@ -514,12 +648,15 @@ final class TransportSet extends ManagedChannel implements WithLogId {
       }
       super.transportShutdown(s);
       Runnable runnable = null;
+      List<StreamCountingTransport> extraTransports = Collections.emptyList();
       synchronized (lock) {
         if (activeTransport == transport) {
           // This is true only if the transport was ready.
           // shutdown() should have set activeTransport to null
           Preconditions.checkState(!shutdown, "unexpected shutdown state");
           stateManager.gotoState(ConnectivityState.IDLE);
+          // The extra connections go too, and are opened again after reconnecting if needed.
+          extraTransports = clearPool();
           activeTransport = null;
           closedByServer = true;
         } else if (activeTransport == delayedTransport) {
@@ -535,6 +672,9 @@ final class TransportSet extends ManagedChannel implements WithLogId {
           }
         }
       }
+      for (StreamCountingTransport extraTransport : extraTransports) {
+        extraTransport.shutdown();
+      }
       if (allAddressesFailed) {
         // Initiate backoff
         // Transition to TRANSIENT_FAILURE
@@ -565,6 +705,95 @@ final class TransportSet extends ManagedChannel implements WithLogId {
     }
   }
 
+  /** Listener for extra transports, which are not retried if they fail. */
+  private class ExtraTransportListener extends BaseTransportListener {
+    private final StreamCountingTransport extraTransport;
+
+    @GuardedBy("lock")
+    @Nullable
+    private ScheduledFuture<?> idleTask;
+
+    public ExtraTransportListener(StreamCountingTransport transport) {
+      super(transport);
+      this.extraTransport = transport;
+    }
+
+    @Override
+    public void transportReady() {
+      boolean added = false;
+      synchronized (lock) {
+        if (pendingExtraTransport == extraTransport) {
+          pendingExtraTransport = null;
+          StreamCountingTransport[] savedPool = pool;
+          if (savedPool != null) {
+            StreamCountingTransport[] newPool = Arrays.copyOf(savedPool, savedPool.length + 1);
+            newPool[savedPool.length] = extraTransport;
+            pool = newPool;
+            // Unused until a stream is created on it
+            scheduleIdleTask();
+            added = true;
+          }
+        }
+      }
+      if (!added) {
+        // The active transport went away while this one was connecting.
+        extraTransport.shutdown();
+      }
+    }
+
+    @Override
+    public void transportInUse(boolean inUse) {
+      super.transportInUse(inUse);
+      synchronized (lock) {
+        if (inUse) {
+          cancelIdleTask();
+        } else if (idleTask == null) {
+          scheduleIdleTask();
+        }
+      }
+    }
+
+    @Override
+    public void transportShutdown(Status status) {
+      if (log.isLoggable(Level.FINE)) {
+        log.log(Level.FINE, "[{0}] Extra {1} is being shutdown with status {2}",
+            new Object[] {getLogId(), transport.getLogId(), status});
+      }
+      synchronized (lock) {
+        if (pendingExtraTransport == extraTransport) {
+          pendingExtraTransport = null;
+        }
+        removeFromPool(extraTransport);
+        cancelIdleTask();
+      }
+    }
+
+    @GuardedBy("lock")
+    private void scheduleIdleTask() {
+      idleTask = scheduledExecutor.schedule(new LogExceptionRunnable(new Runnable() {
+        @Override
+        public void run() {
+          boolean reclaim;
+          synchronized (lock) {
+            idleTask = null;
+            reclaim = extraTransport.reclaimIfIdle() && removeFromPool(extraTransport);
+          }
+          if (reclaim) {
+            extraTransport.shutdown();
+          }
+        }
+      }), EXTRA_TRANSPORT_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @GuardedBy("lock")
+    private void cancelIdleTask() {
+      if (idleTask != null) {
+        idleTask.cancel(false);
+        idleTask = null;
+      }
+    }
+  }
+
   abstract static class Callback {
     /**
      * Called when the TransportSet is terminated, which means it's shut down and all transports
@@ -31,6 +31,10 @@
 
 package io.grpc.internal;
 
+import io.grpc.ByteBufferDrainable;
+
+import java.io.IOException;
+
 /**
  * An interface for a byte buffer that can only be written to.
  * {@link WritableBuffer}s are a generic way to transfer bytes to
@@ -55,6 +59,19 @@ public interface WritableBuffer {
    */
   void write(byte b);
 
+  /**
+   * Serializes {@code length} bytes from {@code src} straight into the memory of this buffer, with
+   * no intermediate copies. This is an optional operation: buffers that cannot expose their
+   * memory as a single {@link java.nio.ByteBuffer} write nothing and return {@code -1}, in which
+   * case the caller should fall back to {@link #write(byte[], int, int)}.
+   *
+   * @param src the stream to drain; it must contain exactly {@code length} bytes.
+   * @param length the number of bytes {@code src} will write.
+   * @return the number of bytes written, or {@code -1} if the operation is not supported.
+   * @throws IndexOutOfBoundsException if {@code length} is greater than {@link #writableBytes()}
+   */
+  int write(ByteBufferDrainable src, int length) throws IOException;
+
   /**
    * Returns the number of bytes one can write to the buffer.
    */
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ExperimentalApi;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.Helper;
+import io.grpc.LoadBalancer2.PickResult;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.Metadata;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link LoadBalancer2} that sends all RPCs with the same key to the same READY Subchannel, for
+ * example to make use of a per-key cache on the backends.  The key is taken either from an
+ * affinity attribute or from a request header; RPCs without a key go to a random READY Subchannel.
+ *
+ * <p>Keys are mapped to Subchannels with a Maglev lookup table, so a pick is a single array lookup
+ * regardless of the number of backends.  When a backend is added, removed, becomes READY or stops
+ * being READY, only about {@code 1/N} of the keys move.
+ *
+ * <p>See "Maglev: A Fast and Reliable Software Network Load Balancer" (NSDI 2016), section 3.4.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class ConsistentHashLoadBalancerFactory extends LoadBalancer2.Factory {
+  /**
+   * Number of entries in the lookup table.  It must be prime, and much larger than the number of
+   * backends for keys to spread evenly.
+   */
+  @VisibleForTesting
+  static final int TABLE_SIZE = 65537;
+
+  @VisibleForTesting
+  static final Attributes.Key<Permutation> PERMUTATION =
+      Attributes.Key.of("io.grpc.util.ConsistentHashLoadBalancer.permutation");
+
+  @Nullable
+  private final Attributes.Key<?> affinityKey;
+  @Nullable
+  private final Metadata.Key<String> headerKey;
+
+  private ConsistentHashLoadBalancerFactory(
+      @Nullable Attributes.Key<?> affinityKey, @Nullable Metadata.Key<String> headerKey) {
+    this.affinityKey = affinityKey;
+    this.headerKey = headerKey;
+  }
+
+  /**
+   * Creates a factory that hashes the value of {@code key} in the affinity attributes of each
+   * RPC.  Values other than {@link String} are hashed using {@link Object#hashCode}.
+   */
+  public static ConsistentHashLoadBalancerFactory forAffinityKey(Attributes.Key<?> key) {
+    return new ConsistentHashLoadBalancerFactory(Preconditions.checkNotNull(key, "key"), null);
+  }
+
+  /**
+   * Creates a factory that hashes the value of the {@code key} header of each RPC.  If the header
+   * is present more than once, the last value is used.
+   */
+  public static ConsistentHashLoadBalancerFactory forHeader(Metadata.Key<String> key) {
+    return new ConsistentHashLoadBalancerFactory(null, Preconditions.checkNotNull(key, "key"));
+  }
+
+  @Override
+  public LoadBalancer2 newLoadBalancer(Helper helper) {
+    return new ConsistentHashLoadBalancer(helper, affinityKey, headerKey);
+  }
+
+  @VisibleForTesting
+  static final class ConsistentHashLoadBalancer extends SubchannelListLoadBalancer {
+    @Nullable
+    private final Attributes.Key<?> affinityKey;
+    @Nullable
+    private final Metadata.Key<String> headerKey;
+    private List<Subchannel> lastReadySubchannels = Collections.emptyList();
+    private Picker lastPicker;
+
+    ConsistentHashLoadBalancer(Helper helper, @Nullable Attributes.Key<?> affinityKey,
+        @Nullable Metadata.Key<String> headerKey) {
+      super(helper);
+      this.affinityKey = affinityKey;
+      this.headerKey = headerKey;
+    }
+
+    @Override
+    Attributes newSubchannelAttributes(EquivalentAddressGroup addrs) {
+      // Computed once per backend, so rebuilding the table only has to run the population loop.
+      return Attributes.newBuilder()
+          .set(PERMUTATION, new Permutation(hash(addrs.toString()))).build();
+    }
+
+    @Override
+    SubchannelPicker newPicker(List<Subchannel> readySubchannels) {
+      // State changes of Subchannels that are not READY don't change the table.
+      if (lastPicker == null || !lastReadySubchannels.equals(readySubchannels)) {
+        lastReadySubchannels = readySubchannels;
+        lastPicker = new Picker(buildTable(readySubchannels), affinityKey, headerKey);
+      }
+      return lastPicker;
+    }
+  }
+
+  /**
+   * Fills a Maglev lookup table: Subchannels take turns claiming the next free slot in their own
+   * permutation of the table until every slot is taken.
+   */
+  @VisibleForTesting
+  static Subchannel[] buildTable(List<Subchannel> subchannels) {
+    Preconditions.checkArgument(!subchannels.isEmpty(), "empty subchannels");
+    Subchannel[] sorted = subchannels.toArray(new Subchannel[subchannels.size()]);
+    // The order in which Subchannels take turns decides ties, so it must not depend on the order
+    // in which addresses were resolved.
+    Arrays.sort(sorted, new Comparator<Subchannel>() {
+      @Override
+      public int compare(Subchannel a, Subchannel b) {
+        long ha = permutation(a).hash;
+        long hb = permutation(b).hash;
+        return ha < hb ? -1 : (ha == hb ? 0 : 1);
+      }
+    });
+    int[] offsets = new int[sorted.length];
+    int[] skips = new int[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      Permutation permutation = permutation(sorted[i]);
+      offsets[i] = permutation.offset;
+      skips[i] = permutation.skip;
+    }
+    Subchannel[] table = new Subchannel[TABLE_SIZE];
+    int filled = 0;
+    while (true) {
+      for (int i = 0; i < sorted.length; i++) {
+        int slot = offsets[i];
+        while (table[slot] != null) {
+          slot = (slot + skips[i]) % TABLE_SIZE;
+        }
+        table[slot] = sorted[i];
+        offsets[i] = (slot + skips[i]) % TABLE_SIZE;
+        if (++filled == TABLE_SIZE) {
+          return table;
+        }
+      }
+    }
+  }
+
+  private static Permutation permutation(Subchannel subchannel) {
+    return Preconditions.checkNotNull(
+        subchannel.getAttributes().get(PERMUTATION), "permutation");
+  }
+
+  /**
+   * Hashes {@code s} with 64-bit FNV-1a followed by the MurmurHash3 finalizer.
+   */
+  @VisibleForTesting
+  static long hash(String s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return mix(h);
+  }
+
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * The order in which a backend prefers the slots of the lookup table: {@code offset}, then
+   * repeatedly {@code skip} further.  Since the table size is prime, this visits every slot.
+   */
+  @VisibleForTesting
+  static final class Permutation {
+    final long hash;
+    final int offset;
+    final int skip;
+
+    Permutation(long hash) {
+      this.hash = hash;
+      this.offset = (int) ((hash >>> 1) % TABLE_SIZE);
+      this.skip = (int) ((mix(hash) >>> 1) % (TABLE_SIZE - 1)) + 1;
+    }
+  }
+
+  @VisibleForTesting
+  static final class Picker extends SubchannelPicker {
+    private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+      @Override
+      protected Random initialValue() {
+        return new Random();
+      }
+    };
+
+    private final Subchannel[] table;
+    @Nullable
+    private final Attributes.Key<?> affinityKey;
+    @Nullable
+    private final Metadata.Key<String> headerKey;
+
+    Picker(Subchannel[] table, @Nullable Attributes.Key<?> affinityKey,
+        @Nullable Metadata.Key<String> headerKey) {
+      this.table = table;
+      this.affinityKey = affinityKey;
+      this.headerKey = headerKey;
+    }
+
+    @Override
+    public PickResult pickSubchannel(Attributes affinity, Metadata headers) {
+      Object key = affinityKey != null ? affinity.get(affinityKey) : headers.get(headerKey);
+      int slot;
+      if (key == null) {
+        slot = random.get().nextInt(table.length);
+      } else if (key instanceof String) {
+        slot = (int) ((hash((String) key) >>> 1) % table.length);
+      } else {
+        slot = (int) ((mix(key.hashCode()) >>> 1) % table.length);
+      }
+      return PickResult.withSubchannel(table[slot]);
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ExperimentalApi;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.CallTracker;
+import io.grpc.LoadBalancer2.Helper;
+import io.grpc.LoadBalancer2.PickResult;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A {@link LoadBalancer2} that sends each RPC to the less loaded of two randomly chosen READY
+ * Subchannels, where the load of a Subchannel is the number of RPCs in flight on it.
+ *
+ * <p>Unlike round-robin, this steers traffic away from a backend as soon as it becomes slower than
+ * its peers, since its RPCs take longer to finish and accumulate.  Comparing two random choices
+ * rather than scanning for the global minimum avoids sending every new RPC to the same backend
+ * between updates.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class LeastRequestLoadBalancerFactory extends LoadBalancer2.Factory {
+
+  private static final LeastRequestLoadBalancerFactory instance =
+      new LeastRequestLoadBalancerFactory();
+
+  @VisibleForTesting
+  static final Attributes.Key<InFlightCounter> IN_FLIGHT_COUNTER =
+      Attributes.Key.of("io.grpc.util.LeastRequestLoadBalancer.inFlightCounter");
+
+  private LeastRequestLoadBalancerFactory() {
+  }
+
+  public static LeastRequestLoadBalancerFactory getInstance() {
+    return instance;
+  }
+
+  @Override
+  public LoadBalancer2 newLoadBalancer(Helper helper) {
+    return new LeastRequestLoadBalancer(helper);
+  }
+
+  @VisibleForTesting
+  static final class LeastRequestLoadBalancer extends SubchannelListLoadBalancer {
+    LeastRequestLoadBalancer(Helper helper) {
+      super(helper);
+    }
+
+    @Override
+    Attributes newSubchannelAttributes(EquivalentAddressGroup addrs) {
+      return Attributes.newBuilder().set(IN_FLIGHT_COUNTER, new InFlightCounter()).build();
+    }
+
+    @Override
+    SubchannelPicker newPicker(List<Subchannel> readySubchannels) {
+      return new Picker(readySubchannels);
+    }
+  }
+
+  /**
+   * Picks by comparing the in-flight RPC counts of two distinct random READY Subchannels.
+   */
+  @VisibleForTesting
+  static final class Picker extends SubchannelPicker {
+    private static final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+      @Override
+      protected Random initialValue() {
+        return new Random();
+      }
+    };
+
+    private final Subchannel[] subchannels;
+    private final InFlightCounter[] counters;
+
+    Picker(List<Subchannel> subchannels) {
+      Preconditions.checkArgument(!subchannels.isEmpty(), "empty subchannels");
+      this.subchannels = subchannels.toArray(new Subchannel[subchannels.size()]);
+      this.counters = new InFlightCounter[this.subchannels.length];
+      for (int i = 0; i < this.subchannels.length; i++) {
+        counters[i] = Preconditions.checkNotNull(
+            this.subchannels[i].getAttributes().get(IN_FLIGHT_COUNTER), "inFlightCounter");
+      }
+    }
+
+    @Override
+    public PickResult pickSubchannel(Attributes affinity, Metadata headers) {
+      int chosen = 0;
+      if (subchannels.length > 1) {
+        Random rand = random.get();
+        int first = rand.nextInt(subchannels.length);
+        int second = rand.nextInt(subchannels.length - 1);
+        if (second >= first) {
+          second++;
+        }
+        chosen = counters[second].get() < counters[first].get() ? second : first;
+      }
+      InFlightCounter counter = counters[chosen];
+      counter.increment();
+      return PickResult.withSubchannel(subchannels[chosen], counter);
+    }
+  }
+
+  /**
+   * Number of RPCs in flight on a Subchannel.  Increments and decrements usually happen on
+   * different threads, so the count is spread over cells indexed by thread, each on its own cache
+   * line, and summed when read.
+   */
+  @VisibleForTesting
+  static final class InFlightCounter extends CallTracker {
+    // Ints per 64-byte cache line, so that neighboring cells don't share one.
+    private static final int CELL_SPACING = 16;
+    private static final int CELLS = cellCount(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicIntegerArray cells = new AtomicIntegerArray(CELLS * CELL_SPACING);
+
+    void increment() {
+      cells.incrementAndGet(cellIndex());
+    }
+
+    @Override
+    public void callEnded(Status status) {
+      cells.decrementAndGet(cellIndex());
+    }
+
+    @Override
+    public void callNotStarted() {
+      cells.decrementAndGet(cellIndex());
+    }
+
+    int get() {
+      int sum = 0;
+      for (int i = 0; i < CELLS; i++) {
+        sum += cells.get(i * CELL_SPACING);
+      }
+      return sum;
+    }
+
+    private static int cellIndex() {
+      return ((int) Thread.currentThread().getId() & (CELLS - 1)) * CELL_SPACING;
+    }
+
+    /**
+     * Returns the smallest power of two that is at least {@code processors}, up to 16.
+     */
+    private static int cellCount(int processors) {
+      int cells = 1;
+      while (cells < processors && cells < 16) {
+        cells <<= 1;
+      }
+      return cells;
+    }
+  }
+}
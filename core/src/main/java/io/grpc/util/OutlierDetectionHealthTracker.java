@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ExperimentalApi;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancer2.CallTracker;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.LogExceptionRunnable;
+import io.grpc.internal.RoundRobinServerList;
+import io.grpc.internal.SharedResourceHolder;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Outlier detection for the {@link LoadBalancer}s that pick servers from a {@link
+ * RoundRobinServerList}.  Each call's outcome, and the latency of unary calls, is recorded for the
+ * server it was sent to, and the servers that an {@link OutlierDetector} ejects are skipped until
+ * their ejection time is over.  The same failures count as in
+ * {@link OutlierDetectionLoadBalancerFactory}.
+ *
+ * <p>A balancer creates one tracker, passes it to every server list it builds, and shuts it down
+ * along with itself.
+ */
+@ThreadSafe
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class OutlierDetectionHealthTracker implements RoundRobinServerList.HealthTracker {
+  private final OutlierDetector<EquivalentAddressGroup> detector;
+  private final ScheduledExecutorService timerService;
+  private final boolean sharedTimerService;
+  private final Stopwatch clock;
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private ScheduledFuture<?> detectionTask;
+  @GuardedBy("lock")
+  private boolean shutdown;
+
+  @VisibleForTesting
+  OutlierDetectionHealthTracker(OutlierDetector.Builder config,
+      @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener,
+      ScheduledExecutorService timerService, Supplier<Stopwatch> stopwatchSupplier,
+      boolean sharedTimerService) {
+    Preconditions.checkNotNull(config, "config");
+    this.detector = config.build(ejectionListener != null
+        ? ejectionListener : new OutlierDetector.Listener<EquivalentAddressGroup>() {
+          @Override
+          public void onEjected(EquivalentAddressGroup host, String reason, long ejectionNanos) {}
+
+          @Override
+          public void onUnejected(EquivalentAddressGroup host) {}
+        });
+    this.timerService = timerService;
+    this.sharedTimerService = sharedTimerService;
+    this.clock = stopwatchSupplier.get().start();
+    synchronized (lock) {
+      scheduleDetection();
+    }
+  }
+
+  /**
+   * Creates a tracker and starts its periodic detection.
+   *
+   * @param config the configuration of the detector
+   * @param ejectionListener notified of ejections, for example to export them as metrics; called
+   *     from a timer thread
+   */
+  public static OutlierDetectionHealthTracker create(OutlierDetector.Builder config,
+      @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener) {
+    return new OutlierDetectionHealthTracker(config, ejectionListener,
+        SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE), GrpcUtil.STOPWATCH_SUPPLIER, true);
+  }
+
+  @GuardedBy("lock")
+  private void scheduleDetection() {
+    detectionTask = timerService.schedule(new LogExceptionRunnable(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (lock) {
+          if (shutdown) {
+            return;
+          }
+          detector.detectOutliers(clock.elapsed(TimeUnit.NANOSECONDS));
+          scheduleDetection();
+        }
+      }
+    }), detector.getIntervalNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public boolean isUnhealthy(EquivalentAddressGroup server) {
+    return detector.isEjected(server);
+  }
+
+  @Override
+  public Function<MethodDescriptor<?, ?>, CallTracker> callTrackers(
+      final EquivalentAddressGroup server) {
+    return new Function<MethodDescriptor<?, ?>, CallTracker>() {
+      @Override
+      public CallTracker apply(MethodDescriptor<?, ?> method) {
+        // Streaming calls last as long as the application wants, so only unary calls tell how
+        // fast the server is.
+        return new RecordingCallTracker(server, method.getType() == MethodType.UNARY,
+            clock.elapsed(TimeUnit.NANOSECONDS));
+      }
+    };
+  }
+
+  /**
+   * Stops the periodic detection.  Servers that are ejected stay so.
+   */
+  public void shutdown() {
+    synchronized (lock) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+      detectionTask.cancel(false);
+    }
+    if (sharedTimerService) {
+      SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, timerService);
+    }
+  }
+
+  private final class RecordingCallTracker extends CallTracker {
+    private final EquivalentAddressGroup server;
+    private final boolean recordLatency;
+    private final long startNanos;
+
+    RecordingCallTracker(EquivalentAddressGroup server, boolean recordLatency, long startNanos) {
+      this.server = server;
+      this.recordLatency = recordLatency;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void callEnded(Status status) {
+      if (status.getCode() == Status.Code.CANCELLED) {
+        return;
+      }
+      boolean success = !OutlierDetectionLoadBalancerFactory.isBackendFailure(status.getCode());
+      if (recordLatency) {
+        detector.recordCall(server, success, clock.elapsed(TimeUnit.NANOSECONDS) - startNanos);
+      } else {
+        detector.recordCall(server, success);
+      }
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+
+import io.grpc.Attributes;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ExperimentalApi;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.Helper;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.NameResolver;
+import io.grpc.ResolvedServerInfoGroup;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.LogExceptionRunnable;
+import io.grpc.internal.SharedResourceHolder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Wraps the {@link LoadBalancer2}s of another factory with outlier detection.  Each call's outcome
+ * and latency is recorded for the Subchannel it was sent to, and the Subchannels that an {@link
+ * OutlierDetector} ejects are presented to the wrapped balancer as being in TRANSIENT_FAILURE until
+ * their ejection time is over, so it stops picking them.
+ *
+ * <p>Only failures that suggest a problem with the backend count: {@code UNAVAILABLE}, {@code
+ * INTERNAL}, {@code UNKNOWN}, {@code DEADLINE_EXCEEDED} and {@code DATA_LOSS}.  Cancelled calls
+ * are not recorded.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class OutlierDetectionLoadBalancerFactory extends LoadBalancer2.Factory {
+  private final LoadBalancer2.Factory delegate;
+  private final OutlierDetector.Builder config;
+  @Nullable
+  private final OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener;
+
+  private OutlierDetectionLoadBalancerFactory(LoadBalancer2.Factory delegate,
+      OutlierDetector.Builder config,
+      @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener) {
+    this.delegate = Preconditions.checkNotNull(delegate, "delegate");
+    this.config = Preconditions.checkNotNull(config, "config");
+    this.ejectionListener = ejectionListener;
+  }
+
+  /**
+   * Creates a factory wrapping the balancers of {@code delegate}.
+   *
+   * @param config the configuration of the detector of each balancer
+   * @param ejectionListener notified of ejections, for example to export them as metrics; called
+   *     from the balancer's serialized context
+   */
+  public static OutlierDetectionLoadBalancerFactory wrap(LoadBalancer2.Factory delegate,
+      OutlierDetector.Builder config,
+      @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener) {
+    return new OutlierDetectionLoadBalancerFactory(delegate, config, ejectionListener);
+  }
+
+  @Override
+  public LoadBalancer2 newLoadBalancer(Helper helper) {
+    return new OutlierDetectionLoadBalancer(helper, delegate, config, ejectionListener,
+        SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE), GrpcUtil.STOPWATCH_SUPPLIER, true);
+  }
+
+  @VisibleForTesting
+  static boolean isBackendFailure(Status.Code code) {
+    switch (code) {
+      case UNAVAILABLE:
+      case INTERNAL:
+      case UNKNOWN:
+      case DEADLINE_EXCEEDED:
+      case DATA_LOSS:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  @VisibleForTesting
+  static final class OutlierDetectionLoadBalancer extends LoadBalancer2
+      implements OutlierDetector.Listener<Subchannel> {
+    private final Helper helper;
+    private final LoadBalancer2 delegate;
+    private final OutlierDetector<Subchannel> detector;
+    @Nullable
+    private final OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener;
+    private final ScheduledExecutorService timerService;
+    private final boolean sharedTimerService;
+    private final Stopwatch clock;
+    // The latest real state of each Subchannel, to be restored when it is un-ejected.
+    private final Map<Subchannel, ConnectivityStateInfo> states =
+        new HashMap<Subchannel, ConnectivityStateInfo>();
+    private ScheduledFuture<?> detectionTask;
+    private boolean shutdown;
+
+    OutlierDetectionLoadBalancer(Helper helper, LoadBalancer2.Factory delegateFactory,
+        OutlierDetector.Builder config,
+        @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener,
+        ScheduledExecutorService timerService, Supplier<Stopwatch> stopwatchSupplier,
+        boolean sharedTimerService) {
+      this.helper = Preconditions.checkNotNull(helper, "helper");
+      this.detector = config.build(this);
+      this.ejectionListener = ejectionListener;
+      this.timerService = timerService;
+      this.sharedTimerService = sharedTimerService;
+      this.clock = stopwatchSupplier.get().start();
+      this.delegate = delegateFactory.newLoadBalancer(new DetectingHelper());
+      scheduleDetection();
+    }
+
+    private void scheduleDetection() {
+      detectionTask = timerService.schedule(new LogExceptionRunnable(new Runnable() {
+        @Override
+        public void run() {
+          helper.runSerialized(new Runnable() {
+            @Override
+            public void run() {
+              if (shutdown) {
+                return;
+              }
+              detector.detectOutliers(clock.elapsed(TimeUnit.NANOSECONDS));
+              scheduleDetection();
+            }
+          });
+        }
+      }), detector.getIntervalNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void handleResolvedAddresses(
+        List<ResolvedServerInfoGroup> servers, Attributes attributes) {
+      delegate.handleResolvedAddresses(servers, attributes);
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+      delegate.handleNameResolutionError(error);
+    }
+
+    @Override
+    public void handleSubchannelState(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+      if (stateInfo.getState() == ConnectivityState.SHUTDOWN) {
+        states.remove(subchannel);
+      } else {
+        states.put(subchannel, stateInfo);
+        if (detector.isEjected(subchannel)) {
+          // Delivered when the ejection is over
+          return;
+        }
+      }
+      delegate.handleSubchannelState(subchannel, stateInfo);
+    }
+
+    @Override
+    public void shutdown() {
+      shutdown = true;
+      detectionTask.cancel(false);
+      if (sharedTimerService) {
+        SharedResourceHolder.release(GrpcUtil.TIMER_SERVICE, timerService);
+      }
+      delegate.shutdown();
+    }
+
+    @Override
+    public void onEjected(Subchannel subchannel, String reason, long ejectionNanos) {
+      if (states.containsKey(subchannel)) {
+        delegate.handleSubchannelState(subchannel, ConnectivityStateInfo.forTransientFailure(
+            Status.UNAVAILABLE.withDescription("Ejected by outlier detection: " + reason)));
+      }
+      if (ejectionListener != null) {
+        ejectionListener.onEjected(subchannel.getAddresses(), reason, ejectionNanos);
+      }
+    }
+
+    @Override
+    public void onUnejected(Subchannel subchannel) {
+      ConnectivityStateInfo stateInfo = states.get(subchannel);
+      if (stateInfo != null) {
+        delegate.handleSubchannelState(subchannel, stateInfo);
+      }
+      if (ejectionListener != null) {
+        ejectionListener.onUnejected(subchannel.getAddresses());
+      }
+    }
+
+    private final class DetectingHelper extends Helper {
+      @Override
+      public Subchannel createSubchannel(EquivalentAddressGroup addrs, Attributes attrs) {
+        Subchannel subchannel = helper.createSubchannel(addrs, attrs);
+        states.put(subchannel, ConnectivityStateInfo.forNonError(ConnectivityState.IDLE));
+        return subchannel;
+      }
+
+      @Override
+      public ManagedChannel createOobChannel(EquivalentAddressGroup eag, String authority) {
+        return helper.createOobChannel(eag, authority);
+      }
+
+      @Override
+      public void updatePicker(SubchannelPicker picker) {
+        helper.updatePicker(new DetectingPicker(picker));
+      }
+
+      @Override
+      public void runSerialized(Runnable task) {
+        helper.runSerialized(task);
+      }
+
+      @Override
+      public NameResolver.Factory getNameResolverFactory() {
+        return helper.getNameResolverFactory();
+      }
+
+      @Override
+      public String getAuthority() {
+        return helper.getAuthority();
+      }
+    }
+
+    private final class DetectingPicker extends SubchannelPicker {
+      private final SubchannelPicker delegate;
+
+      DetectingPicker(SubchannelPicker delegate) {
+        this.delegate = delegate;
+      }
+
+      @Override
+      public PickResult pickSubchannel(Attributes affinity, Metadata headers) {
+        PickResult result = delegate.pickSubchannel(affinity, headers);
+        Subchannel subchannel = result.getSubchannel();
+        if (subchannel == null) {
+          return result;
+        }
+        return PickResult.withSubchannel(subchannel, new RecordingCallTracker(
+            subchannel, result.getCallTracker(), clock.elapsed(TimeUnit.NANOSECONDS)));
+      }
+    }
+
+    private final class RecordingCallTracker extends CallTracker {
+      private final Subchannel subchannel;
+      @Nullable
+      private final CallTracker delegate;
+      private final long startNanos;
+
+      RecordingCallTracker(Subchannel subchannel, @Nullable CallTracker delegate,
+          long startNanos) {
+        this.subchannel = subchannel;
+        this.delegate = delegate;
+        this.startNanos = startNanos;
+      }
+
+      @Override
+      public void callEnded(Status status) {
+        if (status.getCode() != Status.Code.CANCELLED) {
+          detector.recordCall(subchannel, !isBackendFailure(status.getCode()),
+              clock.elapsed(TimeUnit.NANOSECONDS) - startNanos);
+        }
+        if (delegate != null) {
+          delegate.callEnded(status);
+        }
+      }
+
+      @Override
+      public void callNotStarted() {
+        // Never reached the backend, so it is not counted either way.
+        if (delegate != null) {
+          delegate.callNotStarted();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import com.google.common.base.Preconditions;
+
+import io.grpc.ExperimentalApi;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Finds hosts whose calls fail or are slow much more often than those of their peers, and ejects
+ * them for a while.
+ *
+ * <p>Call outcomes are recorded with {@link #recordCall} from any thread, without locking.  Every
+ * {@link #getIntervalNanos interval}, the owner calls {@link #detectOutliers}, which looks at the
+ * calls recorded since the previous run.  Among hosts with at least {@code requestVolume} calls,
+ * and if there are at least {@code minimumHosts} of them, a host is ejected if its success rate is
+ * more than {@code successRateStdevFactor} standard deviations below the mean, or, if enabled, if
+ * its average latency is more than {@code latencyStdevFactor} standard deviations above the mean.
+ *
+ * <p>A host is ejected for {@code baseEjectionTime} the first time, and for twice as long each
+ * further time it is ejected, up to {@code maxEjectionTime}; the count of ejections decreases
+ * again for each interval the host spends un-ejected.  No host is ejected while
+ * {@code maxEjectionPercent} of the hosts already are.
+ */
+@ThreadSafe
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class OutlierDetector<K> {
+  private final long intervalNanos;
+  private final long baseEjectionTimeNanos;
+  private final long maxEjectionTimeNanos;
+  private final int maxEjectionPercent;
+  private final double successRateStdevFactor;
+  private final double latencyStdevFactor;
+  private final int minimumHosts;
+  private final int requestVolume;
+  private final Listener<K> listener;
+
+  private final ConcurrentMap<K, HostStats> hosts = new ConcurrentHashMap<K, HostStats>();
+
+  private OutlierDetector(Builder builder, Listener<K> listener) {
+    this.intervalNanos = builder.intervalNanos;
+    this.baseEjectionTimeNanos = builder.baseEjectionTimeNanos;
+    this.maxEjectionTimeNanos = Math.max(builder.baseEjectionTimeNanos,
+        builder.maxEjectionTimeNanos);
+    this.maxEjectionPercent = builder.maxEjectionPercent;
+    this.successRateStdevFactor = builder.successRateStdevFactor;
+    this.latencyStdevFactor = builder.latencyStdevFactor;
+    this.minimumHosts = builder.minimumHosts;
+    this.requestVolume = builder.requestVolume;
+    this.listener = Preconditions.checkNotNull(listener, "listener");
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns how often {@link #detectOutliers} should be called.
+   */
+  public long getIntervalNanos() {
+    return intervalNanos;
+  }
+
+  /**
+   * Records the outcome of a call to {@code host}.
+   *
+   * @param success whether the call succeeded, as far as the health of the host is concerned
+   * @param latencyNanos how long the call took; only used for successful calls
+   */
+  public void recordCall(K host, boolean success, long latencyNanos) {
+    HostStats stats = recordOutcome(host, success);
+    if (success) {
+      stats.latencyNanos.addAndGet(latencyNanos);
+      stats.latencySamples.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records the outcome of a call to {@code host} whose latency says nothing about the host, such
+   * as a streaming call.
+   *
+   * @param success whether the call succeeded, as far as the health of the host is concerned
+   */
+  public void recordCall(K host, boolean success) {
+    recordOutcome(host, success);
+  }
+
+  private HostStats recordOutcome(K host, boolean success) {
+    HostStats stats = hosts.get(host);
+    if (stats == null) {
+      HostStats newStats = new HostStats();
+      stats = hosts.putIfAbsent(host, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    if (success) {
+      stats.successes.incrementAndGet();
+    } else {
+      stats.failures.incrementAndGet();
+    }
+    return stats;
+  }
+
+  /**
+   * Returns whether {@code host} is currently ejected.
+   */
+  public boolean isEjected(K host) {
+    HostStats stats = hosts.get(host);
+    return stats != null && stats.ejected;
+  }
+
+  /**
+   * Evaluates the calls recorded since the previous run, ejecting outliers and un-ejecting hosts
+   * whose ejection time is over.  The listener is called from this method.
+   *
+   * @param nowNanos the current time, from the same clock on every call
+   */
+  public synchronized void detectOutliers(long nowNanos) {
+    List<Map.Entry<K, HostStats>> candidates = new ArrayList<Map.Entry<K, HostStats>>();
+    int ejectedCount = 0;
+    for (Map.Entry<K, HostStats> entry : hosts.entrySet()) {
+      HostStats stats = entry.getValue();
+      stats.snapshot();
+      if (stats.ejected) {
+        ejectedCount++;
+      } else if (stats.intervalSuccesses + stats.intervalFailures >= requestVolume) {
+        candidates.add(entry);
+      }
+    }
+    if (candidates.size() >= minimumHosts) {
+      ejectedCount = ejectSuccessRateOutliers(candidates, ejectedCount, nowNanos);
+      ejectLatencyOutliers(candidates, ejectedCount, nowNanos);
+    }
+    for (Iterator<Map.Entry<K, HostStats>> it = hosts.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<K, HostStats> entry = it.next();
+      HostStats stats = entry.getValue();
+      if (stats.ejected) {
+        if (nowNanos - stats.ejectedUntilNanos >= 0) {
+          stats.ejected = false;
+          listener.onUnejected(entry.getKey());
+        }
+      } else if (stats.ejectionMultiplier > 0) {
+        stats.ejectionMultiplier--;
+      } else if (stats.intervalSuccesses + stats.intervalFailures == 0) {
+        // Nothing left to remember about it.  Calls recorded concurrently are lost, which is
+        // harmless.
+        it.remove();
+      }
+    }
+  }
+
+  @GuardedBy("this")
+  private int ejectSuccessRateOutliers(
+      List<Map.Entry<K, HostStats>> candidates, int ejectedCount, long nowNanos) {
+    if (successRateStdevFactor <= 0) {
+      return ejectedCount;
+    }
+    double[] rates = new double[candidates.size()];
+    for (int i = 0; i < rates.length; i++) {
+      HostStats stats = candidates.get(i).getValue();
+      rates[i] = (double) stats.intervalSuccesses
+          / (stats.intervalSuccesses + stats.intervalFailures);
+    }
+    double mean = mean(rates);
+    double threshold = mean - successRateStdevFactor * stdev(rates, mean);
+    for (int i = 0; i < rates.length; i++) {
+      if (rates[i] < threshold && canEject(ejectedCount)) {
+        eject(candidates.get(i), nowNanos,
+            String.format("success rate %.3f below threshold %.3f", rates[i], threshold));
+        ejectedCount++;
+      }
+    }
+    return ejectedCount;
+  }
+
+  @GuardedBy("this")
+  private void ejectLatencyOutliers(
+      List<Map.Entry<K, HostStats>> candidates, int ejectedCount, long nowNanos) {
+    if (latencyStdevFactor <= 0) {
+      return;
+    }
+    List<Map.Entry<K, HostStats>> measured = new ArrayList<Map.Entry<K, HostStats>>();
+    for (Map.Entry<K, HostStats> entry : candidates) {
+      if (!entry.getValue().ejected && entry.getValue().intervalLatencySamples > 0) {
+        measured.add(entry);
+      }
+    }
+    if (measured.size() < minimumHosts) {
+      return;
+    }
+    double[] latencies = new double[measured.size()];
+    for (int i = 0; i < latencies.length; i++) {
+      HostStats stats = measured.get(i).getValue();
+      latencies[i] = (double) stats.intervalLatencyNanos / stats.intervalLatencySamples;
+    }
+    double mean = mean(latencies);
+    double threshold = mean + latencyStdevFactor * stdev(latencies, mean);
+    for (int i = 0; i < latencies.length; i++) {
+      if (latencies[i] > threshold && canEject(ejectedCount)) {
+        eject(measured.get(i), nowNanos, String.format("average latency %.3f ms above %.3f ms",
+            latencies[i] / 1e6, threshold / 1e6));
+        ejectedCount++;
+      }
+    }
+  }
+
+  @GuardedBy("this")
+  private boolean canEject(int ejectedCount) {
+    return ejectedCount * 100L < (long) maxEjectionPercent * hosts.size();
+  }
+
+  @GuardedBy("this")
+  private void eject(Map.Entry<K, HostStats> entry, long nowNanos, String reason) {
+    HostStats stats = entry.getValue();
+    stats.ejectionMultiplier++;
+    int shift = stats.ejectionMultiplier - 1;
+    // Shifting into the sign bit would overflow, and is past any cap anyway.
+    long ejectionNanos = shift < Long.numberOfLeadingZeros(baseEjectionTimeNanos) - 1
+        ? Math.min(baseEjectionTimeNanos << shift, maxEjectionTimeNanos)
+        : maxEjectionTimeNanos;
+    stats.ejectedUntilNanos = nowNanos + ejectionNanos;
+    stats.ejected = true;
+    listener.onEjected(entry.getKey(), reason, ejectionNanos);
+  }
+
+  private static double mean(double[] values) {
+    double sum = 0;
+    for (double value : values) {
+      sum += value;
+    }
+    return sum / values.length;
+  }
+
+  private static double stdev(double[] values, double mean) {
+    double sumOfSquares = 0;
+    for (double value : values) {
+      sumOfSquares += (value - mean) * (value - mean);
+    }
+    return Math.sqrt(sumOfSquares / values.length);
+  }
+
+  /**
+   * Receives ejection events, for acting on them and for exporting them as metrics.
+   */
+  public interface Listener<K> {
+    /**
+     * Called when {@code host} is ejected for {@code ejectionNanos}.
+     */
+    void onEjected(K host, String reason, long ejectionNanos);
+
+    /**
+     * Called when the ejection time of {@code host} is over.
+     */
+    void onUnejected(K host);
+  }
+
+  /**
+   * Configuration of an {@link OutlierDetector}.  Can be used to build several detectors.
+   */
+  public static final class Builder {
+    private long intervalNanos = TimeUnit.SECONDS.toNanos(10);
+    private long baseEjectionTimeNanos = TimeUnit.SECONDS.toNanos(30);
+    private long maxEjectionTimeNanos = TimeUnit.SECONDS.toNanos(300);
+    private int maxEjectionPercent = 10;
+    private double successRateStdevFactor = 1.9;
+    private double latencyStdevFactor;
+    private int minimumHosts = 5;
+    private int requestVolume = 100;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets how often outliers are looked for.  Defaults to 10 seconds.
+     */
+    public Builder setInterval(long interval, TimeUnit unit) {
+      Preconditions.checkArgument(interval > 0, "interval must be positive");
+      this.intervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Sets how long a host is ejected the first time.  Defaults to 30 seconds.
+     */
+    public Builder setBaseEjectionTime(long time, TimeUnit unit) {
+      Preconditions.checkArgument(time > 0, "time must be positive");
+      this.baseEjectionTimeNanos = unit.toNanos(time);
+      return this;
+    }
+
+    /**
+     * Sets the longest a host is ejected for, if longer than the base ejection time.  Defaults to
+     * 300 seconds.
+     */
+    public Builder setMaxEjectionTime(long time, TimeUnit unit) {
+      Preconditions.checkArgument(time > 0, "time must be positive");
+      this.maxEjectionTimeNanos = unit.toNanos(time);
+      return this;
+    }
+
+    /**
+     * Sets the percentage of hosts that may be ejected at once.  Defaults to 10.
+     */
+    public Builder setMaxEjectionPercent(int percent) {
+      Preconditions.checkArgument(percent >= 0 && percent <= 100, "invalid percent: %s", percent);
+      this.maxEjectionPercent = percent;
+      return this;
+    }
+
+    /**
+     * Sets how many standard deviations below the mean success rate a host is ejected at, or 0 to
+     * not eject hosts for their success rate.  Defaults to 1.9.
+     */
+    public Builder setSuccessRateStdevFactor(double factor) {
+      Preconditions.checkArgument(factor >= 0, "factor must be non-negative");
+      this.successRateStdevFactor = factor;
+      return this;
+    }
+
+    /**
+     * Sets how many standard deviations above the mean latency a host is ejected at, or 0 to not
+     * eject hosts for their latency.  Defaults to 0, since the latency of a call is its whole
+     * duration, which for streaming calls depends on the application rather than the host.
+     */
+    public Builder setLatencyStdevFactor(double factor) {
+      Preconditions.checkArgument(factor >= 0, "factor must be non-negative");
+      this.latencyStdevFactor = factor;
+      return this;
+    }
+
+    /**
+     * Sets how many hosts need enough calls in an interval for outliers to be looked for.
+     * Defaults to 5.
+     */
+    public Builder setMinimumHosts(int hosts) {
+      Preconditions.checkArgument(hosts > 0, "hosts must be positive");
+      this.minimumHosts = hosts;
+      return this;
+    }
+
+    /**
+     * Sets how many calls a host needs in an interval to be considered.  Defaults to 100.
+     */
+    public Builder setRequestVolume(int calls) {
+      Preconditions.checkArgument(calls > 0, "calls must be positive");
+      this.requestVolume = calls;
+      return this;
+    }
+
+    public <K> OutlierDetector<K> build(Listener<K> listener) {
+      return new OutlierDetector<K>(this, listener);
+    }
+  }
+
+  private static final class HostStats {
+    final AtomicLong successes = new AtomicLong();
+    final AtomicLong failures = new AtomicLong();
+    final AtomicLong latencyNanos = new AtomicLong();
+    final AtomicLong latencySamples = new AtomicLong();
+
+    // The rest is guarded by the detector.
+    long intervalSuccesses;
+    long intervalFailures;
+    long intervalLatencyNanos;
+    long intervalLatencySamples;
+    int ejectionMultiplier;
+    long ejectedUntilNanos;
+    volatile boolean ejected;
+
+    void snapshot() {
+      intervalSuccesses = successes.getAndSet(0);
+      intervalFailures = failures.getAndSet(0);
+      intervalLatencyNanos = latencyNanos.getAndSet(0);
+      intervalLatencySamples = latencySamples.getAndSet(0);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import io.grpc.Attributes;
+import io.grpc.ExperimentalApi;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.Helper;
+import io.grpc.LoadBalancer2.PickResult;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.Metadata;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link LoadBalancer2} that round-robins RPCs over the READY Subchannels, one per {@link
+ * io.grpc.EquivalentAddressGroup} from the {@link io.grpc.NameResolver}.
+ *
+ * <p>Each picker is an immutable snapshot of the READY Subchannels, replaced as a whole when their
+ * states change, so picking never takes a lock; concurrent picks only share an atomic counter.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
+public final class RoundRobinLoadBalancer2Factory extends LoadBalancer2.Factory {
+
+  private static final RoundRobinLoadBalancer2Factory instance =
+      new RoundRobinLoadBalancer2Factory();
+
+  private RoundRobinLoadBalancer2Factory() {
+  }
+
+  public static RoundRobinLoadBalancer2Factory getInstance() {
+    return instance;
+  }
+
+  @Override
+  public LoadBalancer2 newLoadBalancer(Helper helper) {
+    return new RoundRobinLoadBalancer(helper);
+  }
+
+  private static final class RoundRobinLoadBalancer extends SubchannelListLoadBalancer {
+    private static final Random random = new Random();
+
+    RoundRobinLoadBalancer(Helper helper) {
+      super(helper);
+    }
+
+    @Override
+    SubchannelPicker newPicker(List<Subchannel> readySubchannels) {
+      // Start at a random position, so that channels that see the same updates don't all send
+      // their next RPC to the same backend.
+      return new Picker(readySubchannels, random.nextInt(readySubchannels.size()));
+    }
+  }
+
+  @VisibleForTesting
+  static final class Picker extends SubchannelPicker {
+    private final Subchannel[] subchannels;
+    private final AtomicInteger index;
+
+    Picker(List<Subchannel> subchannels, int startIndex) {
+      Preconditions.checkArgument(!subchannels.isEmpty(), "empty subchannels");
+      this.subchannels = subchannels.toArray(new Subchannel[subchannels.size()]);
+      this.index = new AtomicInteger(startIndex);
+    }
+
+    @Override
+    public PickResult pickSubchannel(Attributes affinity, Metadata headers) {
+      // Masking keeps the index valid once the counter overflows.
+      int i = (index.getAndIncrement() & Integer.MAX_VALUE) % subchannels.length;
+      return PickResult.withSubchannel(subchannels[i]);
+    }
+  }
+}
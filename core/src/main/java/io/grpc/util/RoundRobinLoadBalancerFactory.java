@@ -31,6 +31,7 @@
 
 package io.grpc.util;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 
 import io.grpc.Attributes;
@@ -46,6 +47,8 @@ import io.grpc.internal.RoundRobinServerList;
 
 import java.util.ArrayList;
 import java.util.List;
+
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 
@@ -58,18 +61,42 @@ import javax.annotation.concurrent.GuardedBy;
 @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1771")
 public final class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
 
-  private static final RoundRobinLoadBalancerFactory instance = new RoundRobinLoadBalancerFactory();
+  private static final RoundRobinLoadBalancerFactory instance =
+      new RoundRobinLoadBalancerFactory(null, null);
+
+  @Nullable
+  private final OutlierDetector.Builder outlierDetection;
+  @Nullable
+  private final OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener;
 
-  private RoundRobinLoadBalancerFactory() {
+  private RoundRobinLoadBalancerFactory(@Nullable OutlierDetector.Builder outlierDetection,
+      @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener) {
+    this.outlierDetection = outlierDetection;
+    this.ejectionListener = ejectionListener;
   }
 
   public static RoundRobinLoadBalancerFactory getInstance() {
     return instance;
   }
 
+  /**
+   * Returns a factory whose balancers skip the servers that outlier detection ejects.
+   *
+   * @param config the configuration of the detector of each balancer
+   * @param ejectionListener notified of ejections, for example to export them as metrics; called
+   *     from a timer thread
+   * @see OutlierDetectionHealthTracker
+   */
+  public static RoundRobinLoadBalancerFactory withOutlierDetection(OutlierDetector.Builder config,
+      @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener) {
+    return new RoundRobinLoadBalancerFactory(
+        Preconditions.checkNotNull(config, "config"), ejectionListener);
+  }
+
   @Override
   public <T> LoadBalancer<T> newLoadBalancer(String serviceName, TransportManager<T> tm) {
-    return new RoundRobinLoadBalancer<T>(tm);
+    return new RoundRobinLoadBalancer<T>(tm, outlierDetection == null
+        ? null : OutlierDetectionHealthTracker.create(outlierDetection, ejectionListener));
   }
 
   private static class RoundRobinLoadBalancer<T> extends LoadBalancer<T> {
@@ -78,24 +105,31 @@ public final class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
 
     private final Object lock = new Object();
 
-    @GuardedBy("lock")
-    private RoundRobinServerList<T> addresses;
+    // Written under lock, read without it by pickTransport() once set.
+    private volatile RoundRobinServerList<T> addresses;
     @GuardedBy("lock")
     private InterimTransport<T> interimTransport;
     @GuardedBy("lock")
     private Status nameResolutionError;
-    @GuardedBy("lock")
-    private boolean closed;
+    private volatile boolean closed;
 
     private final TransportManager<T> tm;
+    @Nullable
+    private final OutlierDetectionHealthTracker healthTracker;
 
-    private RoundRobinLoadBalancer(TransportManager<T> tm) {
+    private RoundRobinLoadBalancer(TransportManager<T> tm,
+        @Nullable OutlierDetectionHealthTracker healthTracker) {
       this.tm = tm;
+      this.healthTracker = healthTracker;
     }
 
     @Override
     public T pickTransport(Attributes affinity) {
-      final RoundRobinServerList<T> addressesCopy;
+      RoundRobinServerList<T> addressesCopy = addresses;
+      if (addressesCopy != null && !closed) {
+        // Fast path, taken by every RPC once addresses have been resolved.
+        return addressesCopy.getTransportForNextServer();
+      }
       synchronized (lock) {
         if (closed) {
           return tm.createFailingTransport(SHUTDOWN_STATUS);
@@ -124,7 +158,8 @@ public final class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
           return;
         }
         addresses = new RoundRobinServerList.Builder<T>(tm).addAll(
-            resolvedServerInfoGroupToEquivalentAddressGroup(updatedServers)).build();
+            resolvedServerInfoGroupToEquivalentAddressGroup(updatedServers))
+            .setHealthTracker(healthTracker).build();
         addressesCopy = addresses;
         nameResolutionError = null;
         savedInterimTransport = interimTransport;
@@ -167,6 +202,9 @@ public final class RoundRobinLoadBalancerFactory extends LoadBalancer.Factory {
         savedInterimTransport = interimTransport;
         interimTransport = null;
       }
+      if (healthTracker != null) {
+        healthTracker.shutdown();
+      }
       if (savedInterimTransport != null) {
         savedInterimTransport.closeWithError(SHUTDOWN_STATUS);
       }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import io.grpc.Attributes;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2;
+import io.grpc.Metadata;
+import io.grpc.ResolvedServerInfoGroup;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Base for {@link LoadBalancer2}s that keep one {@link Subchannel} per resolved {@link
+ * EquivalentAddressGroup}, keep all of them connected, and balance over those that are READY.
+ * Subclasses only decide how a picker chooses among the READY Subchannels.
+ */
+abstract class SubchannelListLoadBalancer extends LoadBalancer2 {
+  private final Helper helper;
+  // In resolution order
+  private final Map<EquivalentAddressGroup, Subchannel> subchannels =
+      new LinkedHashMap<EquivalentAddressGroup, Subchannel>();
+  private final Map<Subchannel, ConnectivityStateInfo> states =
+      new LinkedHashMap<Subchannel, ConnectivityStateInfo>();
+  private Status nameResolutionError;
+
+  SubchannelListLoadBalancer(Helper helper) {
+    this.helper = Preconditions.checkNotNull(helper, "helper");
+  }
+
+  /**
+   * Returns the attributes for a new Subchannel for {@code addrs}.
+   */
+  Attributes newSubchannelAttributes(EquivalentAddressGroup addrs) {
+    return Attributes.EMPTY;
+  }
+
+  /**
+   * Creates a picker choosing among {@code readySubchannels}, which is never empty and is in
+   * resolution order.
+   */
+  abstract SubchannelPicker newPicker(List<Subchannel> readySubchannels);
+
+  @Override
+  public void handleResolvedAddresses(
+      List<ResolvedServerInfoGroup> servers, Attributes attributes) {
+    Set<EquivalentAddressGroup> latestAddrs = new HashSet<EquivalentAddressGroup>();
+    for (ResolvedServerInfoGroup group : servers) {
+      EquivalentAddressGroup addrs = group.toEquivalentAddressGroup();
+      latestAddrs.add(addrs);
+      if (subchannels.containsKey(addrs)) {
+        continue;
+      }
+      Subchannel subchannel = helper.createSubchannel(addrs, newSubchannelAttributes(addrs));
+      subchannels.put(addrs, subchannel);
+      states.put(subchannel, ConnectivityStateInfo.forNonError(ConnectivityState.IDLE));
+      subchannel.requestConnection();
+    }
+    for (Iterator<Map.Entry<EquivalentAddressGroup, Subchannel>> it =
+        subchannels.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<EquivalentAddressGroup, Subchannel> entry = it.next();
+      if (!latestAddrs.contains(entry.getKey())) {
+        it.remove();
+        states.remove(entry.getValue());
+        entry.getValue().shutdown();
+      }
+    }
+    nameResolutionError = null;
+    updatePicker();
+  }
+
+  @Override
+  public void handleNameResolutionError(Status error) {
+    nameResolutionError = error.augmentDescription("Name resolution failed");
+    updatePicker();
+  }
+
+  @Override
+  public void handleSubchannelState(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+    if (!states.containsKey(subchannel)) {
+      // Already removed
+      return;
+    }
+    if (stateInfo.getState() == ConnectivityState.IDLE) {
+      subchannel.requestConnection();
+    }
+    states.put(subchannel, stateInfo);
+    updatePicker();
+  }
+
+  @Override
+  public void shutdown() {
+    for (Subchannel subchannel : subchannels.values()) {
+      subchannel.shutdown();
+    }
+    subchannels.clear();
+    states.clear();
+  }
+
+  private void updatePicker() {
+    List<Subchannel> ready = new ArrayList<Subchannel>(states.size());
+    Status error = nameResolutionError;
+    boolean allFailed = !states.isEmpty();
+    for (Map.Entry<Subchannel, ConnectivityStateInfo> entry : states.entrySet()) {
+      ConnectivityStateInfo stateInfo = entry.getValue();
+      if (stateInfo.getState() == ConnectivityState.READY) {
+        ready.add(entry.getKey());
+      }
+      if (stateInfo.getState() != ConnectivityState.TRANSIENT_FAILURE) {
+        allFailed = false;
+      } else if (error == null) {
+        error = stateInfo.getStatus();
+      }
+    }
+    if (!ready.isEmpty()) {
+      helper.updatePicker(newPicker(ready));
+    } else if (nameResolutionError != null || allFailed) {
+      helper.updatePicker(new ErrorPicker(error));
+    } else {
+      helper.updatePicker(new ErrorPicker(null));
+    }
+  }
+
+  /**
+   * Used while there are no READY Subchannels.  Fails RPCs with the given error, or keeps them
+   * buffered if there is none.
+   */
+  @VisibleForTesting
+  static final class ErrorPicker extends SubchannelPicker {
+    private final Status error;
+
+    ErrorPicker(Status error) {
+      this.error = error;
+    }
+
+    @Override
+    public PickResult pickSubchannel(Attributes affinity, Metadata headers) {
+      return error == null ? PickResult.withNoResult() : PickResult.withError(error);
+    }
+  }
+}
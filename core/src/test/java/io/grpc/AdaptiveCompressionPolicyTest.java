@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link AdaptiveCompressionPolicy}.
+ */
+@RunWith(JUnit4.class)
+public class AdaptiveCompressionPolicyTest {
+  private final AdaptiveCompressionPolicy policy = new AdaptiveCompressionPolicy(100, 0.9);
+  private final CompressionPolicy.Decider decider = policy.newDecider("service/method");
+
+  @Test
+  public void skipsMessagesBelowThreshold() {
+    assertFalse(decider.shouldCompress(0));
+    assertFalse(decider.shouldCompress(99));
+    assertTrue(decider.shouldCompress(100));
+    assertEquals(2, policy.getMessagesSkipped());
+    assertEquals(1, policy.getMessagesCompressed());
+  }
+
+  @Test
+  public void unknownLengthIsCompressed() {
+    assertTrue(decider.shouldCompress(-1));
+  }
+
+  @Test
+  public void compressibleStreamKeepsCompressing() {
+    for (int i = 0; i < 10; i++) {
+      assertTrue(decider.shouldCompress(1000));
+      decider.messageCompressed(1000, 300);
+    }
+    assertEquals(10, policy.getMessagesCompressed());
+    assertEquals(0, policy.getMessagesSkipped());
+    assertEquals(7000, policy.getBytesSaved());
+  }
+
+  @Test
+  public void incompressibleStreamBacksOffExponentially() {
+    assertTrue(decider.shouldCompress(1000));
+    decider.messageCompressed(1000, 1010);
+    assertFalse(decider.shouldCompress(1000));
+
+    assertTrue(decider.shouldCompress(1000));
+    decider.messageCompressed(1000, 1010);
+    assertFalse(decider.shouldCompress(1000));
+    assertFalse(decider.shouldCompress(1000));
+
+    assertTrue(decider.shouldCompress(1000));
+    assertEquals(-20, policy.getBytesSaved());
+    assertEquals(3, policy.getMessagesSkipped());
+  }
+
+  @Test
+  public void backoffIsCapped() {
+    int skipped = 0;
+    int longestBackoff = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (decider.shouldCompress(1000)) {
+        decider.messageCompressed(1000, 1000);
+        skipped = 0;
+      } else {
+        longestBackoff = Math.max(longestBackoff, ++skipped);
+      }
+    }
+    assertEquals(AdaptiveCompressionPolicy.MAX_BACKOFF_MESSAGES, longestBackoff);
+  }
+
+  @Test
+  public void successfulProbeResetsBackoff() {
+    assertTrue(decider.shouldCompress(1000));
+    decider.messageCompressed(1000, 1000);
+    assertFalse(decider.shouldCompress(1000));
+    assertTrue(decider.shouldCompress(1000));
+    decider.messageCompressed(1000, 100);
+
+    assertTrue(decider.shouldCompress(1000));
+  }
+
+  @Test
+  public void decidersDoNotShareStreamState() {
+    assertTrue(decider.shouldCompress(1000));
+    decider.messageCompressed(1000, 1000);
+
+    CompressionPolicy.Decider other = policy.newDecider("service/method");
+    assertFalse(decider.shouldCompress(1000));
+    assertTrue(other.shouldCompress(1000));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link Bulkhead}.
+ */
+@RunWith(JUnit4.class)
+public class BulkheadTest {
+  private final Bulkhead bulkhead = new Bulkhead(directExecutor(), 2);
+
+  @Test
+  public void rejectsOnceQueueIsFull() {
+    assertSame(directExecutor(), bulkhead.getExecutor());
+    assertEquals(2, bulkhead.getMaxQueuedCalls());
+    assertTrue(bulkhead.enqueue());
+    assertTrue(bulkhead.enqueue());
+    assertFalse(bulkhead.enqueue());
+    assertEquals(2, bulkhead.getQueueLength());
+    assertEquals(1, bulkhead.getCallsRejected());
+
+    bulkhead.dequeue(10);
+    assertTrue(bulkhead.enqueue());
+    assertEquals(2, bulkhead.getQueueLength());
+  }
+
+  @Test
+  public void recordsWaitTimes() {
+    assertTrue(bulkhead.enqueue());
+    assertTrue(bulkhead.enqueue());
+    bulkhead.dequeue(10);
+    bulkhead.dequeue(30);
+    assertEquals(0, bulkhead.getQueueLength());
+    assertEquals(2, bulkhead.getCallsStarted());
+    assertEquals(40, bulkhead.getTotalWaitNanos());
+    assertEquals(0, bulkhead.getCallsRejected());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void maxQueuedCallsMustBePositive() {
+    new Bulkhead(directExecutor(), 0);
+  }
+}
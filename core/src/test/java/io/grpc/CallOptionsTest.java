@@ -84,9 +84,20 @@ public class CallOptionsTest {
     assertThat(CallOptions.DEFAULT.getExecutor()).isNull();
     assertThat(CallOptions.DEFAULT.getCredentials()).isNull();
     assertThat(CallOptions.DEFAULT.getCompressor()).isNull();
+    assertThat(CallOptions.DEFAULT.getCompressionPolicy()).isNull();
     assertThat(CallOptions.DEFAULT.isWaitForReady()).isFalse();
   }
 
+  @Test
+  public void withCompressionPolicy() {
+    CompressionPolicy policy = new AdaptiveCompressionPolicy();
+    CallOptions options = allSet.withCompressionPolicy(policy);
+
+    assertThat(options.getCompressionPolicy()).isSameAs(policy);
+    assertThat(options.getCompressor()).isSameAs(sampleCompressor);
+    assertThat(allSet.getCompressionPolicy()).isNull();
+  }
+
   @Test
   public void withAndWithoutWaitForReady() {
     assertThat(CallOptions.DEFAULT.withWaitForReady().isWaitForReady()).isTrue();
@@ -163,7 +174,8 @@ public class CallOptionsTest {
     String expected = "CallOptions{deadline=null, authority=authority, callCredentials=null, "
         + "affinity={sample=blah}, "
         + "executor=class io.grpc.internal.SerializingExecutor, compressorName=compressor, "
-        + "customOptions=[[option1, value1], [option2, value2]], waitForReady=true}";
+        + "compressionPolicy=null, customOptions=[[option1, value1], [option2, value2]], "
+        + "waitForReady=true}";
     String actual = allSet
         .withDeadline(null)
         .withExecutor(new SerializingExecutor(directExecutor()))
@@ -176,7 +188,8 @@ public class CallOptionsTest {
   @Test
   public void toStringMatches_noDeadline() {
     assertThat("CallOptions{deadline=null, authority=null, callCredentials=null, "
-        + "affinity={}, executor=null, compressorName=null, customOptions=[], "
+        + "affinity={}, executor=null, compressorName=null, compressionPolicy=null, "
+        + "customOptions=[], "
         + "waitForReady=false}")
         .isEqualTo(CallOptions.DEFAULT.toString());
   }
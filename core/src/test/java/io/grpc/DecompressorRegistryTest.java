@@ -31,6 +31,8 @@
 
 package io.grpc;
 
+import static com.google.common.base.Charsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -61,6 +63,8 @@ public class DecompressorRegistryTest {
         DecompressorRegistry.getDefaultInstance().lookupDecompressor("identity"));
     assertNotNull("Expected gzip to be registered",
         DecompressorRegistry.getDefaultInstance().lookupDecompressor("gzip"));
+    assertNotNull("Expected lz4 to be registered",
+        DecompressorRegistry.getDefaultInstance().lookupDecompressor("lz4"));
   }
 
   @Test
@@ -68,6 +72,7 @@ public class DecompressorRegistryTest {
     Set<String> knownEncodings = new HashSet<String>();
     knownEncodings.add("identity");
     knownEncodings.add("gzip");
+    knownEncodings.add("lz4");
 
     assertEquals(knownEncodings,
         DecompressorRegistry.getDefaultInstance().getKnownMessageEncodings());
@@ -97,6 +102,16 @@ public class DecompressorRegistryTest {
         .contains(dummyDecompressor.getMessageEncoding()));
   }
 
+  @Test
+  public void rawAdvertisedMessageEncodingBytes() {
+    registry = registry.with(dummyDecompressor, true);
+
+    assertArrayEquals(registry.getRawAdvertisedMessageEncodings().getBytes(US_ASCII),
+        registry.getRawAdvertisedMessageEncodingBytes());
+    assertArrayEquals(new byte[0],
+        DecompressorRegistry.emptyInstance().getRawAdvertisedMessageEncodingBytes());
+  }
+
   private static final class Dummy implements Decompressor {
     @Override
     public String getMessageEncoding() {
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Bytes;
+
+import io.grpc.internal.CompositeReadableBuffer;
+import io.grpc.internal.ReadableBuffers;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Tests for {@link GzipStreams}.
+ */
+@RunWith(JUnit4.class)
+public class GzipStreamsTest {
+  private final Codec codec = new Codec.Gzip();
+
+  @Test
+  public void compressedOutputReadableByJdk() throws Exception {
+    for (byte[] data : testData()) {
+      byte[] compressed = compress(data);
+      assertArrayEquals(data, ByteStreams.toByteArray(
+          new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+  }
+
+  @Test
+  public void decompressesJdkOutput() throws Exception {
+    for (byte[] data : testData()) {
+      assertArrayEquals(data, decompress(jdkCompress(data)));
+    }
+  }
+
+  @Test
+  public void decompressesFromBufferSegments() throws Exception {
+    byte[] data = testData()[2];
+    byte[] compressed = compress(data);
+    CompositeReadableBuffer composite = new CompositeReadableBuffer();
+    int segment = compressed.length / 5;
+    for (int offset = 0; offset < compressed.length; offset += segment) {
+      int length = Math.min(segment, compressed.length - offset);
+      composite.addBuffer(ReadableBuffers.wrap(compressed, offset, length));
+    }
+    InputStream source = ReadableBuffers.openStream(composite, true);
+
+    InputStream is = codec.decompress(source);
+    assertArrayEquals(data, ByteStreams.toByteArray(is));
+    // The whole compressed input has been consumed, including the trailer.
+    assertEquals(0, source.available());
+    is.close();
+  }
+
+  @Test
+  public void decompressesConcatenatedMembers() throws Exception {
+    byte[] first = "hello ".getBytes("UTF-8");
+    byte[] second = "world".getBytes("UTF-8");
+    byte[] compressed = Bytes.concat(jdkCompress(first), compress(second));
+    assertArrayEquals(Bytes.concat(first, second), decompress(compressed));
+  }
+
+  @Test
+  public void decompressesOptionalHeaderFields() throws Exception {
+    byte[] data = "optional fields".getBytes("UTF-8");
+    byte[] member = jdkCompress(data);
+    // FHCRC | FEXTRA | FNAME | FCOMMENT
+    byte[] header = Arrays.copyOf(member, 10);
+    header[3] = 2 | 4 | 8 | 16;
+    byte[] fields = Bytes.concat(
+        new byte[] {3, 0, 'x', 'y', 'z'}, "name\0".getBytes("UTF-8"),
+        "comment\0".getBytes("UTF-8"));
+    CRC32 crc = new CRC32();
+    crc.update(header);
+    crc.update(fields);
+    int headerCrc = (int) crc.getValue();
+    byte[] compressed = Bytes.concat(header, fields,
+        new byte[] {(byte) headerCrc, (byte) (headerCrc >> 8)},
+        Arrays.copyOfRange(member, 10, member.length));
+
+    assertArrayEquals(data, decompress(compressed));
+    assertArrayEquals(data, ByteStreams.toByteArray(
+        new GZIPInputStream(new ByteArrayInputStream(compressed))));
+  }
+
+  @Test
+  public void corruptTrailerFails() throws Exception {
+    byte[] compressed = compress(testData()[1]);
+    compressed[compressed.length - 5]++;
+    try {
+      decompress(compressed);
+      fail("Expected exception");
+    } catch (ZipException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void notGzipFails() throws Exception {
+    try {
+      codec.decompress(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}));
+      fail("Expected exception");
+    } catch (ZipException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void truncatedInputFails() throws Exception {
+    byte[] compressed = compress(testData()[2]);
+    try {
+      decompress(Arrays.copyOf(compressed, compressed.length / 2));
+      fail("Expected exception");
+    } catch (EOFException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void zlibStateIsReused() throws Exception {
+    compress(new byte[100]);
+    GzipStreams.DeflaterState deflater = GzipStreams.deflaters.take();
+    GzipStreams.deflaters.give(deflater);
+    compress(new byte[100]);
+    assertSame(deflater, GzipStreams.deflaters.take());
+    GzipStreams.deflaters.give(deflater);
+
+    byte[] compressed = compress(new byte[100]);
+    decompress(compressed);
+    GzipStreams.InflaterState inflater = GzipStreams.inflaters.take();
+    GzipStreams.inflaters.give(inflater);
+    decompress(compressed);
+    assertSame(inflater, GzipStreams.inflaters.take());
+    GzipStreams.inflaters.give(inflater);
+  }
+
+  @Test
+  public void poolIsBounded() {
+    BoundedPool<Object> pool = new BoundedPool<Object>() {
+      @Override
+      Object create() {
+        return new Object();
+      }
+    };
+    for (int i = 0; i < BoundedPool.MAX_POOLED; i++) {
+      assertEquals(true, pool.give(new Object()));
+    }
+    assertEquals(false, pool.give(new Object()));
+    assertEquals(BoundedPool.MAX_POOLED, pool.size());
+    pool.take();
+    assertEquals(BoundedPool.MAX_POOLED - 1, pool.size());
+  }
+
+  private byte[] compress(byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    OutputStream os = codec.compress(baos);
+    os.write(data);
+    os.close();
+    return baos.toByteArray();
+  }
+
+  private byte[] decompress(byte[] compressed) throws IOException {
+    InputStream is = codec.decompress(new ByteArrayInputStream(compressed));
+    try {
+      return ByteStreams.toByteArray(is);
+    } finally {
+      is.close();
+    }
+  }
+
+  private static byte[] jdkCompress(byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    GZIPOutputStream os = new GZIPOutputStream(baos);
+    os.write(data);
+    os.close();
+    return baos.toByteArray();
+  }
+
+  private static byte[][] testData() {
+    Random random = new Random(1);
+    byte[] incompressible = new byte[100000];
+    random.nextBytes(incompressible);
+    byte[] compressible = new byte[100000];
+    for (int i = 0; i < compressible.length; i++) {
+      compressible[i] = (byte) (i % 7);
+    }
+    return new byte[][] {new byte[0], new byte[] {42}, compressible, incompressible};
+  }
+}
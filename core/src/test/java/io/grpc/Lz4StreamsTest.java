@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Bytes;
+
+import io.grpc.internal.CompositeReadableBuffer;
+import io.grpc.internal.ReadableBuffers;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for {@link Lz4Streams}.
+ */
+@RunWith(JUnit4.class)
+public class Lz4StreamsTest {
+  private static final byte[] MAGIC = new byte[] {0x04, 0x22, 0x4D, 0x18};
+
+  private final Codec codec = new Codec.Lz4();
+
+  @Test
+  public void roundTrip() throws Exception {
+    for (byte[] data : testData()) {
+      assertArrayEquals(data, decompress(compress(data)));
+    }
+  }
+
+  @Test
+  public void writesStandardFrame() throws Exception {
+    byte[] compressed = compress(new byte[0]);
+    // Magic, FLG (version 1, independent blocks), BD (64 KiB blocks), header checksum, end mark.
+    assertArrayEquals(
+        Bytes.concat(MAGIC, new byte[] {0x60, 0x40, (byte) 0x82, 0, 0, 0, 0}), compressed);
+  }
+
+  @Test
+  public void compressesRepetitiveData() throws Exception {
+    byte[] data = testData()[3];
+    assertTrue(compress(data).length < data.length / 10);
+  }
+
+  @Test
+  public void storesIncompressibleBlocks() throws Exception {
+    byte[] data = testData()[4];
+    byte[] compressed = compress(data);
+    // Frame header, a size for each block, and the end mark.
+    int blocks = (data.length + Lz4Streams.BLOCK_SIZE - 1) / Lz4Streams.BLOCK_SIZE;
+    assertEquals(7 + 4 * blocks + data.length + 4, compressed.length);
+  }
+
+  @Test
+  public void xxHash32() throws Exception {
+    assertEquals(0x02CC5D05, Lz4Streams.XxHash32.hash(new byte[0], 0, 0, 0));
+    assertEquals(0x32D153FF, Lz4Streams.XxHash32.hash("abc".getBytes("UTF-8"), 0, 3, 0));
+
+    byte[] data = testData()[2];
+    Lz4Streams.XxHash32 hash = new Lz4Streams.XxHash32(0);
+    for (int off = 0; off < data.length; off += 7) {
+      hash.update(data, off, Math.min(7, data.length - off));
+    }
+    assertEquals(Lz4Streams.XxHash32.hash(data, 0, data.length, 0), hash.getValue());
+  }
+
+  @Test
+  public void decompressesChecksummedFrameWithContentSize() throws Exception {
+    byte[] data = "checksums and a content size".getBytes("UTF-8");
+    // FLG: version 1, independent blocks, block checksum, content size, content checksum.
+    byte[] descriptor = Bytes.concat(new byte[] {0x7C, 0x40}, intLe(data.length), intLe(0));
+    byte[] frame = Bytes.concat(MAGIC, descriptor, new byte[] {headerChecksum(descriptor)},
+        intLe(0x80000000 | data.length), data, intLe(xxHash(data)),
+        intLe(0), intLe(xxHash(data)));
+    assertArrayEquals(data, decompress(frame));
+
+    frame[frame.length - 1]++;
+    try {
+      decompress(frame);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void decompressesLinkedBlocks() throws Exception {
+    byte[] first = "0123456789abcdef".getBytes("UTF-8");
+    // A 16 byte match 16 bytes back, reaching into the previous block, then 5 literals.
+    byte[] second = Bytes.concat(new byte[] {0x0C, 16, 0, 0x50}, "vwxyz".getBytes("UTF-8"));
+    // FLG: version 1, linked blocks.
+    byte[] descriptor = new byte[] {0x40, 0x40};
+    byte[] frame = Bytes.concat(MAGIC, descriptor, new byte[] {headerChecksum(descriptor)},
+        intLe(0x80000000 | first.length), first, intLe(second.length), second, intLe(0));
+    assertArrayEquals(Bytes.concat(first, first, "vwxyz".getBytes("UTF-8")), decompress(frame));
+  }
+
+  @Test
+  public void matchBeforeIndependentBlockFails() throws Exception {
+    byte[] first = "0123456789abcdef".getBytes("UTF-8");
+    byte[] second = Bytes.concat(new byte[] {0x0C, 16, 0, 0x50}, "vwxyz".getBytes("UTF-8"));
+    byte[] frame = compress(first);
+    frame = Bytes.concat(Arrays.copyOf(frame, frame.length - 4),
+        intLe(second.length), second, intLe(0));
+    try {
+      decompress(frame);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void decompressesConcatenatedAndSkippableFrames() throws Exception {
+    byte[] first = "hello ".getBytes("UTF-8");
+    byte[] second = "world".getBytes("UTF-8");
+    byte[] skippable = Bytes.concat(new byte[] {0x5A, 0x2A, 0x4D, 0x18}, intLe(3), new byte[3]);
+    byte[] compressed = Bytes.concat(compress(first), skippable, compress(second));
+    assertArrayEquals(Bytes.concat(first, second), decompress(compressed));
+  }
+
+  @Test
+  public void decompressesFromBufferSegments() throws Exception {
+    byte[] data = testData()[3];
+    byte[] compressed = compress(data);
+    CompositeReadableBuffer composite = new CompositeReadableBuffer();
+    int segment = compressed.length / 5;
+    for (int offset = 0; offset < compressed.length; offset += segment) {
+      int length = Math.min(segment, compressed.length - offset);
+      composite.addBuffer(ReadableBuffers.wrap(compressed, offset, length));
+    }
+    InputStream source = ReadableBuffers.openStream(composite, true);
+
+    InputStream is = codec.decompress(source);
+    assertArrayEquals(data, ByteStreams.toByteArray(is));
+    assertEquals(0, source.available());
+    is.close();
+  }
+
+  @Test
+  public void decompressesFromSingleBuffer() throws Exception {
+    byte[] data = testData()[3];
+    InputStream source = ReadableBuffers.openStream(ReadableBuffers.wrap(compress(data)), true);
+
+    InputStream is = codec.decompress(source);
+    assertArrayEquals(data, ByteStreams.toByteArray(is));
+    assertEquals(0, source.available());
+    is.close();
+  }
+
+  @Test
+  public void zeroMatchOffsetFails() throws Exception {
+    byte[] frame = compress(new byte[0]);
+    // One literal, then a match with offset zero.
+    byte[] block = new byte[] {0x10, 'a', 0, 0, 0x50, 'v', 'w', 'x', 'y', 'z'};
+    frame = Bytes.concat(Arrays.copyOf(frame, frame.length - 4),
+        intLe(block.length), block, intLe(0));
+    try {
+      decompress(frame);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void notLz4Fails() throws Exception {
+    try {
+      codec.decompress(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}));
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void truncatedInputFails() throws Exception {
+    byte[] compressed = compress(testData()[2]);
+    try {
+      decompress(Arrays.copyOf(compressed, compressed.length / 2));
+      fail("Expected exception");
+    } catch (EOFException expected) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void stateIsReused() throws Exception {
+    compress(new byte[100]);
+    Lz4Streams.CompressorState compressor = Lz4Streams.compressors.take();
+    Lz4Streams.compressors.give(compressor);
+    byte[] compressed = compress(new byte[100]);
+    assertSame(compressor, Lz4Streams.compressors.take());
+    Lz4Streams.compressors.give(compressor);
+
+    decompress(compressed);
+    Lz4Streams.DecompressorState decompressor = Lz4Streams.decompressors.take();
+    Lz4Streams.decompressors.give(decompressor);
+    decompress(compressed);
+    assertSame(decompressor, Lz4Streams.decompressors.take());
+    Lz4Streams.decompressors.give(decompressor);
+  }
+
+  private byte[] compress(byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    OutputStream os = codec.compress(baos);
+    os.write(data);
+    os.close();
+    return baos.toByteArray();
+  }
+
+  private byte[] decompress(byte[] compressed) throws IOException {
+    InputStream is = codec.decompress(new ByteArrayInputStream(compressed));
+    try {
+      return ByteStreams.toByteArray(is);
+    } finally {
+      is.close();
+    }
+  }
+
+  private static byte headerChecksum(byte[] descriptor) {
+    return (byte) (Lz4Streams.XxHash32.hash(descriptor, 0, descriptor.length, 0) >>> 8);
+  }
+
+  private static int xxHash(byte[] data) {
+    return Lz4Streams.XxHash32.hash(data, 0, data.length, 0);
+  }
+
+  private static byte[] intLe(int value) {
+    return new byte[] {(byte) value, (byte) (value >> 8), (byte) (value >> 16),
+        (byte) (value >> 24)};
+  }
+
+  private static byte[][] testData() throws IOException {
+    Random random = new Random(1);
+    byte[] incompressible = new byte[3 * Lz4Streams.BLOCK_SIZE / 2];
+    random.nextBytes(incompressible);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      text.append("message ").append(i % 100).append('\n');
+    }
+    return new byte[][] {
+        new byte[0],
+        new byte[] {42},
+        "Hello, gRPC! Hello, gRPC! Hello, gRPC!".getBytes("UTF-8"),
+        text.toString().getBytes("UTF-8"),
+        incompressible,
+        new byte[300000],
+    };
+  }
+}
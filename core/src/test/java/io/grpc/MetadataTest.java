@@ -38,10 +38,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.common.collect.Lists;
+import com.google.common.io.BaseEncoding;
 
 import io.grpc.Metadata.Key;
 import io.grpc.internal.GrpcUtil;
@@ -53,6 +55,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Locale;
 
@@ -208,6 +211,176 @@ public class MetadataTest {
     assertFalse(fishes.hasNext());
   }
 
+  @Test
+  public void indexedLookups() {
+    Fish lance = new Fish(LANCE);
+    Fish cat = new Fish("cat");
+    Metadata metadata = new Metadata();
+    metadata.put(KEY, lance);
+    putFiller(metadata, Metadata.INDEX_THRESHOLD);
+    metadata.put(KEY, cat);
+    buildIndex(metadata);
+
+    assertTrue(metadata.containsKey(KEY));
+    assertEquals(cat, metadata.get(KEY));
+    assertEquals(Arrays.asList(lance, cat), Lists.newArrayList(metadata.getAll(KEY)));
+    assertEquals("3", metadata.get(fillerKey(3)));
+    Key<Fish> missing = Key.of("missing-bin", FISH_MARSHALLER);
+    assertFalse(metadata.containsKey(missing));
+    assertNull(metadata.get(missing));
+    assertNull(metadata.getAll(missing));
+    assertNull(metadata.removeAll(missing));
+    assertFalse(metadata.remove(missing, lance));
+
+    // Appending after the index exists, including enough names to outgrow it.
+    putFiller(metadata, 4 * Metadata.INDEX_THRESHOLD);
+    metadata.put(KEY, lance);
+    assertEquals(lance, metadata.get(KEY));
+    assertEquals(Arrays.asList(lance, cat, lance), Lists.newArrayList(metadata.getAll(KEY)));
+    assertEquals(Arrays.asList("3", "3"), Lists.newArrayList(metadata.getAll(fillerKey(3))));
+    assertEquals("20", metadata.get(fillerKey(20)));
+  }
+
+  @Test
+  public void indexedRemovals() {
+    Fish lance = new Fish(LANCE);
+    Fish cat = new Fish("cat");
+    Metadata metadata = new Metadata();
+    putFiller(metadata, Metadata.INDEX_THRESHOLD);
+    metadata.put(KEY, lance);
+    metadata.put(KEY, cat);
+    putFiller(metadata, Metadata.INDEX_THRESHOLD);
+    buildIndex(metadata);
+    assertEquals(cat, metadata.get(KEY));
+
+    assertTrue(metadata.remove(KEY, cat));
+    buildIndex(metadata);
+    assertEquals(lance, metadata.get(KEY));
+    assertEquals(Arrays.asList("1", "1"), Lists.newArrayList(metadata.getAll(fillerKey(1))));
+
+    metadata.discardAll(fillerKey(1));
+    buildIndex(metadata);
+    assertNull(metadata.get(fillerKey(1)));
+    assertEquals(lance, metadata.get(KEY));
+
+    assertEquals(Arrays.asList(lance), Lists.newArrayList(metadata.removeAll(KEY)));
+    assertFalse(metadata.containsKey(KEY));
+    assertEquals("7", metadata.get(fillerKey(7)));
+    assertEquals(2 * Metadata.INDEX_THRESHOLD - 2, metadata.headerCount());
+  }
+
+  @Test
+  public void indexedMerge() {
+    Fish lance = new Fish(LANCE);
+    Metadata metadata = new Metadata();
+    putFiller(metadata, Metadata.INDEX_THRESHOLD + 1);
+    buildIndex(metadata);
+    assertNull(metadata.get(KEY));
+
+    Metadata other = new Metadata();
+    other.put(KEY, lance);
+    putFiller(other, 2);
+    metadata.merge(other);
+    assertEquals(lance, metadata.get(KEY));
+    assertEquals(Arrays.asList("1", "1"), Lists.newArrayList(metadata.getAll(fillerKey(1))));
+
+    Metadata selected = new Metadata();
+    putFiller(selected, Metadata.INDEX_THRESHOLD + 1);
+    buildIndex(selected);
+    assertNull(selected.get(KEY));
+    selected.merge(other, Collections.<Key<?>>singleton(KEY));
+    assertEquals(lance, selected.get(KEY));
+    assertEquals(Arrays.asList("0"), Lists.newArrayList(selected.getAll(fillerKey(0))));
+  }
+
+  @Test
+  public void indexedByteConstructed() {
+    byte[][] namesAndValues = new byte[(Metadata.INDEX_THRESHOLD + 2) * 2][];
+    for (int i = 0; i < Metadata.INDEX_THRESHOLD + 2; i++) {
+      namesAndValues[i * 2] = KEY.asciiName();
+      namesAndValues[i * 2 + 1] = ("fish" + i).getBytes(US_ASCII);
+    }
+    Metadata raw = new Metadata(namesAndValues);
+    buildIndex(raw);
+
+    assertEquals(new Fish("fish" + (Metadata.INDEX_THRESHOLD + 1)), raw.get(KEY));
+    assertEquals(new Fish("fish0"), raw.getAll(KEY).iterator().next());
+    assertArrayEquals(namesAndValues, raw.serialize());
+  }
+
+  @Test
+  public void encodedBinaryValuesDecodedWhenRead() {
+    byte[] encodedLance = BaseEncoding.base64().encode(LANCE_BYTES).getBytes(US_ASCII);
+    byte[] encodedCat = BaseEncoding.base64().encode("cat".getBytes(US_ASCII)).getBytes(US_ASCII);
+    Key<String> plain = Key.of("plain", Metadata.ASCII_STRING_MARSHALLER);
+    Metadata metadata = Metadata.fromHttp2Headers(3,
+        KEY.asciiName(), encodedLance,
+        plain.asciiName(), "cat".getBytes(US_ASCII),
+        KEY.asciiName(), encodedCat);
+
+    assertEquals("Metadata(test-bin=" + new String(encodedLance, US_ASCII) + ",plain=cat,test-bin="
+        + new String(encodedCat, US_ASCII) + ")", metadata.toString());
+    assertEquals("cat", metadata.get(plain));
+    byte[][] http2Headers = metadata.serializeForHttp2();
+    assertSame(encodedLance, http2Headers[1]);
+    assertSame(encodedCat, http2Headers[5]);
+
+    assertEquals(new Fish("cat"), metadata.get(KEY));
+    assertSame(encodedLance, metadata.serializeForHttp2()[1]);
+    assertArrayEquals(encodedCat, metadata.serializeForHttp2()[5]);
+
+    // Removal shifts the encoded entry along with its value.
+    metadata.discardAll(plain);
+    assertSame(encodedLance, metadata.serializeForHttp2()[1]);
+    assertTrue(metadata.remove(KEY, new Fish("cat")));
+    assertArrayEquals(encodedLance, metadata.serializeForHttp2()[1]);
+    assertEquals(Arrays.asList(new Fish(LANCE)), Lists.newArrayList(metadata.getAll(KEY)));
+  }
+
+  @Test
+  public void encodedBinaryValuesSurviveMerge() {
+    byte[] encodedLance = BaseEncoding.base64().encode(LANCE_BYTES).getBytes(US_ASCII);
+    Metadata received = Metadata.fromHttp2Headers(1, KEY.asciiName(), encodedLance);
+
+    Metadata merged = new Metadata();
+    merged.put(KEY, new Fish("cat"));
+    merged.merge(received);
+    Metadata selected = new Metadata();
+    selected.merge(received, Collections.<Key<?>>singleton(KEY));
+
+    assertArrayEquals("cat".getBytes(US_ASCII), merged.serialize()[1]);
+    assertSame(encodedLance, selected.serializeForHttp2()[1]);
+    assertEquals(new Fish(LANCE), merged.get(KEY));
+    assertEquals(new Fish(LANCE), selected.get(KEY));
+  }
+
+  @Test
+  public void serializeDecodesEncodedBinaryValues() {
+    byte[] encodedLance = BaseEncoding.base64().encode(LANCE_BYTES).getBytes(US_ASCII);
+    Metadata received = Metadata.fromHttp2Headers(1, KEY.asciiName(), encodedLance);
+
+    assertArrayEquals(LANCE_BYTES, received.serialize()[1]);
+    assertEquals(new Fish(LANCE), received.get(KEY));
+  }
+
+  /** Performs enough lookups of a missing key that the next lookup goes through the index. */
+  private static void buildIndex(Metadata metadata) {
+    Key<String> missing = Key.of("not-present", Metadata.ASCII_STRING_MARSHALLER);
+    for (int i = 0; i < Metadata.SCANS_BEFORE_INDEX + 1; i++) {
+      assertFalse(metadata.containsKey(missing));
+    }
+  }
+
+  private static Key<String> fillerKey(int i) {
+    return Key.of("filler-" + i, Metadata.ASCII_STRING_MARSHALLER);
+  }
+
+  private static void putFiller(Metadata metadata, int count) {
+    for (int i = 0; i < count; i++) {
+      metadata.put(fillerKey(i), Integer.toString(i));
+    }
+  }
+
   @Test
   public void integerMarshallerIsDecimal() {
     assertEquals("12345678", Metadata.INTEGER_MARSHALLER.toAsciiString(12345678));
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import io.grpc.Status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link AdmissionController}.
+ */
+@RunWith(JUnit4.class)
+public class AdmissionControllerTest {
+  private final FakeClock fakeClock = new FakeClock();
+  private final AdmissionController controller = new AdmissionController(
+      MILLISECONDS.toNanos(5), MILLISECONDS.toNanos(100),
+      fakeClock.getStopwatchSupplier().get().start());
+
+  @Test
+  public void shortBurstIsAdmitted() {
+    assertNull(controller.admit(null));
+    assertNull(controller.admit(null));
+    controller.callStarted(MILLISECONDS.toNanos(50));
+    controller.callStarted(MILLISECONDS.toNanos(1));
+
+    fakeClock.forwardTime(100, MILLISECONDS);
+    assertNull(controller.admit(null));
+  }
+
+  @Test
+  public void standingQueueRejectsUntilDrained() {
+    assertNull(controller.admit(null));
+    assertNull(controller.admit(null));
+    controller.callStarted(MILLISECONDS.toNanos(10));
+
+    fakeClock.forwardTime(100, MILLISECONDS);
+    assertEquals(Status.Code.UNAVAILABLE, controller.admit(null).getCode());
+    controller.callStarted(MILLISECONDS.toNanos(8));
+
+    fakeClock.forwardTime(100, MILLISECONDS);
+    assertEquals(Status.Code.UNAVAILABLE, controller.admit(null).getCode());
+
+    fakeClock.forwardTime(100, MILLISECONDS);
+    assertNull(controller.admit(null));
+  }
+
+  @Test
+  public void stuckQueueRejects() {
+    assertNull(controller.admit(null));
+
+    fakeClock.forwardTime(100, MILLISECONDS);
+    assertEquals(Status.Code.UNAVAILABLE, controller.admit(null).getCode());
+  }
+
+  @Test
+  public void deadlineShorterThanQueueingDelayRejected() {
+    assertNull(controller.admit(null));
+    assertNull(controller.admit(null));
+    controller.callStarted(MILLISECONDS.toNanos(20));
+
+    assertEquals(Status.Code.DEADLINE_EXCEEDED,
+        controller.admit(MILLISECONDS.toNanos(10)).getCode());
+    assertNull(controller.admit(MILLISECONDS.toNanos(30)));
+  }
+
+  @Test
+  public void shortDeadlinesAdmittedAgainOnceQueueDrains() {
+    assertNull(controller.admit(null));
+    assertNull(controller.admit(null));
+    controller.callStarted(MILLISECONDS.toNanos(2000));
+    assertEquals(Status.Code.DEADLINE_EXCEEDED,
+        controller.admit(MILLISECONDS.toNanos(1000)).getCode());
+
+    controller.callStarted(MILLISECONDS.toNanos(1));
+    fakeClock.forwardTime(100, MILLISECONDS);
+
+    assertNull(controller.admit(MILLISECONDS.toNanos(1000)));
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Function;
+
+import io.grpc.CallOptions;
+import io.grpc.LoadBalancer2.CallTracker;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.StringMarshaller;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/** Unit tests for {@link CallTrackingTransport}. */
+@RunWith(JUnit4.class)
+public class CallTrackingTransportTest {
+  @Mock private ClientTransport delegate;
+  @Mock private ClientStream delegateStream;
+  @Mock private ClientStreamListener listener;
+  @Mock private Function<MethodDescriptor<?, ?>, CallTracker> callTrackers;
+  private final MethodDescriptor<String, String> method = MethodDescriptor.create(
+      MethodDescriptor.MethodType.UNARY, "service/method", StringMarshaller.INSTANCE,
+      StringMarshaller.INSTANCE);
+  private final CallTracker callTracker = mock(CallTracker.class);
+  private CallTrackingTransport transport;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    when(callTrackers.apply(method)).thenReturn(callTracker);
+    when(delegate.newStream(same(method), any(Metadata.class), any(CallOptions.class),
+        any(StatsTraceContext.class))).thenReturn(delegateStream);
+    transport = new CallTrackingTransport(delegate, callTrackers);
+  }
+
+  @Test
+  public void trackerNotifiedWhenStreamCloses() {
+    ClientStream stream = transport.newStream(method, new Metadata(), CallOptions.DEFAULT,
+        StatsTraceContext.NOOP);
+    verify(callTrackers).apply(method);
+    stream.start(listener);
+    ArgumentCaptor<ClientStreamListener> listenerCaptor =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(delegateStream).start(listenerCaptor.capture());
+    stream.request(1);
+    verify(delegateStream).request(1);
+    verify(callTracker, never()).callEnded(any(Status.class));
+
+    Metadata trailers = new Metadata();
+    listenerCaptor.getValue().closed(Status.UNAVAILABLE, trailers);
+    verify(callTracker).callEnded(Status.UNAVAILABLE);
+    verify(listener).closed(Status.UNAVAILABLE, trailers);
+  }
+}
@@ -309,8 +309,8 @@ public class ClientCallImplTest {
         same(statsTraceCtx));
     Metadata actual = metadataCaptor.getValue();
 
-    Set<String> acceptedEncodings =
-        ImmutableSet.copyOf(actual.getAll(GrpcUtil.MESSAGE_ACCEPT_ENCODING_KEY));
+    Set<String> acceptedEncodings = ImmutableSet.copyOf(
+        ACCEPT_ENCODING_SPLITTER.split(actual.get(GrpcUtil.MESSAGE_ACCEPT_ENCODING_KEY)));
     assertEquals(decompressorRegistry.getAdvertisedMessageEncodings(), acceptedEncodings);
   }
 
@@ -33,6 +33,8 @@ package io.grpc.internal;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -172,6 +174,28 @@ public class CompositeReadableBufferTest {
     verify(mock2).close();
   }
 
+  @Test
+  public void getByteBufferShouldWalkComponents() {
+    assertTrue(composite.byteBufferSupported());
+    StringBuilder builder = new StringBuilder();
+    ByteBuffer byteBuffer;
+    while ((byteBuffer = composite.getByteBuffer()) != null) {
+      int length = byteBuffer.remaining();
+      byte[] bytes = new byte[length];
+      byteBuffer.get(bytes);
+      builder.append(new String(bytes, UTF_8));
+      composite.skipBytes(length);
+    }
+    assertEquals(EXPECTED_VALUE, builder.toString());
+    assertEquals(0, composite.readableBytes());
+  }
+
+  @Test
+  public void byteBufferNotSupportedIfAnyComponentDoesNotSupportIt() {
+    composite.addBuffer(mock(ReadableBuffer.class));
+    assertFalse(composite.byteBufferSupported());
+  }
+
   private void splitAndAdd(String value) {
     int partLength = Math.max(1, value.length() / 4);
     for (int startIndex = 0, endIndex = 0; startIndex < value.length(); startIndex = endIndex) {
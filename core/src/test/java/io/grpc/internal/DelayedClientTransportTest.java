@@ -51,6 +51,7 @@ import com.google.common.base.Supplier;
 import io.grpc.Attributes;
 import io.grpc.CallOptions;
 import io.grpc.IntegerMarshaller;
+import io.grpc.LoadBalancer2.CallTracker;
 import io.grpc.LoadBalancer2.PickResult;
 import io.grpc.LoadBalancer2.SubchannelPicker;
 import io.grpc.Metadata;
@@ -501,6 +502,76 @@ public class DelayedClientTransportTest {
     verify(transportListener).transportTerminated();
   }
 
+  @Test
+  public void reprocess_callTrackerNotifiedWhenStreamCloses() {
+    CallTracker callTracker = mock(CallTracker.class);
+    SubchannelImpl subchannel = mock(SubchannelImpl.class);
+    when(subchannel.obtainActiveTransport()).thenReturn(mockRealTransport);
+    SubchannelPicker picker = mock(SubchannelPicker.class);
+    when(picker.pickSubchannel(any(Attributes.class), any(Metadata.class))).thenReturn(
+        PickResult.withSubchannel(subchannel, callTracker));
+
+    ClientStream stream = delayedTransport.newStream(method, headers, callOptions, statsTraceCtx);
+    stream.start(streamListener);
+    delayedTransport.reprocess(picker);
+    assertEquals(1, fakeExecutor.runDueTasks());
+    verify(mockRealStream).start(listenerCaptor.capture());
+    verify(callTracker, never()).callEnded(any(Status.class));
+
+    Metadata trailers = new Metadata();
+    listenerCaptor.getValue().closed(Status.DEADLINE_EXCEEDED, trailers);
+    verify(callTracker).callEnded(Status.DEADLINE_EXCEEDED);
+    verify(streamListener).closed(same(Status.DEADLINE_EXCEEDED), same(trailers));
+  }
+
+  @Test
+  public void reprocess_callTrackerNotifiedWhenSubchannelNotReady() {
+    CallTracker callTracker = mock(CallTracker.class);
+    SubchannelImpl subchannel = mock(SubchannelImpl.class);
+    SubchannelPicker picker = mock(SubchannelPicker.class);
+    when(picker.pickSubchannel(any(Attributes.class), any(Metadata.class))).thenReturn(
+        PickResult.withSubchannel(subchannel, callTracker));
+
+    ClientStream stream = delayedTransport.newStream(method, headers, callOptions, statsTraceCtx);
+    stream.start(streamListener);
+    delayedTransport.reprocess(picker);
+    verify(callTracker).callNotStarted();
+    assertEquals(1, delayedTransport.getPendingStreamsCount());
+
+    // Once cancelled, the pick that was not used is not reported again.
+    stream.cancel(Status.CANCELLED);
+    verifyNoMoreInteractions(callTracker);
+  }
+
+  @Test
+  public void reprocess_callTrackerNotifiedWhenStreamCancelledDuringPick() {
+    final CallTracker callTracker = mock(CallTracker.class);
+    final SubchannelImpl subchannel = mock(SubchannelImpl.class);
+    when(subchannel.obtainActiveTransport()).thenReturn(mockRealTransport);
+    final ClientStream stream =
+        delayedTransport.newStream(method, headers, callOptions, statsTraceCtx);
+    stream.start(streamListener);
+    SubchannelPicker picker = new SubchannelPicker() {
+        @Override
+        public PickResult pickSubchannel(Attributes affinity, Metadata headers) {
+          // Cancelled after reprocess() copied the pending streams, but before it assigns the
+          // tracker.
+          stream.cancel(Status.CANCELLED);
+          return PickResult.withSubchannel(subchannel, callTracker);
+        }
+      };
+
+    delayedTransport.reprocess(picker);
+    verify(callTracker).callEnded(Status.CANCELLED);
+    assertEquals(0, fakeExecutor.runDueTasks());
+    verify(mockRealTransport, never()).newStream(
+        any(MethodDescriptor.class), any(Metadata.class), any(CallOptions.class),
+        any(StatsTraceContext.class));
+    verify(streamListener).closed(same(Status.CANCELLED), any(Metadata.class));
+    assertEquals(0, delayedTransport.getPendingStreamsCount());
+    verifyNoMoreInteractions(callTracker);
+  }
+
   @Test
   public void reprocess_NoPendingStream() {
     SubchannelPicker picker = mock(SubchannelPicker.class);
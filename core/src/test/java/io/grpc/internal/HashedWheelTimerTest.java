@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link HashedWheelTimer}.
+ */
+@RunWith(JUnit4.class)
+public class HashedWheelTimerTest {
+  // A small wheel, so tasks often need more than one turn
+  private final HashedWheelTimer timer = new HashedWheelTimer(
+      GrpcUtil.getThreadFactory("test-timer-%d", true), 1, MILLISECONDS, 8);
+
+  @After
+  public void tearDown() {
+    timer.shutdown();
+  }
+
+  @Test
+  public void taskNeverRunsEarly() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(1);
+    final long start = System.nanoTime();
+    final AtomicInteger elapsedMillis = new AtomicInteger();
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        elapsedMillis.set((int) NANOSECONDS.toMillis(System.nanoTime() - start));
+        ran.countDown();
+      }
+    }, 20, MILLISECONDS);
+
+    assertTrue(ran.await(5, SECONDS));
+    assertTrue(elapsedMillis.get() >= 20);
+  }
+
+  @Test
+  public void tasksBeyondOneTurnRunInOrder() throws Exception {
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+    final CountDownLatch ran = new CountDownLatch(3);
+    for (final int delay : new int[] {21, 5, 13}) {
+      timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          order.add(delay);
+          ran.countDown();
+        }
+      }, delay, MILLISECONDS);
+    }
+
+    assertTrue(ran.await(5, SECONDS));
+    assertEquals(Arrays.asList(5, 13, 21), order);
+  }
+
+  @Test
+  public void sleepsUntilTaskIsDue() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(1);
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    }, 100, MILLISECONDS);
+
+    assertTrue(ran.await(5, SECONDS));
+    // Waking every tick, or once per turn of the wheel, would take over ten wakeups
+    assertTrue("wakeups: " + timer.wakeups, timer.wakeups < 10);
+  }
+
+  @Test
+  public void cancelledTaskDoesNotRun() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    };
+    ScheduledFuture<?> future = timer.schedule(task, 20, MILLISECONDS);
+    assertTrue(future.cancel(false));
+    assertTrue(future.isCancelled());
+
+    final CountDownLatch later = new CountDownLatch(1);
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        later.countDown();
+      }
+    }, 40, MILLISECONDS);
+    assertTrue(later.await(5, SECONDS));
+    assertEquals(0, runs.get());
+  }
+
+  @Test
+  public void manySchedulesAndCancels() throws Exception {
+    List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+    Runnable noop = new Runnable() {
+      @Override
+      public void run() {
+        fail("Cancelled task ran");
+      }
+    };
+    for (int i = 0; i < 10000; i++) {
+      futures.add(timer.schedule(noop, 10 + i % 50, MILLISECONDS));
+      if (i % 2 == 1) {
+        futures.remove(0).cancel(false);
+        futures.remove(0).cancel(false);
+      }
+    }
+    final CountDownLatch ran = new CountDownLatch(1);
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    }, 80, MILLISECONDS);
+    assertTrue(ran.await(5, SECONDS));
+  }
+
+  @Test
+  public void executeDoesNotWaitForTick() throws Exception {
+    HashedWheelTimer slowTimer = new HashedWheelTimer(
+        GrpcUtil.getThreadFactory("test-slow-timer-%d", true), 1, SECONDS, 8);
+    try {
+      // Let the timer thread go idle, then start sleeping until the end of a tick
+      slowTimer.schedule(new Runnable() {
+        @Override
+        public void run() {
+        }
+      }, 10, SECONDS);
+      final CountDownLatch ran = new CountDownLatch(2);
+      Runnable task = new Runnable() {
+        @Override
+        public void run() {
+          ran.countDown();
+        }
+      };
+      slowTimer.execute(task);
+      slowTimer.schedule(task, 0, MILLISECONDS);
+
+      assertTrue(ran.await(500, MILLISECONDS));
+    } finally {
+      slowTimer.shutdown();
+    }
+  }
+
+  @Test
+  public void callableResult() throws Exception {
+    ScheduledFuture<String> future = timer.schedule(new Callable<String>() {
+      @Override
+      public String call() {
+        return "done";
+      }
+    }, 5, MILLISECONDS);
+    assertEquals("done", future.get(5, SECONDS));
+  }
+
+  @Test
+  public void fixedRateRepeatsUntilCancelled() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(5);
+    ScheduledFuture<?> future = timer.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    }, 0, 2, MILLISECONDS);
+    assertTrue(ran.await(5, SECONDS));
+    assertTrue(future.cancel(false));
+    assertFalse(future.isDone() && !future.isCancelled());
+  }
+
+  @Test
+  public void shutdownCancelsPendingTasksAndRejectsNewOnes() throws Exception {
+    ScheduledFuture<?> future = timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+      }
+    }, 10, SECONDS);
+    timer.shutdown();
+    assertTrue(timer.awaitTermination(5, SECONDS));
+    assertTrue(timer.isTerminated());
+    assertTrue(future.isCancelled());
+    try {
+      timer.execute(new Runnable() {
+        @Override
+        public void run() {
+        }
+      });
+      fail("Expected exception");
+    } catch (RejectedExecutionException expected) {
+      // expected
+    }
+  }
+}
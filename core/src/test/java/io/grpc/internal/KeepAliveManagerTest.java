@@ -32,13 +32,17 @@
 package io.grpc.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.isA;
-import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import com.google.common.base.Stopwatch;
+
 import io.grpc.Status;
+import io.grpc.internal.KeepAliveManager.ClientKeepAlivePinger;
+import io.grpc.internal.KeepAliveManager.KeepAlivePinger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -49,334 +53,238 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 @RunWith(JUnit4.class)
 public final class KeepAliveManagerTest {
-  private final FakeTicker ticker = new FakeTicker();
-  private KeepAliveManager keepAliveManager;
-  @Mock private ManagedClientTransport transport;
-  @Mock private ScheduledExecutorService scheduler;
-
-  static class FakeTicker extends KeepAliveManager.Ticker {
-    long time;
+  private static final long KEEPALIVE_DELAY = 1000;
+  private static final long KEEPALIVE_TIMEOUT = 2000;
 
+  private final FakeClock fakeClock = new FakeClock();
+  private final Stopwatch stopwatch = fakeClock.getStopwatchSupplier().get().start();
+  private final KeepAliveManager.Ticker ticker = new KeepAliveManager.Ticker() {
     @Override
     public long read() {
-      return time;
+      return stopwatch.elapsed(TimeUnit.NANOSECONDS);
     }
-  }
+  };
+  private KeepAliveManager keepAliveManager;
+  @Mock private KeepAlivePinger keepAlivePinger;
+  @Mock private ManagedClientTransport transport;
 
   @Before
   public void setUp() {
     MockitoAnnotations.initMocks(this);
-    keepAliveManager = new KeepAliveManager(transport, scheduler, ticker, 1000, 2000);
+    keepAliveManager = new KeepAliveManager(keepAlivePinger,
+        fakeClock.getScheduledExecutorService(), ticker, KEEPALIVE_DELAY, KEEPALIVE_TIMEOUT);
   }
 
   @Test
   public void sendKeepAlivePings() {
-    ticker.time = 1;
     // Transport becomes active. We should schedule keepalive pings.
     keepAliveManager.onTransportActive();
-    ArgumentCaptor<Long> delayCaptor = ArgumentCaptor.forClass(Long.class);
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), delayCaptor.capture(),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
-    Long delay = delayCaptor.getValue();
-    assertEquals(1000 - 1, delay.longValue());
-
-    ScheduledFuture<?> shutdownFuture = mock(ScheduledFuture.class);
-    doReturn(shutdownFuture)
-        .when(scheduler).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Mannually running the Runnable will send the ping. Shutdown task should be scheduled.
-    ticker.time = 1000;
-    sendPing.run();
-    ArgumentCaptor<ClientTransport.PingCallback> pingCallbackCaptor =
-        ArgumentCaptor.forClass(ClientTransport.PingCallback.class);
-    verify(transport).ping(pingCallbackCaptor.capture(), isA(Executor.class));
-    ClientTransport.PingCallback pingCallback = pingCallbackCaptor.getValue();
-    verify(scheduler, times(2)).schedule(isA(Runnable.class), delayCaptor.capture(),
-        isA(TimeUnit.class));
-    delay = delayCaptor.getValue();
-    // Keepalive timeout is 2000.
-    assertEquals(2000, delay.longValue());
-
-    // Ping succeeds. Reschedule another ping.
-    ticker.time = 1100;
-    pingCallback.onSuccess(100);
-    verify(scheduler, times(3)).schedule(isA(Runnable.class), delayCaptor.capture(),
-        isA(TimeUnit.class));
-    // Shutdown task has been cancelled.
-    verify(shutdownFuture).cancel(isA(Boolean.class));
-    delay = delayCaptor.getValue();
-    // Next ping should be exactly 1000 nanoseconds later.
-    assertEquals(1000, delay.longValue());
-  }
+    assertEquals(1, fakeClock.numPendingTasks());
 
-  @Test
-  public void keepAlivePingDelayedByIncomingData() {
-    // Transport becomes active. We should schedule keepalive pings.
-    keepAliveManager.onTransportActive();
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
+    forwardNanos(KEEPALIVE_DELAY - 1);
+    verify(keepAlivePinger, never()).ping();
+    forwardNanos(1);
+    verify(keepAlivePinger).ping();
 
-    // We receive some data. We may need to delay the ping.
-    ticker.time = 1500;
+    // Ping response arrives.
+    forwardNanos(100);
     keepAliveManager.onDataReceived();
-    ticker.time = 1600;
-    sendPing.run();
-    // We didn't send the ping.
-    verify(transport, times(0)).ping(isA(ClientTransport.PingCallback.class),
-        isA(Executor.class));
-    // Instead we reschedule.
-    ArgumentCaptor<Long> delayCaptor = ArgumentCaptor.forClass(Long.class);
-    verify(scheduler, times(2)).schedule(isA(Runnable.class), delayCaptor.capture(),
-        isA(TimeUnit.class));
-    Long delay = delayCaptor.getValue();
-    assertEquals(1500 + 1000 - 1600, delay.longValue());
+    // The response is noticed when the check runs, one delay after the ping.
+    forwardNanos(KEEPALIVE_DELAY - 100);
+    verify(keepAlivePinger).ping();
+    // Next ping should be exactly one delay after the response.
+    forwardNanos(99);
+    verify(keepAlivePinger).ping();
+    forwardNanos(1);
+    verify(keepAlivePinger, times(2)).ping();
+    verify(keepAlivePinger, never()).onPingTimeout();
   }
 
   @Test
-  public void keepAlivePingFails() {
-    // Transport becomes active. We should schedule keepalive pings.
+  public void keepAlivePingDelayedByIncomingData() {
     keepAliveManager.onTransportActive();
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
-
-    ScheduledFuture<?> shutdownFuture = mock(ScheduledFuture.class);
-    doReturn(shutdownFuture)
-        .when(scheduler).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Mannually running the Runnable will send the ping. Shutdown task should be scheduled.
-    ticker.time = 1000;
-    sendPing.run();
-    ArgumentCaptor<ClientTransport.PingCallback> pingCallbackCaptor =
-        ArgumentCaptor.forClass(ClientTransport.PingCallback.class);
-    verify(transport).ping(pingCallbackCaptor.capture(), isA(Executor.class));
-    ClientTransport.PingCallback pingCallback = pingCallbackCaptor.getValue();
-    verify(scheduler, times(2)).schedule(isA(Runnable.class), isA(Long.class),
-        isA(TimeUnit.class));
 
-    // Ping fails. Shutdown the transport.
-    ticker.time = 1100;
-    pingCallback.onFailure(new Throwable());
-    // Shutdown task has been cancelled.
-    verify(shutdownFuture).cancel(isA(Boolean.class));
-    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
-    verify(transport).shutdownNow(statusCaptor.capture());
-    Status status = statusCaptor.getValue();
-    assertEquals(Status.UNAVAILABLE.getCode(), status.getCode());
+    // We receive some data. We should delay the ping.
+    forwardNanos(500);
+    keepAliveManager.onDataReceived();
+    forwardNanos(500);
+    verify(keepAlivePinger, never()).ping();
+    forwardNanos(500);
+    verify(keepAlivePinger).ping();
   }
 
   @Test
-  public void keepAlivePingFailsAfterItTimesOut() {
-    // Transport becomes active. We should schedule keepalive pings.
+  public void dataReceivedDoesNotSchedule() {
     keepAliveManager.onTransportActive();
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
-
-    ScheduledFuture<?> shutdownFuture = mock(ScheduledFuture.class);
-    doReturn(shutdownFuture)
-        .when(scheduler).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Mannually running the Runnable will send the ping. Shutdown task should be scheduled.
-    ticker.time = 1000;
-    sendPing.run();
-    ArgumentCaptor<ClientTransport.PingCallback> pingCallbackCaptor =
-        ArgumentCaptor.forClass(ClientTransport.PingCallback.class);
-    verify(transport).ping(pingCallbackCaptor.capture(), isA(Executor.class));
-    ClientTransport.PingCallback pingCallback = pingCallbackCaptor.getValue();
-    ArgumentCaptor<Runnable> shutdownCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(2)).schedule(shutdownCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable shutdown = shutdownCaptor.getValue();
-
-    // We do not receive the ping response. Shutdown runnable runs.
-    ticker.time = 3000;
-    shutdown.run();
-    verify(transport).shutdownNow(isA(Status.class));
-
-    // We receive the ping error after we shutdown the transport.
-    pingCallback.onFailure(new Throwable());
-    // We should not shutdown transport again.
-    verify(transport, times(1)).shutdownNow(isA(Status.class));
+    for (int i = 0; i < 100; i++) {
+      forwardNanos(10);
+      keepAliveManager.onDataReceived();
+    }
+    assertEquals(1, fakeClock.numPendingTasks());
+    verify(keepAlivePinger, never()).ping();
   }
 
   @Test
   public void keepAlivePingTimesOut() {
-    // Transport becomes active. We should schedule keepalive pings.
     keepAliveManager.onTransportActive();
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
-
-    ScheduledFuture<?> shutdownFuture = mock(ScheduledFuture.class);
-    doReturn(shutdownFuture)
-        .when(scheduler).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Mannually running the Runnable will send the ping. Shutdown task should be scheduled.
-    ticker.time = 1000;
-    sendPing.run();
-    ArgumentCaptor<ClientTransport.PingCallback> pingCallbackCaptor =
-        ArgumentCaptor.forClass(ClientTransport.PingCallback.class);
-    verify(transport).ping(pingCallbackCaptor.capture(), isA(Executor.class));
-    ClientTransport.PingCallback pingCallback = pingCallbackCaptor.getValue();
-    ArgumentCaptor<Runnable> shutdownCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(2)).schedule(shutdownCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable shutdown = shutdownCaptor.getValue();
-
-    // We do not receive the ping response. Shutdown runnable runs.
-    ticker.time = 3000;
-    shutdown.run();
-    verify(transport).shutdownNow(isA(Status.class));
-
-    // We receive the ping response too late.
-    pingCallback.onSuccess(3000);
-    // No more ping should be scheduled.
-    verify(scheduler, times(2)).schedule(isA(Runnable.class), isA(Long.class),
-        isA(TimeUnit.class));
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger).ping();
+
+    // We do not receive the ping response.
+    forwardNanos(KEEPALIVE_TIMEOUT - 1);
+    verify(keepAlivePinger, never()).onPingTimeout();
+    forwardNanos(1);
+    verify(keepAlivePinger).onPingTimeout();
+
+    // No more pings or checks.
+    assertEquals(0, fakeClock.numPendingTasks());
+    keepAliveManager.onDataReceived();
+    keepAliveManager.onTransportActive();
+    forwardNanos(10 * KEEPALIVE_DELAY);
+    verify(keepAlivePinger).ping();
+    verify(keepAlivePinger).onPingTimeout();
   }
 
   @Test
   public void transportGoesIdle() {
-    // Transport becomes active. We should schedule keepalive pings.
     keepAliveManager.onTransportActive();
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
 
-    // Transport becomes idle. Nothing should happen when ping runnable runs.
+    // Transport becomes idle. Nothing should happen when the check runs.
     keepAliveManager.onTransportIdle();
-    sendPing.run();
-    // Ping was not sent.
-    verify(transport, times(0)).ping(isA(ClientTransport.PingCallback.class),
-        isA(Executor.class));
-    // No new ping got scheduled.
-    verify(scheduler, times(1)).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger, never()).ping();
+    // No new check got scheduled.
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void transportGoesIdleAndActiveBeforeCheckRuns() {
+    keepAliveManager.onTransportActive();
+    keepAliveManager.onTransportIdle();
+    keepAliveManager.onTransportActive();
+    // The pending check is reused.
+    assertEquals(1, fakeClock.numPendingTasks());
+
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger).ping();
   }
 
   @Test
   public void transportGoesIdleAfterPingSent() {
-    // Transport becomes active. We should schedule keepalive pings.
     keepAliveManager.onTransportActive();
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
-
-    ScheduledFuture<?> shutdownFuture = mock(ScheduledFuture.class);
-    doReturn(shutdownFuture)
-        .when(scheduler).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Mannually running the Runnable will send the ping. Shutdown task should be scheduled.
-    ticker.time = 1000;
-    sendPing.run();
-    ArgumentCaptor<ClientTransport.PingCallback> pingCallbackCaptor =
-        ArgumentCaptor.forClass(ClientTransport.PingCallback.class);
-    verify(transport).ping(pingCallbackCaptor.capture(), isA(Executor.class));
-    ClientTransport.PingCallback pingCallback = pingCallbackCaptor.getValue();
-    verify(scheduler, times(2)).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger).ping();
 
     // Transport becomes idle. No more ping should be scheduled after we receive a ping response.
     keepAliveManager.onTransportIdle();
-    ticker.time = 1100;
-    pingCallback.onSuccess(100);
-    verify(scheduler, times(2)).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Shutdown task has been cancelled.
-    verify(shutdownFuture).cancel(isA(Boolean.class));
+    forwardNanos(100);
+    keepAliveManager.onDataReceived();
+    forwardNanos(10 * KEEPALIVE_DELAY);
+    verify(keepAlivePinger).ping();
+    verify(keepAlivePinger, never()).onPingTimeout();
+    assertEquals(0, fakeClock.numPendingTasks());
 
     // Transport becomes active again. Another ping is scheduled.
     keepAliveManager.onTransportActive();
-    verify(scheduler, times(3)).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
+    forwardNanos(0);
+    verify(keepAlivePinger, times(2)).ping();
   }
 
   @Test
-  public void transportGoesIdleAndPingFails() {
-    // Transport becomes active. We should schedule keepalive pings.
+  public void transportGoesIdleAndActiveAfterPingSent() {
     keepAliveManager.onTransportActive();
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
-
-    ScheduledFuture<?> shutdownFuture = mock(ScheduledFuture.class);
-    doReturn(shutdownFuture)
-        .when(scheduler).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Mannually running the Runnable will send the ping. Shutdown task should be scheduled.
-    ticker.time = 1000;
-    sendPing.run();
-    ArgumentCaptor<ClientTransport.PingCallback> pingCallbackCaptor =
-        ArgumentCaptor.forClass(ClientTransport.PingCallback.class);
-    verify(transport).ping(pingCallbackCaptor.capture(), isA(Executor.class));
-    ClientTransport.PingCallback pingCallback = pingCallbackCaptor.getValue();
-    verify(scheduler, times(2)).schedule(isA(Runnable.class), isA(Long.class),
-        isA(TimeUnit.class));
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger).ping();
 
-    // Transport becomes idle. It does not stop the failed ping from shutting down the transport.
     keepAliveManager.onTransportIdle();
-    // Ping fails. Shutdown the transport.
-    ticker.time = 1100;
-    pingCallback.onFailure(new Throwable());
-    // Shutdown task has been cancelled.
-    verify(shutdownFuture).cancel(isA(Boolean.class));
-    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
-    verify(transport).shutdownNow(statusCaptor.capture());
-    Status status = statusCaptor.getValue();
-    assertEquals(Status.UNAVAILABLE.getCode(), status.getCode());
+    keepAliveManager.onTransportActive();
+    forwardNanos(100);
+    keepAliveManager.onDataReceived();
+
+    // Pinging continues after the response.
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger, times(2)).ping();
+  }
+
+  @Test
+  public void transportGoesIdleAndPingTimesOut() {
+    keepAliveManager.onTransportActive();
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger).ping();
+
+    // Transport becomes idle. It does not stop the unanswered ping from timing out.
+    keepAliveManager.onTransportIdle();
+    forwardNanos(KEEPALIVE_TIMEOUT);
+    verify(keepAlivePinger).onPingTimeout();
   }
 
   @Test
   public void transportShutsdownAfterPingScheduled() {
-    ScheduledFuture<?> pingFuture = mock(ScheduledFuture.class);
-    doReturn(pingFuture)
-        .when(scheduler).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Ping will be scheduled.
     keepAliveManager.onTransportActive();
-    verify(scheduler, times(1)).schedule(isA(Runnable.class), isA(Long.class),
-        isA(TimeUnit.class));
-    // Transport is shutting down.
+    assertEquals(1, fakeClock.numPendingTasks());
+
+    // Transport is shutting down. The check should have been cancelled.
     keepAliveManager.onTransportShutdown();
-    // Ping future should have been cancelled.
-    verify(pingFuture).cancel(isA(Boolean.class));
+    assertEquals(0, fakeClock.numPendingTasks());
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger, never()).ping();
   }
 
   @Test
   public void transportShutsdownAfterPingSent() {
     keepAliveManager.onTransportActive();
-    ArgumentCaptor<Runnable> sendPingCaptor = ArgumentCaptor.forClass(Runnable.class);
-    verify(scheduler, times(1)).schedule(sendPingCaptor.capture(), isA(Long.class),
-        isA(TimeUnit.class));
-    Runnable sendPing = sendPingCaptor.getValue();
-
-    ScheduledFuture<?> shutdownFuture = mock(ScheduledFuture.class);
-    doReturn(shutdownFuture)
-        .when(scheduler).schedule(isA(Runnable.class), isA(Long.class), isA(TimeUnit.class));
-    // Mannually running the Runnable will send the ping. Shutdown task should be scheduled.
-    ticker.time = 1000;
-    sendPing.run();
+    forwardNanos(KEEPALIVE_DELAY);
+    verify(keepAlivePinger).ping();
+
+    // Transport is shutting down. The ping will not time out.
+    keepAliveManager.onTransportShutdown();
+    assertEquals(0, fakeClock.numPendingTasks());
+    forwardNanos(KEEPALIVE_TIMEOUT);
+    verify(keepAlivePinger, never()).onPingTimeout();
+  }
+
+  @Test
+  public void minimumKeepAliveDelay() {
+    keepAliveManager = new KeepAliveManager(keepAlivePinger,
+        fakeClock.getScheduledExecutorService(), KEEPALIVE_DELAY, KEEPALIVE_TIMEOUT);
+    keepAliveManager.onTransportActive();
+    forwardNanos(TimeUnit.SECONDS.toNanos(59));
+    verify(keepAlivePinger, never()).ping();
+  }
+
+  @Test
+  public void clientKeepAlivePingerPingsTransport() {
+    ClientKeepAlivePinger pinger = new ClientKeepAlivePinger(transport);
+    pinger.ping();
     ArgumentCaptor<ClientTransport.PingCallback> pingCallbackCaptor =
         ArgumentCaptor.forClass(ClientTransport.PingCallback.class);
     verify(transport).ping(pingCallbackCaptor.capture(), isA(Executor.class));
-    verify(scheduler, times(2)).schedule(isA(Runnable.class), isA(Long.class),
-        isA(TimeUnit.class));
 
-    // Transport is shutting down.
-    keepAliveManager.onTransportShutdown();
-    // Shutdown task has been cancelled.
-    verify(shutdownFuture).cancel(isA(Boolean.class));
+    // Success is noticed as received data, so it does not shut down the transport.
+    pingCallbackCaptor.getValue().onSuccess(100);
+    verify(transport, never()).shutdownNow(any(Status.class));
 
-    ClientTransport.PingCallback pingCallback = pingCallbackCaptor.getValue();
-    // Ping fails after transport shutting down. We will not shutdown the transport again.
-    pingCallback.onFailure(new Throwable());
-    verify(transport, times(0)).shutdownNow(isA(Status.class));
+    // Ping fails. Shutdown the transport.
+    pingCallbackCaptor.getValue().onFailure(new Throwable());
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(transport).shutdownNow(statusCaptor.capture());
+    assertEquals(Status.Code.UNAVAILABLE, statusCaptor.getValue().getCode());
   }
-}
 
+  @Test
+  public void clientKeepAlivePingerShutsDownTransportOnTimeout() {
+    ClientKeepAlivePinger pinger = new ClientKeepAlivePinger(transport);
+    pinger.onPingTimeout();
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(transport).shutdownNow(statusCaptor.capture());
+    assertEquals(Status.Code.UNAVAILABLE, statusCaptor.getValue().getCode());
+  }
+
+  private void forwardNanos(long nanos) {
+    fakeClock.forwardTime(nanos, TimeUnit.NANOSECONDS);
+  }
+}
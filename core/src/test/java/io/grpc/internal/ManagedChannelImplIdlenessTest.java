@@ -137,7 +137,7 @@ public class ManagedChannelImplIdlenessTest {
         mockNameResolverFactory, Attributes.EMPTY, mockLoadBalancerFactory,
         mockTransportFactory, DecompressorRegistry.getDefaultInstance(),
         CompressorRegistry.getDefaultInstance(), timerService, timer.getStopwatchSupplier(),
-        TimeUnit.SECONDS.toMillis(IDLE_TIMEOUT_SECONDS),
+        TimeUnit.SECONDS.toMillis(IDLE_TIMEOUT_SECONDS), 1, Integer.MAX_VALUE,
         executor.getScheduledExecutorService(), USER_AGENT,
         Collections.<ClientInterceptor>emptyList(),
         NoopCensusContextFactory.INSTANCE);
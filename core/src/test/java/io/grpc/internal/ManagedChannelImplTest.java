@@ -164,7 +164,7 @@ public class ManagedChannelImplTest {
         nameResolverFactory, NAME_RESOLVER_PARAMS, loadBalancerFactory,
         mockTransportFactory, DecompressorRegistry.getDefaultInstance(),
         CompressorRegistry.getDefaultInstance(), timerService, timer.getStopwatchSupplier(),
-        ManagedChannelImpl.IDLE_TIMEOUT_MILLIS_DISABLE,
+        ManagedChannelImpl.IDLE_TIMEOUT_MILLIS_DISABLE, 1, Integer.MAX_VALUE,
         executor.getScheduledExecutorService(), userAgent, interceptors, censusCtxFactory);
     // Force-exit the initial idle-mode
     channel.exitIdleMode();
@@ -34,14 +34,17 @@ package io.grpc.internal;
 import static io.grpc.internal.GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 import com.google.census.RpcConstants;
 import com.google.common.base.Charsets;
@@ -49,6 +52,7 @@ import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Bytes;
 
 import io.grpc.Codec;
+import io.grpc.HasByteBuffer;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.internal.MessageDeframer.Listener;
@@ -70,6 +74,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
@@ -222,6 +227,40 @@ public class MessageDeframerTest {
     checkStats(payload.length, 1000);
   }
 
+  @Test
+  public void uncompressedMessageExposesTransportBuffers() throws Exception {
+    deframer.request(1);
+    byte[] frame = new byte[] {0, 0, 0, 0, 3, 3, 14, 15};
+    deframer.deframe(buffer(frame), false);
+    verify(listener).messageRead(messages.capture());
+    InputStream message = messages.getValue();
+    assertTrue(message instanceof HasByteBuffer);
+    HasByteBuffer hasByteBuffer = (HasByteBuffer) message;
+    assertTrue(hasByteBuffer.byteBufferSupported());
+    ByteBuffer byteBuffer = hasByteBuffer.getByteBuffer();
+    // The message is a view over the received frame rather than a copy.
+    assertTrue(byteBuffer.hasArray());
+    assertSame(frame, byteBuffer.array());
+    assertEquals(3, byteBuffer.remaining());
+    assertEquals(3, message.skip(3));
+    assertNull(hasByteBuffer.getByteBuffer());
+    message.close();
+  }
+
+  @Test
+  public void closingMessageReleasesBuffers() throws Exception {
+    deframer.request(1);
+    deframer.deframe(buffer(new byte[] {0, 0, 0, 0, 3}), false);
+    ReadableBuffer body = mock(ReadableBuffer.class);
+    when(body.readableBytes()).thenReturn(3);
+    deframer.deframe(body, false);
+    verify(listener).messageRead(messages.capture());
+    verify(body, never()).close();
+
+    messages.getValue().close();
+    verify(body).close();
+  }
+
   @Test
   public void deliverIsReentrantSafe() {
     doAnswer(new Answer<Void>() {
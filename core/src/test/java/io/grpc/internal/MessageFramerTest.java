@@ -35,15 +35,22 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 import com.google.census.RpcConstants;
 
+import io.grpc.ByteBufferDrainable;
 import io.grpc.Codec;
+import io.grpc.CompressionPolicy;
+import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.internal.StatsTraceContext;
@@ -61,6 +68,8 @@ import org.mockito.MockitoAnnotations;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
@@ -339,6 +348,55 @@ public class MessageFramerTest {
     checkStats(1000, 1000);
   }
 
+  @Test
+  public void dontCompressIfDeciderDeclines() throws Exception {
+    CompressionPolicy.Decider decider = mock(CompressionPolicy.Decider.class);
+    when(decider.shouldCompress(1000)).thenReturn(false);
+    allocator = new BytesWritableBufferAllocator(100, Integer.MAX_VALUE);
+    framer = new MessageFramer(sink, allocator, statsTraceCtx)
+        .setCompressor(new Codec.Gzip())
+        .setCompressionDecider(decider);
+    writeKnownLength(framer, new byte[1000]);
+    framer.flush();
+    verify(sink).deliverFrame(frameCaptor.capture(), eq(false), eq(true));
+
+    ByteWritableBuffer buffer = frameCaptor.getAllValues().get(0);
+    assertEquals(0x0, buffer.data[0]);
+    assertEquals(buffer.data.length - 5, 1000);
+    verify(decider, never()).messageCompressed(anyInt(), anyInt());
+    checkStats(1000, 1000);
+  }
+
+  @Test
+  public void compressedMessageReportedToDecider() throws Exception {
+    CompressionPolicy.Decider decider = mock(CompressionPolicy.Decider.class);
+    when(decider.shouldCompress(1000)).thenReturn(true);
+    allocator = new BytesWritableBufferAllocator(100, Integer.MAX_VALUE);
+    framer = new MessageFramer(sink, allocator, statsTraceCtx)
+        .setCompressor(new Codec.Gzip())
+        .setCompressionDecider(decider);
+    writeKnownLength(framer, new byte[1000]);
+    framer.flush();
+    verify(sink).deliverFrame(frameCaptor.capture(), eq(false), eq(false));
+    verify(sink).deliverFrame(frameCaptor.capture(), eq(false), eq(true));
+
+    ByteWritableBuffer header = frameCaptor.getAllValues().get(0);
+    assertEquals(0x1, header.data[0]);
+    int length = frameCaptor.getAllValues().get(1).size();
+    verify(decider).messageCompressed(1000, length);
+    checkStats(length, 1000);
+  }
+
+  @Test
+  public void deciderNotConsultedWithoutCompressor() throws Exception {
+    CompressionPolicy.Decider decider = mock(CompressionPolicy.Decider.class);
+    framer.setCompressionDecider(decider);
+    writeKnownLength(framer, new byte[] {3, 14});
+    framer.flush();
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {0, 0, 0, 0, 2, 3, 14}), false, true);
+    verifyZeroInteractions(decider);
+  }
+
   @Test
   public void closeIsRentrantSafe() throws Exception {
     MessageFramer.Sink reentrant = new MessageFramer.Sink() {
@@ -368,6 +426,34 @@ public class MessageFramerTest {
     checkStats(0, 0);
   }
 
+  @Test
+  public void byteBufferDrainableWrittenStraightIntoBuffer() {
+    DirectDrainableInputStream message = new DirectDrainableInputStream(new byte[] {3, 14});
+    framer.writePayload(message);
+    framer.flush();
+
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {0, 0, 0, 0, 2, 3, 14}), false, true);
+    assertEquals(1, message.byteBufferDrains);
+    assertEquals(1, allocator.allocCount);
+    checkStats(2, 2);
+  }
+
+  @Test
+  public void byteBufferDrainableTooLargeForBufferUsesOutputStream() {
+    allocator = new BytesWritableBufferAllocator(12, 12);
+    framer = new MessageFramer(sink, allocator, statsTraceCtx);
+    DirectDrainableInputStream message =
+        new DirectDrainableInputStream(new byte[] {3, 14, 1, 5, 9, 2, 6, 5});
+    framer.writePayload(message);
+    framer.flush();
+
+    verify(sink).deliverFrame(
+        toWriteBuffer(new byte[] {0, 0, 0, 0, 8, 3, 14, 1, 5, 9, 2, 6}), false, false);
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {5}), false, true);
+    assertEquals(0, message.byteBufferDrains);
+    checkStats(8, 8);
+  }
+
   private static WritableBuffer toWriteBuffer(byte[] data) {
     return toWriteBufferWithMinSize(data, 0);
   }
@@ -404,6 +490,33 @@ public class MessageFramerTest {
     assertNull(record.getMetric(RpcConstants.RPC_CLIENT_UNCOMPRESSED_RESPONSE_BYTES));
   }
 
+  /** A known length message that counts how often it is drained straight into a buffer. */
+  private static class DirectDrainableInputStream extends ByteArrayInputStream
+      implements ByteBufferDrainable, KnownLength {
+    int byteBufferDrains;
+
+    DirectDrainableInputStream(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public int drainTo(ByteBuffer target) {
+      byteBufferDrains++;
+      int length = available();
+      target.put(buf, pos, length);
+      pos += length;
+      return length;
+    }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+      int length = available();
+      target.write(buf, pos, length);
+      pos += length;
+      return length;
+    }
+  }
+
   static class ByteWritableBuffer implements WritableBuffer {
     byte[] data;
     private int writeIdx;
@@ -423,6 +536,17 @@ public class MessageFramerTest {
       data[writeIdx++] = b;
     }
 
+    @Override
+    public int write(ByteBufferDrainable src, int length) throws IOException {
+      if (length > writableBytes()) {
+        throw new IndexOutOfBoundsException();
+      }
+      ByteBuffer target = ByteBuffer.wrap(data, writeIdx, length);
+      int written = src.drainTo(target);
+      writeIdx = target.position();
+      return written;
+    }
+
     @Override
     public int writableBytes() {
       return data.length - writeIdx;
@@ -34,6 +34,8 @@ package io.grpc.internal;
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -132,6 +134,18 @@ public abstract class ReadableBufferTestBase {
     assertArrayEquals(new byte[] {'h', 'e'}, Arrays.copyOfRange(array, 0, 2));     
   }
 
+  @Test
+  public void getByteBufferShouldNotAdvanceReadPosition() {
+    ReadableBuffer buffer = buffer();
+    assumeTrue(buffer.byteBufferSupported());
+    buffer.skipBytes(2);
+    ByteBuffer byteBuffer = buffer.getByteBuffer();
+    assertTrue(byteBuffer.remaining() > 0);
+    assertEquals('l', byteBuffer.get());
+    assertEquals(msg.length() - 2, buffer.readableBytes());
+    assertEquals('l', buffer.readUnsignedByte());
+  }
+
   protected abstract ReadableBuffer buffer();
 
   private static String repeatUntilLength(String toRepeat, int length) {
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Function;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2.CallTracker;
+import io.grpc.MethodDescriptor;
+import io.grpc.TransportManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Unit tests for {@link RoundRobinServerList}. */
+@RunWith(JUnit4.class)
+public class RoundRobinServerListTest {
+  @Mock private TransportManager<Transport> tm;
+  @Mock private Function<MethodDescriptor<?, ?>, CallTracker> callTrackers;
+  private final List<EquivalentAddressGroup> servers = new ArrayList<EquivalentAddressGroup>();
+  private final List<Transport> transports = new ArrayList<Transport>();
+  private final Transport trackedTransport = new Transport();
+  private final FakeHealthTracker healthTracker = new FakeHealthTracker();
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    for (int i = 0; i < 3; i++) {
+      EquivalentAddressGroup server =
+          new EquivalentAddressGroup(new InetSocketAddress("10.0.0." + i, 443));
+      Transport transport = new Transport();
+      servers.add(server);
+      transports.add(transport);
+      when(tm.getTransport(server)).thenReturn(transport);
+    }
+  }
+
+  @Test
+  public void cyclesThroughServersWithoutHealthTracker() {
+    RoundRobinServerList<Transport> list =
+        new RoundRobinServerList.Builder<Transport>(tm).addAll(servers).build();
+    for (int i = 0; i < 6; i++) {
+      assertSame(transports.get(i % 3), list.getTransportForNextServer());
+    }
+    verify(tm, never()).trackCalls(
+        any(Transport.class), Matchers.<Function<MethodDescriptor<?, ?>, CallTracker>>any());
+  }
+
+  @Test
+  public void skipsUnhealthyServersAndTracksCalls() {
+    when(tm.trackCalls(same(transports.get(2)), same(callTrackers))).thenReturn(trackedTransport);
+    RoundRobinServerList<Transport> list = new RoundRobinServerList.Builder<Transport>(tm)
+        .addAll(servers).setHealthTracker(healthTracker).build();
+    healthTracker.unhealthy.add(servers.get(0));
+    healthTracker.unhealthy.add(servers.get(1));
+
+    for (int i = 0; i < 4; i++) {
+      assertSame(trackedTransport, list.getTransportForNextServer());
+    }
+    verify(tm, never()).getTransport(servers.get(0));
+    verify(tm, never()).getTransport(servers.get(1));
+  }
+
+  @Test
+  public void usesUnhealthyServersIfAllAre() {
+    when(tm.trackCalls(any(Transport.class), same(callTrackers))).thenReturn(trackedTransport);
+    RoundRobinServerList<Transport> list = new RoundRobinServerList.Builder<Transport>(tm)
+        .addAll(servers).setHealthTracker(healthTracker).build();
+    healthTracker.unhealthy.addAll(servers);
+
+    assertSame(trackedTransport, list.getTransportForNextServer());
+    verify(tm).trackCalls(same(transports.get(2)), same(callTrackers));
+  }
+
+  private final class FakeHealthTracker implements RoundRobinServerList.HealthTracker {
+    final Set<EquivalentAddressGroup> unhealthy = new HashSet<EquivalentAddressGroup>();
+
+    @Override
+    public boolean isUnhealthy(EquivalentAddressGroup server) {
+      return unhealthy.contains(server);
+    }
+
+    @Override
+    public Function<MethodDescriptor<?, ?>, CallTracker> callTrackers(
+        EquivalentAddressGroup server) {
+      return callTrackers;
+    }
+  }
+
+  private static class Transport {}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.internal;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class SerializingExecutorTest {
+  private final FakeClock fakeClock = new FakeClock();
+  private final SerializingExecutor executor =
+      new SerializingExecutor(fakeClock.getScheduledExecutorService());
+  private ExecutorService pool;
+
+  @After
+  public void tearDown() {
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void tasksRunInOrderOnUnderlyingExecutor() {
+    final List<Integer> callOrder = new ArrayList<Integer>();
+    for (int i = 1; i <= 3; i++) {
+      final int task = i;
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          callOrder.add(task);
+        }
+      });
+    }
+
+    assertTrue(callOrder.isEmpty());
+    assertEquals(1, fakeClock.numPendingTasks());
+    assertEquals(1, fakeClock.runDueTasks());
+    assertEquals(asList(1, 2, 3), callOrder);
+  }
+
+  @Test
+  public void tasksSubmittedWhileRunningAreRunByTheSameRunner() {
+    final List<Integer> callOrder = new ArrayList<Integer>();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            callOrder.add(2);
+          }
+        });
+        callOrder.add(1);
+      }
+    });
+
+    assertEquals(1, fakeClock.runDueTasks());
+    assertEquals(asList(1, 2), callOrder);
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void exceptionShouldNotCancelQueuedTasks() {
+    final AtomicBoolean executed = new AtomicBoolean();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        throw new RuntimeException("One");
+      }
+    });
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        executed.set(true);
+      }
+    });
+
+    fakeClock.runDueTasks();
+    assertTrue(executed.get());
+  }
+
+  @Test
+  public void errorStopsRunnerAndLeavesRemainingTasksQueued() {
+    final AtomicBoolean executed = new AtomicBoolean();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        throw new AssertionError("One");
+      }
+    });
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        executed.set(true);
+      }
+    });
+
+    try {
+      fakeClock.runDueTasks();
+      fail("Expected error");
+    } catch (AssertionError expected) {
+      assertEquals("One", expected.getMessage());
+    }
+    assertFalse(executed.get());
+
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+    fakeClock.runDueTasks();
+    assertTrue(executed.get());
+  }
+
+  @Test
+  public void rejectedRunnerDoesNotLeaveExecutorStuck() {
+    final AtomicBoolean reject = new AtomicBoolean(true);
+    final List<Runnable> runners = new ArrayList<Runnable>();
+    SerializingExecutor executor = new SerializingExecutor(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        if (reject.get()) {
+          throw new RejectedExecutionException();
+        }
+        runners.add(command);
+      }
+    });
+    final AtomicInteger callsExecuted = new AtomicInteger();
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        callsExecuted.incrementAndGet();
+      }
+    };
+
+    try {
+      executor.execute(task);
+      fail("Expected exception");
+    } catch (RejectedExecutionException expected) {
+      // expected
+    }
+    reject.set(false);
+    executor.execute(task);
+
+    assertEquals(1, runners.size());
+    runners.get(0).run();
+    assertEquals(2, callsExecuted.get());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void executingNullShouldFail() {
+    executor.execute(null);
+  }
+
+  @Test
+  public void concurrentProducersKeepPerProducerOrderAndNeverOverlap() throws Exception {
+    final int producers = 4;
+    final int tasksPerProducer = 10000;
+    pool = Executors.newFixedThreadPool(producers + 2);
+    final SerializingExecutor executor = new SerializingExecutor(pool);
+    final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicBoolean running = new AtomicBoolean();
+    final AtomicBoolean overlapped = new AtomicBoolean();
+    final CountDownLatch done = new CountDownLatch(producers * tasksPerProducer);
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      pool.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < tasksPerProducer; i++) {
+            final int value = producer * tasksPerProducer + i;
+            executor.execute(new Runnable() {
+              @Override
+              public void run() {
+                if (!running.compareAndSet(false, true)) {
+                  overlapped.set(true);
+                }
+                executed.add(value);
+                running.set(false);
+                done.countDown();
+              }
+            });
+          }
+        }
+      });
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertFalse(overlapped.get());
+    int[] lastSeen = new int[producers];
+    for (int i = 0; i < producers; i++) {
+      lastSeen[i] = -1;
+    }
+    for (int value : executed) {
+      int producer = value / tasksPerProducer;
+      assertTrue(value % tasksPerProducer > lastSeen[producer]);
+      lastSeen[producer] = value % tasksPerProducer;
+    }
+  }
+}
@@ -40,6 +40,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -47,6 +48,7 @@ import com.google.census.RpcConstants;
 import com.google.census.TagValue;
 import com.google.common.io.CharStreams;
 
+import io.grpc.CompressionPolicy;
 import io.grpc.CompressorRegistry;
 import io.grpc.Context;
 import io.grpc.DecompressorRegistry;
@@ -195,6 +197,17 @@ public class ServerCallImplTest {
     verify(stream).setMessageCompression(true);
   }
 
+  @Test
+  public void setCompressionPolicy() {
+    CompressionPolicy policy = mock(CompressionPolicy.class);
+    CompressionPolicy.Decider decider = mock(CompressionPolicy.Decider.class);
+    when(policy.newDecider(method.getFullMethodName())).thenReturn(decider);
+
+    call.setCompressionPolicy(policy);
+
+    verify(stream).setCompressionDecider(decider);
+  }
+
   @Test
   public void streamListener_halfClosed() {
     ServerStreamListenerImpl<Long> streamListener =
@@ -31,6 +31,7 @@
 
 package io.grpc.internal;
 
+import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -60,6 +61,7 @@ import com.google.common.truth.Truth;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import io.grpc.Attributes;
+import io.grpc.Bulkhead;
 import io.grpc.Compressor;
 import io.grpc.CompressorRegistry;
 import io.grpc.Context;
@@ -99,15 +101,22 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
 /** Unit tests for {@link ServerImpl}. */
 @RunWith(JUnit4.class)
@@ -118,6 +127,8 @@ public class ServerImplTest {
   private static final Context.CancellableContext SERVER_CONTEXT =
       Context.ROOT.withValue(SERVER_ONLY, "yes").withCancellation();
   private static final ImmutableList<ServerTransportFilter> NO_FILTERS = ImmutableList.of();
+  private static final long NO_BLOCKING_THRESHOLD = 0;
+  private static final AdmissionController NO_ADMISSION_CONTROL = null;
 
   private final FakeCensusContextFactory censusCtxFactory = new FakeCensusContextFactory();
   private final CompressorRegistry compressorRegistry = CompressorRegistry.getDefaultInstance();
@@ -139,7 +150,7 @@ public class ServerImplTest {
   private SimpleServer transportServer = new SimpleServer();
   private ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
       SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-      GrpcUtil.STOPWATCH_SUPPLIER);
+      GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
 
   @Captor
   private ArgumentCaptor<Status> statusCaptor;
@@ -175,7 +186,7 @@ public class ServerImplTest {
     };
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
     server.shutdown();
     assertTrue(server.isShutdown());
@@ -194,7 +205,7 @@ public class ServerImplTest {
     };
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.shutdown();
     assertTrue(server.isShutdown());
     assertTrue(server.isTerminated());
@@ -204,7 +215,7 @@ public class ServerImplTest {
   public void startStopImmediateWithChildTransport() throws IOException {
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
     class DelayedShutdownServerTransport extends SimpleServerTransport {
       boolean shutdown;
@@ -229,7 +240,7 @@ public class ServerImplTest {
   public void startShutdownNowImmediateWithChildTransport() throws IOException {
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
     class DelayedShutdownServerTransport extends SimpleServerTransport {
       boolean shutdown;
@@ -257,7 +268,7 @@ public class ServerImplTest {
   public void shutdownNowAfterShutdown() throws IOException {
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
     class DelayedShutdownServerTransport extends SimpleServerTransport {
       boolean shutdown;
@@ -292,7 +303,7 @@ public class ServerImplTest {
     };
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
     class DelayedShutdownServerTransport extends SimpleServerTransport {
       boolean shutdown;
@@ -329,7 +340,8 @@ public class ServerImplTest {
 
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry,
         new FailingStartupServer(), SERVER_CONTEXT, decompressorRegistry, compressorRegistry,
-        NO_FILTERS, censusCtxFactory, GrpcUtil.STOPWATCH_SUPPLIER);
+        NO_FILTERS, censusCtxFactory, GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD,
+        NO_ADMISSION_CONTROL);
     try {
       server.start();
       fail("expected exception");
@@ -542,7 +554,8 @@ public class ServerImplTest {
 
     ServerImpl server = new ServerImpl(MoreExecutors.directExecutor(), registry, fallbackRegistry,
         transportServer, SERVER_CONTEXT, decompressorRegistry, compressorRegistry,
-        ImmutableList.of(filter1, filter2), censusCtxFactory, GrpcUtil.STOPWATCH_SUPPLIER);
+        ImmutableList.of(filter1, filter2), censusCtxFactory, GrpcUtil.STOPWATCH_SUPPLIER,
+        NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
     ServerTransportListener transportListener
         = transportServer.registerNewServerTransport(new SimpleServerTransport());
@@ -624,7 +637,7 @@ public class ServerImplTest {
     transportServer = new MaybeDeadlockingServer();
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
     new Thread() {
       @Override
@@ -830,7 +843,7 @@ public class ServerImplTest {
     };
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
 
     Truth.assertThat(server.getPort()).isEqualTo(65535);
@@ -841,7 +854,7 @@ public class ServerImplTest {
     transportServer = new SimpleServer();
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     thrown.expect(IllegalStateException.class);
     thrown.expectMessage("started");
     server.getPort();
@@ -852,7 +865,7 @@ public class ServerImplTest {
     transportServer = new SimpleServer();
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
     server.shutdown();
     server.awaitTermination();
@@ -861,6 +874,283 @@ public class ServerImplTest {
     server.getPort();
   }
 
+  @Test
+  public void lookupMethodNameFromBytes() throws Exception {
+    MethodDescriptor<String, Integer> method1 = MethodDescriptor.create(
+        MethodType.UNKNOWN, "Service1/Method1", STRING_MARSHALLER, INTEGER_MARSHALLER);
+    MethodDescriptor<String, Integer> method2 = MethodDescriptor.create(
+        MethodType.UNKNOWN, "Service1/Method2", STRING_MARSHALLER, INTEGER_MARSHALLER);
+    registry = new InternalHandlerRegistry.Builder()
+        .addService(ServerServiceDefinition.builder(
+                new ServiceDescriptor("Service1", method1, method2))
+            .addMethod(method1, callHandler)
+            .addMethod(method2, callHandler).build())
+        .build();
+    transportServer = new SimpleServer();
+    ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
+        SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
+    server.start();
+
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    byte[] path = "/Service1/Method2".getBytes(UTF_8);
+    assertSame(method2.getFullMethodName(),
+        transportListener.lookupMethodName(path, 1, path.length - 1));
+    path = "/Service1/Method1".getBytes(UTF_8);
+    assertSame(method1.getFullMethodName(),
+        transportListener.lookupMethodName(path, 1, path.length - 1));
+    assertNull(transportListener.lookupMethodName(path, 0, path.length));
+    assertNull(transportListener.lookupMethodName(path, 1, path.length - 2));
+    path = "/Service1/Method3".getBytes(UTF_8);
+    assertNull(transportListener.lookupMethodName(path, 1, path.length - 1));
+  }
+
+  @Test
+  public void directExecutorServiceRunsInTransportThread() throws Exception {
+    final AtomicReference<Thread> startCallThread = new AtomicReference<Thread>();
+    MethodDescriptor<String, Integer> method1 = MethodDescriptor.create(
+        MethodType.UNKNOWN, "Service1/Method1", STRING_MARSHALLER, INTEGER_MARSHALLER);
+    MethodDescriptor<String, Integer> method2 = MethodDescriptor.create(
+        MethodType.UNKNOWN, "Service2/Method2", STRING_MARSHALLER, INTEGER_MARSHALLER);
+    ServerCallHandler<String, Integer> handler = new ServerCallHandler<String, Integer>() {
+      @Override
+      public ServerCall.Listener<String> startCall(
+          ServerCall<String, Integer> call, Metadata headers) {
+        startCallThread.set(Thread.currentThread());
+        return callListener;
+      }
+    };
+    registry = new InternalHandlerRegistry.Builder()
+        .addService(ServerServiceDefinition.builder(new ServiceDescriptor("Service1", method1))
+            .addMethod(method1, handler).build())
+        .addService(ServerServiceDefinition.builder(new ServiceDescriptor("Service2", method2))
+            .addMethod(method2, handler).build())
+        .directExecutor("Service1")
+        .build();
+    transportServer = new SimpleServer();
+    ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
+        SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
+    server.start();
+
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        transportListener.methodDetermined("Service1/Method1", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+
+    transportListener.streamCreated(stream, "Service1/Method1", requestHeaders);
+    assertSame(Thread.currentThread(), startCallThread.get());
+    verify(stream).setListener(streamListenerCaptor.capture());
+    streamListenerCaptor.getValue().halfClosed();
+    verify(callListener).onHalfClose();
+
+    startCallThread.set(null);
+    transportListener.streamCreated(stream, "Service2/Method2", requestHeaders);
+    executeBarrier(executor).await();
+    assertNotNull(startCallThread.get());
+    assertNotSame(Thread.currentThread(), startCallThread.get());
+  }
+
+  @Test
+  public void directExecutorBlockingLogged() throws Exception {
+    final FakeClock fakeClock = new FakeClock();
+    MethodDescriptor<String, Integer> method1 = MethodDescriptor.create(
+        MethodType.UNKNOWN, "Service1/Method1", STRING_MARSHALLER, INTEGER_MARSHALLER);
+    ServerCallHandler<String, Integer> handler = new ServerCallHandler<String, Integer>() {
+      @Override
+      public ServerCall.Listener<String> startCall(
+          ServerCall<String, Integer> call, Metadata headers) {
+        fakeClock.forwardTime(20, TimeUnit.MILLISECONDS);
+        return callListener;
+      }
+    };
+    registry = new InternalHandlerRegistry.Builder()
+        .addService(ServerServiceDefinition.builder(new ServiceDescriptor("Service1", method1))
+            .addMethod(method1, handler).build())
+        .directExecutor("Service1/Method1")
+        .build();
+    transportServer = new SimpleServer();
+    ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
+        SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
+        fakeClock.getStopwatchSupplier(), TimeUnit.MILLISECONDS.toNanos(10),
+        NO_ADMISSION_CONTROL);
+    server.start();
+
+    final List<LogRecord> logs = new ArrayList<LogRecord>();
+    Handler logHandler = new Handler() {
+      @Override
+      public void publish(LogRecord record) {
+        logs.add(record);
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    Logger logger = Logger.getLogger(ServerImpl.class.getName());
+    logger.addHandler(logHandler);
+    try {
+      ServerTransportListener transportListener
+          = transportServer.registerNewServerTransport(new SimpleServerTransport());
+      Metadata requestHeaders = new Metadata();
+      StatsTraceContext statsTraceCtx =
+          transportListener.methodDetermined("Service1/Method1", requestHeaders);
+      when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+      transportListener.streamCreated(stream, "Service1/Method1", requestHeaders);
+
+      assertEquals(1, logs.size());
+      assertEquals(Level.WARNING, logs.get(0).getLevel());
+      assertEquals("Call to Service1/Method1 blocked the transport thread for 20 ms",
+          logs.get(0).getMessage());
+
+      // Callbacks within the threshold are not logged
+      verify(stream).setListener(streamListenerCaptor.capture());
+      streamListenerCaptor.getValue().halfClosed();
+      verify(callListener).onHalfClose();
+      assertEquals(1, logs.size());
+    } finally {
+      logger.removeHandler(logHandler);
+    }
+  }
+
+  @Test
+  public void bulkheadRunsCallsAndRejectsWhenFull() throws Exception {
+    FakeClock fakeClock = new FakeClock();
+    Bulkhead bulkhead = new Bulkhead(fakeClock.getScheduledExecutorService(), 1);
+    MethodDescriptor<String, Integer> method1 = MethodDescriptor.create(
+        MethodType.UNKNOWN, "Service1/Method1", STRING_MARSHALLER, INTEGER_MARSHALLER);
+    registry = new InternalHandlerRegistry.Builder()
+        .addService(ServerServiceDefinition.builder(new ServiceDescriptor("Service1", method1))
+            .addMethod(method1, callHandler).build())
+        .bulkhead("Service1", bulkhead)
+        .build();
+    transportServer = new SimpleServer();
+    ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
+        SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
+        fakeClock.getStopwatchSupplier(), NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
+    server.start();
+    when(callHandler.startCall(Matchers.<ServerCall<String, Integer>>anyObject(),
+        Matchers.<Metadata>anyObject())).thenReturn(callListener);
+
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        transportListener.methodDetermined("Service1/Method1", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    transportListener.streamCreated(stream, "Service1/Method1", requestHeaders);
+    assertEquals(1, bulkhead.getQueueLength());
+
+    ServerStream stream2 = mock(ServerStream.class);
+    when(stream2.statsTraceContext()).thenReturn(
+        transportListener.methodDetermined("Service1/Method1", requestHeaders));
+    transportListener.streamCreated(stream2, "Service1/Method1", requestHeaders);
+    verify(stream2).close(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, statusCaptor.getValue().getCode());
+    assertEquals(1, bulkhead.getCallsRejected());
+
+    fakeClock.forwardTime(5, TimeUnit.MILLISECONDS);
+    verify(callHandler).startCall(Matchers.<ServerCall<String, Integer>>anyObject(),
+        Matchers.<Metadata>anyObject());
+    assertEquals(0, bulkhead.getQueueLength());
+    assertEquals(1, bulkhead.getCallsStarted());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(5), bulkhead.getTotalWaitNanos());
+  }
+
+  @Test
+  public void bulkheadReleasesQueueSlotWhenExecutorRejects() throws Exception {
+    Executor rejectingExecutor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    };
+    Bulkhead bulkhead = new Bulkhead(rejectingExecutor, 1);
+    MethodDescriptor<String, Integer> method1 = MethodDescriptor.create(
+        MethodType.UNKNOWN, "Service1/Method1", STRING_MARSHALLER, INTEGER_MARSHALLER);
+    registry = new InternalHandlerRegistry.Builder()
+        .addService(ServerServiceDefinition.builder(new ServiceDescriptor("Service1", method1))
+            .addMethod(method1, callHandler).build())
+        .bulkhead("Service1", bulkhead)
+        .build();
+    transportServer = new SimpleServer();
+    ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
+        SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
+    server.start();
+
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    Metadata requestHeaders = new Metadata();
+    for (int i = 0; i < 2; i++) {
+      ServerStream rejectedStream = mock(ServerStream.class);
+      when(rejectedStream.statsTraceContext()).thenReturn(
+          transportListener.methodDetermined("Service1/Method1", requestHeaders));
+      transportListener.streamCreated(rejectedStream, "Service1/Method1", requestHeaders);
+      verify(rejectedStream).close(statusCaptor.capture(), any(Metadata.class));
+      assertEquals(Status.Code.RESOURCE_EXHAUSTED, statusCaptor.getValue().getCode());
+      assertTrue(statusCaptor.getValue().getCause() instanceof RejectedExecutionException);
+      assertEquals(0, bulkhead.getQueueLength());
+    }
+    assertEquals(2, bulkhead.getCallsRejected());
+    verifyNoMoreInteractions(callHandler);
+  }
+
+  @Test
+  public void admissionControlRejectsCallsWithShortDeadlines() throws Exception {
+    FakeClock fakeClock = new FakeClock();
+    AdmissionController admissionController = new AdmissionController(
+        TimeUnit.MILLISECONDS.toNanos(5), AdmissionController.DEFAULT_INTERVAL_NANOS,
+        fakeClock.getStopwatchSupplier().get().start());
+    MethodDescriptor<String, Integer> method1 = MethodDescriptor.create(
+        MethodType.UNKNOWN, "Service1/Method1", STRING_MARSHALLER, INTEGER_MARSHALLER);
+    registry = new InternalHandlerRegistry.Builder()
+        .addService(ServerServiceDefinition.builder(new ServiceDescriptor("Service1", method1))
+            .addMethod(method1, callHandler).build())
+        .build();
+    transportServer = new SimpleServer();
+    ServerImpl server = new ServerImpl(fakeClock.getScheduledExecutorService(), registry,
+        fallbackRegistry, transportServer, SERVER_CONTEXT, decompressorRegistry,
+        compressorRegistry, NO_FILTERS, censusCtxFactory, fakeClock.getStopwatchSupplier(),
+        NO_BLOCKING_THRESHOLD, admissionController);
+    server.start();
+    when(callHandler.startCall(Matchers.<ServerCall<String, Integer>>anyObject(),
+        Matchers.<Metadata>anyObject())).thenReturn(callListener);
+
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    Metadata requestHeaders = new Metadata();
+    when(stream.statsTraceContext()).thenReturn(
+        transportListener.methodDetermined("Service1/Method1", requestHeaders));
+    transportListener.streamCreated(stream, "Service1/Method1", requestHeaders);
+    fakeClock.forwardTime(20, TimeUnit.MILLISECONDS);
+    verify(callHandler).startCall(Matchers.<ServerCall<String, Integer>>anyObject(),
+        Matchers.<Metadata>anyObject());
+
+    // The call waited 20 ms for the executor, so while another call is queued one with a 10 ms
+    // deadline is failed right away
+    ServerStream queuedStream = mock(ServerStream.class);
+    when(queuedStream.statsTraceContext()).thenReturn(
+        transportListener.methodDetermined("Service1/Method1", requestHeaders));
+    transportListener.streamCreated(queuedStream, "Service1/Method1", requestHeaders);
+    Metadata shortDeadlineHeaders = new Metadata();
+    shortDeadlineHeaders.put(GrpcUtil.TIMEOUT_KEY, TimeUnit.MILLISECONDS.toNanos(10));
+    ServerStream stream2 = mock(ServerStream.class);
+    when(stream2.statsTraceContext()).thenReturn(
+        transportListener.methodDetermined("Service1/Method1", shortDeadlineHeaders));
+    transportListener.streamCreated(stream2, "Service1/Method1", shortDeadlineHeaders);
+    verify(stream2).close(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, statusCaptor.getValue().getCode());
+    assertEquals(1, fakeClock.numPendingTasks());
+  }
+
   @Test
   public void handlerRegistryPriorities() throws Exception {
     HandlerRegistry fallbackRegistry = mock(HandlerRegistry.class);
@@ -873,7 +1163,7 @@ public class ServerImplTest {
     transportServer = new SimpleServer();
     ServerImpl server = new ServerImpl(executor, registry, fallbackRegistry, transportServer,
         SERVER_CONTEXT, decompressorRegistry, compressorRegistry, NO_FILTERS, censusCtxFactory,
-        GrpcUtil.STOPWATCH_SUPPLIER);
+        GrpcUtil.STOPWATCH_SUPPLIER, NO_BLOCKING_THRESHOLD, NO_ADMISSION_CONTROL);
     server.start();
 
     ServerTransportListener transportListener
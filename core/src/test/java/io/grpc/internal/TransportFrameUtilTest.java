@@ -37,6 +37,7 @@ import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import com.google.common.io.BaseEncoding;
@@ -117,6 +118,26 @@ public class TransportFrameUtilTest {
     assertNull(recoveredHeaders.get(BINARY_STRING_WITHOUT_SUFFIX));
   }
 
+  @Test
+  public void receivedBinaryHeadersPassThroughEncoded() {
+    byte[] encodedValue = base64Encode(NONCOMPLIANT_ASCII_STRING.getBytes(US_ASCII));
+    Metadata received = InternalMetadata.newMetadataFromHttp2Headers(2,
+        "string-bin".getBytes(US_ASCII), encodedValue,
+        "plainstring".getBytes(US_ASCII), COMPLIANT_ASCII_STRING.getBytes(US_ASCII));
+    Metadata forwarded = new Metadata();
+    forwarded.merge(received);
+
+    byte[][] http2Headers = TransportFrameUtil.toHttp2Headers(forwarded);
+    assertSame(encodedValue, http2Headers[1]);
+    assertContains(http2Headers, "plainstring".getBytes(US_ASCII),
+        COMPLIANT_ASCII_STRING.getBytes(US_ASCII));
+
+    // Once read, the value is encoded again from its decoded form.
+    assertEquals(NONCOMPLIANT_ASCII_STRING, forwarded.get(BINARY_STRING));
+    http2Headers = TransportFrameUtil.toHttp2Headers(forwarded);
+    assertArrayEquals(encodedValue, http2Headers[1]);
+  }
+
   private static void assertContains(byte[][] headers, byte[] key, byte[] value) {
     String keyString = new String(key, US_ASCII);
     for (int i = 0; i < headers.length; i += 2) {
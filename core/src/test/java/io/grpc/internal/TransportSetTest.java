@@ -64,6 +64,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -756,6 +757,157 @@ public class TransportSetTest {
     verify(mockTransportSetCallback, times(inUse)).onInUse(transportSet);
   }
 
+  @Test
+  public void pool_opensExtraConnectionWhenAllAreBusy() {
+    createPooledTransportSet(3, 2);
+    MockClientTransportInfo t0 = connect();
+
+    // Streams stay on the first connection until it has 2
+    ClientStreamListener s0 = startStream(t0);
+    ClientStreamListener s1 = startStream(t0);
+    verify(mockTransportFactory).newClientTransport(any(SocketAddress.class), any(String.class),
+        any(String.class));
+
+    // The next pick finds all connections busy and opens another, which isn't ready yet
+    ClientStreamListener s2 = startStream(t0);
+    MockClientTransportInfo t1 = transports.poll();
+    assertNotNull(t1);
+    // Only one extra connection is opened at a time
+    startStream(t0);
+    assertNull(transports.poll());
+
+    t1.listener.transportReady();
+    startStream(t1);
+    startStream(t1);
+    // Closing streams on the first connection makes it the least busy again
+    s0.closed(Status.OK, new Metadata());
+    s1.closed(Status.OK, new Metadata());
+    s2.closed(Status.OK, new Metadata());
+    startStream(t0);
+    assertNull(transports.poll());
+
+    // A third connection is opened once both have 2 streams
+    startStream(t0);
+    MockClientTransportInfo t2 = transports.poll();
+    assertNotNull(t2);
+    t2.listener.transportReady();
+
+    // No more than 3 connections
+    startStream(t2);
+    startStream(t2);
+    startStream(t1);
+    assertNull(transports.poll());
+    assertEquals(ConnectivityState.READY, transportSet.getState(false));
+
+    shutdownPool(t0, t1, t2);
+  }
+
+  @Test
+  public void pool_reclaimsIdleExtraConnection() {
+    createPooledTransportSet(2, 1);
+    MockClientTransportInfo t0 = connect();
+    ClientStreamListener s0 = startStream(t0);
+    transportSet.obtainActiveTransport();
+    MockClientTransportInfo t1 = transports.poll();
+    t1.listener.transportReady();
+    ClientStreamListener stream = startStream(t1);
+    t1.listener.transportInUse(true);
+
+    // Not reclaimed while in use
+    fakeClock.forwardMillis(TransportSet.EXTRA_TRANSPORT_IDLE_MILLIS);
+    verify(t1.transport, never()).shutdown();
+
+    stream.closed(Status.OK, new Metadata());
+    t1.listener.transportInUse(false);
+    fakeClock.forwardMillis(TransportSet.EXTRA_TRANSPORT_IDLE_MILLIS - 1);
+    verify(t1.transport, never()).shutdown();
+    fakeClock.forwardMillis(1);
+    verify(t1.transport).shutdown();
+    t1.listener.transportShutdown(Status.UNAVAILABLE);
+    t1.listener.transportTerminated();
+
+    // The first connection is kept, and is used for new streams
+    verify(t0.transport, never()).shutdown();
+    s0.closed(Status.OK, new Metadata());
+    assertSame(t0.transport, delegate(transportSet.obtainActiveTransport()));
+    assertNull(transports.poll());
+
+    shutdownPool(t0);
+  }
+
+  @Test
+  public void pool_reclaimRacesWithPick() {
+    createPooledTransportSet(2, 1);
+    MockClientTransportInfo t0 = connect();
+    ClientStreamListener s0 = startStream(t0);
+    transportSet.obtainActiveTransport();
+    MockClientTransportInfo t1 = transports.poll();
+    t1.listener.transportReady();
+
+    // The idle connection is picked, but reclaimed before the stream is created on it
+    ClientTransport picked = transportSet.obtainActiveTransport();
+    assertSame(t1.transport, delegate(picked));
+    fakeClock.forwardMillis(TransportSet.EXTRA_TRANSPORT_IDLE_MILLIS);
+    verify(t1.transport).shutdown();
+
+    ClientStream stream =
+        picked.newStream(method, new Metadata(), failFastCallOptions, statsTraceCtx);
+    stream.start(mockStreamListener);
+    verify(t1.transport, never()).newStream(any(MethodDescriptor.class), any(Metadata.class),
+        any(CallOptions.class), any(StatsTraceContext.class));
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(mockStreamListener).closed(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.UNAVAILABLE, statusCaptor.getValue().getCode());
+
+    // New picks go to the remaining connection
+    t1.listener.transportShutdown(Status.UNAVAILABLE);
+    t1.listener.transportTerminated();
+    s0.closed(Status.OK, new Metadata());
+    startStream(t0);
+
+    shutdownPool(t0);
+  }
+
+  @Test
+  public void pool_extraConnectionsClosedWithActiveConnection() {
+    createPooledTransportSet(2, 1);
+    MockClientTransportInfo t0 = connect();
+    startStream(t0);
+    transportSet.obtainActiveTransport();
+    MockClientTransportInfo t1 = transports.poll();
+    t1.listener.transportReady();
+
+    t0.listener.transportShutdown(Status.UNAVAILABLE);
+
+    verify(t1.transport).shutdown();
+    t1.listener.transportShutdown(Status.UNAVAILABLE);
+    assertEquals(ConnectivityState.IDLE, transportSet.getState(false));
+    t0.listener.transportTerminated();
+    t1.listener.transportTerminated();
+    transportSet.shutdown();
+    assertTrue(transportSet.isTerminated());
+  }
+
+  @Test
+  public void pool_extraConnectionReadyAfterActiveConnectionClosed() {
+    createPooledTransportSet(2, 1);
+    MockClientTransportInfo t0 = connect();
+    startStream(t0);
+    transportSet.obtainActiveTransport();
+    MockClientTransportInfo t1 = transports.poll();
+
+    transportSet.shutdown();
+    verify(t0.transport).shutdown();
+    verify(t1.transport).shutdown();
+    t1.listener.transportReady();
+
+    t0.listener.transportShutdown(Status.UNAVAILABLE);
+    t1.listener.transportShutdown(Status.UNAVAILABLE);
+    t0.listener.transportTerminated();
+    t1.listener.transportTerminated();
+    assertTrue(transportSet.isTerminated());
+  }
+
   @Test
   public void scheduleBackoff_DoNotScheduleEndOfBackoffIfAlreadyShutdown() {
     // Setup
@@ -775,7 +927,8 @@ public class TransportSetTest {
     addressGroup = new EquivalentAddressGroup(Arrays.asList(addr));
     transportSet = new TransportSet(addressGroup, AUTHORITY, USER_AGENT, mockLoadBalancer,
         mockBackoffPolicyProvider, mockTransportFactory, fakeClock.getScheduledExecutorService(),
-        fakeClock.getStopwatchSupplier(), executor, mockTransportSetCallback);
+        fakeClock.getStopwatchSupplier(), executor, 1, Integer.MAX_VALUE,
+        mockTransportSetCallback);
 
     // Attempt and fail, scheduleBackoff should be triggered,
     // and transportSet.shutdown should be triggered by setup
@@ -790,11 +943,60 @@ public class TransportSetTest {
     verify(mockBackoffPolicy1, never()).nextBackoffMillis();
   }
 
+  private void createPooledTransportSet(int maxConnections, int streamsPerConnection) {
+    addressGroup = new EquivalentAddressGroup(mock(SocketAddress.class));
+    transportSet = new TransportSet(addressGroup, AUTHORITY, USER_AGENT, mockLoadBalancer,
+        mockBackoffPolicyProvider, mockTransportFactory, fakeClock.getScheduledExecutorService(),
+        fakeClock.getStopwatchSupplier(), fakeExecutor.getScheduledExecutorService(),
+        maxConnections, streamsPerConnection, mockTransportSetCallback);
+  }
+
+  private MockClientTransportInfo connect() {
+    transportSet.obtainActiveTransport();
+    MockClientTransportInfo transport = transports.poll();
+    transport.listener.transportReady();
+    // Run the termination of the delayed transport
+    fakeExecutor.runDueTasks();
+    return transport;
+  }
+
+  /**
+   * Starts a stream on the transport picked by the TransportSet, checking that it's the expected
+   * one, and returns the listener that the real stream got.
+   */
+  private ClientStreamListener startStream(MockClientTransportInfo expected) {
+    ClientTransport transport = transportSet.obtainActiveTransport();
+    assertSame(expected.transport, delegate(transport));
+    ClientStream mockStream = mock(ClientStream.class);
+    when(expected.transport.newStream(same(method), any(Metadata.class),
+        any(CallOptions.class), any(StatsTraceContext.class))).thenReturn(mockStream);
+    transport.newStream(method, new Metadata(), failFastCallOptions, statsTraceCtx)
+        .start(mockStreamListener);
+    ArgumentCaptor<ClientStreamListener> listenerCaptor =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream).start(listenerCaptor.capture());
+    return listenerCaptor.getValue();
+  }
+
+  private static ConnectionClientTransport delegate(ClientTransport transport) {
+    return ((StreamCountingTransport) transport).delegate();
+  }
+
+  private void shutdownPool(MockClientTransportInfo... pool) {
+    transportSet.shutdown();
+    for (MockClientTransportInfo transport : pool) {
+      verify(transport.transport).shutdown();
+      transport.listener.transportShutdown(Status.UNAVAILABLE);
+      transport.listener.transportTerminated();
+    }
+    assertTrue(transportSet.isTerminated());
+  }
+
   private void createTransportSet(SocketAddress ... addrs) {
     addressGroup = new EquivalentAddressGroup(Arrays.asList(addrs));
     transportSet = new TransportSet(addressGroup, AUTHORITY, USER_AGENT, mockLoadBalancer,
         mockBackoffPolicyProvider, mockTransportFactory, fakeClock.getScheduledExecutorService(),
-        fakeClock.getStopwatchSupplier(), fakeExecutor.getScheduledExecutorService(),
-        mockTransportSetCallback);
+        fakeClock.getStopwatchSupplier(), fakeExecutor.getScheduledExecutorService(), 1,
+        Integer.MAX_VALUE, mockTransportSetCallback);
   }
 }
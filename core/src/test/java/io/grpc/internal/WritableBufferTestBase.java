@@ -33,11 +33,17 @@ package io.grpc.internal;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import io.grpc.ByteBufferDrainable;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  * Abstract base class for tests of {@link WritableBuffer} subclasses.
  */
@@ -116,4 +122,31 @@ public abstract class WritableBufferTestBase {
 
     assertArrayEquals(b, writtenBytes());
   }
+
+  @Test
+  public void testWriteByteBufferDrainable() throws Exception {
+    final byte[] b = new byte[10];
+    for (byte i = 0; i < b.length; i++) {
+      b[i] = i;
+    }
+    buffer().write(b, 0, 3);
+
+    int written = buffer().write(new ByteBufferDrainable() {
+      @Override
+      public int drainTo(ByteBuffer target) {
+        target.put(b, 3, 7);
+        return 7;
+      }
+
+      @Override
+      public int drainTo(OutputStream target) {
+        throw new AssertionError();
+      }
+    }, 7);
+    assumeTrue(written != -1);
+
+    assertEquals(7, written);
+    assertEquals(10, buffer().readableBytes());
+    assertArrayEquals(b, writtenBytes());
+  }
 }
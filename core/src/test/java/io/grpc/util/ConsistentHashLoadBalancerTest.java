@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.Attributes;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.Metadata;
+import io.grpc.ResolvedServerInfo;
+import io.grpc.ResolvedServerInfoGroup;
+import io.grpc.util.LoadBalancer2Fakes.FakeHelper;
+import io.grpc.util.LoadBalancer2Fakes.FakeSocketAddress;
+import io.grpc.util.LoadBalancer2Fakes.FakeSubchannel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Unit test for {@link ConsistentHashLoadBalancerFactory}. */
+@RunWith(JUnit4.class)
+public class ConsistentHashLoadBalancerTest {
+  private static final Metadata.Key<String> KEY_HEADER =
+      Metadata.Key.of("user-id", Metadata.ASCII_STRING_MARSHALLER);
+  private static final Attributes.Key<Long> AFFINITY_KEY = Attributes.Key.of("user-id");
+
+  private final FakeHelper helper = new FakeHelper();
+  private LoadBalancer2 loadBalancer =
+      ConsistentHashLoadBalancerFactory.forHeader(KEY_HEADER).newLoadBalancer(helper);
+
+  @Test
+  public void sameHeaderValueSameSubchannel() {
+    List<ResolvedServerInfoGroup> servers = servers(5);
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    setAllReady();
+
+    Set<Subchannel> picked = new HashSet<Subchannel>();
+    for (int i = 0; i < 100; i++) {
+      Subchannel subchannel = pickWithHeader("user" + i);
+      assertSame(subchannel, pickWithHeader("user" + i));
+      picked.add(subchannel);
+    }
+    assertEquals(5, picked.size());
+  }
+
+  @Test
+  public void sameAffinityValueSameSubchannel() {
+    loadBalancer =
+        ConsistentHashLoadBalancerFactory.forAffinityKey(AFFINITY_KEY).newLoadBalancer(helper);
+    loadBalancer.handleResolvedAddresses(servers(5), Attributes.EMPTY);
+    setAllReady();
+
+    Set<Subchannel> picked = new HashSet<Subchannel>();
+    for (long i = 0; i < 100; i++) {
+      Attributes affinity = Attributes.newBuilder().set(AFFINITY_KEY, i).build();
+      Subchannel subchannel = helper.latestPicker().pickSubchannel(affinity, new Metadata())
+          .getSubchannel();
+      assertSame(subchannel,
+          helper.latestPicker().pickSubchannel(affinity, new Metadata()).getSubchannel());
+      picked.add(subchannel);
+    }
+    assertEquals(5, picked.size());
+  }
+
+  @Test
+  public void rpcsWithoutKeySpread() {
+    loadBalancer.handleResolvedAddresses(servers(3), Attributes.EMPTY);
+    setAllReady();
+
+    Set<Subchannel> picked = new HashSet<Subchannel>();
+    for (int i = 0; i < 300; i++) {
+      picked.add(helper.latestPicker().pickSubchannel(Attributes.EMPTY, new Metadata())
+          .getSubchannel());
+    }
+    assertEquals(3, picked.size());
+  }
+
+  @Test
+  public void nothingReadyBuffersRpcs() {
+    loadBalancer.handleResolvedAddresses(servers(3), Attributes.EMPTY);
+
+    assertNull(pickWithHeader("user"));
+  }
+
+  @Test
+  public void losingBackendMovesAboutItsShareOfKeys() {
+    List<ResolvedServerInfoGroup> servers = servers(10);
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    setAllReady();
+    Map<String, Subchannel> before = pickAll(10000);
+
+    FakeSubchannel lost = helper.subchannels.get(servers.get(3).toEquivalentAddressGroup());
+    loadBalancer.handleSubchannelState(
+        lost, ConnectivityStateInfo.forNonError(ConnectivityState.CONNECTING));
+    Map<String, Subchannel> after = pickAll(10000);
+
+    int moved = 0;
+    for (Map.Entry<String, Subchannel> entry : before.entrySet()) {
+      Subchannel now = after.get(entry.getKey());
+      assertNotSame(lost, now);
+      if (now != entry.getValue()) {
+        moved++;
+      }
+    }
+    // Ideally exactly the keys of the lost backend, which is 1/10.
+    assertTrue("moved " + moved, moved > 700 && moved < 1500);
+
+    // And they come back when it does.
+    loadBalancer.handleSubchannelState(
+        lost, ConnectivityStateInfo.forNonError(ConnectivityState.READY));
+    assertEquals(before, pickAll(10000));
+  }
+
+  @Test
+  public void addingBackendMovesAboutItsShareOfKeys() {
+    List<ResolvedServerInfoGroup> servers = servers(10);
+    loadBalancer.handleResolvedAddresses(servers.subList(0, 9), Attributes.EMPTY);
+    setAllReady();
+    Map<String, Subchannel> before = pickAll(10000);
+
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    setAllReady();
+    Map<String, Subchannel> after = pickAll(10000);
+
+    FakeSubchannel added = helper.subchannels.get(servers.get(9).toEquivalentAddressGroup());
+    int moved = 0;
+    for (Map.Entry<String, Subchannel> entry : after.entrySet()) {
+      if (entry.getValue() != before.get(entry.getKey())) {
+        moved++;
+      }
+    }
+    assertTrue(after.containsValue(added));
+    assertTrue("moved " + moved, moved > 700 && moved < 1500);
+  }
+
+  @Test
+  public void tableIsBalanced() {
+    loadBalancer.handleResolvedAddresses(servers(7), Attributes.EMPTY);
+    setAllReady();
+    List<Subchannel> ready = new ArrayList<Subchannel>(helper.subchannels.values());
+
+    Subchannel[] table = ConsistentHashLoadBalancerFactory.buildTable(ready);
+
+    Map<Subchannel, Integer> slots = new HashMap<Subchannel, Integer>();
+    for (Subchannel subchannel : table) {
+      Integer count = slots.get(subchannel);
+      slots.put(subchannel, count == null ? 1 : count + 1);
+    }
+    int fairShare = ConsistentHashLoadBalancerFactory.TABLE_SIZE / 7;
+    for (int count : slots.values()) {
+      assertTrue("slots " + count, Math.abs(count - fairShare) <= 1);
+    }
+  }
+
+  @Test
+  public void tableIndependentOfResolutionOrder() {
+    loadBalancer.handleResolvedAddresses(servers(5), Attributes.EMPTY);
+    List<Subchannel> ready = new ArrayList<Subchannel>(helper.subchannels.values());
+
+    Subchannel[] table = ConsistentHashLoadBalancerFactory.buildTable(ready);
+    Collections.reverse(ready);
+
+    assertTrue(Arrays.equals(table, ConsistentHashLoadBalancerFactory.buildTable(ready)));
+  }
+
+  @Test
+  public void pickerReusedWhenReadySubchannelsUnchanged() {
+    loadBalancer.handleResolvedAddresses(servers(3), Attributes.EMPTY);
+    setAllReady();
+    SubchannelPicker picker = helper.latestPicker();
+    Subchannel third = helper.subchannels.values().toArray(new Subchannel[3])[2];
+
+    loadBalancer.handleSubchannelState(
+        third, ConnectivityStateInfo.forNonError(ConnectivityState.IDLE));
+    SubchannelPicker withoutThird = helper.latestPicker();
+    loadBalancer.handleSubchannelState(
+        third, ConnectivityStateInfo.forNonError(ConnectivityState.CONNECTING));
+
+    assertNotSame(picker, withoutThird);
+    assertSame(withoutThird, helper.latestPicker());
+  }
+
+  private static List<ResolvedServerInfoGroup> servers(int count) {
+    List<ResolvedServerInfoGroup> servers = new ArrayList<ResolvedServerInfoGroup>();
+    for (int i = 0; i < count; i++) {
+      servers.add(ResolvedServerInfoGroup.builder()
+          .add(new ResolvedServerInfo(new FakeSocketAddress("server" + i))).build());
+    }
+    return servers;
+  }
+
+  private void setAllReady() {
+    for (FakeSubchannel subchannel : helper.subchannels.values()) {
+      loadBalancer.handleSubchannelState(
+          subchannel, ConnectivityStateInfo.forNonError(ConnectivityState.READY));
+    }
+  }
+
+  private Map<String, Subchannel> pickAll(int keys) {
+    Map<String, Subchannel> picks = new HashMap<String, Subchannel>();
+    for (int i = 0; i < keys; i++) {
+      picks.put("user" + i, pickWithHeader("user" + i));
+    }
+    return picks;
+  }
+
+  private Subchannel pickWithHeader(String value) {
+    Metadata headers = new Metadata();
+    headers.put(KEY_HEADER, value);
+    return helper.latestPicker().pickSubchannel(Attributes.EMPTY, headers).getSubchannel();
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.Attributes;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.PickResult;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.Metadata;
+import io.grpc.ResolvedServerInfo;
+import io.grpc.ResolvedServerInfoGroup;
+import io.grpc.Status;
+import io.grpc.util.LeastRequestLoadBalancerFactory.InFlightCounter;
+import io.grpc.util.LoadBalancer2Fakes.FakeHelper;
+import io.grpc.util.LoadBalancer2Fakes.FakeSocketAddress;
+import io.grpc.util.LoadBalancer2Fakes.FakeSubchannel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Unit test for {@link LeastRequestLoadBalancerFactory}. */
+@RunWith(JUnit4.class)
+public class LeastRequestLoadBalancerTest {
+  private final FakeHelper helper = new FakeHelper();
+  private LoadBalancer2 loadBalancer;
+  private final List<ResolvedServerInfoGroup> servers = new ArrayList<ResolvedServerInfoGroup>();
+
+  @Before
+  public void setUp() {
+    loadBalancer = LeastRequestLoadBalancerFactory.getInstance().newLoadBalancer(helper);
+    for (int i = 0; i < 3; i++) {
+      servers.add(ResolvedServerInfoGroup.builder()
+          .add(new ResolvedServerInfo(new FakeSocketAddress("server" + i))).build());
+    }
+  }
+
+  @Test
+  public void resolvedAddressesCreateSubchannelsThatConnect() {
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+
+    assertEquals(3, helper.subchannels.size());
+    for (FakeSubchannel subchannel : helper.subchannels.values()) {
+      assertEquals(1, subchannel.connectionRequests);
+    }
+    // Nothing is READY yet, so RPCs are buffered.
+    PickResult result = pick();
+    assertNull(result.getSubchannel());
+    assertTrue(result.getStatus().isOk());
+  }
+
+  @Test
+  public void picksOnlyReadySubchannels() {
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    FakeSubchannel ready = subchannel(1);
+    setState(ready, ConnectivityState.READY);
+    setState(subchannel(2), ConnectivityState.CONNECTING);
+
+    for (int i = 0; i < 10; i++) {
+      assertSame(ready, pick().getSubchannel());
+    }
+  }
+
+  @Test
+  public void picksSubchannelWithFewerCallsInFlight() {
+    loadBalancer.handleResolvedAddresses(servers.subList(0, 2), Attributes.EMPTY);
+    FakeSubchannel busy = subchannel(0);
+    FakeSubchannel idle = subchannel(1);
+    setState(busy, ConnectivityState.READY);
+    setState(idle, ConnectivityState.READY);
+    for (int i = 0; i < 3; i++) {
+      counter(busy).increment();
+    }
+
+    // With two Subchannels both are always compared, so the idle one gets RPCs until it has as
+    // many in flight as the busy one.
+    List<PickResult> results = new ArrayList<PickResult>();
+    for (int i = 0; i < 3; i++) {
+      PickResult result = pick();
+      assertSame(idle, result.getSubchannel());
+      results.add(result);
+    }
+    assertEquals(3, counter(idle).get());
+
+    for (PickResult result : results) {
+      result.getCallTracker().callEnded(Status.OK);
+    }
+    assertEquals(0, counter(idle).get());
+    assertSame(idle, pick().getSubchannel());
+  }
+
+  @Test
+  public void picksNotStartedAreNoLongerInFlight() {
+    loadBalancer.handleResolvedAddresses(servers.subList(0, 1), Attributes.EMPTY);
+    FakeSubchannel ready = subchannel(0);
+    setState(ready, ConnectivityState.READY);
+    PickResult result = pick();
+    assertEquals(1, counter(ready).get());
+
+    result.getCallTracker().callNotStarted();
+    assertEquals(0, counter(ready).get());
+  }
+
+  @Test
+  public void spreadsRpcsAcrossEquallyLoadedSubchannels() {
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    for (FakeSubchannel subchannel : helper.subchannels.values()) {
+      setState(subchannel, ConnectivityState.READY);
+    }
+    Set<Subchannel> picked = new HashSet<Subchannel>();
+    for (int i = 0; i < 300; i++) {
+      PickResult result = pick();
+      picked.add(result.getSubchannel());
+      result.getCallTracker().callEnded(Status.OK);
+    }
+    assertEquals(3, picked.size());
+  }
+
+  @Test
+  public void countersSurviveStateChanges() {
+    loadBalancer.handleResolvedAddresses(servers.subList(0, 2), Attributes.EMPTY);
+    FakeSubchannel first = subchannel(0);
+    FakeSubchannel second = subchannel(1);
+    setState(first, ConnectivityState.READY);
+    setState(second, ConnectivityState.READY);
+    counter(first).increment();
+
+    setState(second, ConnectivityState.CONNECTING);
+    setState(second, ConnectivityState.READY);
+
+    assertSame(second, pick().getSubchannel());
+  }
+
+  @Test
+  public void removedAddressesShutDownSubchannels() {
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    FakeSubchannel removed = subchannel(2);
+    setState(removed, ConnectivityState.READY);
+
+    loadBalancer.handleResolvedAddresses(servers.subList(0, 2), Attributes.EMPTY);
+
+    assertTrue(removed.shutdown);
+    assertEquals(3, helper.subchannels.size());
+    // Late state updates for the removed Subchannel are ignored.
+    int pickers = helper.pickers.size();
+    loadBalancer.handleSubchannelState(
+        removed, ConnectivityStateInfo.forNonError(ConnectivityState.READY));
+    assertEquals(pickers, helper.pickers.size());
+    assertNull(pick().getSubchannel());
+  }
+
+  @Test
+  public void idleSubchannelReconnects() {
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    FakeSubchannel subchannel = subchannel(0);
+
+    setState(subchannel, ConnectivityState.IDLE);
+
+    assertEquals(2, subchannel.connectionRequests);
+  }
+
+  @Test
+  public void allSubchannelsFailedFailsRpcs() {
+    loadBalancer.handleResolvedAddresses(servers.subList(0, 2), Attributes.EMPTY);
+    Status error = Status.UNAVAILABLE.withDescription("connection refused");
+    loadBalancer.handleSubchannelState(
+        subchannel(0), ConnectivityStateInfo.forTransientFailure(error));
+    assertTrue(pick().getStatus().isOk());
+
+    loadBalancer.handleSubchannelState(
+        subchannel(1), ConnectivityStateInfo.forTransientFailure(error));
+    assertSame(error, pick().getStatus());
+  }
+
+  @Test
+  public void nameResolutionErrorWithoutReadySubchannels() {
+    loadBalancer.handleNameResolutionError(Status.NOT_FOUND);
+    PickResult result = pick();
+    assertEquals(Status.Code.NOT_FOUND, result.getStatus().getCode());
+
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    setState(subchannel(0), ConnectivityState.READY);
+    loadBalancer.handleNameResolutionError(Status.NOT_FOUND);
+    assertSame(subchannel(0), pick().getSubchannel());
+  }
+
+  @Test
+  public void shutdownShutsDownSubchannels() {
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    loadBalancer.shutdown();
+    for (FakeSubchannel subchannel : helper.subchannels.values()) {
+      assertTrue(subchannel.shutdown);
+    }
+  }
+
+  @Test
+  public void inFlightCounterSumsAcrossThreads() throws Exception {
+    final InFlightCounter counter = new InFlightCounter();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final boolean increment = i % 2 == 0;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 10000; j++) {
+            if (increment) {
+              counter.increment();
+            } else {
+              counter.callEnded(Status.OK);
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, counter.get());
+  }
+
+  private PickResult pick() {
+    return helper.latestPicker()
+        .pickSubchannel(Attributes.EMPTY, new Metadata());
+  }
+
+  private FakeSubchannel subchannel(int server) {
+    return helper.subchannels.get(servers.get(server).toEquivalentAddressGroup());
+  }
+
+  private void setState(Subchannel subchannel, ConnectivityState state) {
+    loadBalancer.handleSubchannelState(subchannel, ConnectivityStateInfo.forNonError(state));
+  }
+
+  private static InFlightCounter counter(Subchannel subchannel) {
+    return subchannel.getAttributes().get(LeastRequestLoadBalancerFactory.IN_FLIGHT_COUNTER);
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.ManagedChannel;
+import io.grpc.NameResolver;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fakes shared by the tests of the {@link LoadBalancer2} implementations in this package.
+ */
+final class LoadBalancer2Fakes {
+  private LoadBalancer2Fakes() {
+  }
+
+  /**
+   * Creates {@link FakeSubchannel}s, runs tasks immediately and records every picker.
+   */
+  static final class FakeHelper extends LoadBalancer2.Helper {
+    final Map<EquivalentAddressGroup, FakeSubchannel> subchannels =
+        new LinkedHashMap<EquivalentAddressGroup, FakeSubchannel>();
+    final List<SubchannelPicker> pickers = new ArrayList<SubchannelPicker>();
+
+    @Override
+    public Subchannel createSubchannel(EquivalentAddressGroup addrs, Attributes attrs) {
+      FakeSubchannel subchannel = new FakeSubchannel(addrs, attrs);
+      subchannels.put(addrs, subchannel);
+      return subchannel;
+    }
+
+    @Override
+    public ManagedChannel createOobChannel(EquivalentAddressGroup eag, String authority) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updatePicker(SubchannelPicker picker) {
+      pickers.add(picker);
+    }
+
+    @Override
+    public void runSerialized(Runnable task) {
+      task.run();
+    }
+
+    @Override
+    public NameResolver.Factory getNameResolverFactory() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getAuthority() {
+      return "fakeauthority";
+    }
+
+    SubchannelPicker latestPicker() {
+      return pickers.get(pickers.size() - 1);
+    }
+  }
+
+  static final class FakeSubchannel extends Subchannel {
+    final EquivalentAddressGroup addrs;
+    final Attributes attrs;
+    int connectionRequests;
+    boolean shutdown;
+
+    FakeSubchannel(EquivalentAddressGroup addrs, Attributes attrs) {
+      this.addrs = addrs;
+      this.attrs = attrs;
+    }
+
+    @Override
+    public void shutdown() {
+      shutdown = true;
+    }
+
+    @Override
+    public void requestConnection() {
+      connectionRequests++;
+    }
+
+    @Override
+    public EquivalentAddressGroup getAddresses() {
+      return addrs;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return attrs;
+    }
+  }
+
+  static final class FakeSocketAddress extends SocketAddress {
+    final String name;
+
+    FakeSocketAddress(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return "FakeSocketAddress-" + name;
+    }
+  }
+}
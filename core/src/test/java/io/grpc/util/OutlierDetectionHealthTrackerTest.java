@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2.CallTracker;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import io.grpc.StringMarshaller;
+import io.grpc.internal.FakeClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Unit tests for {@link OutlierDetectionHealthTracker}. */
+@RunWith(JUnit4.class)
+public class OutlierDetectionHealthTrackerTest {
+  private static final MethodDescriptor<String, String> UNARY_METHOD = MethodDescriptor.create(
+      MethodType.UNARY, "service/unary", StringMarshaller.INSTANCE, StringMarshaller.INSTANCE);
+  private static final MethodDescriptor<String, String> STREAMING_METHOD =
+      MethodDescriptor.create(MethodType.BIDI_STREAMING, "service/stream",
+          StringMarshaller.INSTANCE, StringMarshaller.INSTANCE);
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final List<EquivalentAddressGroup> servers = new ArrayList<EquivalentAddressGroup>();
+  private final List<EquivalentAddressGroup> ejected = new ArrayList<EquivalentAddressGroup>();
+  private final List<EquivalentAddressGroup> unejected = new ArrayList<EquivalentAddressGroup>();
+  private OutlierDetectionHealthTracker tracker;
+
+  @Before
+  public void setUp() {
+    for (int i = 0; i < 5; i++) {
+      servers.add(new EquivalentAddressGroup(new InetSocketAddress("10.0.0." + i, 443)));
+    }
+    tracker = new OutlierDetectionHealthTracker(
+        OutlierDetector.newBuilder().setMaxEjectionPercent(50).setLatencyStdevFactor(1.9),
+        new OutlierDetector.Listener<EquivalentAddressGroup>() {
+          @Override
+          public void onEjected(EquivalentAddressGroup host, String reason, long nanos) {
+            ejected.add(host);
+          }
+
+          @Override
+          public void onUnejected(EquivalentAddressGroup host) {
+            unejected.add(host);
+          }
+        },
+        fakeClock.getScheduledExecutorService(), fakeClock.getStopwatchSupplier(), false);
+  }
+
+  @After
+  public void tearDown() {
+    tracker.shutdown();
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void failingServerIsUnhealthyUntilEjectionIsOver() {
+    EquivalentAddressGroup failing = servers.get(2);
+    for (EquivalentAddressGroup server : servers) {
+      for (int i = 0; i < 100; i++) {
+        tracker.callTrackers(server).apply(UNARY_METHOD).callEnded(
+            server == failing && i % 2 == 0 ? Status.UNAVAILABLE : Status.OK);
+      }
+    }
+    assertFalse(tracker.isUnhealthy(failing));
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+
+    assertEquals(1, ejected.size());
+    assertEquals(failing, ejected.get(0));
+    assertTrue(tracker.isUnhealthy(failing));
+    assertFalse(tracker.isUnhealthy(servers.get(0)));
+
+    fakeClock.forwardTime(30, TimeUnit.SECONDS);
+
+    assertEquals(1, unejected.size());
+    assertFalse(tracker.isUnhealthy(failing));
+  }
+
+  @Test
+  public void applicationErrorsAndCancellationsDoNotCount() {
+    EquivalentAddressGroup server = servers.get(2);
+    for (EquivalentAddressGroup other : servers) {
+      for (int i = 0; i < 100; i++) {
+        Status status = Status.OK;
+        if (other == server) {
+          status = i % 2 == 0 ? Status.NOT_FOUND : Status.CANCELLED;
+        }
+        tracker.callTrackers(other).apply(UNARY_METHOD).callEnded(status);
+      }
+    }
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+
+    assertEquals(0, ejected.size());
+  }
+
+  @Test
+  public void latencyIsMeasuredFromStreamCreation() {
+    EquivalentAddressGroup slow = servers.get(2);
+    for (EquivalentAddressGroup server : servers) {
+      for (int i = 0; i < 100; i++) {
+        CallTracker callTracker = tracker.callTrackers(server).apply(UNARY_METHOD);
+        fakeClock.forwardTime(server == slow ? 1000 : 10, TimeUnit.NANOSECONDS);
+        callTracker.callEnded(Status.OK);
+      }
+    }
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+
+    assertEquals(1, ejected.size());
+    assertEquals(slow, ejected.get(0));
+  }
+
+  @Test
+  public void latencyOfStreamingCallsIsNotRecorded() {
+    EquivalentAddressGroup longLived = servers.get(2);
+    for (EquivalentAddressGroup server : servers) {
+      for (int i = 0; i < 100; i++) {
+        CallTracker callTracker = tracker.callTrackers(server)
+            .apply(server == longLived ? STREAMING_METHOD : UNARY_METHOD);
+        fakeClock.forwardTime(server == longLived ? 1000 : 10, TimeUnit.NANOSECONDS);
+        callTracker.callEnded(Status.OK);
+      }
+    }
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+
+    assertEquals(0, ejected.size());
+  }
+}
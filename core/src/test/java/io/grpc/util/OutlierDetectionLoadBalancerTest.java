@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.Attributes;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2.PickResult;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.Metadata;
+import io.grpc.ResolvedServerInfo;
+import io.grpc.ResolvedServerInfoGroup;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import io.grpc.util.LoadBalancer2Fakes.FakeHelper;
+import io.grpc.util.LoadBalancer2Fakes.FakeSocketAddress;
+import io.grpc.util.OutlierDetectionLoadBalancerFactory.OutlierDetectionLoadBalancer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** Unit tests for {@link OutlierDetectionLoadBalancerFactory}. */
+@RunWith(JUnit4.class)
+public class OutlierDetectionLoadBalancerTest {
+  private final FakeClock fakeClock = new FakeClock();
+  private final FakeHelper helper = new FakeHelper();
+  private final List<EquivalentAddressGroup> ejected = new ArrayList<EquivalentAddressGroup>();
+  private final List<EquivalentAddressGroup> unejected = new ArrayList<EquivalentAddressGroup>();
+  private OutlierDetectionLoadBalancer loadBalancer;
+
+  @Before
+  public void setUp() {
+    OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener =
+        new OutlierDetector.Listener<EquivalentAddressGroup>() {
+          @Override
+          public void onEjected(EquivalentAddressGroup host, String reason, long nanos) {
+            ejected.add(host);
+          }
+
+          @Override
+          public void onUnejected(EquivalentAddressGroup host) {
+            unejected.add(host);
+          }
+        };
+    loadBalancer = new OutlierDetectionLoadBalancer(helper,
+        RoundRobinLoadBalancer2Factory.getInstance(),
+        OutlierDetector.newBuilder().setMaxEjectionPercent(50), ejectionListener,
+        fakeClock.getScheduledExecutorService(), fakeClock.getStopwatchSupplier(), false);
+
+    List<ResolvedServerInfoGroup> servers = new ArrayList<ResolvedServerInfoGroup>();
+    for (int i = 0; i < 5; i++) {
+      servers.add(ResolvedServerInfoGroup.builder()
+          .add(new ResolvedServerInfo(new FakeSocketAddress("server" + i))).build());
+    }
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    for (Subchannel subchannel : helper.subchannels.values()) {
+      loadBalancer.handleSubchannelState(
+          subchannel, ConnectivityStateInfo.forNonError(ConnectivityState.READY));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    loadBalancer.shutdown();
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void failingSubchannelIsEjectedAndReturns() {
+    Subchannel failing = helper.subchannels.values().iterator().next();
+    for (int i = 0; i < 500; i++) {
+      PickResult result = pick();
+      result.getCallTracker().callEnded(
+          result.getSubchannel() == failing && i % 2 == 0 ? Status.UNAVAILABLE : Status.OK);
+    }
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+
+    assertEquals(1, ejected.size());
+    assertEquals(failing.getAddresses(), ejected.get(0));
+    assertFalse(pickedSubchannels().contains(failing));
+
+    // Updates while ejected are kept until the ejection is over.
+    loadBalancer.handleSubchannelState(
+        failing, ConnectivityStateInfo.forNonError(ConnectivityState.CONNECTING));
+    loadBalancer.handleSubchannelState(
+        failing, ConnectivityStateInfo.forNonError(ConnectivityState.READY));
+    assertFalse(pickedSubchannels().contains(failing));
+
+    fakeClock.forwardTime(30, TimeUnit.SECONDS);
+
+    assertEquals(1, unejected.size());
+    assertTrue(pickedSubchannels().contains(failing));
+  }
+
+  @Test
+  public void applicationErrorsAndCancellationsDoNotCount() {
+    Subchannel subchannel = helper.subchannels.values().iterator().next();
+    for (int i = 0; i < 500; i++) {
+      PickResult result = pick();
+      Status status = Status.OK;
+      if (result.getSubchannel() == subchannel) {
+        status = i % 2 == 0 ? Status.NOT_FOUND : Status.CANCELLED;
+      }
+      result.getCallTracker().callEnded(status);
+    }
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+
+    assertEquals(0, ejected.size());
+  }
+
+  @Test
+  public void picksNotStartedDoNotCount() {
+    Subchannel subchannel = helper.subchannels.values().iterator().next();
+    for (int i = 0; i < 500; i++) {
+      PickResult result = pick();
+      if (result.getSubchannel() == subchannel) {
+        result.getCallTracker().callNotStarted();
+      } else {
+        result.getCallTracker().callEnded(Status.OK);
+      }
+    }
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+
+    assertEquals(0, ejected.size());
+  }
+
+  @Test
+  public void backendFailureCodes() {
+    assertTrue(OutlierDetectionLoadBalancerFactory.isBackendFailure(Status.Code.UNAVAILABLE));
+    assertTrue(OutlierDetectionLoadBalancerFactory.isBackendFailure(Status.Code.INTERNAL));
+    assertFalse(OutlierDetectionLoadBalancerFactory.isBackendFailure(Status.Code.OK));
+    assertFalse(
+        OutlierDetectionLoadBalancerFactory.isBackendFailure(Status.Code.INVALID_ARGUMENT));
+  }
+
+  private PickResult pick() {
+    return helper.latestPicker().pickSubchannel(Attributes.EMPTY, new Metadata());
+  }
+
+  private Set<Subchannel> pickedSubchannels() {
+    Set<Subchannel> picked = new HashSet<Subchannel>();
+    SubchannelPicker picker = helper.latestPicker();
+    for (int i = 0; i < 20; i++) {
+      picked.add(picker.pickSubchannel(Attributes.EMPTY, new Metadata()).getSubchannel());
+    }
+    return picked;
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Unit tests for {@link OutlierDetector}. */
+@RunWith(JUnit4.class)
+public class OutlierDetectorTest {
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final RecordingListener listener = new RecordingListener();
+  private OutlierDetector<String> detector = OutlierDetector.newBuilder()
+      .setMaxEjectionPercent(50).build(listener);
+
+  @Test
+  public void ejectsHostWithLowSuccessRate() {
+    for (int i = 0; i < 5; i++) {
+      record("host" + i, 100, i == 3 ? 40 : 0, MILLI);
+    }
+
+    detector.detectOutliers(0);
+
+    assertEquals(1, listener.ejected.size());
+    assertEquals("host3", listener.ejected.get(0));
+    assertEquals(30 * SECOND, (long) listener.ejectionNanos.get(0));
+    assertTrue(detector.isEjected("host3"));
+    assertFalse(detector.isEjected("host2"));
+  }
+
+  @Test
+  public void ejectsSlowHost() {
+    detector = OutlierDetector.newBuilder().setLatencyStdevFactor(1.9).build(listener);
+    for (int i = 0; i < 5; i++) {
+      record("host" + i, 100, 0, i == 1 ? 10 * MILLI : MILLI);
+    }
+
+    detector.detectOutliers(0);
+
+    assertEquals(1, listener.ejected.size());
+    assertEquals("host1", listener.ejected.get(0));
+  }
+
+  @Test
+  public void latencyDetectionIsOffByDefault() {
+    detector = OutlierDetector.newBuilder().build(listener);
+    for (int i = 0; i < 5; i++) {
+      record("host" + i, 100, 0, i == 1 ? 10 * MILLI : MILLI);
+    }
+
+    detector.detectOutliers(0);
+
+    assertEquals(0, listener.ejected.size());
+  }
+
+  @Test
+  public void latencyIsAveragedOverCallsWithLatency() {
+    detector = OutlierDetector.newBuilder().setLatencyStdevFactor(1.9).build(listener);
+    for (int i = 0; i < 5; i++) {
+      record("host" + i, 100, 0, i == 1 ? 2 * MILLI : MILLI);
+    }
+    // Streaming calls to the slow host do not dilute its latency
+    for (int i = 0; i < 100; i++) {
+      detector.recordCall("host1", true);
+    }
+
+    detector.detectOutliers(0);
+
+    assertEquals(1, listener.ejected.size());
+    assertEquals("host1", listener.ejected.get(0));
+  }
+
+  @Test
+  public void needsEnoughHostsWithEnoughCalls() {
+    for (int i = 0; i < 5; i++) {
+      // One host short of the request volume
+      record("host" + i, i == 0 ? 50 : 100, i == 3 ? 40 : 0, MILLI);
+    }
+
+    detector.detectOutliers(0);
+
+    assertEquals(0, listener.ejected.size());
+  }
+
+  @Test
+  public void onlyCallsSinceLastRunCount() {
+    for (int i = 0; i < 5; i++) {
+      record("host" + i, 100, 0, MILLI);
+    }
+    detector.detectOutliers(0);
+    for (int i = 0; i < 5; i++) {
+      record("host" + i, 1, i == 3 ? 40 : 0, MILLI);
+    }
+
+    detector.detectOutliers(10 * SECOND);
+
+    assertEquals(0, listener.ejected.size());
+  }
+
+  @Test
+  public void maxEjectionPercentIsRespected() {
+    detector = OutlierDetector.newBuilder().build(listener);
+    for (int i = 0; i < 10; i++) {
+      record("host" + i, 100, i < 2 ? 60 : 0, MILLI);
+    }
+
+    detector.detectOutliers(0);
+
+    // 10% of 10 hosts
+    assertEquals(1, listener.ejected.size());
+  }
+
+  @Test
+  public void ejectionTimeGrowsAndIsCapped() {
+    detector = OutlierDetector.newBuilder()
+        .setMaxEjectionPercent(50)
+        .setMaxEjectionTime(45, TimeUnit.SECONDS)
+        .build(listener);
+    long now = 0;
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 5; i++) {
+        record("host" + i, 100, i == 3 ? 40 : 0, MILLI);
+      }
+      detector.detectOutliers(now);
+      assertTrue(detector.isEjected("host3"));
+      long ejectionNanos = listener.ejectionNanos.get(round);
+
+      detector.detectOutliers(now + ejectionNanos - 1);
+      assertTrue(detector.isEjected("host3"));
+      now += ejectionNanos;
+      detector.detectOutliers(now);
+      assertFalse(detector.isEjected("host3"));
+    }
+    assertEquals(30 * SECOND, (long) listener.ejectionNanos.get(0));
+    assertEquals(45 * SECOND, (long) listener.ejectionNanos.get(1));
+    assertEquals(45 * SECOND, (long) listener.ejectionNanos.get(2));
+    assertEquals(3, listener.unejected.size());
+  }
+
+  @Test
+  public void ejectionTimeDoublesUpToDefaultMax() {
+    detector = OutlierDetector.newBuilder()
+        .setMaxEjectionPercent(50)
+        .build(listener);
+    long now = 0;
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 5; i++) {
+        record("host" + i, 100, i == 3 ? 40 : 0, MILLI);
+      }
+      detector.detectOutliers(now);
+      assertTrue(detector.isEjected("host3"));
+      now += listener.ejectionNanos.get(round);
+      detector.detectOutliers(now);
+      assertFalse(detector.isEjected("host3"));
+    }
+    assertEquals(30 * SECOND, (long) listener.ejectionNanos.get(0));
+    assertEquals(60 * SECOND, (long) listener.ejectionNanos.get(1));
+    assertEquals(120 * SECOND, (long) listener.ejectionNanos.get(2));
+    assertEquals(240 * SECOND, (long) listener.ejectionNanos.get(3));
+    assertEquals(300 * SECOND, (long) listener.ejectionNanos.get(4));
+  }
+
+  @Test
+  public void ejectionTimeDoesNotOverflow() {
+    detector = OutlierDetector.newBuilder()
+        .setMaxEjectionPercent(50)
+        .setMaxEjectionTime(Long.MAX_VALUE, TimeUnit.NANOSECONDS)
+        .build(listener);
+    for (int round = 0; round < 40; round++) {
+      for (int i = 0; i < 5; i++) {
+        record("host" + i, 100, i == 3 ? 40 : 0, MILLI);
+      }
+      detector.detectOutliers(0);
+      long ejectionNanos = listener.ejectionNanos.get(round);
+      assertTrue(ejectionNanos >= listener.ejectionNanos.get(Math.max(0, round - 1)));
+      detector.detectOutliers(ejectionNanos);
+      assertFalse(detector.isEjected("host3"));
+    }
+    assertEquals(Long.MAX_VALUE, (long) listener.ejectionNanos.get(39));
+  }
+
+  @Test
+  public void ejectionTimeShrinksWhileHealthy() {
+    for (int i = 0; i < 5; i++) {
+      record("host" + i, 100, i == 3 ? 40 : 0, MILLI);
+    }
+    detector.detectOutliers(0);
+    detector.detectOutliers(30 * SECOND);
+    assertFalse(detector.isEjected("host3"));
+    // One healthy interval undoes the first ejection
+    detector.detectOutliers(40 * SECOND);
+
+    for (int i = 0; i < 5; i++) {
+      record("host" + i, 100, i == 3 ? 40 : 0, MILLI);
+    }
+    detector.detectOutliers(50 * SECOND);
+
+    assertEquals(30 * SECOND, (long) listener.ejectionNanos.get(1));
+  }
+
+  private void record(String host, int calls, int failures, long latencyNanos) {
+    for (int i = 0; i < calls; i++) {
+      detector.recordCall(host, i >= failures, latencyNanos);
+    }
+  }
+
+  private static final class RecordingListener implements OutlierDetector.Listener<String> {
+    final List<String> ejected = new ArrayList<String>();
+    final List<Long> ejectionNanos = new ArrayList<Long>();
+    final List<String> unejected = new ArrayList<String>();
+
+    @Override
+    public void onEjected(String host, String reason, long nanos) {
+      ejected.add(host);
+      ejectionNanos.add(nanos);
+    }
+
+    @Override
+    public void onUnejected(String host) {
+      unejected.add(host);
+    }
+  }
+}
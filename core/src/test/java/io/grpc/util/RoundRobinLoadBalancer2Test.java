@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.Attributes;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer2;
+import io.grpc.LoadBalancer2.Subchannel;
+import io.grpc.LoadBalancer2.SubchannelPicker;
+import io.grpc.Metadata;
+import io.grpc.ResolvedServerInfo;
+import io.grpc.ResolvedServerInfoGroup;
+import io.grpc.util.LoadBalancer2Fakes.FakeHelper;
+import io.grpc.util.LoadBalancer2Fakes.FakeSocketAddress;
+import io.grpc.util.LoadBalancer2Fakes.FakeSubchannel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Unit test for {@link RoundRobinLoadBalancer2Factory}. */
+@RunWith(JUnit4.class)
+public class RoundRobinLoadBalancer2Test {
+  private final FakeHelper helper = new FakeHelper();
+  private final List<ResolvedServerInfoGroup> servers = new ArrayList<ResolvedServerInfoGroup>();
+  private LoadBalancer2 loadBalancer;
+
+  @Before
+  public void setUp() {
+    for (int i = 0; i < 3; i++) {
+      servers.add(ResolvedServerInfoGroup.builder()
+          .add(new ResolvedServerInfo(new FakeSocketAddress("server" + i))).build());
+    }
+    loadBalancer = RoundRobinLoadBalancer2Factory.getInstance().newLoadBalancer(helper);
+  }
+
+  @Test
+  public void roundRobinsOverReadySubchannels() {
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    setState(0, ConnectivityState.READY);
+    setState(1, ConnectivityState.CONNECTING);
+    setState(2, ConnectivityState.READY);
+
+    SubchannelPicker picker = helper.latestPicker();
+    Subchannel first = pick(picker);
+    Subchannel second = pick(picker);
+    assertTrue(first == subchannel(0) || first == subchannel(2));
+    assertSame(first == subchannel(0) ? subchannel(2) : subchannel(0), second);
+    assertSame(first, pick(picker));
+    assertSame(second, pick(picker));
+  }
+
+  @Test
+  public void stateChangeSwapsPicker() {
+    loadBalancer.handleResolvedAddresses(servers, Attributes.EMPTY);
+    setState(0, ConnectivityState.READY);
+    SubchannelPicker onlyFirst = helper.latestPicker();
+    setState(1, ConnectivityState.READY);
+
+    // The old snapshot is unaffected.
+    for (int i = 0; i < 5; i++) {
+      assertSame(subchannel(0), pick(onlyFirst));
+    }
+    SubchannelPicker both = helper.latestPicker();
+    assertEquals(2, new HashSet<Subchannel>(Arrays.asList(pick(both), pick(both))).size());
+  }
+
+  @Test
+  public void pickerWrapsAroundAfterCounterOverflow() {
+    List<Subchannel> list = newSubchannels(3);
+    RoundRobinLoadBalancer2Factory.Picker picker =
+        new RoundRobinLoadBalancer2Factory.Picker(list, Integer.MAX_VALUE - 1);
+
+    for (int i = 0; i < 10; i++) {
+      // Never throws, and keeps returning Subchannels from the list.
+      assertTrue(list.contains(pick(picker)));
+    }
+  }
+
+  @Test
+  public void concurrentPicksAreEvenlySpread() throws Exception {
+    final List<Subchannel> list = newSubchannels(3);
+    final RoundRobinLoadBalancer2Factory.Picker picker =
+        new RoundRobinLoadBalancer2Factory.Picker(list, 0);
+    final Map<Subchannel, AtomicInteger> counts =
+        new ConcurrentHashMap<Subchannel, AtomicInteger>();
+    for (Subchannel subchannel : list) {
+      counts.put(subchannel, new AtomicInteger());
+    }
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 3000; j++) {
+            counts.get(pick(picker)).incrementAndGet();
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (AtomicInteger count : counts.values()) {
+      assertEquals(4000, count.get());
+    }
+  }
+
+  private static Subchannel pick(SubchannelPicker picker) {
+    return picker.pickSubchannel(Attributes.EMPTY, new Metadata()).getSubchannel();
+  }
+
+  private static List<Subchannel> newSubchannels(int count) {
+    List<Subchannel> list = new ArrayList<Subchannel>();
+    for (int i = 0; i < count; i++) {
+      list.add(new FakeSubchannel(
+          new EquivalentAddressGroup(new FakeSocketAddress("subchannel" + i)), Attributes.EMPTY));
+    }
+    return list;
+  }
+
+  private FakeSubchannel subchannel(int server) {
+    return helper.subchannels.get(servers.get(server).toEquivalentAddressGroup());
+  }
+
+  private void setState(int server, ConnectivityState state) {
+    loadBalancer.handleSubchannelState(
+        subchannel(server), ConnectivityStateInfo.forNonError(state));
+  }
+}
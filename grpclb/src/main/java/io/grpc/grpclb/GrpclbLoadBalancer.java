@@ -49,6 +49,7 @@ import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.RoundRobinServerList;
 import io.grpc.internal.SharedResourceHolder;
 import io.grpc.stub.StreamObserver;
+import io.grpc.util.OutlierDetectionHealthTracker;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -61,6 +62,7 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -104,11 +106,21 @@ class GrpclbLoadBalancer<T> extends LoadBalancer<T> {
   @VisibleForTesting
   private RoundRobinServerList<T> roundRobinServerList;
 
+  // Skips the servers it ejects, or null if outlier detection is off.
+  @Nullable
+  private final OutlierDetectionHealthTracker healthTracker;
+
   private ExecutorService executor;
 
   GrpclbLoadBalancer(String serviceName, TransportManager<T> tm) {
+    this(serviceName, tm, null);
+  }
+
+  GrpclbLoadBalancer(String serviceName, TransportManager<T> tm,
+      @Nullable OutlierDetectionHealthTracker healthTracker) {
     this.serviceName = serviceName;
     this.tm = tm;
+    this.healthTracker = healthTracker;
     executor = SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
   }
 
@@ -225,6 +237,9 @@ class GrpclbLoadBalancer<T> extends LoadBalancer<T> {
       interimTransport = null;
       executor = SharedResourceHolder.release(GrpcUtil.SHARED_CHANNEL_EXECUTOR, executor);
     }
+    if (healthTracker != null) {
+      healthTracker.shutdown();
+    }
     if (savedInterimTransport != null) {
       savedInterimTransport.closeWithError(SHUTDOWN_STATUS);
     }
@@ -289,7 +304,8 @@ class GrpclbLoadBalancer<T> extends LoadBalancer<T> {
       logger.info("Got a LB response: " + response);
       // TODO(zhangkun83): make use of initialResponse
       // InitialLoadBalanceResponse initialResponse = response.getInitialResponse();
-      RoundRobinServerList.Builder<T> listBuilder = new RoundRobinServerList.Builder<T>(tm);
+      RoundRobinServerList.Builder<T> listBuilder =
+          new RoundRobinServerList.Builder<T>(tm).setHealthTracker(healthTracker);
       ServerList serverList = response.getServerList();
       HashMap<SocketAddress, ResolvedServerInfo> newServerMap =
           new HashMap<SocketAddress, ResolvedServerInfo>();
@@ -31,9 +31,16 @@
 
 package io.grpc.grpclb;
 
+import com.google.common.base.Preconditions;
+
+import io.grpc.EquivalentAddressGroup;
 import io.grpc.ExperimentalApi;
 import io.grpc.LoadBalancer;
 import io.grpc.TransportManager;
+import io.grpc.util.OutlierDetectionHealthTracker;
+import io.grpc.util.OutlierDetector;
+
+import javax.annotation.Nullable;
 
 /**
  * A factory for {@link LoadBalancer}s that uses the GRPCLB protocol.
@@ -46,17 +53,41 @@ import io.grpc.TransportManager;
 @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1782")
 public class GrpclbLoadBalancerFactory extends LoadBalancer.Factory {
 
-  private static final GrpclbLoadBalancerFactory instance = new GrpclbLoadBalancerFactory();
+  private static final GrpclbLoadBalancerFactory instance =
+      new GrpclbLoadBalancerFactory(null, null);
+
+  @Nullable
+  private final OutlierDetector.Builder outlierDetection;
+  @Nullable
+  private final OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener;
 
-  private GrpclbLoadBalancerFactory() {
+  private GrpclbLoadBalancerFactory(@Nullable OutlierDetector.Builder outlierDetection,
+      @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener) {
+    this.outlierDetection = outlierDetection;
+    this.ejectionListener = ejectionListener;
   }
 
   public static GrpclbLoadBalancerFactory getInstance() {
     return instance;
   }
 
+  /**
+   * Returns a factory whose balancers skip the backends that outlier detection ejects.
+   *
+   * @param config the configuration of the detector of each balancer
+   * @param ejectionListener notified of ejections, for example to export them as metrics; called
+   *     from a timer thread
+   * @see OutlierDetectionHealthTracker
+   */
+  public static GrpclbLoadBalancerFactory withOutlierDetection(OutlierDetector.Builder config,
+      @Nullable OutlierDetector.Listener<EquivalentAddressGroup> ejectionListener) {
+    return new GrpclbLoadBalancerFactory(
+        Preconditions.checkNotNull(config, "config"), ejectionListener);
+  }
+
   @Override
   public <T> LoadBalancer<T> newLoadBalancer(String serviceName, TransportManager<T> tm) {
-    return new GrpclbLoadBalancer<T>(serviceName, tm);
+    return new GrpclbLoadBalancer<T>(serviceName, tm, outlierDetection == null
+        ? null : OutlierDetectionHealthTracker.create(outlierDetection, ejectionListener));
   }
 }
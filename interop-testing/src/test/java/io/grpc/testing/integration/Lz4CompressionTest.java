@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016, Google Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above
+ * copyright notice, this list of conditions and the following disclaimer
+ * in the documentation and/or other materials provided with the
+ * distribution.
+ *
+ *    * Neither the name of Google Inc. nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package io.grpc.testing.integration;
+
+import static io.grpc.internal.GrpcUtil.MESSAGE_ACCEPT_ENCODING_KEY;
+import static io.grpc.internal.GrpcUtil.MESSAGE_ENCODING_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.NegotiationType;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+import io.grpc.testing.integration.Messages.Payload;
+import io.grpc.testing.integration.Messages.PayloadType;
+import io.grpc.testing.integration.Messages.ResponseParameters;
+import io.grpc.testing.integration.Messages.StreamingOutputCallRequest;
+import io.grpc.testing.integration.Messages.StreamingOutputCallResponse;
+import io.grpc.testing.integration.TransportCompressionTest.Fzip;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Tests that {@link Codec.Lz4} is negotiated and used by a Netty server and by Netty and OkHttp
+ * clients.
+ *
+ * <p>The clients use the default registries, so the request is compressed only if lz4 is
+ * registered and advertised by default. The server wraps the codec to record that it was used.
+ */
+@RunWith(Parameterized.class)
+public class Lz4CompressionTest {
+  private static final int RESPONSE_SIZE = 100000;
+
+  private final String transport;
+  private final Fzip serverCodec = new Fzip("lz4", new Codec.Lz4());
+  private ScheduledExecutorService executor;
+  private Server server;
+  private ManagedChannel channel;
+
+  /** The headers received by the server from the client. */
+  private volatile Metadata requestHeaders;
+  /** The headers received by the client from the server. */
+  private volatile Metadata responseHeaders;
+
+  /**
+   * Parameters for test.
+   */
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> params() {
+    return Arrays.asList(new Object[][] {{"netty"}, {"okhttp"}});
+  }
+
+  public Lz4CompressionTest(String transport) {
+    this.transport = transport;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newScheduledThreadPool(2);
+    CompressorRegistry compressors = CompressorRegistry.newEmptyInstance();
+    compressors.register(serverCodec);
+    server = NettyServerBuilder.forPort(0)
+        .addService(ServerInterceptors.intercept(
+            new TestServiceImpl(executor), new ServerLz4Interceptor()))
+        .compressorRegistry(compressors)
+        .decompressorRegistry(DecompressorRegistry.emptyInstance()
+            .with(Codec.Identity.NONE, false)
+            .with(serverCodec, true))
+        .build()
+        .start();
+    if ("netty".equals(transport)) {
+      channel = NettyChannelBuilder.forAddress("localhost", server.getPort())
+          .negotiationType(NegotiationType.PLAINTEXT)
+          .intercept(new ClientLz4Interceptor())
+          .build();
+    } else {
+      channel = OkHttpChannelBuilder.forAddress("localhost", server.getPort())
+          .usePlaintext(true)
+          .intercept(new ClientLz4Interceptor())
+          .build();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    channel.shutdownNow();
+    server.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void compressesBothDirections() {
+    StreamingOutputCallRequest request = StreamingOutputCallRequest.newBuilder()
+        .setResponseType(PayloadType.COMPRESSABLE)
+        .addResponseParameters(ResponseParameters.newBuilder().setSize(RESPONSE_SIZE))
+        .addResponseParameters(ResponseParameters.newBuilder().setSize(RESPONSE_SIZE))
+        .setPayload(Payload.newBuilder().setBody(ByteString.copyFrom(new byte[RESPONSE_SIZE])))
+        .build();
+
+    Iterator<StreamingOutputCallResponse> responses =
+        TestServiceGrpc.newBlockingStub(channel).streamingOutputCall(request);
+    int count = 0;
+    while (responses.hasNext()) {
+      assertEquals(RESPONSE_SIZE, responses.next().getPayload().getBody().size());
+      count++;
+    }
+    assertEquals(2, count);
+
+    assertEquals("lz4", requestHeaders.get(MESSAGE_ENCODING_KEY));
+    assertTrue(requestHeaders.get(MESSAGE_ACCEPT_ENCODING_KEY).contains("lz4"));
+    assertEquals("lz4", responseHeaders.get(MESSAGE_ENCODING_KEY));
+    assertTrue(serverCodec.anyRead);
+    assertTrue(serverCodec.anyWritten);
+  }
+
+  private class ServerLz4Interceptor implements ServerInterceptor {
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+        ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      Metadata headersCopy = new Metadata();
+      headersCopy.merge(headers);
+      requestHeaders = headersCopy;
+      call.setCompression("lz4");
+      return next.startCall(call, headers);
+    }
+  }
+
+  private class ClientLz4Interceptor implements ClientInterceptor {
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      ClientCall<ReqT, RespT> call = next.newCall(method, callOptions.withCompression("lz4"));
+      return new SimpleForwardingClientCall<ReqT, RespT>(call) {
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+          super.start(new SimpleForwardingClientCallListener<RespT>(responseListener) {
+            @Override
+            public void onHeaders(Metadata headers) {
+              Metadata headersCopy = new Metadata();
+              headersCopy.merge(headers);
+              responseHeaders = headersCopy;
+              super.onHeaders(headers);
+            }
+          }, headers);
+        }
+      };
+    }
+  }
+}
@@ -53,8 +53,6 @@ import static io.netty.handler.codec.http2.Http2Error.PROTOCOL_ERROR;
 import static io.netty.handler.codec.http2.Http2Exception.connectionError;
 import static io.netty.util.AsciiString.isUpperCase;
 
-import com.google.common.io.BaseEncoding;
-
 import io.grpc.Metadata;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http2.DefaultHttp2HeadersDecoder;
@@ -174,9 +172,6 @@ abstract class GrpcHttp2HeadersDecoder implements Http2HeadersDecoder,
    */
   abstract static class GrpcHttp2InboundHeaders extends AbstractHttp2Headers {
 
-    private static final AsciiString binaryHeaderSuffix =
-        new AsciiString(Metadata.BINARY_HEADER_SUFFIX.getBytes(US_ASCII));
-
     private byte[][] namesAndValues;
     private AsciiString[] values;
     private int namesAndValuesIdx;
@@ -192,7 +187,7 @@ abstract class GrpcHttp2HeadersDecoder implements Http2HeadersDecoder,
         expandHeadersAndValues();
       }
       byte[] nameBytes = bytes(name);
-      byte[] valueBytes = toBinaryValue(name, value);
+      byte[] valueBytes = bytes(value);
       values[namesAndValuesIdx / 2] = value;
       namesAndValues[namesAndValuesIdx] = nameBytes;
       namesAndValuesIdx++;
@@ -227,7 +222,8 @@ abstract class GrpcHttp2HeadersDecoder implements Http2HeadersDecoder,
      * {@code byte[]} representation of a header name (in insertion order), and the subsequent
      * odd index number contains the corresponding header value.
      *
-     * <p>The values of binary headers (with a -bin suffix), are already base64 decoded.
+     * <p>The values of binary headers (with a -bin suffix), are still base64 encoded. They are
+     * decoded by {@link Metadata} when read.
      *
      * <p>The array may contain several {@code null} values at the end. A {@code null} value an
      * index means that all higher numbered indices also contain {@code null} values.
@@ -260,12 +256,6 @@ abstract class GrpcHttp2HeadersDecoder implements Http2HeadersDecoder,
       return PlatformDependent.equals(bytes0, offset0, bytes1, offset1, length0);
     }
 
-    private static byte[] toBinaryValue(AsciiString name, AsciiString value) {
-      return name.endsWith(binaryHeaderSuffix)
-          ? BaseEncoding.base64().decode(value)
-          : bytes(value);
-    }
-
     protected static byte[] bytes(AsciiString str) {
       return str.isEntireArrayUsed() ? str.array() : str.toByteArray();
     }
@@ -31,6 +31,8 @@
 
 package io.grpc.netty;
 
+import com.google.common.base.Objects;
+
 import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.util.AsciiString;
 
@@ -38,6 +40,8 @@ import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 
+import javax.annotation.Nullable;
+
 /**
  * A custom implementation of Http2Headers that only includes methods used by gRPC.
  */
@@ -47,10 +51,47 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
   private final AsciiString[] preHeaders;
   private static final AsciiString[] EMPTY = new AsciiString[]{};
 
+  // Positions of the values in the array built by clientRequestPreHeaders.
+  private static final int AUTHORITY_INDEX = 1;
+  private static final int PATH_INDEX = 3;
+  private static final int METHOD_INDEX = 5;
+  private static final int SCHEME_INDEX = 7;
+  private static final int USER_AGENT_INDEX = 13;
+
   static GrpcHttp2OutboundHeaders clientRequestHeaders(byte[][] serializedMetadata,
       AsciiString authority, AsciiString path, AsciiString method, AsciiString scheme,
       AsciiString userAgent) {
-    AsciiString[] preHeaders = new AsciiString[] {
+    return clientRequestHeaders(serializedMetadata,
+        clientRequestPreHeaders(null, authority, path, method, scheme, userAgent));
+  }
+
+  /**
+   * Creates client request headers that start with {@code preHeaders}, which must have come from
+   * {@link #clientRequestPreHeaders}.
+   */
+  static GrpcHttp2OutboundHeaders clientRequestHeaders(byte[][] serializedMetadata,
+      AsciiString[] preHeaders) {
+    return new GrpcHttp2OutboundHeaders(preHeaders, serializedMetadata);
+  }
+
+  /**
+   * Returns the headers every client request starts with: the pseudo headers, content-type, te and
+   * user-agent. If {@code cached} was built from the same values it is returned as is, so a
+   * transport that keeps calling one method does not rebuild them. The result must not be
+   * modified.
+   */
+  static AsciiString[] clientRequestPreHeaders(@Nullable AsciiString[] cached,
+      AsciiString authority, AsciiString path, AsciiString method, AsciiString scheme,
+      AsciiString userAgent) {
+    if (cached != null
+        && Objects.equal(cached[AUTHORITY_INDEX], authority)
+        && Objects.equal(cached[PATH_INDEX], path)
+        && Objects.equal(cached[METHOD_INDEX], method)
+        && Objects.equal(cached[SCHEME_INDEX], scheme)
+        && Objects.equal(cached[USER_AGENT_INDEX], userAgent)) {
+      return cached;
+    }
+    return new AsciiString[] {
         Http2Headers.PseudoHeaderName.AUTHORITY.value(), authority,
         Http2Headers.PseudoHeaderName.PATH.value(), path,
         Http2Headers.PseudoHeaderName.METHOD.value(), method,
@@ -59,7 +100,6 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
         Utils.TE_HEADER, Utils.TE_TRAILERS,
         Utils.USER_AGENT, userAgent,
     };
-    return new GrpcHttp2OutboundHeaders(preHeaders, serializedMetadata);
   }
 
   static GrpcHttp2OutboundHeaders serverResponseHeaders(byte[][] serializedMetadata) {
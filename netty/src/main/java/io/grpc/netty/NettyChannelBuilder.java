@@ -32,13 +32,17 @@
 package io.grpc.netty;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static io.grpc.internal.GrpcUtil.DEFAULT_KEEPALIVE_DELAY_NANOS;
+import static io.grpc.internal.GrpcUtil.DEFAULT_KEEPALIVE_TIMEOUT_NANOS;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
 
 import io.grpc.Attributes;
 import io.grpc.ExperimentalApi;
 import io.grpc.Internal;
+import io.grpc.MethodDescriptor;
 import io.grpc.NameResolver;
 import io.grpc.internal.AbstractManagedChannelImplBuilder;
 import io.grpc.internal.ClientTransportFactory;
@@ -50,11 +54,14 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.ssl.SslContext;
+import io.netty.util.AsciiString;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLException;
@@ -78,6 +85,9 @@ public class NettyChannelBuilder extends AbstractManagedChannelImplBuilder<Netty
   private SslContext sslContext;
   private int flowControlWindow = DEFAULT_FLOW_CONTROL_WINDOW;
   private int maxHeaderListSize = GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE;
+  private boolean enableKeepAlive;
+  private long keepAliveDelayNanos;
+  private long keepAliveTimeoutNanos;
 
   /**
    * Creates a new builder with the given server address. This factory method is primarily intended
@@ -224,6 +234,31 @@ public class NettyChannelBuilder extends AbstractManagedChannelImplBuilder<Netty
     return this;
   }
 
+  /**
+   * Enable keepalive with default delay and timeout.
+   */
+  public final NettyChannelBuilder enableKeepAlive(boolean enable) {
+    enableKeepAlive = enable;
+    if (enable) {
+      keepAliveDelayNanos = DEFAULT_KEEPALIVE_DELAY_NANOS;
+      keepAliveTimeoutNanos = DEFAULT_KEEPALIVE_TIMEOUT_NANOS;
+    }
+    return this;
+  }
+
+  /**
+   * Enable keepalive with custom delay and timeout.
+   */
+  public final NettyChannelBuilder enableKeepAlive(boolean enable, long keepAliveDelay,
+      TimeUnit delayUnit, long keepAliveTimeout, TimeUnit timeoutUnit) {
+    enableKeepAlive = enable;
+    if (enable) {
+      keepAliveDelayNanos = delayUnit.toNanos(keepAliveDelay);
+      keepAliveTimeoutNanos = timeoutUnit.toNanos(keepAliveTimeout);
+    }
+    return this;
+  }
+
   /**
    * Equivalent to using {@link #negotiationType(NegotiationType)} with {@code PLAINTEXT} or
    * {@code PLAINTEXT_UPGRADE}.
@@ -242,7 +277,8 @@ public class NettyChannelBuilder extends AbstractManagedChannelImplBuilder<Netty
   protected ClientTransportFactory buildTransportFactory() {
     return new NettyTransportFactory(
         channelType, channelOptions, negotiationType, protocolNegotiator, sslContext,
-        eventLoopGroup, flowControlWindow, maxInboundMessageSize(), maxHeaderListSize);
+        eventLoopGroup, flowControlWindow, maxInboundMessageSize(), maxHeaderListSize,
+        enableKeepAlive, keepAliveDelayNanos, keepAliveTimeoutNanos);
   }
 
   @Override
@@ -302,6 +338,13 @@ public class NettyChannelBuilder extends AbstractManagedChannelImplBuilder<Netty
     private final int flowControlWindow;
     private final int maxMessageSize;
     private final int maxHeaderListSize;
+    private final boolean enableKeepAlive;
+    private final long keepAliveDelayNanos;
+    private final long keepAliveTimeoutNanos;
+    // The fixed request headers of each method, shared by the transports of this channel only,
+    // since they depend on the channel's authority and user agent.
+    private final ConcurrentMap<MethodDescriptor<?, ?>, AsciiString[]> requestHeadersCache =
+        new MapMaker().weakKeys().makeMap();
 
     private boolean closed;
 
@@ -309,7 +352,8 @@ public class NettyChannelBuilder extends AbstractManagedChannelImplBuilder<Netty
         Class<? extends Channel> channelType, Map<ChannelOption<?>, ?> channelOptions,
         NegotiationType negotiationType, ProtocolNegotiator protocolNegotiator,
         SslContext sslContext, EventLoopGroup group, int flowControlWindow, int maxMessageSize,
-        int maxHeaderListSize) {
+        int maxHeaderListSize, boolean enableKeepAlive, long keepAliveDelayNanos,
+        long keepAliveTimeoutNanos) {
       this.channelType = channelType;
       this.negotiationType = negotiationType;
       this.channelOptions = new HashMap<ChannelOption<?>, Object>(channelOptions);
@@ -318,6 +362,9 @@ public class NettyChannelBuilder extends AbstractManagedChannelImplBuilder<Netty
       this.flowControlWindow = flowControlWindow;
       this.maxMessageSize = maxMessageSize;
       this.maxHeaderListSize = maxHeaderListSize;
+      this.enableKeepAlive = enableKeepAlive;
+      this.keepAliveDelayNanos = keepAliveDelayNanos;
+      this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
       usingSharedGroup = group == null;
       if (usingSharedGroup) {
         // The group was unspecified, using the shared group.
@@ -347,7 +394,8 @@ public class NettyChannelBuilder extends AbstractManagedChannelImplBuilder<Netty
       }
       return new NettyClientTransport(
           serverAddress, channelType, channelOptions, group, negotiator, flowControlWindow,
-          maxMessageSize, maxHeaderListSize, authority, userAgent);
+          maxMessageSize, maxHeaderListSize, enableKeepAlive, keepAliveDelayNanos,
+          keepAliveTimeoutNanos, authority, userAgent, requestHeadersCache);
     }
 
     @Override
@@ -45,6 +45,7 @@ import io.grpc.StatusException;
 import io.grpc.internal.ClientTransport.PingCallback;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.Http2Ping;
+import io.grpc.internal.KeepAliveManager;
 import io.grpc.netty.GrpcHttp2HeadersDecoder.GrpcHttp2ClientHeadersDecoder;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
@@ -84,6 +85,8 @@ import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 /**
  * Client-side Netty handler for GRPC processing. All event handlers are executed entirely within
  * the context of the Netty Channel thread.
@@ -106,11 +109,14 @@ class NettyClientHandler extends AbstractNettyHandler {
 
   private final Http2Connection.PropertyKey streamKey;
   private final ClientTransportLifecycleManager lifecycleManager;
+  @Nullable
+  private final KeepAliveManager keepAliveManager;
   private final Ticker ticker;
   private WriteQueue clientWriteQueue;
   private Http2Ping ping;
 
   static NettyClientHandler newHandler(ClientTransportLifecycleManager lifecycleManager,
+                                       @Nullable KeepAliveManager keepAliveManager,
                                        int flowControlWindow, int maxHeaderListSize,
                                        Ticker ticker) {
     Preconditions.checkArgument(maxHeaderListSize > 0, "maxHeaderListSize must be positive");
@@ -120,7 +126,8 @@ class NettyClientHandler extends AbstractNettyHandler {
     Http2Connection connection = new DefaultHttp2Connection(false);
 
     return newHandler(
-        connection, frameReader, frameWriter, lifecycleManager, flowControlWindow, ticker);
+        connection, frameReader, frameWriter, lifecycleManager, keepAliveManager,
+        flowControlWindow, ticker);
   }
 
   @VisibleForTesting
@@ -128,6 +135,7 @@ class NettyClientHandler extends AbstractNettyHandler {
                                        Http2FrameReader frameReader,
                                        Http2FrameWriter frameWriter,
                                        ClientTransportLifecycleManager lifecycleManager,
+                                       @Nullable KeepAliveManager keepAliveManager,
                                        int flowControlWindow,
                                        Ticker ticker) {
     Preconditions.checkNotNull(connection, "connection");
@@ -155,15 +163,18 @@ class NettyClientHandler extends AbstractNettyHandler {
     settings.initialWindowSize(flowControlWindow);
     settings.maxConcurrentStreams(0);
 
-    return new NettyClientHandler(decoder, encoder, settings, lifecycleManager, ticker);
+    return new NettyClientHandler(
+        decoder, encoder, settings, lifecycleManager, keepAliveManager, ticker);
   }
 
   private NettyClientHandler(Http2ConnectionDecoder decoder,
                              StreamBufferingEncoder encoder, Http2Settings settings,
                              ClientTransportLifecycleManager lifecycleManager,
+                             @Nullable KeepAliveManager keepAliveManager,
                              Ticker ticker) {
     super(decoder, encoder, settings);
     this.lifecycleManager = lifecycleManager;
+    this.keepAliveManager = keepAliveManager;
     this.ticker = ticker;
 
     // Set the frame listener on the decoder.
@@ -189,6 +200,22 @@ class NettyClientHandler extends AbstractNettyHandler {
           NettyClientHandler.this.lifecycleManager.notifyInUse(false);
         }
       }
+
+      @Override
+      public void onStreamActive(Http2Stream stream) {
+        if (NettyClientHandler.this.keepAliveManager != null
+            && connection().numActiveStreams() == 1) {
+          NettyClientHandler.this.keepAliveManager.onTransportActive();
+        }
+      }
+
+      @Override
+      public void onStreamClosed(Http2Stream stream) {
+        if (NettyClientHandler.this.keepAliveManager != null
+            && connection().numActiveStreams() == 0) {
+          NettyClientHandler.this.keepAliveManager.onTransportIdle();
+        }
+      }
     });
   }
 
@@ -263,6 +290,14 @@ class NettyClientHandler extends AbstractNettyHandler {
     }
   }
 
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (keepAliveManager != null) {
+      keepAliveManager.onDataReceived();
+    }
+    super.channelRead(ctx, msg);
+  }
+
   @Override
   public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
     logger.fine("Network channel being closed by the application.");
@@ -55,6 +55,8 @@ import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.handler.codec.http2.Http2Stream;
 import io.netty.util.AsciiString;
 
+import java.util.concurrent.ConcurrentMap;
+
 import javax.annotation.Nullable;
 
 /**
@@ -75,10 +77,12 @@ class NettyClientStream extends AbstractClientStream2 {
   private AsciiString authority;
   private final AsciiString scheme;
   private final AsciiString userAgent;
+  private final ConcurrentMap<MethodDescriptor<?, ?>, AsciiString[]> requestHeadersCache;
 
   NettyClientStream(TransportState state, MethodDescriptor<?, ?> method, Metadata headers,
       Channel channel, AsciiString authority, AsciiString scheme,
-      AsciiString userAgent, StatsTraceContext statsTraceCtx) {
+      AsciiString userAgent, StatsTraceContext statsTraceCtx,
+      ConcurrentMap<MethodDescriptor<?, ?>, AsciiString[]> requestHeadersCache) {
     super(new NettyWritableBufferAllocator(channel.alloc()), statsTraceCtx);
     this.state = checkNotNull(state, "transportState");
     this.writeQueue = state.handler.getWriteQueue();
@@ -88,6 +92,7 @@ class NettyClientStream extends AbstractClientStream2 {
     this.authority = checkNotNull(authority, "authority");
     this.scheme = checkNotNull(scheme, "scheme");
     this.userAgent = userAgent;
+    this.requestHeadersCache = checkNotNull(requestHeadersCache, "requestHeadersCache");
   }
 
   @Override
@@ -110,15 +115,21 @@ class NettyClientStream extends AbstractClientStream2 {
   public void start(ClientStreamListener listener) {
     super.start(listener);
 
-    // Convert the headers into Netty HTTP/2 headers.
+    // Convert the headers into Netty HTTP/2 headers. The fixed part is cached per channel, and
+    // reused for as long as this stream's values match it.
     AsciiString defaultPath = (AsciiString) methodDescriptorAccessor.geRawMethodName(method);
     if (defaultPath == null) {
       defaultPath = new AsciiString("/" + method.getFullMethodName());
       methodDescriptorAccessor.setRawMethodName(method, defaultPath);
     }
+    AsciiString[] cached = requestHeadersCache.get(method);
+    AsciiString[] preHeaders = GrpcHttp2OutboundHeaders.clientRequestPreHeaders(
+        cached, authority, defaultPath, Utils.HTTP_METHOD, scheme, userAgent);
+    if (preHeaders != cached) {
+      requestHeadersCache.put(method, preHeaders);
+    }
     headers.discardAll(GrpcUtil.USER_AGENT_KEY);
-    Http2Headers http2Headers
-        = Utils.convertClientHeaders(headers, scheme, defaultPath, authority, userAgent);
+    Http2Headers http2Headers = Utils.convertClientHeaders(headers, preHeaders);
     headers = null;
 
     ChannelFutureListener failureListener = new ChannelFutureListener() {
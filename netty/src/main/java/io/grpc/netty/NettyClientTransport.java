@@ -31,6 +31,7 @@
 
 package io.grpc.netty;
 
+import static io.grpc.internal.GrpcUtil.TIMER_SERVICE;
 import static io.netty.channel.ChannelOption.SO_KEEPALIVE;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -46,7 +47,9 @@ import io.grpc.internal.ClientStream;
 import io.grpc.internal.ConnectionClientTransport;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.Http2Ping;
+import io.grpc.internal.KeepAliveManager;
 import io.grpc.internal.LogId;
+import io.grpc.internal.SharedResourceHolder;
 import io.grpc.internal.StatsTraceContext;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
@@ -62,7 +65,9 @@ import io.netty.util.AsciiString;
 import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.annotation.Nullable;
 
@@ -81,7 +86,13 @@ class NettyClientTransport implements ConnectionClientTransport {
   private final int flowControlWindow;
   private final int maxMessageSize;
   private final int maxHeaderListSize;
+  private final boolean enableKeepAlive;
+  private final long keepAliveDelayNanos;
+  private final long keepAliveTimeoutNanos;
+  private final ConcurrentMap<MethodDescriptor<?, ?>, AsciiString[]> requestHeadersCache;
 
+  private ScheduledExecutorService scheduler;
+  private KeepAliveManager keepAliveManager;
   private ProtocolNegotiator.Handler negotiationHandler;
   private NettyClientHandler handler;
   // We should not send on the channel until negotiation completes. This is a hard requirement
@@ -94,7 +105,9 @@ class NettyClientTransport implements ConnectionClientTransport {
       SocketAddress address, Class<? extends Channel> channelType,
       Map<ChannelOption<?>, ?> channelOptions, EventLoopGroup group,
       ProtocolNegotiator negotiator, int flowControlWindow, int maxMessageSize,
-      int maxHeaderListSize, String authority, @Nullable String userAgent) {
+      int maxHeaderListSize, boolean enableKeepAlive, long keepAliveDelayNanos,
+      long keepAliveTimeoutNanos, String authority, @Nullable String userAgent,
+      ConcurrentMap<MethodDescriptor<?, ?>, AsciiString[]> requestHeadersCache) {
     this.negotiator = Preconditions.checkNotNull(negotiator, "negotiator");
     this.address = Preconditions.checkNotNull(address, "address");
     this.group = Preconditions.checkNotNull(group, "group");
@@ -103,8 +116,13 @@ class NettyClientTransport implements ConnectionClientTransport {
     this.flowControlWindow = flowControlWindow;
     this.maxMessageSize = maxMessageSize;
     this.maxHeaderListSize = maxHeaderListSize;
+    this.enableKeepAlive = enableKeepAlive;
+    this.keepAliveDelayNanos = keepAliveDelayNanos;
+    this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
     this.authority = new AsciiString(authority);
     this.userAgent = new AsciiString(GrpcUtil.getGrpcUserAgent("netty", userAgent));
+    this.requestHeadersCache =
+        Preconditions.checkNotNull(requestHeadersCache, "requestHeadersCache");
   }
 
   @Override
@@ -140,7 +158,7 @@ class NettyClientTransport implements ConnectionClientTransport {
           }
         },
         method, headers, channel, authority, negotiationHandler.scheme(), userAgent,
-        statsTraceCtx);
+        statsTraceCtx, requestHeadersCache);
   }
 
   @Override
@@ -154,6 +172,12 @@ class NettyClientTransport implements ConnectionClientTransport {
     lifecycleManager = new ClientTransportLifecycleManager(
         Preconditions.checkNotNull(transportListener, "listener"));
 
+    if (enableKeepAlive) {
+      scheduler = SharedResourceHolder.get(TIMER_SERVICE);
+      keepAliveManager = new KeepAliveManager(this, scheduler, keepAliveDelayNanos,
+          keepAliveTimeoutNanos);
+    }
+
     handler = newHandler();
     HandlerSettings.setAutoWindow(handler);
 
@@ -215,6 +239,11 @@ class NettyClientTransport implements ConnectionClientTransport {
         // Typically we should have noticed shutdown before this point.
         lifecycleManager.notifyTerminated(
             Status.INTERNAL.withDescription("Connection closed with unknown cause"));
+        if (keepAliveManager != null) {
+          keepAliveManager.onTransportShutdown();
+          // KeepAliveManager should stop using the scheduler after onTransportShutdown gets called.
+          scheduler = SharedResourceHolder.release(TIMER_SERVICE, scheduler);
+        }
       }
     });
     return null;
@@ -284,6 +313,7 @@ class NettyClientTransport implements ConnectionClientTransport {
 
   private NettyClientHandler newHandler() {
     return NettyClientHandler
-        .newHandler(lifecycleManager, flowControlWindow, maxHeaderListSize, Ticker.systemTicker());
+        .newHandler(lifecycleManager, keepAliveManager, flowControlWindow, maxHeaderListSize,
+            Ticker.systemTicker());
   }
 }
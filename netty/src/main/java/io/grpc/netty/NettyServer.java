@@ -77,12 +77,16 @@ class NettyServer implements InternalServer {
   private final int flowControlWindow;
   private final int maxMessageSize;
   private final int maxHeaderListSize;
+  private final boolean enableKeepAlive;
+  private final long keepAliveDelayNanos;
+  private final long keepAliveTimeoutNanos;
   private final ReferenceCounted eventLoopReferenceCounter = new EventLoopReferenceCounter();
 
   NettyServer(SocketAddress address, Class<? extends ServerChannel> channelType,
               @Nullable EventLoopGroup bossGroup, @Nullable EventLoopGroup workerGroup,
               ProtocolNegotiator protocolNegotiator, int maxStreamsPerConnection,
-              int flowControlWindow, int maxMessageSize, int maxHeaderListSize) {
+              int flowControlWindow, int maxMessageSize, int maxHeaderListSize,
+              boolean enableKeepAlive, long keepAliveDelayNanos, long keepAliveTimeoutNanos) {
     this.address = address;
     this.channelType = checkNotNull(channelType, "channelType");
     this.bossGroup = bossGroup;
@@ -94,6 +98,9 @@ class NettyServer implements InternalServer {
     this.flowControlWindow = flowControlWindow;
     this.maxMessageSize = maxMessageSize;
     this.maxHeaderListSize = maxHeaderListSize;
+    this.enableKeepAlive = enableKeepAlive;
+    this.keepAliveDelayNanos = keepAliveDelayNanos;
+    this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
   }
 
   @Override
@@ -133,7 +140,8 @@ class NettyServer implements InternalServer {
           }
         });
         NettyServerTransport transport = new NettyServerTransport(ch, protocolNegotiator,
-            maxStreamsPerConnection, flowControlWindow, maxMessageSize, maxHeaderListSize);
+            maxStreamsPerConnection, flowControlWindow, maxMessageSize, maxHeaderListSize,
+            enableKeepAlive, keepAliveDelayNanos, keepAliveTimeoutNanos);
         ServerTransportListener transportListener;
         // This is to order callbacks on the listener, not to guard access to channel.
         synchronized (NettyServer.this) {
@@ -47,6 +47,7 @@ import io.grpc.Grpc;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.KeepAliveManager;
 import io.grpc.internal.ServerTransportListener;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.netty.GrpcHttp2HeadersDecoder.GrpcHttp2ServerHeadersDecoder;
@@ -79,8 +80,10 @@ import io.netty.handler.codec.http2.Http2Settings;
 import io.netty.handler.codec.http2.Http2Stream;
 import io.netty.handler.codec.http2.Http2StreamVisitor;
 import io.netty.handler.logging.LogLevel;
+import io.netty.util.AsciiString;
 import io.netty.util.ReferenceCountUtil;
 
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -92,9 +95,18 @@ import javax.annotation.Nullable;
 class NettyServerHandler extends AbstractNettyHandler {
   private static Logger logger = Logger.getLogger(NettyServerHandler.class.getName());
 
+  /** Payload of the pings sent for keepalive, distinguishing them from flow control pings. */
+  @VisibleForTesting
+  static final long KEEPALIVE_PING = 0xDEADL;
+
   private final Http2Connection.PropertyKey streamKey;
   private final ServerTransportListener transportListener;
   private final int maxMessageSize;
+  @Nullable
+  private final ScheduledExecutorService keepAliveScheduler;
+  private final long keepAliveDelayNanos;
+  private final long keepAliveTimeoutNanos;
+  private KeepAliveManager keepAliveManager;
   private Attributes attributes;
   private Throwable connectionError;
   private boolean teWarningLogged;
@@ -105,7 +117,10 @@ class NettyServerHandler extends AbstractNettyHandler {
                                        int maxStreams,
                                        int flowControlWindow,
                                        int maxHeaderListSize,
-                                       int maxMessageSize) {
+                                       int maxMessageSize,
+                                       @Nullable ScheduledExecutorService keepAliveScheduler,
+                                       long keepAliveDelayNanos,
+                                       long keepAliveTimeoutNanos) {
     Preconditions.checkArgument(maxHeaderListSize > 0, "maxHeaderListSize must be positive");
     Http2FrameLogger frameLogger = new Http2FrameLogger(LogLevel.DEBUG, NettyServerHandler.class);
     Http2HeadersDecoder headersDecoder = new GrpcHttp2ServerHeadersDecoder(maxHeaderListSize);
@@ -114,7 +129,7 @@ class NettyServerHandler extends AbstractNettyHandler {
     Http2FrameWriter frameWriter =
         new Http2OutboundFrameLogger(new DefaultHttp2FrameWriter(), frameLogger);
     return newHandler(frameReader, frameWriter, transportListener, maxStreams, flowControlWindow,
-        maxMessageSize);
+        maxMessageSize, keepAliveScheduler, keepAliveDelayNanos, keepAliveTimeoutNanos);
   }
 
   @VisibleForTesting
@@ -122,7 +137,10 @@ class NettyServerHandler extends AbstractNettyHandler {
                                        ServerTransportListener transportListener,
                                        int maxStreams,
                                        int flowControlWindow,
-                                       int maxMessageSize) {
+                                       int maxMessageSize,
+                                       @Nullable ScheduledExecutorService keepAliveScheduler,
+                                       long keepAliveDelayNanos,
+                                       long keepAliveTimeoutNanos) {
     Preconditions.checkArgument(maxStreams > 0, "maxStreams must be positive");
     Preconditions.checkArgument(flowControlWindow > 0, "flowControlWindow must be positive");
     Preconditions.checkArgument(maxMessageSize > 0, "maxMessageSize must be positive");
@@ -142,16 +160,23 @@ class NettyServerHandler extends AbstractNettyHandler {
     settings.initialWindowSize(flowControlWindow);
     settings.maxConcurrentStreams(maxStreams);
 
-    return new NettyServerHandler(transportListener, decoder, encoder, settings, maxMessageSize);
+    return new NettyServerHandler(transportListener, decoder, encoder, settings, maxMessageSize,
+        keepAliveScheduler, keepAliveDelayNanos, keepAliveTimeoutNanos);
   }
 
   private NettyServerHandler(ServerTransportListener transportListener,
                              Http2ConnectionDecoder decoder,
                              Http2ConnectionEncoder encoder, Http2Settings settings,
-                             int maxMessageSize) {
+                             int maxMessageSize,
+                             @Nullable ScheduledExecutorService keepAliveScheduler,
+                             long keepAliveDelayNanos,
+                             long keepAliveTimeoutNanos) {
     super(decoder, encoder, settings);
     checkArgument(maxMessageSize >= 0, "maxMessageSize must be >= 0");
     this.maxMessageSize = maxMessageSize;
+    this.keepAliveScheduler = keepAliveScheduler;
+    this.keepAliveDelayNanos = keepAliveDelayNanos;
+    this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
 
     streamKey = encoder.connection().newKey();
     this.transportListener = checkNotNull(transportListener, "transportListener");
@@ -165,6 +190,11 @@ class NettyServerHandler extends AbstractNettyHandler {
     return connectionError;
   }
 
+  @VisibleForTesting
+  void setKeepAliveManagerForTest(KeepAliveManager keepAliveManager) {
+    this.keepAliveManager = keepAliveManager;
+  }
+
   @Override
   public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
     serverWriteQueue = new WriteQueue(ctx.channel());
@@ -172,6 +202,21 @@ class NettyServerHandler extends AbstractNettyHandler {
         .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, ctx.channel().remoteAddress())
         .build());
     super.handlerAdded(ctx);
+    if (keepAliveScheduler != null) {
+      keepAliveManager = new KeepAliveManager(new ServerKeepAlivePinger(ctx), keepAliveScheduler,
+          keepAliveDelayNanos, keepAliveTimeoutNanos);
+      // The server has no notion of an idle connection; it keeps probing for as long as the
+      // connection is open.
+      keepAliveManager.onTransportActive();
+    }
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (keepAliveManager != null) {
+      keepAliveManager.onDataReceived();
+    }
+    super.channelRead(ctx, msg);
   }
 
   private void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers)
@@ -271,6 +316,9 @@ class NettyServerHandler extends AbstractNettyHandler {
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
     try {
+      if (keepAliveManager != null) {
+        keepAliveManager.onTransportShutdown();
+      }
       final Status status =
           Status.UNAVAILABLE.withDescription("connection terminated for unknown reason");
       // Any streams that are still active must be closed
@@ -418,6 +466,15 @@ class NettyServerHandler extends AbstractNettyHandler {
       throw Http2Exception.streamError(streamId, Http2Error.REFUSED_STREAM,
           "Malformatted path: %s", path);
     }
+    if (path instanceof AsciiString) {
+      // Registered methods resolve to their interned name straight from the header bytes
+      AsciiString asciiPath = (AsciiString) path;
+      String method = transportListener.lookupMethodName(
+          asciiPath.array(), asciiPath.arrayOffset() + 1, asciiPath.length() - 1);
+      if (method != null) {
+        return method;
+      }
+    }
     return path.subSequence(1, path.length()).toString();
   }
 
@@ -462,15 +519,51 @@ class NettyServerHandler extends AbstractNettyHandler {
 
     @Override
     public void onPingAckRead(ChannelHandlerContext ctx, ByteBuf data) throws Http2Exception {
-      if (data.getLong(data.readerIndex()) == flowControlPing().payload()) {
+      long payload = data.getLong(data.readerIndex());
+      if (payload == flowControlPing().payload()) {
         flowControlPing().updateWindow();
         if (logger.isLoggable(Level.FINE)) {
           logger.log(Level.FINE, String.format("Window: %d",
               decoder().flowController().initialWindowSize(connection().connectionStream())));
         }
-      } else {
+      } else if (payload != KEEPALIVE_PING) {
+        // Keepalive acks need no handling; the KeepAliveManager already saw them as received data.
         logger.warning("Received unexpected ping ack. No ping outstanding");
       }
     }
   }
+
+  /**
+   * Sends keepalive pings on the channel's event loop, and forcefully closes the connection when
+   * the peer stops responding.
+   */
+  @VisibleForTesting
+  final class ServerKeepAlivePinger implements KeepAliveManager.KeepAlivePinger {
+    private final ChannelHandlerContext ctx;
+
+    ServerKeepAlivePinger(ChannelHandlerContext ctx) {
+      this.ctx = ctx;
+    }
+
+    @Override
+    public void ping() {
+      ctx.executor().execute(new Runnable() {
+        @Override
+        public void run() {
+          if (!ctx.channel().isActive()) {
+            return;
+          }
+          ByteBuf payload = ctx.alloc().buffer(8).writeLong(KEEPALIVE_PING);
+          encoder().writePing(ctx, false, payload, ctx.newPromise());
+          ctx.flush();
+        }
+      });
+    }
+
+    @Override
+    public void onPingTimeout() {
+      ctx.channel().writeAndFlush(new ForcefulCloseCommand(
+          Status.UNAVAILABLE.withDescription("Keepalive failed. The connection is likely gone")));
+    }
+  }
 }
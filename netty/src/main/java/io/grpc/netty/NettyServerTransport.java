@@ -31,17 +31,21 @@
 
 package io.grpc.netty;
 
+import static io.grpc.internal.GrpcUtil.TIMER_SERVICE;
+
 import com.google.common.base.Preconditions;
 
 import io.grpc.Status;
 import io.grpc.internal.LogId;
 import io.grpc.internal.ServerTransport;
 import io.grpc.internal.ServerTransportListener;
+import io.grpc.internal.SharedResourceHolder;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,21 +64,33 @@ class NettyServerTransport implements ServerTransport {
   private final int flowControlWindow;
   private final int maxMessageSize;
   private final int maxHeaderListSize;
+  private final boolean enableKeepAlive;
+  private final long keepAliveDelayNanos;
+  private final long keepAliveTimeoutNanos;
+  private ScheduledExecutorService scheduler;
 
   NettyServerTransport(Channel channel, ProtocolNegotiator protocolNegotiator, int maxStreams,
-      int flowControlWindow, int maxMessageSize, int maxHeaderListSize) {
+      int flowControlWindow, int maxMessageSize, int maxHeaderListSize, boolean enableKeepAlive,
+      long keepAliveDelayNanos, long keepAliveTimeoutNanos) {
     this.channel = Preconditions.checkNotNull(channel, "channel");
     this.protocolNegotiator = Preconditions.checkNotNull(protocolNegotiator, "protocolNegotiator");
     this.maxStreams = maxStreams;
     this.flowControlWindow = flowControlWindow;
     this.maxMessageSize = maxMessageSize;
     this.maxHeaderListSize = maxHeaderListSize;
+    this.enableKeepAlive = enableKeepAlive;
+    this.keepAliveDelayNanos = keepAliveDelayNanos;
+    this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
   }
 
   public void start(ServerTransportListener listener) {
     Preconditions.checkState(this.listener == null, "Handler already registered");
     this.listener = listener;
 
+    if (enableKeepAlive) {
+      scheduler = SharedResourceHolder.get(TIMER_SERVICE);
+    }
+
     // Create the Netty handler for the pipeline.
     final NettyServerHandler grpcHandler = createHandler(listener);
     HandlerSettings.setAutoWindow(grpcHandler);
@@ -84,6 +100,9 @@ class NettyServerTransport implements ServerTransport {
       @Override
       public void operationComplete(ChannelFuture future) throws Exception {
         notifyTerminated(grpcHandler.connectionError());
+        if (scheduler != null) {
+          scheduler = SharedResourceHolder.release(TIMER_SERVICE, scheduler);
+        }
       }
     });
 
@@ -132,6 +151,6 @@ class NettyServerTransport implements ServerTransport {
    */
   private NettyServerHandler createHandler(ServerTransportListener transportListener) {
     return NettyServerHandler.newHandler(transportListener, maxStreams, flowControlWindow,
-        maxHeaderListSize, maxMessageSize);
+        maxHeaderListSize, maxMessageSize, scheduler, keepAliveDelayNanos, keepAliveTimeoutNanos);
   }
 }
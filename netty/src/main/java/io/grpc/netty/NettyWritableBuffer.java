@@ -31,9 +31,13 @@
 
 package io.grpc.netty;
 
+import io.grpc.ByteBufferDrainable;
 import io.grpc.internal.WritableBuffer;
 import io.netty.buffer.ByteBuf;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * The {@link WritableBuffer} used by the Netty transport.
  */
@@ -55,6 +59,21 @@ class NettyWritableBuffer implements WritableBuffer {
     bytebuf.writeByte(b);
   }
 
+  @Override
+  public int write(ByteBufferDrainable src, int length) throws IOException {
+    if (length > bytebuf.writableBytes()) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (bytebuf.nioBufferCount() != 1) {
+      return -1;
+    }
+    int writerIndex = bytebuf.writerIndex();
+    ByteBuffer target = bytebuf.nioBuffer(writerIndex, length);
+    int written = src.drainTo(target);
+    bytebuf.writerIndex(writerIndex + written);
+    return written;
+  }
+
   @Override
   public int writableBytes() {
     return bytebuf.writableBytes();
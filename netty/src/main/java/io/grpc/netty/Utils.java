@@ -34,7 +34,6 @@ package io.grpc.netty;
 import static io.grpc.internal.GrpcUtil.CONTENT_TYPE_KEY;
 import static io.grpc.internal.GrpcUtil.USER_AGENT_KEY;
 import static io.grpc.internal.TransportFrameUtil.toHttp2Headers;
-import static io.grpc.internal.TransportFrameUtil.toRawSerializedHeaders;
 import static io.netty.util.CharsetUtil.UTF_8;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -87,9 +86,10 @@ class Utils {
   public static Metadata convertHeaders(Http2Headers http2Headers) {
     if (http2Headers instanceof GrpcHttp2InboundHeaders) {
       GrpcHttp2InboundHeaders h = (GrpcHttp2InboundHeaders) http2Headers;
-      return InternalMetadata.newMetadata(h.numHeaders(), h.namesAndValues());
+      return InternalMetadata.newMetadataFromHttp2Headers(h.numHeaders(), h.namesAndValues());
     }
-    return InternalMetadata.newMetadata(convertHeadersToArray(http2Headers));
+    byte[][] headerValues = convertHeadersToArray(http2Headers);
+    return InternalMetadata.newMetadataFromHttp2Headers(headerValues.length / 2, headerValues);
   }
 
   private static byte[][] convertHeadersToArray(Http2Headers http2Headers) {
@@ -101,7 +101,7 @@ class Utils {
       headerValues[i++] = bytes(entry.getKey());
       headerValues[i++] = bytes(entry.getValue());
     }
-    return toRawSerializedHeaders(headerValues);
+    return headerValues;
   }
 
   private static byte[] bytes(CharSequence seq) {
@@ -131,6 +131,14 @@ class Utils {
         userAgent);
   }
 
+  /**
+   * Converts client headers that start with {@code preHeaders}, as built by {@link
+   * GrpcHttp2OutboundHeaders#clientRequestPreHeaders}.
+   */
+  static Http2Headers convertClientHeaders(Metadata headers, AsciiString[] preHeaders) {
+    return GrpcHttp2OutboundHeaders.clientRequestHeaders(toHttp2Headers(headers), preHeaders);
+  }
+
   public static Http2Headers convertServerHeaders(Metadata headers) {
     return GrpcHttp2OutboundHeaders.serverResponseHeaders(toHttp2Headers(headers));
   }
@@ -138,9 +146,10 @@ class Utils {
   public static Metadata convertTrailers(Http2Headers http2Headers) {
     if (http2Headers instanceof GrpcHttp2InboundHeaders) {
       GrpcHttp2InboundHeaders h = (GrpcHttp2InboundHeaders) http2Headers;
-      return InternalMetadata.newMetadata(h.numHeaders(), h.namesAndValues());
+      return InternalMetadata.newMetadataFromHttp2Headers(h.numHeaders(), h.namesAndValues());
     }
-    return InternalMetadata.newMetadata(convertHeadersToArray(http2Headers));
+    byte[][] headerValues = convertHeadersToArray(http2Headers);
+    return InternalMetadata.newMetadataFromHttp2Headers(headerValues.length / 2, headerValues);
   }
 
   public static Http2Headers convertTrailers(Metadata trailers, boolean headersSent) {
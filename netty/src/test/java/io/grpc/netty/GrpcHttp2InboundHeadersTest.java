@@ -32,12 +32,12 @@
 package io.grpc.netty;
 
 import static io.netty.util.AsciiString.of;
-import static junit.framework.TestCase.assertNotSame;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import com.google.common.io.BaseEncoding;
 
+import io.grpc.Metadata;
 import io.grpc.netty.GrpcHttp2HeadersDecoder.GrpcHttp2InboundHeaders;
 import io.grpc.netty.GrpcHttp2HeadersDecoder.GrpcHttp2RequestHeaders;
 import io.grpc.netty.GrpcHttp2HeadersDecoder.GrpcHttp2ResponseHeaders;
@@ -80,20 +80,24 @@ public class GrpcHttp2InboundHeadersTest {
   }
 
   @Test
-  public void binaryHeadersShouldBeBase64Decoded() {
+  public void binaryHeadersDecodedWhenRead() {
     Http2Headers headers = new GrpcHttp2RequestHeaders(1);
 
     byte[] data = new byte[100];
     new Random().nextBytes(data);
-    headers.add(of("foo-bin"), of(BaseEncoding.base64().encode(data)));
+    String encoded = BaseEncoding.base64().encode(data);
+    headers.add(of("foo-bin"), of(encoded));
 
     assertEquals(1, headers.size());
 
     byte[][] namesAndValues = ((GrpcHttp2InboundHeaders)headers).namesAndValues();
 
     assertEquals(of("foo-bin"), new AsciiString(namesAndValues[0]));
-    assertNotSame(data, namesAndValues[1]);
-    assertArrayEquals(data, namesAndValues[1]);
+    assertEquals(of(encoded), new AsciiString(namesAndValues[1]));
+
+    Metadata metadata = Utils.convertHeaders(headers);
+    Metadata.Key<byte[]> key = Metadata.Key.of("foo-bin", Metadata.BINARY_BYTE_MARSHALLER);
+    assertArrayEquals(data, metadata.get(key));
   }
 
 }
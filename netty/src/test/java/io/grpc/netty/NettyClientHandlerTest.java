@@ -51,6 +51,9 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.notNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import com.google.common.base.Ticker;
@@ -64,6 +67,7 @@ import io.grpc.internal.ClientStreamListener;
 import io.grpc.internal.ClientTransport;
 import io.grpc.internal.ClientTransport.PingCallback;
 import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.KeepAliveManager;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.netty.GrpcHttp2HeadersDecoder.GrpcHttp2ClientHeadersDecoder;
 import io.netty.buffer.ByteBuf;
@@ -105,6 +109,7 @@ public class NettyClientHandlerTest extends NettyHandlerTestBase<NettyClientHand
   private int flowControlWindow = DEFAULT_WINDOW_SIZE;
   private int streamId = 3;
   private ClientTransportLifecycleManager lifecycleManager;
+  private KeepAliveManager keepAliveManager;
 
   @Mock
   private NettyClientTransport.Listener listener;
@@ -152,6 +157,32 @@ public class NettyClientHandlerTest extends NettyHandlerTestBase<NettyClientHand
     verify(streamListener).closed(eq(Status.CANCELLED), any(Metadata.class));
   }
 
+  @Test
+  public void keepAliveManagerSeesReadData() throws Exception {
+    keepAliveManager = mock(KeepAliveManager.class);
+    setUp();
+    // The settings read by setUp()
+    verify(keepAliveManager).onDataReceived();
+
+    createStream();
+    channelRead(grpcDataFrame(3, false, contentAsArray()));
+    verify(keepAliveManager, times(2)).onDataReceived();
+  }
+
+  @Test
+  public void keepAliveManagerFollowsActiveStreams() throws Exception {
+    keepAliveManager = mock(KeepAliveManager.class);
+    setUp();
+
+    createStream();
+    verify(keepAliveManager).onTransportActive();
+    verify(keepAliveManager, never()).onTransportIdle();
+
+    cancelStream(Status.CANCELLED);
+    verify(keepAliveManager).onTransportActive();
+    verify(keepAliveManager).onTransportIdle();
+  }
+
   @Test
   public void createStreamShouldSucceed() throws Exception {
     createStream();
@@ -536,7 +567,7 @@ public class NettyClientHandlerTest extends NettyHandlerTestBase<NettyClientHand
     };
 
     return NettyClientHandler.newHandler(connection, frameReader(), frameWriter(),
-        lifecycleManager, flowControlWindow, ticker);
+        lifecycleManager, keepAliveManager, flowControlWindow, ticker);
   }
 
   @Override
@@ -40,6 +40,9 @@ import static io.grpc.netty.Utils.STATUS_OK;
 import static io.netty.util.CharsetUtil.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -50,6 +53,7 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -83,6 +87,8 @@ import org.mockito.stubbing.Answer;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Tests for {@link NettyClientStream}.
@@ -102,6 +108,9 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
   private MethodDescriptor<?, ?> methodDescriptor = MethodDescriptor.create(
       MethodDescriptor.MethodType.UNARY, "/testService/test", marshaller, marshaller);
 
+  private final ConcurrentMap<MethodDescriptor<?, ?>, AsciiString[]> requestHeadersCache =
+      new ConcurrentHashMap<MethodDescriptor<?, ?>, AsciiString[]>();
+
   @Override
   protected ClientStreamListener listener() {
     return listener;
@@ -361,7 +370,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
 
     stream = new NettyClientStream(new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
         methodDescriptor, new Metadata(), channel, AsciiString.of("localhost"),
-        AsciiString.of("http"), AsciiString.of("agent"), StatsTraceContext.NOOP);
+        AsciiString.of("http"), AsciiString.of("agent"), StatsTraceContext.NOOP,
+        requestHeadersCache);
     stream.start(listener);
     stream().transportState().setId(STREAM_ID);
     verify(listener, never()).onReady();
@@ -381,7 +391,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
 
     stream = new NettyClientStream(new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
         methodDescriptor, new Metadata(), channel, AsciiString.of("localhost"),
-        AsciiString.of("http"), AsciiString.of("good agent"), StatsTraceContext.NOOP);
+        AsciiString.of("http"), AsciiString.of("good agent"), StatsTraceContext.NOOP,
+        requestHeadersCache);
     stream.start(listener);
 
     ArgumentCaptor<CreateStreamCommand> cmdCap = ArgumentCaptor.forClass(CreateStreamCommand.class);
@@ -390,6 +401,56 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
         .containsEntry(Utils.USER_AGENT, AsciiString.of("good agent"));
   }
 
+  @Test
+  public void fixedHeadersCachedPerChannel() {
+    ConcurrentMap<MethodDescriptor<?, ?>, AsciiString[]> otherChannelCache =
+        new ConcurrentHashMap<MethodDescriptor<?, ?>, AsciiString[]>();
+    listener = mock(ClientStreamListener.class);
+    Mockito.reset(writeQueue);
+    when(writeQueue.enqueue(any(QueuedCommand.class), any(boolean.class))).thenReturn(future);
+    AsciiString[] cached = requestHeadersCache.get(methodDescriptor);
+    assertNotNull(cached);
+
+    stream = new NettyClientStream(new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
+        methodDescriptor, new Metadata(), channel, AsciiString.of("localhost"),
+        AsciiString.of("http"), AsciiString.of("agent"), StatsTraceContext.NOOP,
+        requestHeadersCache);
+    stream.start(listener);
+    assertSame(cached, requestHeadersCache.get(methodDescriptor));
+
+    // Another channel with a different authority does not replace this channel's headers.
+    stream = new NettyClientStream(new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
+        methodDescriptor, new Metadata(), channel, AsciiString.of("otherhost"),
+        AsciiString.of("http"), AsciiString.of("agent"), StatsTraceContext.NOOP,
+        otherChannelCache);
+    stream.start(listener);
+    assertSame(cached, requestHeadersCache.get(methodDescriptor));
+    assertNotSame(cached, otherChannelCache.get(methodDescriptor));
+
+    stream = new NettyClientStream(new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
+        methodDescriptor, new Metadata(), channel, AsciiString.of("localhost"),
+        AsciiString.of("http"), AsciiString.of("agent"), StatsTraceContext.NOOP,
+        requestHeadersCache);
+    stream.setAuthority("overridden");
+    stream.start(listener);
+    assertNotSame(cached, requestHeadersCache.get(methodDescriptor));
+
+    ArgumentCaptor<CreateStreamCommand> cmdCap = ArgumentCaptor.forClass(CreateStreamCommand.class);
+    verify(writeQueue, times(3)).enqueue(cmdCap.capture(), eq(false));
+    assertThat(ImmutableListMultimap.copyOf(cmdCap.getAllValues().get(0).headers()))
+        .containsEntry(
+            Http2Headers.PseudoHeaderName.AUTHORITY.value(), AsciiString.of("localhost"));
+    assertThat(ImmutableListMultimap.copyOf(cmdCap.getAllValues().get(1).headers()))
+        .containsEntry(
+            Http2Headers.PseudoHeaderName.AUTHORITY.value(), AsciiString.of("otherhost"));
+    assertThat(ImmutableListMultimap.copyOf(cmdCap.getAllValues().get(2).headers()))
+        .containsEntry(
+            Http2Headers.PseudoHeaderName.AUTHORITY.value(), AsciiString.of("overridden"));
+    assertThat(ImmutableListMultimap.copyOf(cmdCap.getAllValues().get(2).headers()))
+        .containsEntry(Http2Headers.PseudoHeaderName.PATH.value(),
+            AsciiString.of("/" + methodDescriptor.getFullMethodName()));
+  }
+
   @Override
   protected NettyClientStream createStream() {
     when(handler.getWriteQueue()).thenReturn(writeQueue);
@@ -406,7 +467,7 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
     NettyClientStream stream = new NettyClientStream(
         new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE), methodDescriptor, new Metadata(),
         channel, AsciiString.of("localhost"), AsciiString.of("http"), AsciiString.of("agent"),
-        StatsTraceContext.NOOP);
+        StatsTraceContext.NOOP, requestHeadersCache);
     stream.start(listener);
     stream.transportState().setId(STREAM_ID);
     stream.transportState().setHttp2Stream(http2Stream);
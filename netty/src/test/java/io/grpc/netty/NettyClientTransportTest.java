@@ -72,6 +72,7 @@ import io.netty.handler.codec.http2.Http2Exception;
 import io.netty.handler.codec.http2.StreamBufferingEncoder;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.util.AsciiString;
 
 import org.junit.After;
 import org.junit.Before;
@@ -91,6 +92,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -167,7 +169,8 @@ public class NettyClientTransportTest {
     NettyClientTransport transport = new NettyClientTransport(
         address, NioSocketChannel.class, channelOptions, group, newNegotiator(),
         DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MESSAGE_SIZE, GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE,
-        authority, null /* user agent */);
+        false, 0, 0, authority, null /* user agent */,
+        new ConcurrentHashMap<MethodDescriptor<?, ?>, AsciiString[]>());
     transports.add(transport);
     transport.start(clientTransportListener);
 
@@ -337,7 +340,8 @@ public class NettyClientTransportTest {
       ProtocolNegotiator negotiator, int maxMsgSize, int maxHeaderListSize, String userAgent) {
     NettyClientTransport transport = new NettyClientTransport(
         address, NioSocketChannel.class, new HashMap<ChannelOption<?>, Object>(), group, negotiator,
-        DEFAULT_WINDOW_SIZE, maxMsgSize, maxHeaderListSize, authority, userAgent);
+        DEFAULT_WINDOW_SIZE, maxMsgSize, maxHeaderListSize, false, 0, 0, authority,
+        userAgent, new ConcurrentHashMap<MethodDescriptor<?, ?>, AsciiString[]>());
     transports.add(transport);
     return transport;
   }
@@ -354,7 +358,8 @@ public class NettyClientTransportTest {
     ProtocolNegotiator negotiator = ProtocolNegotiators.serverTls(serverContext);
     server = new NettyServer(TestUtils.testServerAddress(0),
         NioServerSocketChannel.class, group, group, negotiator,
-        maxStreamsPerConnection, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MESSAGE_SIZE, maxHeaderListSize);
+        maxStreamsPerConnection, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MESSAGE_SIZE, maxHeaderListSize,
+        false, 0, 0);
     server.start(serverListener);
     address = TestUtils.testServerAddress(server.getPort());
     authority = GrpcUtil.authorityFromHostAndPort(address.getHostString(), address.getPort());
@@ -473,6 +478,11 @@ public class NettyClientTransportTest {
           return StatsTraceContext.NOOP;
         }
 
+        @Override
+        public String lookupMethodName(byte[] bytes, int offset, int length) {
+          return null;
+        }
+
         @Override
         public void streamCreated(ServerStream stream, String method, Metadata headers) {
           EchoServerStreamListener listener = new EchoServerStreamListener(stream, method, headers);
@@ -42,13 +42,18 @@ import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_WINDOW_SIZE;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -58,7 +63,9 @@ import io.grpc.Attributes;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.Status.Code;
+import io.grpc.internal.FakeClock;
 import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.KeepAliveManager;
 import io.grpc.internal.ServerStream;
 import io.grpc.internal.ServerStreamListener;
 import io.grpc.internal.ServerTransportListener;
@@ -89,6 +96,8 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.InputStream;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Unit tests for {@link NettyServerHandler}.
@@ -109,6 +118,9 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
 
   private int flowControlWindow = DEFAULT_WINDOW_SIZE;
   private int maxConcurrentStreams = Integer.MAX_VALUE;
+  private ScheduledExecutorService keepAliveScheduler;
+  private long keepAliveDelayNanos;
+  private long keepAliveTimeoutNanos;
 
   private class ServerTransportListenerImpl implements ServerTransportListener {
 
@@ -117,6 +129,11 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
       return statsTraceCtx;
     }
 
+    @Override
+    public String lookupMethodName(byte[] bytes, int offset, int length) {
+      return null;
+    }
+
     @Override
     public void streamCreated(ServerStream stream, String method, Metadata headers) {
       stream.setListener(streamListener);
@@ -265,6 +282,67 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
     assertFalse(captor.getValue().isOk());
   }
 
+  @Test
+  public void keepAliveRunsWhileConnectionIsOpen() throws Exception {
+    FakeClock fakeClock = new FakeClock();
+    keepAliveScheduler = fakeClock.getScheduledExecutorService();
+    keepAliveDelayNanos = TimeUnit.MINUTES.toNanos(1);
+    keepAliveTimeoutNanos = TimeUnit.SECONDS.toNanos(20);
+    setUp();
+
+    // The first ping is scheduled as soon as the connection is open, without waiting for streams
+    assertEquals(1, fakeClock.numPendingTasks());
+
+    handler().channelInactive(ctx());
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void keepAliveManagerSeesReadData() throws Exception {
+    KeepAliveManager keepAliveManager = mock(KeepAliveManager.class);
+    handler().setKeepAliveManagerForTest(keepAliveManager);
+
+    createStream();
+    verify(keepAliveManager).onDataReceived();
+    channelRead(emptyGrpcFrame(STREAM_ID, false));
+    verify(keepAliveManager, times(2)).onDataReceived();
+  }
+
+  @Test
+  public void keepAlivePingIsWritten() throws Exception {
+    handler().new ServerKeepAlivePinger(ctx()).ping();
+    channel().runPendingTasks();
+
+    ArgumentCaptor<ByteBuf> captor = ArgumentCaptor.forClass(ByteBuf.class);
+    verifyWrite().writePing(eq(ctx()), eq(false), captor.capture(), any(ChannelPromise.class));
+    assertEquals(NettyServerHandler.KEEPALIVE_PING, captor.getValue().slice().readLong());
+  }
+
+  @Test
+  public void keepAlivePingAckCountsAsReadData() throws Exception {
+    KeepAliveManager keepAliveManager = mock(KeepAliveManager.class);
+    handler().setKeepAliveManagerForTest(keepAliveManager);
+
+    ByteBuf payload = ctx().alloc().buffer(8).writeLong(NettyServerHandler.KEEPALIVE_PING);
+    channelRead(pingFrame(true, payload));
+
+    verify(keepAliveManager).onDataReceived();
+    assertTrue(channel().isOpen());
+  }
+
+  @Test
+  public void keepAlivePingTimeoutClosesConnection() throws Exception {
+    createStream();
+
+    handler().new ServerKeepAlivePinger(ctx()).onPingTimeout();
+    channel().runPendingTasks();
+
+    assertFalse(channel().isOpen());
+    ArgumentCaptor<Status> captor = ArgumentCaptor.forClass(Status.class);
+    verify(streamListener).closed(captor.capture());
+    assertEquals(Code.UNAVAILABLE, captor.getValue().getCode());
+  }
+
   @Test
   public void shouldAdvertiseMaxConcurrentStreams() throws Exception {
     maxConcurrentStreams = 314;
@@ -330,6 +408,38 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
     stream = streamCaptor.getValue();
   }
 
+  @Test
+  public void registeredMethodNameResolvedFromPathBytes() throws Exception {
+    String registeredName = new String("foo/bar");
+    doReturn(registeredName).when(transportListener)
+        .lookupMethodName(any(byte[].class), anyInt(), anyInt());
+    createStream();
+
+    ArgumentCaptor<byte[]> bytesCaptor = ArgumentCaptor.forClass(byte[].class);
+    ArgumentCaptor<Integer> offsetCaptor = ArgumentCaptor.forClass(Integer.class);
+    ArgumentCaptor<Integer> lengthCaptor = ArgumentCaptor.forClass(Integer.class);
+    verify(transportListener).lookupMethodName(
+        bytesCaptor.capture(), offsetCaptor.capture(), lengthCaptor.capture());
+    assertEquals("foo/bar", new String(
+        bytesCaptor.getValue(), offsetCaptor.getValue(), lengthCaptor.getValue(), UTF_8));
+    ArgumentCaptor<String> methodCaptor = ArgumentCaptor.forClass(String.class);
+    verify(transportListener).methodDetermined(methodCaptor.capture(), any(Metadata.class));
+    assertSame(registeredName, methodCaptor.getValue());
+    verify(transportListener).streamCreated(
+        any(ServerStream.class), methodCaptor.capture(), any(Metadata.class));
+    assertSame(registeredName, methodCaptor.getValue());
+  }
+
+  @Test
+  public void unknownMethodNameDecodedFromPath() throws Exception {
+    createStream();
+
+    ArgumentCaptor<String> methodCaptor = ArgumentCaptor.forClass(String.class);
+    verify(transportListener).streamCreated(
+        any(ServerStream.class), methodCaptor.capture(), any(Metadata.class));
+    assertEquals("foo/bar", methodCaptor.getValue());
+  }
+
   private void createStream() throws Exception {
     Http2Headers headers = new DefaultHttp2Headers()
         .method(HTTP_METHOD)
@@ -359,7 +469,8 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
   @Override
   protected NettyServerHandler newHandler() {
     return NettyServerHandler.newHandler(frameReader(), frameWriter(), transportListener,
-        maxConcurrentStreams, flowControlWindow, DEFAULT_MAX_MESSAGE_SIZE);
+        maxConcurrentStreams, flowControlWindow, DEFAULT_MAX_MESSAGE_SIZE, keepAliveScheduler,
+        keepAliveDelayNanos, keepAliveTimeoutNanos);
   }
 
   @Override
@@ -59,7 +59,10 @@ public class NettyServerTest {
         1, // ignore
         1, // ignore
         1, // ignore
-        1); // ignore
+        1, // ignore
+        false, // no keepalive
+        0, // ignore
+        0); // ignore
     ns.start(new ServerListener() {
       @Override
       public ServerTransportListener transportCreated(ServerTransport transport) {
@@ -89,7 +92,10 @@ public class NettyServerTest {
         1, // ignore
         1, // ignore
         1, // ignore
-        1); // ignore
+        1, // ignore
+        false, // no keepalive
+        0, // ignore
+        0); // ignore
 
     assertThat(ns.getPort()).isEqualTo(-1);
   }
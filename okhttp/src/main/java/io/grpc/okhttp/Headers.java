@@ -34,6 +34,7 @@ package io.grpc.okhttp;
 import static io.grpc.internal.GrpcUtil.CONTENT_TYPE_KEY;
 import static io.grpc.internal.GrpcUtil.USER_AGENT_KEY;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
 import io.grpc.Metadata;
@@ -46,6 +47,8 @@ import okio.ByteString;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 /**
  * Constants for request/response headers.
  */
@@ -64,26 +67,24 @@ public class Headers {
    */
   public static List<Header> createRequestHeaders(Metadata headers, String defaultPath,
       String authority, String userAgent) {
-    Preconditions.checkNotNull(headers, "headers");
-    Preconditions.checkNotNull(defaultPath, "defaultPath");
-    Preconditions.checkNotNull(authority, "authority");
-
-    // 7 is the number of explicit add calls below.
-    List<Header> okhttpHeaders = new ArrayList<Header>(7 + headers.headerCount());
-
-    // Set GRPC-specific headers.
-    okhttpHeaders.add(SCHEME_HEADER);
-    okhttpHeaders.add(METHOD_HEADER);
+    return createRequestHeaders(
+        headers, fixedRequestHeaders(null, defaultPath, authority, userAgent));
+  }
 
-    okhttpHeaders.add(new Header(Header.TARGET_AUTHORITY, authority));
-    String path = defaultPath;
-    okhttpHeaders.add(new Header(Header.TARGET_PATH, path));
+  /**
+   * Like {@link #createRequestHeaders(Metadata, String, String, String)}, but starts with the
+   * already encoded {@code fixed} headers.
+   */
+  static List<Header> createRequestHeaders(Metadata headers, FixedRequestHeaders fixed) {
+    Preconditions.checkNotNull(headers, "headers");
 
-    okhttpHeaders.add(new Header(GrpcUtil.USER_AGENT_KEY.name(), userAgent));
+    List<Header> okhttpHeaders =
+        new ArrayList<Header>(fixed.headers.length + headers.headerCount());
 
-    // All non-pseudo headers must come after pseudo headers.
-    okhttpHeaders.add(CONTENT_TYPE_HEADER);
-    okhttpHeaders.add(TE_HEADER);
+    // Set GRPC-specific headers. All non-pseudo headers must come after pseudo headers.
+    for (Header header : fixed.headers) {
+      okhttpHeaders.add(header);
+    }
 
     // Now add any application-provided headers.
     byte[][] serializedHeaders = TransportFrameUtil.toHttp2Headers(headers);
@@ -99,6 +100,49 @@ public class Headers {
     return okhttpHeaders;
   }
 
+  /**
+   * Returns the headers every request for {@code defaultPath} starts with. If {@code cached} was
+   * built from the same values it is returned as is, so a transport that keeps calling one method
+   * does not encode them again.
+   */
+  static FixedRequestHeaders fixedRequestHeaders(@Nullable FixedRequestHeaders cached,
+      String defaultPath, String authority, String userAgent) {
+    Preconditions.checkNotNull(defaultPath, "defaultPath");
+    Preconditions.checkNotNull(authority, "authority");
+    if (cached != null && cached.path.equals(defaultPath) && cached.authority.equals(authority)
+        && Objects.equal(cached.userAgent, userAgent)) {
+      return cached;
+    }
+    return new FixedRequestHeaders(defaultPath, authority, userAgent);
+  }
+
+  /**
+   * The encoded headers that are the same for every call of one method on one transport: the
+   * pseudo headers, user-agent, content-type and te. Immutable.
+   */
+  static final class FixedRequestHeaders {
+    final String path;
+    final String authority;
+    @Nullable
+    final String userAgent;
+    private final Header[] headers;
+
+    private FixedRequestHeaders(String path, String authority, @Nullable String userAgent) {
+      this.path = path;
+      this.authority = authority;
+      this.userAgent = userAgent;
+      headers = new Header[] {
+          SCHEME_HEADER,
+          METHOD_HEADER,
+          new Header(Header.TARGET_AUTHORITY, authority),
+          new Header(Header.TARGET_PATH, path),
+          new Header(GrpcUtil.USER_AGENT_KEY.name(), userAgent),
+          CONTENT_TYPE_HEADER,
+          TE_HEADER,
+      };
+    }
+  }
+
   /**
    * Returns {@code true} if the given header is an application-provided header. Otherwise, returns
    * {@code false} if the header is reserved by GRPC.
@@ -50,6 +50,7 @@ import okio.Buffer;
 import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.concurrent.GuardedBy;
 
@@ -57,7 +58,6 @@ import javax.annotation.concurrent.GuardedBy;
  * Client stream for the okhttp transport.
  */
 class OkHttpClientStream extends Http2ClientStream {
-
   private static final int WINDOW_UPDATE_THRESHOLD = Utils.DEFAULT_WINDOW_SIZE / 2;
 
   private static final Buffer EMPTY_BUFFER = new Buffer();
@@ -74,6 +74,8 @@ class OkHttpClientStream extends Http2ClientStream {
   private final OkHttpClientTransport transport;
   private final Object lock;
   private final String userAgent;
+  private final ConcurrentMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>
+      requestHeadersCache;
   private String authority;
   private Object outboundFlowState;
   private volatile int id = ABSENT_ID;
@@ -98,7 +100,8 @@ class OkHttpClientStream extends Http2ClientStream {
       int maxMessageSize,
       String authority,
       String userAgent,
-      StatsTraceContext statsTraceCtx) {
+      StatsTraceContext statsTraceCtx,
+      ConcurrentMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders> requestHeadersCache) {
     super(new OkHttpWritableBufferAllocator(), maxMessageSize, statsTraceCtx);
     this.method = method;
     this.headers = headers;
@@ -108,6 +111,7 @@ class OkHttpClientStream extends Http2ClientStream {
     this.lock = lock;
     this.authority = authority;
     this.userAgent = userAgent;
+    this.requestHeadersCache = requestHeadersCache;
   }
 
   /**
@@ -138,10 +142,17 @@ class OkHttpClientStream extends Http2ClientStream {
   @Override
   public void start(ClientStreamListener listener) {
     super.start(listener);
-    String defaultPath = "/" + method.getFullMethodName();
+    // The fixed part of the headers is cached per channel, and reused for as long as this
+    // transport's values match it.
+    Headers.FixedRequestHeaders cached = requestHeadersCache.get(method);
+    String defaultPath = cached != null ? cached.path : "/" + method.getFullMethodName();
+    Headers.FixedRequestHeaders fixed =
+        Headers.fixedRequestHeaders(cached, defaultPath, authority, userAgent);
+    if (fixed != cached) {
+      requestHeadersCache.put(method, fixed);
+    }
     headers.discardAll(GrpcUtil.USER_AGENT_KEY);
-    List<Header> requestHeaders =
-        Headers.createRequestHeaders(headers, defaultPath, authority, userAgent);
+    List<Header> requestHeaders = Headers.createRequestHeaders(headers, fixed);
     headers = null;
     synchronized (lock) {
       this.requestHeaders = requestHeaders;
@@ -85,6 +85,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Level;
@@ -151,6 +153,8 @@ class OkHttpClientTransport implements ConnectionClientTransport {
   // Wrap on executor, to guarantee some operations be executed serially.
   private final SerializingExecutor serializingExecutor;
   private final int maxMessageSize;
+  private final ConcurrentMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>
+      requestHeadersCache;
   private int connectionUnacknowledgedBytesRead;
   private ClientFrameHandler clientFrameHandler;
   /**
@@ -187,7 +191,8 @@ class OkHttpClientTransport implements ConnectionClientTransport {
 
   OkHttpClientTransport(InetSocketAddress address, String authority, @Nullable String userAgent,
       Executor executor, @Nullable SSLSocketFactory sslSocketFactory, ConnectionSpec connectionSpec,
-      int maxMessageSize) {
+      int maxMessageSize,
+      ConcurrentMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders> requestHeadersCache) {
     this.address = Preconditions.checkNotNull(address, "address");
     this.defaultAuthority = authority;
     this.maxMessageSize = maxMessageSize;
@@ -200,6 +205,8 @@ class OkHttpClientTransport implements ConnectionClientTransport {
     this.connectionSpec = Preconditions.checkNotNull(connectionSpec, "connectionSpec");
     this.ticker = Ticker.systemTicker();
     this.userAgent = GrpcUtil.getGrpcUserAgent("okhttp", userAgent);
+    this.requestHeadersCache =
+        Preconditions.checkNotNull(requestHeadersCache, "requestHeadersCache");
   }
 
   /**
@@ -222,6 +229,8 @@ class OkHttpClientTransport implements ConnectionClientTransport {
     this.nextStreamId = nextStreamId;
     this.ticker = ticker;
     this.connectionSpec = null;
+    this.requestHeadersCache =
+        new ConcurrentHashMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>();
     this.connectingCallback = connectingCallback;
     this.connectedFuture = Preconditions.checkNotNull(connectedFuture, "connectedFuture");
   }
@@ -278,7 +287,8 @@ class OkHttpClientTransport implements ConnectionClientTransport {
     Preconditions.checkNotNull(headers, "headers");
     Preconditions.checkNotNull(statsTraceCtx, "statsTraceCtx");
     return new OkHttpClientStream(method, headers, frameWriter, OkHttpClientTransport.this,
-        outboundFlow, lock, maxMessageSize, defaultAuthority, userAgent, statsTraceCtx);
+        outboundFlow, lock, maxMessageSize, defaultAuthority, userAgent, statsTraceCtx,
+        requestHeadersCache);
   }
 
   @Override
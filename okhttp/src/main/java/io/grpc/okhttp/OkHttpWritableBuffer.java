@@ -31,6 +31,7 @@
 
 package io.grpc.okhttp;
 
+import io.grpc.ByteBufferDrainable;
 import io.grpc.internal.WritableBuffer;
 
 import okio.Buffer;
@@ -60,6 +61,12 @@ class OkHttpWritableBuffer implements WritableBuffer {
     readableBytes += 1;
   }
 
+  @Override
+  public int write(ByteBufferDrainable src, int length) {
+    // Okio segments are not exposed as ByteBuffers.
+    return -1;
+  }
+
   @Override
   public int writableBytes() {
     return writableBytes;
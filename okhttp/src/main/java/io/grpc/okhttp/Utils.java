@@ -35,7 +35,6 @@ import com.google.common.base.Preconditions;
 
 import io.grpc.InternalMetadata;
 import io.grpc.Metadata;
-import io.grpc.internal.TransportFrameUtil;
 import io.grpc.okhttp.internal.CipherSuite;
 import io.grpc.okhttp.internal.ConnectionSpec;
 import io.grpc.okhttp.internal.framed.Header;
@@ -50,11 +49,13 @@ class Utils {
   static final int CONNECTION_STREAM_ID = 0;
 
   public static Metadata convertHeaders(List<Header> http2Headers) {
-    return InternalMetadata.newMetadata(convertHeadersToArray(http2Headers));
+    byte[][] headerValues = convertHeadersToArray(http2Headers);
+    return InternalMetadata.newMetadataFromHttp2Headers(headerValues.length / 2, headerValues);
   }
 
   public static Metadata convertTrailers(List<Header> http2Headers) {
-    return InternalMetadata.newMetadata(convertHeadersToArray(http2Headers));
+    byte[][] headerValues = convertHeadersToArray(http2Headers);
+    return InternalMetadata.newMetadataFromHttp2Headers(headerValues.length / 2, headerValues);
   }
 
   private static byte[][] convertHeadersToArray(List<Header> http2Headers) {
@@ -64,7 +65,7 @@ class Utils {
       headerValues[i++] = header.name.toByteArray();
       headerValues[i++] = header.value.toByteArray();
     }
-    return TransportFrameUtil.toRawSerializedHeaders(headerValues);
+    return headerValues;
   }
 
   /**
@@ -33,6 +33,9 @@ package io.grpc.okhttp;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
@@ -62,6 +65,8 @@ import org.mockito.stubbing.Answer;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 @RunWith(JUnit4.class)
@@ -77,6 +82,9 @@ public class OkHttpClientStreamTest {
   private final Object lock = new Object();
 
   private MethodDescriptor<?, ?> methodDescriptor;
+  private final ConcurrentMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>
+      requestHeadersCache =
+          new ConcurrentHashMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>();
   private OkHttpClientStream stream;
 
   @Before
@@ -85,7 +93,8 @@ public class OkHttpClientStreamTest {
     methodDescriptor = MethodDescriptor.create(
         MethodType.UNARY, "/testService/test", marshaller, marshaller);
     stream = new OkHttpClientStream(methodDescriptor, new Metadata(), frameWriter, transport,
-        flowController, lock, MAX_MESSAGE_SIZE, "localhost", "userAgent", StatsTraceContext.NOOP);
+        flowController, lock, MAX_MESSAGE_SIZE, "localhost", "userAgent", StatsTraceContext.NOOP,
+        requestHeadersCache);
   }
 
   @Test
@@ -142,7 +151,7 @@ public class OkHttpClientStreamTest {
     metaData.put(GrpcUtil.USER_AGENT_KEY, "misbehaving-application");
     stream = new OkHttpClientStream(methodDescriptor, metaData, frameWriter, transport,
         flowController, lock, MAX_MESSAGE_SIZE, "localhost", "good-application",
-        StatsTraceContext.NOOP);
+        StatsTraceContext.NOOP, requestHeadersCache);
     stream.start(new BaseClientStreamListener());
     stream.start(3);
 
@@ -151,13 +160,65 @@ public class OkHttpClientStreamTest {
         .contains(new Header(GrpcUtil.USER_AGENT_KEY.name(), "good-application"));
   }
 
+  @Test
+  public void start_fixedHeadersReused() {
+    stream.start(new BaseClientStreamListener());
+    stream.start(3);
+    stream = new OkHttpClientStream(methodDescriptor, new Metadata(), frameWriter, transport,
+        flowController, lock, MAX_MESSAGE_SIZE, "localhost", "userAgent", StatsTraceContext.NOOP,
+        requestHeadersCache);
+    stream.start(new BaseClientStreamListener());
+    stream.start(5);
+    stream = new OkHttpClientStream(methodDescriptor, new Metadata(), frameWriter, transport,
+        flowController, lock, MAX_MESSAGE_SIZE, "localhost", "userAgent", StatsTraceContext.NOOP,
+        requestHeadersCache);
+    stream.setAuthority("otherhost");
+    stream.start(new BaseClientStreamListener());
+    stream.start(7);
+
+    verify(frameWriter).synStream(eq(false), eq(false), eq(3), eq(0), headersCaptor.capture());
+    List<Header> first = headersCaptor.getValue();
+    verify(frameWriter).synStream(eq(false), eq(false), eq(5), eq(0), headersCaptor.capture());
+    List<Header> second = headersCaptor.getValue();
+    verify(frameWriter).synStream(eq(false), eq(false), eq(7), eq(0), headersCaptor.capture());
+    List<Header> third = headersCaptor.getValue();
+    for (int i = 0; i < first.size(); i++) {
+      assertSame(first.get(i), second.get(i));
+    }
+    assertThat(third).contains(new Header(Header.TARGET_AUTHORITY, "otherhost"));
+    assertThat(third)
+        .contains(new Header(Header.TARGET_PATH, "/" + methodDescriptor.getFullMethodName()));
+  }
+
+  @Test
+  public void start_fixedHeadersCachedPerChannel() {
+    stream.start(new BaseClientStreamListener());
+    stream.start(3);
+    Headers.FixedRequestHeaders cached = requestHeadersCache.get(methodDescriptor);
+    assertNotNull(cached);
+
+    ConcurrentMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders> otherChannelCache =
+        new ConcurrentHashMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>();
+    stream = new OkHttpClientStream(methodDescriptor, new Metadata(), frameWriter, transport,
+        flowController, lock, MAX_MESSAGE_SIZE, "otherhost", "userAgent", StatsTraceContext.NOOP,
+        otherChannelCache);
+    stream.start(new BaseClientStreamListener());
+    stream.start(5);
+
+    assertSame(cached, requestHeadersCache.get(methodDescriptor));
+    assertNotSame(cached, otherChannelCache.get(methodDescriptor));
+    verify(frameWriter).synStream(eq(false), eq(false), eq(5), eq(0), headersCaptor.capture());
+    assertThat(headersCaptor.getValue())
+        .contains(new Header(Header.TARGET_AUTHORITY, "otherhost"));
+  }
+
   @Test
   public void start_headerFieldOrder() {
     Metadata metaData = new Metadata();
     metaData.put(GrpcUtil.USER_AGENT_KEY, "misbehaving-application");
     stream = new OkHttpClientStream(methodDescriptor, metaData, frameWriter, transport,
         flowController, lock, MAX_MESSAGE_SIZE, "localhost", "good-application",
-        StatsTraceContext.NOOP);
+        StatsTraceContext.NOOP, requestHeadersCache);
     stream.start(new BaseClientStreamListener());
     stream.start(3);
 
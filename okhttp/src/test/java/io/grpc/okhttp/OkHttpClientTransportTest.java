@@ -53,6 +53,7 @@ import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -109,6 +110,7 @@ import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -132,7 +134,9 @@ public class OkHttpClientTransportTest {
   @Mock
   private FrameWriter frameWriter;
   @Mock
-  MethodDescriptor<?, ?> method;
+  private MethodDescriptor.Marshaller<Void> marshaller;
+  // A spy, since a mock would not back the final methods streams cache their headers with.
+  private MethodDescriptor<?, ?> method;
   @Mock
   private ManagedClientTransport.Listener transportListener;
   private OkHttpClientTransport clientTransport;
@@ -147,8 +151,7 @@ public class OkHttpClientTransportTest {
   public void setUp() {
     MockitoAnnotations.initMocks(this);
     executor = Executors.newCachedThreadPool();
-    when(method.getFullMethodName()).thenReturn("fakemethod");
-    when(method.getType()).thenReturn(MethodType.UNARY);
+    method = spy(MethodDescriptor.create(MethodType.UNARY, "fakemethod", marshaller, marshaller));
     when(frameWriter.maxDataLength()).thenReturn(Integer.MAX_VALUE);
     frameReader = new MockFrameReader();
   }
@@ -194,7 +197,8 @@ public class OkHttpClientTransportTest {
     InetSocketAddress address = InetSocketAddress.createUnresolved("hostname", 31415);
     clientTransport = new OkHttpClientTransport(
         address, "hostname", null /* agent */, executor, null,
-        Utils.convertSpec(OkHttpChannelBuilder.DEFAULT_CONNECTION_SPEC), DEFAULT_MAX_MESSAGE_SIZE);
+        Utils.convertSpec(OkHttpChannelBuilder.DEFAULT_CONNECTION_SPEC), DEFAULT_MAX_MESSAGE_SIZE,
+        new ConcurrentHashMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>());
     String s = clientTransport.toString();
     assertTrue("Unexpected: " + s, s.contains("OkHttpClientTransport"));
     assertTrue("Unexpected: " + s, s.contains(address.toString()));
@@ -1311,7 +1315,8 @@ public class OkHttpClientTransportTest {
         executor,
         null,
         ConnectionSpec.CLEARTEXT,
-        DEFAULT_MAX_MESSAGE_SIZE);
+        DEFAULT_MAX_MESSAGE_SIZE,
+        new ConcurrentHashMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>());
 
     String host = clientTransport.getOverridenHost();
     int port = clientTransport.getOverridenPort();
@@ -1329,7 +1334,8 @@ public class OkHttpClientTransportTest {
         executor,
         null,
         ConnectionSpec.CLEARTEXT,
-        DEFAULT_MAX_MESSAGE_SIZE);
+        DEFAULT_MAX_MESSAGE_SIZE,
+        new ConcurrentHashMap<MethodDescriptor<?, ?>, Headers.FixedRequestHeaders>());
 
     ManagedClientTransport.Listener listener = mock(ManagedClientTransport.Listener.class);
     clientTransport.start(listener);
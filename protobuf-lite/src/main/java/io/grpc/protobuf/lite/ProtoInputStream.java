@@ -36,20 +36,21 @@ import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 
-import io.grpc.Drainable;
+import io.grpc.ByteBufferDrainable;
 import io.grpc.KnownLength;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import javax.annotation.Nullable;
 
 /**
  * An {@link InputStream} backed by a protobuf.
  */
-class ProtoInputStream extends InputStream implements Drainable, KnownLength {
+class ProtoInputStream extends InputStream implements ByteBufferDrainable, KnownLength {
 
   // ProtoInputStream is first initialized with a *message*. *partial* is initially null.
   // Once there has been a read operation on this stream, *message* is serialized to *partial* and
@@ -79,6 +80,27 @@ class ProtoInputStream extends InputStream implements Drainable, KnownLength {
     return written;
   }
 
+  @Override
+  public int drainTo(ByteBuffer target) throws IOException {
+    int written;
+    if (message != null) {
+      written = message.getSerializedSize();
+      CodedOutputStream stream = CodedOutputStream.newInstance(target);
+      message.writeTo(stream);
+      stream.flush();
+      message = null;
+    } else if (partial != null) {
+      written = partial.available();
+      byte[] remaining = new byte[written];
+      ByteStreams.readFully(partial, remaining);
+      target.put(remaining);
+      partial = null;
+    } else {
+      written = 0;
+    }
+    return written;
+  }
+
   @Override
   public int read() throws IOException {
     if (message != null) {
@@ -40,6 +40,7 @@ import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 
 import io.grpc.ExperimentalApi;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
@@ -51,6 +52,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
 
 /**
  * Utility methods for using protobuf with grpc.
@@ -135,25 +139,36 @@ public class ProtoLiteUtils {
           }
         }
         CodedInputStream cis = null;
+        int parsedInPlace = 0;
         try {
           if (stream instanceof KnownLength) {
             int size = stream.available();
             if (size > 0 && size <= GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE) {
-              // buf should not be used after this method has returned.
-              byte[] buf = bufs.get().get();
-              if (buf == null || buf.length < size) {
-                buf = new byte[size];
-                bufs.set(new WeakReference<byte[]>(buf));
-              }
-              int chunkSize;
-              int position = 0;
-              while ((chunkSize = stream.read(buf, position, size - position)) != -1) {
-                position += chunkSize;
-              }
-              if (size != position) {
-                throw new RuntimeException("size inaccurate: " + size + " != " + position);
+              ByteBuffer inPlace = heapBufferOrNull(stream, size);
+              if (inPlace != null) {
+                // The whole message is in a single heap buffer retained from the transport, so
+                // parse it where it is. Parsed fields are copied out of it, so the message does
+                // not keep the buffer alive.
+                cis = CodedInputStream.newInstance(
+                    inPlace.array(), inPlace.arrayOffset() + inPlace.position(), size);
+                parsedInPlace = size;
+              } else {
+                // buf should not be used after this method has returned.
+                byte[] buf = bufs.get().get();
+                if (buf == null || buf.length < size) {
+                  buf = new byte[size];
+                  bufs.set(new WeakReference<byte[]>(buf));
+                }
+                int chunkSize;
+                int position = 0;
+                while ((chunkSize = stream.read(buf, position, size - position)) != -1) {
+                  position += chunkSize;
+                }
+                if (size != position) {
+                  throw new RuntimeException("size inaccurate: " + size + " != " + position);
+                }
+                cis = CodedInputStream.newInstance(buf, 0, size);
               }
-              cis = CodedInputStream.newInstance(buf, 0, size);
             } else if (size == 0) {
               return defaultInstance;
             }
@@ -168,12 +183,42 @@ public class ProtoLiteUtils {
         // when parsing.
         cis.setSizeLimit(Integer.MAX_VALUE);
 
+        T message;
         try {
-          return parseFrom(cis);
+          message = parseFrom(cis);
         } catch (InvalidProtocolBufferException ipbe) {
           throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence")
             .withCause(ipbe).asRuntimeException();
         }
+        if (parsedInPlace > 0) {
+          // Consume what was parsed so the stream can release the underlying buffer.
+          try {
+            stream.skip(parsedInPlace);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return message;
+      }
+
+      /**
+       * Returns the heap {@link ByteBuffer} holding the next {@code size} bytes of {@code stream},
+       * or {@code null} if the stream isn't backed by one that can be parsed without copying.
+       */
+      @Nullable
+      private ByteBuffer heapBufferOrNull(InputStream stream, int size) {
+        if (!(stream instanceof HasByteBuffer)) {
+          return null;
+        }
+        HasByteBuffer hasByteBuffer = (HasByteBuffer) stream;
+        if (!hasByteBuffer.byteBufferSupported()) {
+          return null;
+        }
+        ByteBuffer buffer = hasByteBuffer.getByteBuffer();
+        if (buffer == null || !buffer.hasArray() || buffer.remaining() < size) {
+          return null;
+        }
+        return buffer;
       }
 
       private T parseFrom(CodedInputStream stream) throws InvalidProtocolBufferException {
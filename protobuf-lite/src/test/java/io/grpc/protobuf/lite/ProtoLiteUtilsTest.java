@@ -35,6 +35,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.common.io.ByteStreams;
@@ -44,12 +45,16 @@ import com.google.protobuf.Enum;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Type;
 
+import io.grpc.ByteBufferDrainable;
 import io.grpc.Drainable;
+import io.grpc.HasByteBuffer;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
 import io.grpc.MethodDescriptor.PrototypeMarshaller;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.internal.CompositeReadableBuffer;
+import io.grpc.internal.ReadableBuffers;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -61,6 +66,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /** Unit tests for {@link ProtoLiteUtils}. */
@@ -139,6 +145,44 @@ public class ProtoLiteUtilsTest {
     testRoundtrip();
   }
 
+  @Test
+  public void parseFromHeapByteBufferInPlace() throws Exception {
+    byte[] serialized = proto.toByteArray();
+    InputStream is = ReadableBuffers.openStream(ReadableBuffers.wrap(serialized), true);
+    assertTrue(is instanceof HasByteBuffer);
+
+    Type parsed = marshaller.parse(is);
+    assertEquals(proto, parsed);
+    assertEquals(0, is.available());
+
+    // The parsed message must not alias the transport buffer, which is released after parsing.
+    Arrays.fill(serialized, (byte) 0);
+    assertEquals("name", parsed.getName());
+  }
+
+  @Test
+  public void parseFromSplitBuffersFallsBackToCopy() throws Exception {
+    byte[] serialized = proto.toByteArray();
+    CompositeReadableBuffer composite = new CompositeReadableBuffer();
+    composite.addBuffer(ReadableBuffers.wrap(serialized, 0, 2));
+    composite.addBuffer(ReadableBuffers.wrap(serialized, 2, serialized.length - 2));
+    InputStream is = ReadableBuffers.openStream(composite, true);
+
+    assertEquals(proto, marshaller.parse(is));
+    assertEquals(0, is.available());
+  }
+
+  @Test
+  public void parseFromDirectByteBufferFallsBackToCopy() throws Exception {
+    byte[] serialized = proto.toByteArray();
+    ByteBuffer direct = ByteBuffer.allocateDirect(serialized.length);
+    direct.put(serialized).flip();
+    InputStream is = ReadableBuffers.openStream(ReadableBuffers.wrap(direct), true);
+
+    assertEquals(proto, marshaller.parse(is));
+    assertEquals(0, is.available());
+  }
+
   @Test
   public void testAvailable() throws Exception {
     InputStream is = marshaller.stream(proto);
@@ -207,6 +251,44 @@ public class ProtoLiteUtilsTest {
     assertEquals(0, is.available());
   }
 
+  @Test
+  public void testDrainToByteBuffer_heap() throws Exception {
+    byte[] golden = ByteStreams.toByteArray(marshaller.stream(proto));
+    InputStream is = marshaller.stream(proto);
+    ByteBuffer target = ByteBuffer.allocate(golden.length + 1);
+    target.put((byte) 7);
+    int drained = ((ByteBufferDrainable) is).drainTo(target);
+    assertEquals(golden.length, drained);
+    assertEquals(golden.length + 1, target.position());
+    assertArrayEquals(golden, Arrays.copyOfRange(target.array(), 1, golden.length + 1));
+    assertEquals(0, is.available());
+  }
+
+  @Test
+  public void testDrainToByteBuffer_direct() throws Exception {
+    byte[] golden = ByteStreams.toByteArray(marshaller.stream(proto));
+    InputStream is = marshaller.stream(proto);
+    ByteBuffer target = ByteBuffer.allocateDirect(golden.length);
+    int drained = ((ByteBufferDrainable) is).drainTo(target);
+    assertEquals(golden.length, drained);
+    assertEquals(golden.length, target.position());
+    target.flip();
+    byte[] written = new byte[golden.length];
+    target.get(written);
+    assertArrayEquals(golden, written);
+  }
+
+  @Test
+  public void testDrainToByteBuffer_partial() throws Exception {
+    byte[] golden = ByteStreams.toByteArray(marshaller.stream(proto));
+    InputStream is = marshaller.stream(proto);
+    is.read();
+    ByteBuffer target = ByteBuffer.allocate(golden.length - 1);
+    assertEquals(golden.length - 1, ((ByteBufferDrainable) is).drainTo(target));
+    assertArrayEquals(Arrays.copyOfRange(golden, 1, golden.length), target.array());
+    assertEquals(0, is.available());
+  }
+
   @Test
   public void metadataMarshaller_roundtrip() {
     Metadata.BinaryMarshaller<Type> metadataMarshaller =
@@ -40,6 +40,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
+import io.grpc.ExperimentalApi;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
@@ -53,7 +54,8 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -67,6 +69,27 @@ import javax.annotation.Nullable;
 public final class ClientCalls {
   private static final Logger log = Logger.getLogger(ClientCalls.class.getName());
 
+  /**
+   * How long, in nanoseconds, a thread blocked in a blocking stub call spins waiting for the next
+   * response event before parking. Spinning trades CPU for lower latency on RPCs that complete in
+   * tens of microseconds; it is only worthwhile when the machine has cores to spare. Defaults to
+   * {@code 0}, which parks immediately.
+   */
+  @ExperimentalApi
+  public static final CallOptions.Key<Long> BLOCKING_SPIN_NANOS =
+      CallOptions.Key.of("io.grpc.stub.blockingSpinNanos", 0L);
+
+  /**
+   * Maximum number of response messages a blocking server-streaming iterator requests ahead of the
+   * application. The iterator buffers at most this many messages and requests more in batches of
+   * about half of it as they are consumed, so deep prefetch keeps the transport streaming while
+   * the application reads. Defaults to {@code 1}, which requests each message only after the
+   * previous one has been returned.
+   */
+  @ExperimentalApi
+  public static final CallOptions.Key<Integer> BLOCKING_STREAM_PREFETCH =
+      CallOptions.Key.of("io.grpc.stub.blockingStreamPrefetch", 1);
+
   // Prevent instantiation
   private ClientCalls() {}
 
@@ -129,7 +152,8 @@ public final class ClientCalls {
    */
   public static <ReqT, RespT> RespT blockingUnaryCall(
       Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, ReqT param) {
-    ThreadlessExecutor executor = new ThreadlessExecutor();
+    ThreadlessExecutor executor =
+        new ThreadlessExecutor(callOptions.getOption(BLOCKING_SPIN_NANOS));
     ClientCall<ReqT, RespT> call = channel.newCall(method, callOptions.withExecutor(executor));
     try {
       ListenableFuture<RespT> responseFuture = futureUnaryCall(call, param);
@@ -170,10 +194,19 @@ public final class ClientCalls {
   // TODO(louiscryan): Not clear if we want to use this idiom for 'simple' stubs.
   public static <ReqT, RespT> Iterator<RespT> blockingServerStreamingCall(
       Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, ReqT param) {
-    ThreadlessExecutor executor = new ThreadlessExecutor();
+    // Checked before creating the call, which would otherwise be left unstarted
+    int prefetch = callOptions.getOption(BLOCKING_STREAM_PREFETCH);
+    Preconditions.checkArgument(prefetch > 0, "prefetch must be positive");
+    ThreadlessExecutor executor =
+        new ThreadlessExecutor(callOptions.getOption(BLOCKING_SPIN_NANOS));
     ClientCall<ReqT, RespT> call = channel.newCall(method, callOptions.withExecutor(executor));
-    BlockingResponseStream<RespT> result = new BlockingResponseStream<RespT>(call, executor);
+    BlockingResponseStream<RespT> result =
+        new BlockingResponseStream<RespT>(call, executor, prefetch);
     asyncUnaryRequestCall(call, param, result.listener(), true);
+    if (prefetch > 1) {
+      // startCall() already requested the first message.
+      call.request(prefetch - 1);
+    }
     return result;
   }
 
@@ -476,22 +509,29 @@ public final class ClientCalls {
    */
   // TODO(ejona86): determine how to allow ClientCall.cancel() in case of application error.
   private static class BlockingResponseStream<T> implements Iterator<T> {
-    // Due to flow control, only needs to hold up to 2 items: 1 for value, 1 for close.
-    private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<Object>(2);
+    // Due to flow control, only needs to hold up to prefetch values, plus 1 for close.
+    private final BlockingQueue<Object> buffer;
     private final ClientCall.Listener<T> listener = new QueuingListener();
     private final ClientCall<?, T> call;
     /** May be null. */
     private final ThreadlessExecutor threadless;
+    /** Number of consumed messages to accumulate before requesting them again. */
+    private final int requestBatch;
     // Only accessed when iterating.
     private Object last;
+    private int consumedSinceRequest;
 
     private BlockingResponseStream(ClientCall<?, T> call) {
-      this(call, null);
+      this(call, null, 1);
     }
 
-    private BlockingResponseStream(ClientCall<?, T> call, ThreadlessExecutor threadless) {
+    private BlockingResponseStream(ClientCall<?, T> call, ThreadlessExecutor threadless,
+        int prefetch) {
+      Preconditions.checkArgument(prefetch > 0, "prefetch must be positive");
       this.call = call;
       this.threadless = threadless;
+      this.buffer = new ArrayBlockingQueue<Object>(prefetch + 1);
+      this.requestBatch = Math.max(1, prefetch / 2);
     }
 
     ClientCall.Listener<T> listener() {
@@ -537,7 +577,10 @@ public final class ClientCalls {
         throw new NoSuchElementException();
       }
       try {
-        call.request(1);
+        if (++consumedSinceRequest >= requestBatch) {
+          call.request(consumedSinceRequest);
+          consumedSinceRequest = 0;
+        }
         @SuppressWarnings("unchecked")
         T tmp = (T) last;
         return tmp;
@@ -577,27 +620,112 @@ public final class ClientCalls {
     }
   }
 
-  private static class ThreadlessExecutor implements Executor {
-    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+  /**
+   * Executor that runs callbacks on the thread blocked in {@link #waitAndDrain}. Only that one
+   * thread ever consumes, so runnables are passed through a multi-producer, single-consumer linked
+   * queue that producers append to with a single atomic swap.
+   *
+   * <p>An idle consumer first spins, then yields, for up to the configured spin time before
+   * parking. For RPCs that complete within that time this avoids the cost of parking and waking
+   * the thread.
+   */
+  private static final class ThreadlessExecutor implements Executor {
+    /** Number of busy polls before the waiter starts yielding its time slice. */
+    private static final int BUSY_SPINS = 100;
+
+    private static final AtomicReferenceFieldUpdater<ThreadlessExecutor, Node> TAIL_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(ThreadlessExecutor.class, Node.class, "tail");
+
+    private final long spinNanos;
+    /** Last node consumed; its successor is the next runnable. Only accessed by the consumer. */
+    private Node head = new Node(null);
+    private volatile Node tail = head;
+    private volatile Thread waiter;
+
+    ThreadlessExecutor(long spinNanos) {
+      this.spinNanos = spinNanos;
+    }
 
     /**
      * Waits until there is a Runnable, then executes it and all queued Runnables after it.
      */
     public void waitAndDrain() throws InterruptedException {
-      Runnable runnable = queue.take();
+      Runnable runnable = poll();
+      if (runnable == null) {
+        runnable = await();
+      }
       while (runnable != null) {
         try {
           runnable.run();
         } catch (Throwable t) {
           log.log(Level.WARNING, "Runnable threw exception", t);
         }
-        runnable = queue.poll();
+        runnable = poll();
       }
     }
 
     @Override
     public void execute(Runnable runnable) {
-      queue.add(runnable);
+      Node node = new Node(runnable);
+      TAIL_UPDATER.getAndSet(this, node).next = node;
+      Thread thread = waiter;
+      if (thread != null) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    @Nullable
+    private Runnable poll() {
+      Node next = head.next;
+      if (next == null) {
+        return null;
+      }
+      head = next;
+      Runnable runnable = next.runnable;
+      next.runnable = null;
+      return runnable;
+    }
+
+    private Runnable await() throws InterruptedException {
+      Runnable runnable;
+      if (spinNanos > 0) {
+        long deadline = System.nanoTime() + spinNanos;
+        int spins = 0;
+        do {
+          runnable = poll();
+          if (runnable != null) {
+            return runnable;
+          }
+          if (spins < BUSY_SPINS) {
+            spins++;
+          } else {
+            Thread.yield();
+          }
+        } while (deadline - System.nanoTime() > 0);
+      }
+      // Publishing the waiter before polling again guarantees that a producer either sees the
+      // waiter and unparks it, or enqueued early enough for the poll to find its runnable.
+      waiter = Thread.currentThread();
+      try {
+        while ((runnable = poll()) == null) {
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+          LockSupport.park(this);
+        }
+        return runnable;
+      } finally {
+        waiter = null;
+      }
+    }
+
+    private static final class Node {
+      volatile Node next;
+      Runnable runnable;
+
+      Node(Runnable runnable) {
+        this.runnable = runnable;
+      }
     }
   }
 }
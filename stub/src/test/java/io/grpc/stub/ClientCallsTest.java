@@ -42,6 +42,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import io.grpc.CallOptions;
+import io.grpc.Channel;
 import io.grpc.ClientCall;
 import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
@@ -73,6 +74,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -87,6 +89,12 @@ public class ClientCallsTest {
           "some/method",
           new IntegerMarshaller(), new IntegerMarshaller());
 
+  private static final MethodDescriptor<Integer, Integer> UNARY_METHOD = MethodDescriptor
+      .create(
+          MethodDescriptor.MethodType.UNARY,
+          "some/unary",
+          new IntegerMarshaller(), new IntegerMarshaller());
+
   private Server server;
   private ManagedChannel channel;
 
@@ -554,6 +562,200 @@ public class ClientCallsTest {
     assertEquals(Arrays.asList(0, 1, 1, 2, 2, 2), receivedMessages);
   }
 
+  @Test
+  public void blockingUnaryCallWaitsForResponseFromOtherThread() throws Exception {
+    startIncrementingServer();
+    for (int i = 0; i < 100; i++) {
+      assertEquals((Integer) (i + 1),
+          ClientCalls.blockingUnaryCall(channel, UNARY_METHOD, CallOptions.DEFAULT, i));
+    }
+  }
+
+  @Test
+  public void blockingUnaryCallSpinsBeforeParking() throws Exception {
+    startIncrementingServer();
+    CallOptions callOptions = CallOptions.DEFAULT
+        .withOption(ClientCalls.BLOCKING_SPIN_NANOS, TimeUnit.MILLISECONDS.toNanos(1));
+    for (int i = 0; i < 100; i++) {
+      assertEquals((Integer) (i + 1),
+          ClientCalls.blockingUnaryCall(channel, UNARY_METHOD, callOptions, i));
+    }
+  }
+
+  @Test
+  public void blockingUnaryCallInterruptedWhileParked() throws Exception {
+    ServerServiceDefinition service = ServerServiceDefinition.builder(
+        new ServiceDescriptor("some", UNARY_METHOD))
+        .addMethod(UNARY_METHOD, ServerCalls.asyncUnaryCall(
+            new ServerCalls.UnaryMethod<Integer, Integer>() {
+              @Override
+              public void invoke(Integer request, StreamObserver<Integer> responseObserver) {
+                // Never respond.
+              }
+            }))
+        .build();
+    long tag = System.nanoTime();
+    server = InProcessServerBuilder.forName("never-responds" + tag)
+        .addService(service).build().start();
+    channel = InProcessChannelBuilder.forName("never-responds" + tag).build();
+    final Thread caller = Thread.currentThread();
+    Thread interrupter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        caller.interrupt();
+      }
+    });
+    interrupter.start();
+    try {
+      ClientCalls.blockingUnaryCall(channel, UNARY_METHOD, CallOptions.DEFAULT, 1);
+      fail("Should fail");
+    } catch (StatusRuntimeException e) {
+      assertEquals(Status.Code.CANCELLED, e.getStatus().getCode());
+      assertTrue(Thread.interrupted());
+    } finally {
+      interrupter.join();
+    }
+  }
+
+  @Test
+  public void blockingServerStreamingCallWithSpinningWaiter() throws Exception {
+    final MethodDescriptor<Integer, Integer> method = MethodDescriptor.create(
+        MethodDescriptor.MethodType.SERVER_STREAMING, "some/stream",
+        new IntegerMarshaller(), new IntegerMarshaller());
+    ServerServiceDefinition service = ServerServiceDefinition.builder(
+        new ServiceDescriptor("some", method))
+        .addMethod(method, ServerCalls.asyncServerStreamingCall(
+            new ServerCalls.ServerStreamingMethod<Integer, Integer>() {
+              @Override
+              public void invoke(Integer request, StreamObserver<Integer> responseObserver) {
+                for (int i = 0; i < request; i++) {
+                  responseObserver.onNext(i);
+                }
+                responseObserver.onCompleted();
+              }
+            }))
+        .build();
+    long tag = System.nanoTime();
+    server = InProcessServerBuilder.forName("streams" + tag).addService(service).build().start();
+    channel = InProcessChannelBuilder.forName("streams" + tag).build();
+    CallOptions callOptions = CallOptions.DEFAULT
+        .withOption(ClientCalls.BLOCKING_SPIN_NANOS, TimeUnit.MILLISECONDS.toNanos(1));
+    Iterator<Integer> iter =
+        ClientCalls.blockingServerStreamingCall(channel, method, callOptions, 10);
+    List<Integer> received = new ArrayList<Integer>();
+    while (iter.hasNext()) {
+      received.add(iter.next());
+    }
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), received);
+  }
+
+  @Test
+  public void blockingServerStreamingCallPrefetchesInBatches() throws Exception {
+    final AtomicReference<ClientCall.Listener<Integer>> listener =
+        new AtomicReference<ClientCall.Listener<Integer>>();
+    final List<Integer> requests = new ArrayList<Integer>();
+    final NoopClientCall<Integer, Integer> call = new NoopClientCall<Integer, Integer>() {
+      @Override
+      public void start(io.grpc.ClientCall.Listener<Integer> responseListener, Metadata headers) {
+        listener.set(responseListener);
+      }
+
+      @Override
+      public void request(int numMessages) {
+        requests.add(numMessages);
+      }
+    };
+    Channel channel = new Channel() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+          MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+        return (ClientCall<ReqT, RespT>) call;
+      }
+
+      @Override
+      public String authority() {
+        return "fake-authority";
+      }
+    };
+    MethodDescriptor<Integer, Integer> method = MethodDescriptor.create(
+        MethodDescriptor.MethodType.SERVER_STREAMING, "some/stream",
+        new IntegerMarshaller(), new IntegerMarshaller());
+
+    Iterator<Integer> iter = ClientCalls.blockingServerStreamingCall(channel, method,
+        CallOptions.DEFAULT.withOption(ClientCalls.BLOCKING_STREAM_PREFETCH, 8), 1);
+    assertThat(requests).containsExactly(1, 7).inOrder();
+
+    for (int i = 0; i < 8; i++) {
+      listener.get().onMessage(i);
+    }
+    for (int i = 0; i < 3; i++) {
+      assertEquals((Integer) i, iter.next());
+    }
+    assertThat(requests).containsExactly(1, 7).inOrder();
+    assertEquals((Integer) 3, iter.next());
+    assertThat(requests).containsExactly(1, 7, 4).inOrder();
+
+    listener.get().onClose(Status.OK, new Metadata());
+    for (int i = 4; i < 8; i++) {
+      assertEquals((Integer) i, iter.next());
+    }
+    assertThat(iter.hasNext()).isFalse();
+  }
+
+  @Test
+  public void blockingServerStreamingCallRejectsPrefetchBeforeCreatingCall() {
+    final AtomicInteger newCalls = new AtomicInteger();
+    Channel channel = new Channel() {
+      @Override
+      public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+          MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+        newCalls.incrementAndGet();
+        return new NoopClientCall<ReqT, RespT>();
+      }
+
+      @Override
+      public String authority() {
+        return "fake-authority";
+      }
+    };
+    MethodDescriptor<Integer, Integer> method = MethodDescriptor.create(
+        MethodDescriptor.MethodType.SERVER_STREAMING, "some/stream",
+        new IntegerMarshaller(), new IntegerMarshaller());
+
+    try {
+      ClientCalls.blockingServerStreamingCall(channel, method,
+          CallOptions.DEFAULT.withOption(ClientCalls.BLOCKING_STREAM_PREFETCH, 0), 1);
+      fail("Expected exception");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+    assertEquals(0, newCalls.get());
+  }
+
+  private void startIncrementingServer() throws Exception {
+    ServerServiceDefinition service = ServerServiceDefinition.builder(
+        new ServiceDescriptor("some", UNARY_METHOD))
+        .addMethod(UNARY_METHOD, ServerCalls.asyncUnaryCall(
+            new ServerCalls.UnaryMethod<Integer, Integer>() {
+              @Override
+              public void invoke(Integer request, StreamObserver<Integer> responseObserver) {
+                responseObserver.onNext(request + 1);
+                responseObserver.onCompleted();
+              }
+            }))
+        .build();
+    long tag = System.nanoTime();
+    // The server uses its default executor so responses arrive on another thread.
+    server = InProcessServerBuilder.forName("increment" + tag).addService(service).build().start();
+    channel = InProcessChannelBuilder.forName("increment" + tag).build();
+  }
+
   @Test
   public void blockingResponseStreamFailed() throws Exception {
     final AtomicReference<ClientCall.Listener<String>> listener =
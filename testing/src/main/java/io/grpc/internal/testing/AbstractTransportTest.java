@@ -1161,6 +1161,11 @@ public abstract class AbstractTransportTest {
       return StatsTraceContext.NOOP;
     }
 
+    @Override
+    public String lookupMethodName(byte[] bytes, int offset, int length) {
+      return null;
+    }
+
     @Override
     public void streamCreated(ServerStream stream, String method, Metadata headers) {
       ServerStreamListener listener = mock(ServerStreamListener.class);